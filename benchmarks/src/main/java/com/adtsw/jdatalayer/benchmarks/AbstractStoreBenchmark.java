@@ -0,0 +1,94 @@
+package com.adtsw.jdatalayer.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.adtsw.jdatalayer.core.client.IDBClient;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Opens a fresh store per trial in a temporary directory and preloads
+ * keyCount entities, so that reads hit existing keys and writes overwrite
+ * them. Defaults report ops/s, {@link BenchmarkRunner} adds latency
+ * percentiles, allocation rate and the thread count sweep.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public abstract class AbstractStoreBenchmark {
+
+    protected static final String NAMESPACE = "benchmark";
+    protected static final int BULK_SIZE = 100;
+
+    @Param
+    public BenchmarkBackend backend;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int payloadSize;
+
+    @Param({"1000"})
+    public int keyCount;
+
+    protected IDBClient dbClient;
+    protected String payload;
+    protected String[] keys;
+    protected String[] bulkKeys;
+    private Path storageLocation;
+    private final AtomicLong deleteSequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        storageLocation = Files.createTempDirectory("jdatalayer-benchmark");
+        dbClient = backend.open(storageLocation.toString(), NAMESPACE);
+        payload = BenchmarkPayloads.payload(payloadSize);
+        keys = BenchmarkPayloads.keys("key-", keyCount);
+        bulkKeys = BenchmarkPayloads.keys("bulk-", BULK_SIZE);
+        load();
+    }
+
+    /**
+     * Writes all keys of the trial
+     */
+    protected abstract void load();
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        dbClient.shutdown();
+        dbClient.clear();
+        FileUtils.deleteDirectory(storageLocation.toFile());
+    }
+
+    protected String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    /**
+     * Keys for the delete benchmarks, never handed out twice so that every
+     * delete removes a live entity
+     */
+    protected String nextDeleteKey() {
+        return "delete-" + deleteSequence.incrementAndGet();
+    }
+}
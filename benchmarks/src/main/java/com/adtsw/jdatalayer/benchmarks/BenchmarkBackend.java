@@ -0,0 +1,34 @@
+package com.adtsw.jdatalayer.benchmarks;
+
+import com.adtsw.jdatalayer.core.client.IDBClient;
+import com.adtsw.jdatalayer.mapdb.MapDBClient;
+import com.adtsw.jdatalayer.rocksdb.RocksDBClientOptions;
+import com.adtsw.jdatalayer.rocksdb.RocksDBKVClient;
+
+import org.rocksdb.CompressionType;
+
+/**
+ * Backends the benchmarks run against, opened with settings close to what a
+ * service would use so that numbers are comparable between releases.
+ */
+public enum BenchmarkBackend {
+
+    ROCKSDB {
+        @Override
+        public IDBClient open(String baseStorageLocation, String namespace) {
+            return new RocksDBKVClient(baseStorageLocation, namespace, RocksDBClientOptions.builder()
+                .blockCacheCapacityKB(64 * 1024)
+                .rateBytesPerSecond(100 * 1024 * 1024)
+                .compressionType(CompressionType.LZ4_COMPRESSION)
+                .build());
+        }
+    },
+    MAPDB {
+        @Override
+        public IDBClient open(String baseStorageLocation, String namespace) {
+            return new MapDBClient(baseStorageLocation, namespace, Runtime.getRuntime().availableProcessors());
+        }
+    };
+
+    public abstract IDBClient open(String baseStorageLocation, String namespace);
+}
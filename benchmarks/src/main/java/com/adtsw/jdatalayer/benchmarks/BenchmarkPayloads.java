@@ -0,0 +1,47 @@
+package com.adtsw.jdatalayer.benchmarks;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Payloads of a given size, generated from a fixed seed so that every run
+ * stores the same bytes. Half of the payload repeats a short pattern, which
+ * keeps compressed formats from being a best or worst case.
+ */
+public final class BenchmarkPayloads {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    private BenchmarkPayloads() {
+    }
+
+    public static String payload(int sizeBytes) {
+
+        Random random = new Random(sizeBytes);
+        StringBuilder payload = new StringBuilder(sizeBytes);
+        for (int i = 0; i < sizeBytes; i++) {
+            payload.append(i % 2 == 0
+                ? ALPHABET.charAt(random.nextInt(ALPHABET.length()))
+                : ALPHABET.charAt(i % 16));
+        }
+        return payload.toString();
+    }
+
+    public static Map<String, Object> fields(String entityId, String payload) {
+
+        Map<String, Object> fields = new TreeMap<>();
+        fields.put("id", entityId);
+        fields.put("payload", payload);
+        return fields;
+    }
+
+    public static String[] keys(String prefix, int count) {
+
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = prefix + i;
+        }
+        return keys;
+    }
+}
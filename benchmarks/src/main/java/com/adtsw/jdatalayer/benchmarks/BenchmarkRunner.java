@@ -0,0 +1,61 @@
+package com.adtsw.jdatalayer.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks for every thread count, once for throughput (ops/s) and
+ * once for sampled latency (percentiles in us), both with the gc profiler for
+ * allocation rates. Results are written as json per mode and thread count.
+ *
+ * Arguments: [include regex] [param=value1,value2 ...]
+ * System properties: benchmark.threads (default 1,2,4,8,16,32,64) and
+ * benchmark.results (default benchmark-results)
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*Benchmark";
+        String resultDirectory = System.getProperty("benchmark.results", "benchmark-results");
+        new File(resultDirectory).mkdirs();
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (String threads : System.getProperty("benchmark.threads", "1,2,4,8,16,32,64").split(",")) {
+            threadCounts.add(Integer.parseInt(threads.trim()));
+        }
+
+        for (int threads : threadCounts) {
+            run(include, args, threads, Mode.Throughput, TimeUnit.SECONDS, resultDirectory);
+            run(include, args, threads, Mode.SampleTime, TimeUnit.MICROSECONDS, resultDirectory);
+        }
+    }
+
+    private static void run(String include, String[] args, int threads, Mode mode, TimeUnit timeUnit,
+                            String resultDirectory) throws RunnerException {
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .include(include)
+            .threads(threads)
+            .mode(mode)
+            .timeUnit(timeUnit)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(resultDirectory + "/" + mode.shortLabel() + "-t" + threads + ".json");
+        for (int i = 1; i < args.length; i++) {
+            String[] param = args[i].split("=", 2);
+            options = options.param(param[0], param[1].split(","));
+        }
+        new Runner(options.build()).run();
+    }
+}
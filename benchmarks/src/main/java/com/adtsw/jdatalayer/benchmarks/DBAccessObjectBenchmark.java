@@ -0,0 +1,76 @@
+package com.adtsw.jdatalayer.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+import com.adtsw.jdatalayer.core.accessobject.DBAccessObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * The same operations as {@link DBClientBenchmark} through DBAccessObject,
+ * the difference between the two is the cost of the entity mapping.
+ */
+public class DBAccessObjectBenchmark extends AbstractStoreBenchmark {
+
+    @Param
+    public EncodingFormat encodingFormat;
+
+    private DBAccessObject dbo;
+    private Class<? extends PayloadEntity> entityClass;
+    private List<PayloadEntity> bulkEntities;
+
+    @Override
+    protected void load() {
+
+        dbo = new DBAccessObject(dbClient, NAMESPACE);
+        entityClass = PayloadEntity.of(encodingFormat, "entity", payload).getClass();
+        bulkEntities = new ArrayList<>();
+        for (String bulkKey : bulkKeys) {
+            bulkEntities.add(PayloadEntity.of(encodingFormat, bulkKey, payload));
+        }
+
+        List<PayloadEntity> entities = new ArrayList<>();
+        for (String key : keys) {
+            entities.add(PayloadEntity.of(encodingFormat, key, payload));
+            if(entities.size() == BULK_SIZE) {
+                dbo.put(entities);
+                entities.clear();
+            }
+        }
+        dbo.put(entities);
+    }
+
+    @Benchmark
+    public void put() {
+        dbo.put(PayloadEntity.of(encodingFormat, randomKey(), payload));
+    }
+
+    @Benchmark
+    public PayloadEntity get() {
+        return dbo.get(randomKey(), entityClass);
+    }
+
+    @Benchmark
+    public void bulkPut() {
+        dbo.put(bulkEntities);
+    }
+
+    /**
+     * Puts and then deletes a fresh key, subtract put for the cost of the delete
+     */
+    @Benchmark
+    public void putAndDelete() {
+
+        String key = nextDeleteKey();
+        dbo.put(PayloadEntity.of(encodingFormat, key, payload));
+        dbo.delete(key, entityClass);
+    }
+
+    @Benchmark
+    public List<String> getIds() {
+        return dbo.getIds(entityClass);
+    }
+}
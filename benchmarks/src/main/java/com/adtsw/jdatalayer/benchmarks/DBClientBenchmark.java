@@ -0,0 +1,78 @@
+package com.adtsw.jdatalayer.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * IDBClient operations on raw field maps, measures the backends and the
+ * payload encoding without the entity mapping of DBAccessObject.
+ */
+public class DBClientBenchmark extends AbstractStoreBenchmark {
+
+    @Param
+    public EncodingFormat encodingFormat;
+
+    private String set;
+    private Map<String, Object> fields;
+    private Map<String, Map<String, Object>> bulkEntities;
+
+    @Override
+    protected void load() {
+
+        set = "payload" + encodingFormat;
+        fields = BenchmarkPayloads.fields("entity", payload);
+        bulkEntities = new HashMap<>();
+        for (String bulkKey : bulkKeys) {
+            bulkEntities.put(bulkKey, BenchmarkPayloads.fields(bulkKey, payload));
+        }
+
+        Map<String, Map<String, Object>> entities = new HashMap<>();
+        for (String key : keys) {
+            entities.put(key, BenchmarkPayloads.fields(key, payload));
+            if(entities.size() == BULK_SIZE) {
+                dbClient.put(NAMESPACE, set, entities, encodingFormat);
+                entities.clear();
+            }
+        }
+        if(!entities.isEmpty()) {
+            dbClient.put(NAMESPACE, set, entities, encodingFormat);
+        }
+    }
+
+    @Benchmark
+    public void put() {
+        dbClient.put(NAMESPACE, set, randomKey(), fields, encodingFormat);
+    }
+
+    @Benchmark
+    public Map<String, Object> get() {
+        return dbClient.get(NAMESPACE, set, randomKey(), encodingFormat);
+    }
+
+    @Benchmark
+    public void bulkPut() {
+        dbClient.put(NAMESPACE, set, bulkEntities, encodingFormat);
+    }
+
+    /**
+     * Puts and then deletes a fresh key, subtract put for the cost of the delete
+     */
+    @Benchmark
+    public void putAndDelete() {
+
+        String key = nextDeleteKey();
+        dbClient.put(NAMESPACE, set, key, fields, encodingFormat);
+        dbClient.delete(NAMESPACE, set, key);
+    }
+
+    @Benchmark
+    public List<String> getIds() {
+        return dbClient.getIds(NAMESPACE, set);
+    }
+}
@@ -0,0 +1,110 @@
+package com.adtsw.jdatalayer.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+import com.adtsw.jdatalayer.mapdb.MapDBClient;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MapDBClient under concurrent gets and puts, 8 threads unless overridden
+ * with -t. concurrencyScale 1 puts the whole store behind a single segment
+ * lock, larger scales show the gain of segmenting the store, the mixed group
+ * runs 6 readers next to 2 writers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MapDBConcurrencyBenchmark {
+
+    private static final String NAMESPACE = "benchmark";
+    private static final String SET = "payload";
+
+    @Param({"1", "8", "32"})
+    public int concurrencyScale;
+
+    @Param({"1000"})
+    public int payloadSize;
+
+    @Param({"10000"})
+    public int keyCount;
+
+    private MapDBClient dbClient;
+    private Map<String, Object> fields;
+    private String[] keys;
+    private Path storageLocation;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        storageLocation = Files.createTempDirectory("jdatalayer-benchmark");
+        dbClient = new MapDBClient(storageLocation.toString(), NAMESPACE, concurrencyScale);
+        fields = BenchmarkPayloads.fields("entity", BenchmarkPayloads.payload(payloadSize));
+        keys = BenchmarkPayloads.keys("key-", keyCount);
+        for (String key : keys) {
+            dbClient.put(NAMESPACE, SET, key, fields, EncodingFormat.STRING);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        dbClient.shutdown();
+        dbClient.clear();
+        FileUtils.deleteDirectory(storageLocation.toFile());
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    @Benchmark
+    public Map<String, Object> get() {
+        return dbClient.get(NAMESPACE, SET, randomKey(), EncodingFormat.STRING);
+    }
+
+    @Benchmark
+    public void put() {
+        dbClient.put(NAMESPACE, SET, randomKey(), fields, EncodingFormat.STRING);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public Map<String, Object> mixedGet() {
+        return dbClient.get(NAMESPACE, SET, randomKey(), EncodingFormat.STRING);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void mixedPut() {
+        dbClient.put(NAMESPACE, SET, randomKey(), fields, EncodingFormat.STRING);
+    }
+}
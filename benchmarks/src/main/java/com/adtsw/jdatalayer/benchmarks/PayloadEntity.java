@@ -0,0 +1,73 @@
+package com.adtsw.jdatalayer.benchmarks;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+import com.adtsw.jdatalayer.core.annotations.DBEntityConfiguration;
+import com.adtsw.jdatalayer.core.annotations.EntityId;
+import com.adtsw.jdatalayer.core.model.DBEntity;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Entity used by the DBAccessObject benchmarks, with one subclass per
+ * encoding format since the format is part of the entity configuration.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public abstract class PayloadEntity implements DBEntity {
+
+    @EntityId
+    @JsonProperty("id")
+    private String id;
+    @JsonProperty("payload")
+    private String payload;
+
+    protected PayloadEntity(String id, String payload) {
+        this.id = id;
+        this.payload = payload;
+    }
+
+    public static PayloadEntity of(EncodingFormat encodingFormat, String id, String payload) {
+
+        switch (encodingFormat) {
+            case STRING:
+                return new StringPayload(id, payload);
+            case BASE64:
+                return new Base64Payload(id, payload);
+            case GZIP_WITH_BASE64:
+                return new GzipPayload(id, payload);
+            default:
+                throw new IllegalArgumentException("No payload entity for " + encodingFormat);
+        }
+    }
+
+    @NoArgsConstructor
+    @DBEntityConfiguration(setName = "payloadSTRING", encodingFormat = EncodingFormat.STRING)
+    public static class StringPayload extends PayloadEntity {
+
+        public StringPayload(String id, String payload) {
+            super(id, payload);
+        }
+    }
+
+    @NoArgsConstructor
+    @DBEntityConfiguration(setName = "payloadBASE64", encodingFormat = EncodingFormat.BASE64)
+    public static class Base64Payload extends PayloadEntity {
+
+        public Base64Payload(String id, String payload) {
+            super(id, payload);
+        }
+    }
+
+    @NoArgsConstructor
+    @DBEntityConfiguration(setName = "payloadGZIP", encodingFormat = EncodingFormat.GZIP_WITH_BASE64)
+    public static class GzipPayload extends PayloadEntity {
+
+        public GzipPayload(String id, String payload) {
+            super(id, payload);
+        }
+    }
+}
@@ -1,22 +1,20 @@
 package com.adtsw.jdatalayer.core.accessobject;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Consumer;
 
 import com.adtsw.jcommons.utils.JsonUtil;
 import com.adtsw.jdatalayer.core.annotations.DBEntityConfiguration;
-import com.adtsw.jdatalayer.core.annotations.EntityId;
+import com.adtsw.jdatalayer.core.client.DBWriteOperation;
 import com.adtsw.jdatalayer.core.client.IDBClient;
+import com.adtsw.jdatalayer.core.client.ParallelScanner;
 import com.adtsw.jdatalayer.core.model.DBEntity;
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.lang3.reflect.FieldUtils;
-import org.apache.commons.lang3.reflect.MethodUtils;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -34,7 +32,7 @@ public class DBAccessObject {
         try {
             
             DBEntityConfiguration configs = entity.getClass().getAnnotation(DBEntityConfiguration.class);
-            String entityId = getId(entity);
+            String entityId = EntityIds.getId(entity);
             TreeMap<String, Object> mappedEntity = JsonUtil.convert(entity, mapTypeReference);
 
             dbClient.put(namespace, configs.setName(), entityId, mappedEntity, configs.encodingFormat());
@@ -55,7 +53,7 @@ public class DBAccessObject {
 
                 HashMap<String, Map<String, Object>> dbEntities = new HashMap<>();
                 for (DBEntity entity : entities) {
-                    String entityId = getId(entity);
+                    String entityId = EntityIds.getId(entity);
                     TreeMap<String, Object> mappedEntity = JsonUtil.convert(entity, mapTypeReference);
                     dbEntities.put(entityId, mappedEntity);
                 }
@@ -78,6 +76,19 @@ public class DBAccessObject {
         return JsonUtil.convert(savedEntity, clazz);
     }
 
+    public <T extends DBEntity> Map<String, T> get(List<String> entityIds, Class<T> clazz) {
+
+        DBEntityConfiguration configs = clazz.getAnnotation(DBEntityConfiguration.class);
+        Map<String, Map<String, Object>> savedEntities = dbClient.get(
+            namespace, configs.setName(), entityIds, configs.encodingFormat()
+        );
+        Map<String, T> entities = new HashMap<>();
+        savedEntities.forEach((entityId, savedEntity) -> {
+            entities.put(entityId, JsonUtil.convert(savedEntity, clazz));
+        });
+        return entities;
+    }
+
     public <T extends DBEntity> void delete(String entityId, Class<T> clazz) {
 
         DBEntityConfiguration configs = clazz.getAnnotation(DBEntityConfiguration.class);
@@ -99,26 +110,50 @@ public class DBAccessObject {
         return dbClient.getIds(namespace, configs.setName());
     }
 
-    private String getId(DBEntity entity) throws IllegalAccessException {
-
-        List<Field> idFields = FieldUtils.getFieldsListWithAnnotation(entity.getClass(), EntityId.class);
-        if(CollectionUtils.isNotEmpty(idFields)) {
-            Field entityIdField = idFields.get(0);
-            return String.valueOf(FieldUtils.readField(entityIdField, entity));
-        } else {
-            List<Method> idMethods = MethodUtils.getMethodsListWithAnnotation(entity.getClass(), EntityId.class);
-            if(CollectionUtils.isNotEmpty(idMethods)) {
-                Method entityIdMethod = idMethods.get(0);
-                try {
-                    return String.valueOf(MethodUtils.invokeMethod(entity, entityIdMethod.getName()));
-                } catch (Exception e) {
-                    throw new RuntimeException("Unable to invoke id method");
-                } 
-            }
+    /**
+     * Reads every entity of the class with parallelism threads, see
+     * {@link ParallelScanner}. The consumer is called concurrently.
+     *
+     * @return number of entities scanned
+     */
+    public <T extends DBEntity> long scan(Class<T> clazz, int parallelism, Consumer<T> consumer) {
+
+        DBEntityConfiguration configs = clazz.getAnnotation(DBEntityConfiguration.class);
+        return new ParallelScanner(dbClient, parallelism).scan(
+            namespace, configs.setName(), configs.encodingFormat(),
+            (entityId, savedEntity) -> consumer.accept(JsonUtil.convert(savedEntity, clazz))
+        );
+    }
+
+    /**
+     * Starts a unit of work collecting puts and deletes of any entity
+     * classes, written together on {@link DBUnitOfWork#commit()}
+     */
+    public DBUnitOfWork batch() {
+        return new DBUnitOfWork(this);
+    }
+
+    void write(List<DBWriteOperation> operations) {
+
+        try {
+            dbClient.write(namespace, operations);
+        } catch (Exception e) {
+            throw new RuntimeException("Exception while writing batch", e);
         }
-        throw new RuntimeException("Unable to find entity id field");
     }
-    
+
+    DBWriteOperation toPut(DBEntity entity) {
+
+        try {
+            DBEntityConfiguration configs = entity.getClass().getAnnotation(DBEntityConfiguration.class);
+            String entityId = EntityIds.getId(entity);
+            TreeMap<String, Object> mappedEntity = JsonUtil.convert(entity, mapTypeReference);
+            return DBWriteOperation.put(configs.setName(), entityId, mappedEntity, configs.encodingFormat());
+        } catch (Exception e) {
+            throw new RuntimeException("Exception while saving entity", e);
+        }
+    }
+
     public void shutdown() {
         dbClient.shutdown();
     }
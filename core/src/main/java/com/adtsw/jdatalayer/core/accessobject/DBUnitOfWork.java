@@ -0,0 +1,79 @@
+package com.adtsw.jdatalayer.core.accessobject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.adtsw.jdatalayer.core.annotations.DBEntityConfiguration;
+import com.adtsw.jdatalayer.core.client.DBWriteOperation;
+import com.adtsw.jdatalayer.core.model.DBEntity;
+
+/**
+ * Puts and deletes of entities of any classes, collected by
+ * {@link DBAccessObject#batch()} and written together by {@link #commit()}
+ * in the order they were added: as one atomic WriteBatch on RocksDB, as one
+ * commit on group commit MapDB stores and within the open transaction on
+ * explicit commit MapDB stores. Clients without batch support apply them one
+ * at a time, see {@link com.adtsw.jdatalayer.core.client.IDBClient#write}.
+ *
+ * Nothing is written before the commit. Not thread safe, meant for the
+ * writes of a single business operation.
+ */
+public class DBUnitOfWork {
+
+    private final DBAccessObject dbo;
+    private final List<DBWriteOperation> operations = new ArrayList<>();
+    private boolean committed;
+
+    DBUnitOfWork(DBAccessObject dbo) {
+        this.dbo = dbo;
+    }
+
+    public DBUnitOfWork put(DBEntity entity) {
+        assertNotCommitted();
+        operations.add(dbo.toPut(entity));
+        return this;
+    }
+
+    public DBUnitOfWork put(List<? extends DBEntity> entities) {
+        entities.forEach(this::put);
+        return this;
+    }
+
+    public <T extends DBEntity> DBUnitOfWork delete(String entityId, Class<T> clazz) {
+        assertNotCommitted();
+        DBEntityConfiguration configs = clazz.getAnnotation(DBEntityConfiguration.class);
+        operations.add(DBWriteOperation.delete(configs.setName(), entityId));
+        return this;
+    }
+
+    public <T extends DBEntity> DBUnitOfWork delete(List<String> entityIds, Class<T> clazz) {
+        entityIds.forEach(entityId -> delete(entityId, clazz));
+        return this;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    public List<DBWriteOperation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Writes the collected puts and deletes, a unit of work can only be committed once
+     */
+    public void commit() {
+        assertNotCommitted();
+        committed = true;
+        if(!operations.isEmpty()) {
+            dbo.write(operations);
+        }
+    }
+
+    private void assertNotCommitted() {
+        if(committed) {
+            throw new IllegalStateException("Unit of work is already committed");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.adtsw.jdatalayer.core.accessobject;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.adtsw.jdatalayer.core.annotations.EntityId;
+import com.adtsw.jdatalayer.core.model.DBEntity;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.commons.lang3.reflect.MethodUtils;
+
+/**
+ * Reads the ids of entities from their {@link EntityId} fields, or their
+ * {@link EntityId} methods when they have no id fields. An entity has a
+ * composite id only if it gives one of its ids an explicit order, entities
+ * with several ids and no order keep the first one as their id, as stored
+ * before composite ids existed.
+ */
+public class EntityIds {
+
+    private EntityIds() {
+    }
+
+    /**
+     * Id of the entity, its ids in order joined by {@link EntityId#COMPOSITE_SEPARATOR}
+     * for a composite id
+     */
+    public static String getId(DBEntity entity) {
+
+        List<String> ids = new ArrayList<>();
+        for (AccessibleObject idMember : getIdMembers(entity.getClass())) {
+            ids.add(String.valueOf(readId(entity, idMember)));
+        }
+        return String.join(EntityId.COMPOSITE_SEPARATOR, ids);
+    }
+
+    /**
+     * Types of the entity's ids, in the order they make up its id
+     */
+    public static List<Class<?>> getIdTypes(Class<? extends DBEntity> entityClass) {
+
+        List<Class<?>> idTypes = new ArrayList<>();
+        for (AccessibleObject idMember : getIdMembers(entityClass)) {
+            idTypes.add(idMember instanceof Field ? ((Field) idMember).getType() : ((Method) idMember).getReturnType());
+        }
+        return idTypes;
+    }
+
+    private static List<AccessibleObject> getIdMembers(Class<?> entityClass) {
+
+        List<AccessibleObject> idMembers = new ArrayList<>(
+            FieldUtils.getFieldsListWithAnnotation(entityClass, EntityId.class)
+        );
+        if(idMembers.isEmpty()) {
+            idMembers.addAll(MethodUtils.getMethodsListWithAnnotation(entityClass, EntityId.class));
+        }
+        if(idMembers.isEmpty()) {
+            throw new IllegalArgumentException("Unable to find entity id of " + entityClass.getName());
+        }
+        if(idMembers.stream().allMatch(idMember -> idMember.getAnnotation(EntityId.class).order() == 0)) {
+            return idMembers.subList(0, 1);
+        }
+        idMembers.sort(Comparator.comparingInt(idMember -> idMember.getAnnotation(EntityId.class).order()));
+        return idMembers;
+    }
+
+    private static Object readId(DBEntity entity, AccessibleObject idMember) {
+
+        try {
+            if(idMember instanceof Field) {
+                return FieldUtils.readField((Field) idMember, entity);
+            }
+            return MethodUtils.invokeMethod(entity, ((Method) idMember).getName());
+        } catch (Exception e) {
+            throw new RuntimeException("Unable to read entity id", e);
+        }
+    }
+}
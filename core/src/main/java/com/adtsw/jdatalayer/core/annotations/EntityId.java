@@ -5,8 +5,18 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Marks the id of an entity. Entities with several ids get a composite id,
+ * their values in id order joined by COMPOSITE_SEPARATOR
+ */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.FIELD, ElementType.METHOD})
 public @interface EntityId {
-    
+
+    String COMPOSITE_SEPARATOR = "|";
+
+    /**
+     * Position of the id in a composite id
+     */
+    int order() default 0;
 }
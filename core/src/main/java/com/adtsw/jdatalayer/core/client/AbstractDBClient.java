@@ -1,9 +1,44 @@
 package com.adtsw.jdatalayer.core.client;
 
+import com.adtsw.jdatalayer.core.metrics.DBClientMetrics;
+import com.adtsw.jdatalayer.core.metrics.OperationPhase;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 public abstract class AbstractDBClient implements IDBClient {
 
     protected static Logger logger = LogManager.getLogger(AbstractDBClient.class);
+
+    private volatile DBClientMetrics metrics = DBClientMetrics.NOOP;
+
+    /**
+     * Receives the lock wait, storage and codec time of operations, see
+     * {@link com.adtsw.jdatalayer.core.metrics.InstrumentedDBClient}
+     */
+    public void setMetrics(DBClientMetrics metrics) {
+        this.metrics = metrics == null ? DBClientMetrics.NOOP : metrics;
+    }
+
+    /**
+     * @return start time of a phase, 0 when no metrics are attached so that
+     * uninstrumented clients don't read the clock
+     */
+    protected long startPhase() {
+        return isTimingPhases() ? System.nanoTime() : 0;
+    }
+
+    protected void endPhase(OperationPhase phase, long startNanos) {
+        if(startNanos != 0) {
+            recordPhase(phase, System.nanoTime() - startNanos);
+        }
+    }
+
+    protected boolean isTimingPhases() {
+        return metrics != DBClientMetrics.NOOP;
+    }
+
+    protected void recordPhase(OperationPhase phase, long nanos) {
+        metrics.recordPhase(phase, nanos);
+    }
 }
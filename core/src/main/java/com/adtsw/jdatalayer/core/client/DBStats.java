@@ -1,6 +1,8 @@
 package com.adtsw.jdatalayer.core.client;
 
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import lombok.Getter;
@@ -9,12 +11,49 @@ public class DBStats {
     
     @Getter
     private final Map<String, Long> statistics;
+    private final Set<String> nonSummable;
 
     public DBStats() {
         this.statistics = new TreeMap<>();
+        this.nonSummable = new HashSet<>();
     }
     
     public void add(String id, Long value) {
         statistics.put(id, value);
     }
+
+    /**
+     * Adds a statistic that does not add up across clients, such as a rate,
+     * a percentile, a state, a flag or a timestamp
+     */
+    public void addNonSummable(String id, Long value) {
+        statistics.put(id, value);
+        nonSummable.add(id);
+    }
+
+    /**
+     * Adds all statistics of other under prefix + their id, non summable
+     * statistics stay non summable
+     */
+    public void addAll(String prefix, DBStats other) {
+        other.statistics.forEach((id, value) -> {
+            if(other.isSummable(id)) {
+                add(prefix + id, value);
+            } else {
+                addNonSummable(prefix + id, value);
+            }
+        });
+    }
+
+    public void addAll(DBStats other) {
+        addAll("", other);
+    }
+
+    /**
+     * Whether the statistic is a counter or size that can be totalled across
+     * clients, see {@link #addNonSummable(String, Long)}
+     */
+    public boolean isSummable(String id) {
+        return !nonSummable.contains(id);
+    }
 }
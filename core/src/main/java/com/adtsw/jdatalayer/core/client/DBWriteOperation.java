@@ -0,0 +1,43 @@
+package com.adtsw.jdatalayer.core.client;
+
+import java.util.Map;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Put or delete of one entity, written along with others through
+ * {@link IDBClient#write(String, java.util.List)}
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class DBWriteOperation {
+
+    public enum Type {
+        PUT,
+        DELETE
+    }
+
+    private final Type type;
+    private final String set;
+    private final String entityId;
+    /**
+     * Fields and their encoding of puts, null for deletes
+     */
+    private final Map<String, Object> fields;
+    private final EncodingFormat encodingFormat;
+
+    public static DBWriteOperation put(String set, String entityId, Map<String, Object> fields,
+                                       EncodingFormat encodingFormat) {
+        return new DBWriteOperation(Type.PUT, set, entityId, fields, encodingFormat);
+    }
+
+    public static DBWriteOperation delete(String set, String entityId) {
+        return new DBWriteOperation(Type.DELETE, set, entityId, null, null);
+    }
+}
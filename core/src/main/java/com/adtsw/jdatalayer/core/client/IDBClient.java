@@ -1,12 +1,18 @@
 package com.adtsw.jdatalayer.core.client;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 import com.adtsw.jcommons.models.EncodingFormat;
 
 public interface IDBClient {
 
+    int SCAN_BATCH_SIZE = 256;
+
     void put(String namespace, String set, String entityId, Map<String, Object> fields,
             EncodingFormat encodingFormat);
     
@@ -16,14 +22,77 @@ public interface IDBClient {
     Map<String, Object> get(String namespace, String set, String entityId, 
             EncodingFormat encodingFormat);
 
+    /**
+     * Multi-get, returns the entities found keyed by entity id. Clients with a
+     * native multi-get should override this.
+     */
+    default Map<String, Map<String, Object>> get(String namespace, String set, List<String> entityIds,
+            EncodingFormat encodingFormat) {
+
+        Map<String, Map<String, Object>> entities = new HashMap<>();
+        for (String entityId : entityIds) {
+            Map<String, Object> entity = get(namespace, set, entityId, encodingFormat);
+            if(entity != null) {
+                entities.put(entityId, entity);
+            }
+        }
+        return entities;
+    }
+
     void delete(String namespace, String set, String entityId);
 
     void delete(String namespace, String set, List<String> entities);
 
+    /**
+     * Applies puts and deletes of any sets of the namespace as one unit, in
+     * order. Clients that can write them atomically should override this,
+     * the default applies them one at a time.
+     */
+    default void write(String namespace, List<DBWriteOperation> operations) {
+
+        for (DBWriteOperation operation : operations) {
+            if(operation.getType() == DBWriteOperation.Type.PUT) {
+                put(namespace, operation.getSet(), operation.getEntityId(), operation.getFields(),
+                    operation.getEncodingFormat());
+            } else {
+                delete(namespace, operation.getSet(), operation.getEntityId());
+            }
+        }
+    }
+
     List<String> getIds(String namespace, String set);
 
     List<String> getIds(String namespace);
 
+    /**
+     * Splits the set into up to maxRanges ranges of roughly equal size that
+     * {@link #scan} can read concurrently, see {@link ParallelScanner}.
+     * Clients that can't split a set return a single range.
+     */
+    default List<ScanRange> getScanRanges(String namespace, String set, int maxRanges) {
+        return Collections.singletonList(ScanRange.ALL);
+    }
+
+    /**
+     * Calls the consumer with every entity of the set whose id falls in the
+     * range. Clients with ordered storage should override this, the default
+     * reads the ids of the set and multi-gets them in batches.
+     */
+    default void scan(String namespace, String set, ScanRange range, EncodingFormat encodingFormat,
+                      BiConsumer<String, Map<String, Object>> consumer) {
+
+        if(!range.isAll()) {
+            throw new UnsupportedOperationException("Id ranges are not supported by " + getClass().getName());
+        }
+        List<String> entityIds = getIds(namespace, set);
+        for (int offset = 0; offset < entityIds.size(); offset += SCAN_BATCH_SIZE) {
+            List<String> batch = new ArrayList<>(
+                entityIds.subList(offset, Math.min(offset + SCAN_BATCH_SIZE, entityIds.size()))
+            );
+            get(namespace, set, batch, encodingFormat).forEach(consumer);
+        }
+    }
+
     DBStats getStatistics();
     
     void shutdown();
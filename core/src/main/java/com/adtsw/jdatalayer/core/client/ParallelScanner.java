@@ -0,0 +1,83 @@
+package com.adtsw.jdatalayer.core.client;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Reads a whole set with several threads: the set is split into
+ * RANGES_PER_THREAD ranges per thread by {@link IDBClient#getScanRanges},
+ * and the ranges are scanned concurrently on a fork-join pool of their own,
+ * each with its own iterator. Ranges are only roughly equal in size, the
+ * extra ranges let idle threads pick up the work of slow ones.
+ *
+ * The consumer is called from the scanning threads, concurrently and in no
+ * particular order across ranges, and must be thread safe.
+ */
+public class ParallelScanner {
+
+    protected static Logger logger = LogManager.getLogger(ParallelScanner.class);
+
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final IDBClient dbClient;
+    private final int parallelism;
+
+    /**
+     * @param parallelism scanning threads, usually the number of cores
+     */
+    public ParallelScanner(IDBClient dbClient, int parallelism) {
+
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, got " + parallelism);
+        }
+        this.dbClient = dbClient;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Calls the consumer with the id and fields of every entity of the set
+     *
+     * @return number of entities scanned
+     */
+    public long scan(String namespace, String set, EncodingFormat encodingFormat,
+                     BiConsumer<String, Map<String, Object>> consumer) {
+
+        List<ScanRange> ranges = dbClient.getScanRanges(namespace, set, parallelism * RANGES_PER_THREAD);
+        logger.debug("Scanning set " + set + " of namespace " + namespace + " in " + ranges.size() + " ranges");
+        LongAdder entities = new LongAdder();
+        BiConsumer<String, Map<String, Object>> countingConsumer = (entityId, fields) -> {
+            consumer.accept(entityId, fields);
+            entities.increment();
+        };
+        if(parallelism == 1 || ranges.size() == 1) {
+            ranges.forEach(range -> dbClient.scan(namespace, set, range, encodingFormat, countingConsumer));
+            return entities.sum();
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // parallel streams run on the pool that submits them
+            pool.submit(() -> ranges.parallelStream().forEach(
+                range -> dbClient.scan(namespace, set, range, encodingFormat, countingConsumer)
+            )).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException
+                ? (RuntimeException) e.getCause()
+                : new RuntimeException("Exception in parallel scan", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for parallel scan", e);
+        } finally {
+            pool.shutdown();
+        }
+        return entities.sum();
+    }
+}
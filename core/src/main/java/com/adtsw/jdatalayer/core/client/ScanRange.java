@@ -0,0 +1,27 @@
+package com.adtsw.jdatalayer.core.client;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Ids of a set from fromId (inclusive) to toId (exclusive), in the id order
+ * of the client that split the set, see {@link IDBClient#getScanRanges}. A
+ * null bound leaves that side of the range open.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ScanRange {
+
+    public static final ScanRange ALL = new ScanRange(null, null);
+
+    private final String fromId;
+    private final String toId;
+
+    public boolean isAll() {
+        return fromId == null && toId == null;
+    }
+}
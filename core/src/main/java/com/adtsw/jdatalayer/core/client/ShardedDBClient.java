@@ -0,0 +1,293 @@
+package com.adtsw.jdatalayer.core.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+/**
+ * Spreads a namespace across several underlying clients (e.g. RocksDBKVClients
+ * on different disks), each with its own memtables, WAL and compaction queues.
+ *
+ * Entity ids are placed with jump consistent hashing, so a given id always
+ * lands on the same shard for a given shard count. Bulk operations, multi-gets
+ * and id scans fan out to the shards in parallel and merge the results.
+ *
+ * Changing the number of shards moves data between shards, which this client
+ * does not do by itself.
+ */
+public class ShardedDBClient extends AbstractDBClient {
+
+    private final List<IDBClient> shards;
+    private final ExecutorService fanOutExecutor;
+
+    public ShardedDBClient(List<? extends IDBClient> shards) {
+
+        if(shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = new ArrayList<>(shards);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fanOutExecutor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "sharded-db-client-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void put(String namespace, String set, String entityId, Map<String, Object> fields,
+                    EncodingFormat encodingFormat) {
+        getShard(entityId).put(namespace, set, entityId, fields, encodingFormat);
+    }
+
+    @Override
+    public void put(String namespace, String set, Map<String, Map<String, Object>> entities,
+                    EncodingFormat encodingFormat) {
+
+        Map<Integer, Map<String, Map<String, Object>>> shardedEntities = new HashMap<>();
+        entities.forEach((entityId, fields) -> {
+            shardedEntities.computeIfAbsent(getShardIndex(entityId), shardIndex -> new HashMap<>())
+                .put(entityId, fields);
+        });
+        fanOut(shardedEntities, (shardIndex, shardEntities) -> () -> {
+            shards.get(shardIndex).put(namespace, set, shardEntities, encodingFormat);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Object> get(String namespace, String set, String entityId, EncodingFormat encodingFormat) {
+        return getShard(entityId).get(namespace, set, entityId, encodingFormat);
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> get(String namespace, String set, List<String> entityIds,
+                                                EncodingFormat encodingFormat) {
+
+        List<Map<String, Map<String, Object>>> shardResults = fanOut(
+            groupByShard(entityIds),
+            (shardIndex, shardEntityIds) -> () -> shards.get(shardIndex).get(
+                namespace, set, shardEntityIds, encodingFormat
+            )
+        );
+        Map<String, Map<String, Object>> entities = new HashMap<>();
+        shardResults.forEach(entities::putAll);
+        return entities;
+    }
+
+    @Override
+    public void delete(String namespace, String set, String entityId) {
+        getShard(entityId).delete(namespace, set, entityId);
+    }
+
+    @Override
+    public void delete(String namespace, String set, List<String> entities) {
+        fanOut(groupByShard(entities), (shardIndex, shardEntityIds) -> () -> {
+            shards.get(shardIndex).delete(namespace, set, shardEntityIds);
+            return null;
+        });
+    }
+
+    /**
+     * Writes the operations of every shard in parallel, each shard's share
+     * as one unit. Batches spanning shards are not atomic across shards
+     */
+    @Override
+    public void write(String namespace, List<DBWriteOperation> operations) {
+
+        Map<Integer, List<DBWriteOperation>> shardedOperations = new HashMap<>();
+        for (DBWriteOperation operation : operations) {
+            shardedOperations.computeIfAbsent(getShardIndex(operation.getEntityId()), shardIndex -> new ArrayList<>())
+                .add(operation);
+        }
+        fanOut(shardedOperations, (shardIndex, shardOperations) -> () -> {
+            shards.get(shardIndex).write(namespace, shardOperations);
+            return null;
+        });
+    }
+
+    @Override
+    public List<String> getIds(String namespace, String set) {
+        return mergeIds(fanOutToAll(shard -> shard.getIds(namespace, set)));
+    }
+
+    @Override
+    public List<String> getIds(String namespace) {
+        return mergeIds(fanOutToAll(shard -> shard.getIds(namespace)));
+    }
+
+    /**
+     * Ranges of the first shard, ids are spread evenly over the shards so
+     * its key space splits the same way as the others'
+     */
+    @Override
+    public List<ScanRange> getScanRanges(String namespace, String set, int maxRanges) {
+        return shards.get(0).getScanRanges(namespace, set, maxRanges);
+    }
+
+    /**
+     * Scans the range on every shard in parallel. The consumer is called by
+     * one shard at a time, as from a single scan, in no particular order
+     * across shards
+     */
+    @Override
+    public void scan(String namespace, String set, ScanRange range, EncodingFormat encodingFormat,
+                     BiConsumer<String, Map<String, Object>> consumer) {
+
+        Object consumerLock = new Object();
+        BiConsumer<String, Map<String, Object>> serializedConsumer = (entityId, fields) -> {
+            synchronized (consumerLock) {
+                consumer.accept(entityId, fields);
+            }
+        };
+        fanOutToAll(shard -> {
+            shard.scan(namespace, set, range, encodingFormat, serializedConsumer);
+            return null;
+        });
+    }
+
+    /**
+     * Statistics of every shard prefixed with shard_[index]_, along with the
+     * totals of counters and sizes across shards under the original names.
+     * Statistics the shards add as non summable (rates, percentiles, states,
+     * timestamps) are only reported per shard, see {@link DBStats#addNonSummable}
+     */
+    @Override
+    public DBStats getStatistics() {
+
+        DBStats dbStats = new DBStats();
+        Map<String, Long> totals = new TreeMap<>();
+        List<DBStats> shardStats = fanOutToAll(IDBClient::getStatistics);
+        for (int shardIndex = 0; shardIndex < shardStats.size(); shardIndex++) {
+            DBStats stats = shardStats.get(shardIndex);
+            dbStats.addAll("shard_" + shardIndex + "_", stats);
+            stats.getStatistics().forEach((id, value) -> {
+                if(value != null && stats.isSummable(id)) {
+                    totals.merge(id, value, Long::sum);
+                }
+            });
+        }
+        totals.forEach(dbStats::add);
+        return dbStats;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public IDBClient getShard(String entityId) {
+        return shards.get(getShardIndex(entityId));
+    }
+
+    public int getShardIndex(String entityId) {
+        byte[] entityIdBytes = entityId.getBytes(StandardCharsets.UTF_8);
+        return jumpConsistentHash(MurmurHash3.hash128x64(entityIdBytes)[0], shards.size());
+    }
+
+    /**
+     * Jump consistent hash (Lamping, Veach), moves only 1/n of the keys when
+     * going from n - 1 to n buckets and needs no ring state.
+     */
+    private static int jumpConsistentHash(long key, int buckets) {
+
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    private Map<Integer, List<String>> groupByShard(List<String> entityIds) {
+
+        Map<Integer, List<String>> shardedEntityIds = new HashMap<>();
+        for (String entityId : entityIds) {
+            shardedEntityIds.computeIfAbsent(getShardIndex(entityId), shardIndex -> new ArrayList<>())
+                .add(entityId);
+        }
+        return shardedEntityIds;
+    }
+
+    private List<String> mergeIds(List<List<String>> shardIds) {
+
+        List<String> ids = new ArrayList<>();
+        shardIds.forEach(ids::addAll);
+        return ids;
+    }
+
+    private <T> List<T> fanOutToAll(Function<IDBClient, T> operation) {
+
+        Map<Integer, IDBClient> allShards = new TreeMap<>();
+        for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+            allShards.put(shardIndex, shards.get(shardIndex));
+        }
+        return fanOut(allShards, (shardIndex, shard) -> () -> operation.apply(shard));
+    }
+
+    /**
+     * Runs one task per shard, in parallel when more than one shard is involved,
+     * and returns the results in the order of the given shard map.
+     */
+    private <I, T> List<T> fanOut(Map<Integer, I> shardInputs, ShardTaskFactory<I, T> taskFactory) {
+
+        List<T> results = new ArrayList<>();
+        try {
+            if(shardInputs.size() == 1) {
+                Map.Entry<Integer, I> shardInput = shardInputs.entrySet().iterator().next();
+                results.add(taskFactory.create(shardInput.getKey(), shardInput.getValue()).call());
+                return results;
+            }
+            List<Future<T>> futures = new ArrayList<>();
+            shardInputs.forEach((shardIndex, input) -> {
+                futures.add(fanOutExecutor.submit(taskFactory.create(shardIndex, input)));
+            });
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException
+                ? (RuntimeException) e.getCause()
+                : new RuntimeException("Exception in shard operation", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for shard operation", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Exception in shard operation", e);
+        }
+        return results;
+    }
+
+    private interface ShardTaskFactory<I, T> {
+        Callable<T> create(Integer shardIndex, I input);
+    }
+
+    @Override
+    public void shutdown() {
+        fanOutExecutor.shutdown();
+        shards.forEach(IDBClient::shutdown);
+    }
+
+    @Override
+    public void clear() {
+        shards.forEach(IDBClient::clear);
+    }
+}
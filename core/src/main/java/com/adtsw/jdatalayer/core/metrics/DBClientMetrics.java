@@ -0,0 +1,12 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+/**
+ * Hook through which a backend reports the phases of the operation running on
+ * the current thread, see {@link com.adtsw.jdatalayer.core.client.AbstractDBClient#setMetrics(DBClientMetrics)}
+ */
+public interface DBClientMetrics {
+
+    DBClientMetrics NOOP = (phase, nanos) -> {};
+
+    void recordPhase(OperationPhase phase, long nanos);
+}
@@ -0,0 +1,90 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.adtsw.jcommons.metrics.prometheus.PrometheusStatsCollector;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Gauge;
+
+/**
+ * Exports the metrics of an {@link InstrumentedDBClient}. Counts are totals
+ * since the client was created, latency quantiles cover the interval since
+ * the previous update.
+ */
+public class DBClientStatsCollector implements PrometheusStatsCollector {
+
+    protected static Logger logger = LogManager.getLogger(DBClientStatsCollector.class);
+
+    private static final OperationPhase[] PHASES = OperationPhase.values();
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99, 0.999};
+
+    private final InstrumentedDBClient dbClient;
+    private final Gauge gaugeOperations;
+    private final Gauge gaugeErrors;
+    private final Gauge gaugeLatency;
+    private final Map<OperationMetrics, HistogramSnapshot[]> previousSnapshots = new IdentityHashMap<>();
+
+    public DBClientStatsCollector(InstrumentedDBClient dbClient, String name, CollectorRegistry registry) {
+
+        this.dbClient = dbClient;
+
+        this.gaugeOperations = Gauge.build()
+            .name("jdatalayer_" + name + "_operations")
+            .help("Operations of " + name + " since start")
+            .labelNames("namespace", "set", "operation")
+            .create().register(registry);
+
+        this.gaugeErrors = Gauge.build()
+            .name("jdatalayer_" + name + "_errors")
+            .help("Failed operations of " + name + " since start")
+            .labelNames("namespace", "set", "operation")
+            .create().register(registry);
+
+        this.gaugeLatency = Gauge.build()
+            .name("jdatalayer_" + name + "_latency_us")
+            .help("Operation latency of " + name + " in microseconds over the last update interval")
+            .labelNames("namespace", "set", "operation", "phase", "quantile")
+            .create().register(registry);
+    }
+
+    @Override
+    public synchronized void update() {
+
+        for (OperationMetrics operationMetrics : dbClient.getOperationMetrics()) {
+
+            String namespace = operationMetrics.getNamespace();
+            String set = operationMetrics.getSet();
+            String operation = operationMetrics.getOperation().name().toLowerCase();
+            HistogramSnapshot[] previous = previousSnapshots.computeIfAbsent(operationMetrics, newMetrics -> {
+                HistogramSnapshot[] empty = new HistogramSnapshot[PHASES.length];
+                Arrays.fill(empty, HistogramSnapshot.EMPTY);
+                return empty;
+            });
+
+            for (OperationPhase phase : PHASES) {
+                HistogramSnapshot snapshot = operationMetrics.getSnapshot(phase);
+                HistogramSnapshot interval = snapshot.minus(previous[phase.ordinal()]);
+                previous[phase.ordinal()] = snapshot;
+                if(phase == OperationPhase.TOTAL) {
+                    gaugeOperations.labels(namespace, set, operation).set(snapshot.getCount());
+                }
+                if(snapshot.getCount() == 0) {
+                    continue;
+                }
+                String phaseName = phase.name().toLowerCase();
+                for (double quantile : QUANTILES) {
+                    gaugeLatency.labels(namespace, set, operation, phaseName, String.valueOf(quantile))
+                        .set(interval.getValueAtPercentile(quantile * 100) / 1000.0);
+                }
+                gaugeLatency.labels(namespace, set, operation, phaseName, "max").set(interval.getMax() / 1000.0);
+            }
+            gaugeErrors.labels(namespace, set, operation).set(operationMetrics.getErrors());
+        }
+    }
+}
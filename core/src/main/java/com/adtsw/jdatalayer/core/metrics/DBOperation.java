@@ -0,0 +1,17 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+/**
+ * IDBClient operations, as recorded by {@link InstrumentedDBClient}
+ */
+public enum DBOperation {
+
+    PUT,
+    BULK_PUT,
+    GET,
+    MULTI_GET,
+    DELETE,
+    BULK_DELETE,
+    GET_IDS,
+    SCAN,
+    WRITE_BATCH
+}
@@ -0,0 +1,70 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+import lombok.Getter;
+
+/**
+ * Point in time copy of a {@link LatencyHistogram}. Subtracting an earlier
+ * snapshot of the same histogram gives the distribution of that interval.
+ */
+public class HistogramSnapshot {
+
+    public static final HistogramSnapshot EMPTY = new HistogramSnapshot(
+        new long[LatencyHistogram.BUCKETS], 0, 0, 0
+    );
+
+    private final long[] bucketCounts;
+    @Getter
+    private final long count;
+    @Getter
+    private final long sum;
+    /**
+     * Exact maximum for snapshots of a histogram, bucket bound of the largest
+     * value for interval snapshots
+     */
+    @Getter
+    private final long max;
+
+    HistogramSnapshot(long[] bucketCounts, long count, long sum, long max) {
+        this.bucketCounts = bucketCounts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket holding the percentile, capped at max
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        if(count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if(seen >= rank) {
+                return Math.min(LatencyHistogram.bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    public HistogramSnapshot minus(HistogramSnapshot earlier) {
+
+        long[] intervalCounts = new long[bucketCounts.length];
+        long intervalMax = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            intervalCounts[i] = bucketCounts[i] - earlier.bucketCounts[i];
+            if(intervalCounts[i] > 0) {
+                intervalMax = Math.min(LatencyHistogram.bucketUpperBound(i), max);
+            }
+        }
+        return new HistogramSnapshot(intervalCounts, count - earlier.count, sum - earlier.sum, intervalMax);
+    }
+}
@@ -0,0 +1,328 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+import com.adtsw.jdatalayer.core.client.AbstractDBClient;
+import com.adtsw.jdatalayer.core.client.DBStats;
+import com.adtsw.jdatalayer.core.client.DBWriteOperation;
+import com.adtsw.jdatalayer.core.client.IDBClient;
+import com.adtsw.jdatalayer.core.client.ScanRange;
+
+/**
+ * Decorator recording latency histograms, counts and errors of every
+ * operation per namespace and set. Wrap the client handed to DBAccessObject
+ * to instrument the access layer as well.
+ *
+ * End to end latency is always recorded. When the wrapped client is an
+ * AbstractDBClient it is also asked to report lock wait, storage and codec
+ * time, which is attributed to the operation running on the calling thread.
+ * Phases reported from other threads (e.g. shard fan out) are not recorded.
+ *
+ * Recording does not allocate once the metrics of an (operation, namespace,
+ * set) exist.
+ */
+public class InstrumentedDBClient extends AbstractDBClient implements DBClientMetrics {
+
+    /**
+     * Set used for operations spanning a whole namespace
+     */
+    public static final String ALL_SETS = "_all";
+    private static final DBOperation[] OPERATIONS = DBOperation.values();
+
+    private final IDBClient delegate;
+    private final ConcurrentMap<String, ConcurrentMap<String, OperationMetrics[]>> metrics = new ConcurrentHashMap<>();
+    private final ThreadLocal<OperationMetrics> currentOperation = new ThreadLocal<>();
+
+    public InstrumentedDBClient(IDBClient delegate) {
+
+        this.delegate = delegate;
+        if(delegate instanceof AbstractDBClient) {
+            ((AbstractDBClient) delegate).setMetrics(this);
+        }
+    }
+
+    @Override
+    public void put(String namespace, String set, String entityId, Map<String, Object> fields,
+                    EncodingFormat encodingFormat) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.PUT, namespace, set);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            delegate.put(namespace, set, entityId, fields, encodingFormat);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    @Override
+    public void put(String namespace, String set, Map<String, Map<String, Object>> entities,
+                    EncodingFormat encodingFormat) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.BULK_PUT, namespace, set);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            delegate.put(namespace, set, entities, encodingFormat);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    @Override
+    public Map<String, Object> get(String namespace, String set, String entityId, EncodingFormat encodingFormat) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.GET, namespace, set);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            return delegate.get(namespace, set, entityId, encodingFormat);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> get(String namespace, String set, List<String> entityIds,
+                                                EncodingFormat encodingFormat) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.MULTI_GET, namespace, set);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            return delegate.get(namespace, set, entityIds, encodingFormat);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    @Override
+    public void delete(String namespace, String set, String entityId) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.DELETE, namespace, set);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            delegate.delete(namespace, set, entityId);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    @Override
+    public void delete(String namespace, String set, List<String> entities) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.BULK_DELETE, namespace, set);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            delegate.delete(namespace, set, entities);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    /**
+     * Recorded under the namespace's _all set, batches can span sets
+     */
+    @Override
+    public void write(String namespace, List<DBWriteOperation> operations) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.WRITE_BATCH, namespace, ALL_SETS);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            delegate.write(namespace, operations);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    @Override
+    public List<String> getIds(String namespace, String set) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.GET_IDS, namespace, set);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            return delegate.getIds(namespace, set);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    @Override
+    public List<String> getIds(String namespace) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.GET_IDS, namespace, ALL_SETS);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            return delegate.getIds(namespace);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    @Override
+    public List<ScanRange> getScanRanges(String namespace, String set, int maxRanges) {
+        return delegate.getScanRanges(namespace, set, maxRanges);
+    }
+
+    /**
+     * Recorded once per range, including the time spent in the consumer
+     */
+    @Override
+    public void scan(String namespace, String set, ScanRange range, EncodingFormat encodingFormat,
+                     BiConsumer<String, Map<String, Object>> consumer) {
+
+        OperationMetrics operationMetrics = getOperationMetrics(DBOperation.SCAN, namespace, set);
+        OperationMetrics outerOperation = enter(operationMetrics);
+        long startNanos = System.nanoTime();
+        try {
+            delegate.scan(namespace, set, range, encodingFormat, consumer);
+        } catch (RuntimeException e) {
+            operationMetrics.recordError();
+            throw e;
+        } finally {
+            exit(operationMetrics, outerOperation, startNanos);
+        }
+    }
+
+    /**
+     * Makes the operation the target of phases reported on this thread
+     * @return the operation it is nested in, if any
+     */
+    private OperationMetrics enter(OperationMetrics operationMetrics) {
+        OperationMetrics outerOperation = currentOperation.get();
+        currentOperation.set(operationMetrics);
+        return outerOperation;
+    }
+
+    private void exit(OperationMetrics operationMetrics, OperationMetrics outerOperation, long startNanos) {
+        operationMetrics.record(OperationPhase.TOTAL, System.nanoTime() - startNanos);
+        currentOperation.set(outerOperation);
+    }
+
+    private OperationMetrics getOperationMetrics(DBOperation operation, String namespace, String set) {
+
+        ConcurrentMap<String, OperationMetrics[]> namespaceMetrics = metrics.get(namespace);
+        if(namespaceMetrics == null) {
+            namespaceMetrics = metrics.computeIfAbsent(namespace, newNamespace -> new ConcurrentHashMap<>());
+        }
+        OperationMetrics[] setMetrics = namespaceMetrics.get(set);
+        if(setMetrics == null) {
+            setMetrics = namespaceMetrics.computeIfAbsent(set, newSet -> {
+                OperationMetrics[] newSetMetrics = new OperationMetrics[OPERATIONS.length];
+                for (DBOperation dbOperation : OPERATIONS) {
+                    newSetMetrics[dbOperation.ordinal()] = new OperationMetrics(dbOperation, namespace, newSet);
+                }
+                return newSetMetrics;
+            });
+        }
+        return setMetrics[operation.ordinal()];
+    }
+
+    @Override
+    public void recordPhase(OperationPhase phase, long nanos) {
+        OperationMetrics operationMetrics = currentOperation.get();
+        if(operationMetrics != null) {
+            operationMetrics.record(phase, nanos);
+        }
+    }
+
+    /**
+     * Metrics of every (operation, namespace, set) that saw at least one call
+     */
+    public List<OperationMetrics> getOperationMetrics() {
+
+        List<OperationMetrics> operationMetrics = new ArrayList<>();
+        metrics.values().forEach(namespaceMetrics -> namespaceMetrics.values().forEach(setMetrics -> {
+            for (OperationMetrics setOperationMetrics : setMetrics) {
+                if(setOperationMetrics.getSnapshot(OperationPhase.TOTAL).getCount() > 0) {
+                    operationMetrics.add(setOperationMetrics);
+                }
+            }
+        }));
+        return operationMetrics;
+    }
+
+    /**
+     * Statistics of the wrapped client along with, per namespace, set and
+     * operation, [namespace]_[set]_[operation]_count, _errors and for every
+     * recorded phase _[phase]_mean_us, _p50_us, _p95_us, _p99_us and _max_us
+     * since the client was created.
+     */
+    @Override
+    public DBStats getStatistics() {
+
+        DBStats dbStats = new DBStats();
+        dbStats.addAll(delegate.getStatistics());
+        for (OperationMetrics operationMetrics : getOperationMetrics()) {
+            String prefix = operationMetrics.getNamespace() + "_" + operationMetrics.getSet() + "_"
+                + operationMetrics.getOperation().name().toLowerCase() + "_";
+            dbStats.add(prefix + "count", operationMetrics.getSnapshot(OperationPhase.TOTAL).getCount());
+            dbStats.add(prefix + "errors", operationMetrics.getErrors());
+            for (OperationPhase phase : OperationPhase.values()) {
+                HistogramSnapshot snapshot = operationMetrics.getSnapshot(phase);
+                if(snapshot.getCount() == 0) {
+                    continue;
+                }
+                String phasePrefix = prefix + phase.name().toLowerCase() + "_";
+                dbStats.addNonSummable(phasePrefix + "mean_us", snapshot.getMean() / 1000);
+                dbStats.addNonSummable(phasePrefix + "p50_us", snapshot.getValueAtPercentile(50) / 1000);
+                dbStats.addNonSummable(phasePrefix + "p95_us", snapshot.getValueAtPercentile(95) / 1000);
+                dbStats.addNonSummable(phasePrefix + "p99_us", snapshot.getValueAtPercentile(99) / 1000);
+                dbStats.addNonSummable(phasePrefix + "max_us", snapshot.getMax() / 1000);
+            }
+        }
+        return dbStats;
+    }
+
+    public IDBClient getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+}
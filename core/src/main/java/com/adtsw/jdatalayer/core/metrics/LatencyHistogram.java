@@ -0,0 +1,70 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free, allocation-free histogram of non-negative values (nanoseconds).
+ *
+ * Buckets are log-linear, every power of two is split into 8 sub-buckets, so
+ * reported percentiles are within 12.5% of the recorded values. Recording is
+ * a few arithmetic operations and one atomic increment.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+
+        if(value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public HistogramSnapshot snapshot() {
+
+        long[] bucketCounts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCounts[i] = counts.get(i);
+            count += bucketCounts[i];
+        }
+        return new HistogramSnapshot(bucketCounts, count, sum.sum(), max.get());
+    }
+
+    static int bucketIndex(long value) {
+
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Highest value that falls into the bucket
+     */
+    static long bucketUpperBound(int index) {
+
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
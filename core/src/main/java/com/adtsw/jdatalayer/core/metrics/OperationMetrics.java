@@ -0,0 +1,49 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * Latencies and errors of one operation on one (namespace, set)
+ */
+public class OperationMetrics {
+
+    private static final OperationPhase[] PHASES = OperationPhase.values();
+
+    @Getter
+    private final DBOperation operation;
+    @Getter
+    private final String namespace;
+    @Getter
+    private final String set;
+    private final LatencyHistogram[] phaseHistograms;
+    private final LongAdder errors = new LongAdder();
+
+    OperationMetrics(DBOperation operation, String namespace, String set) {
+
+        this.operation = operation;
+        this.namespace = namespace;
+        this.set = set;
+        this.phaseHistograms = new LatencyHistogram[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    void record(OperationPhase phase, long nanos) {
+        phaseHistograms[phase.ordinal()].record(nanos);
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    public HistogramSnapshot getSnapshot(OperationPhase phase) {
+        return phaseHistograms[phase.ordinal()].snapshot();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,23 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+/**
+ * Parts of an operation timed separately.
+ *
+ * TOTAL - end to end, as seen by the caller of the client.
+ *
+ * LOCK_WAIT - waiting for namespace or commit locks.
+ *
+ * STORAGE - inside the storage engine.
+ *
+ * CODEC - json serialization and payload encoding.
+ *
+ * Phases other than TOTAL are reported by the backend and only recorded for
+ * backends that report them.
+ */
+public enum OperationPhase {
+
+    TOTAL,
+    LOCK_WAIT,
+    STORAGE,
+    CODEC
+}
@@ -0,0 +1,282 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+import com.adtsw.jcommons.utils.JsonUtil;
+import com.adtsw.jdatalayer.core.client.AbstractDBClient;
+import com.adtsw.jdatalayer.core.client.DBStats;
+import com.adtsw.jdatalayer.core.client.DBWriteOperation;
+import com.adtsw.jdatalayer.core.client.IDBClient;
+import com.adtsw.jdatalayer.core.client.ScanRange;
+
+/**
+ * Decorator profiling the access pattern of every namespace and set: read,
+ * write and delete counts, value sizes and the hottest entity ids, to spot
+ * keys that take most of the traffic and would gain from caching or a shard
+ * of their own.
+ *
+ * Counts cover every operation. Entity ids and value sizes are only recorded
+ * for one in sampleInterval entities, sampled ids count sampleInterval times,
+ * and value sizes cost a json serialization. Memory per set is fixed by the
+ * top-K size and the sketch dimensions, see {@link TopKSketch}.
+ */
+public class ProfilingDBClient extends AbstractDBClient {
+
+    private final IDBClient delegate;
+    private final int sampleInterval;
+    private final int topK;
+    private final int sketchDepth;
+    private final int sketchWidth;
+    private final ConcurrentMap<String, ConcurrentMap<String, SetAccessProfile>> profiles = new ConcurrentHashMap<>();
+
+    public ProfilingDBClient(IDBClient delegate) {
+        this(delegate, 100, 20, 4, 2048);
+    }
+
+    /**
+     * @param sampleInterval record ids and value sizes of 1 in sampleInterval entities, 1 to record all
+     * @param topK number of hottest ids kept per set
+     * @param sketchDepth rows of the per set Count-Min sketch
+     * @param sketchWidth counters per row of the per set Count-Min sketch
+     */
+    public ProfilingDBClient(IDBClient delegate, int sampleInterval, int topK, int sketchDepth, int sketchWidth) {
+
+        if(sampleInterval <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive, got " + sampleInterval);
+        }
+        this.delegate = delegate;
+        this.sampleInterval = sampleInterval;
+        this.topK = topK;
+        this.sketchDepth = sketchDepth;
+        this.sketchWidth = sketchWidth;
+    }
+
+    @Override
+    public void put(String namespace, String set, String entityId, Map<String, Object> fields,
+                    EncodingFormat encodingFormat) {
+
+        SetAccessProfile profile = getProfile(namespace, set);
+        profile.recordWrites(1);
+        recordWrite(profile, entityId, fields);
+        delegate.put(namespace, set, entityId, fields, encodingFormat);
+    }
+
+    @Override
+    public void put(String namespace, String set, Map<String, Map<String, Object>> entities,
+                    EncodingFormat encodingFormat) {
+
+        SetAccessProfile profile = getProfile(namespace, set);
+        profile.recordWrites(entities.size());
+        for (Map.Entry<String, Map<String, Object>> entity : entities.entrySet()) {
+            recordWrite(profile, entity.getKey(), entity.getValue());
+        }
+        delegate.put(namespace, set, entities, encodingFormat);
+    }
+
+    @Override
+    public Map<String, Object> get(String namespace, String set, String entityId, EncodingFormat encodingFormat) {
+
+        SetAccessProfile profile = getProfile(namespace, set);
+        profile.recordReads(1);
+        Map<String, Object> fields = delegate.get(namespace, set, entityId, encodingFormat);
+        recordRead(profile, entityId, fields);
+        return fields;
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> get(String namespace, String set, List<String> entityIds,
+                                                EncodingFormat encodingFormat) {
+
+        SetAccessProfile profile = getProfile(namespace, set);
+        profile.recordReads(entityIds.size());
+        Map<String, Map<String, Object>> entities = delegate.get(namespace, set, entityIds, encodingFormat);
+        for (String entityId : entityIds) {
+            recordRead(profile, entityId, entities.get(entityId));
+        }
+        return entities;
+    }
+
+    @Override
+    public void delete(String namespace, String set, String entityId) {
+
+        SetAccessProfile profile = getProfile(namespace, set);
+        profile.recordDeletes(1);
+        if(isSampled()) {
+            profile.recordKey(entityId, sampleInterval);
+        }
+        delegate.delete(namespace, set, entityId);
+    }
+
+    @Override
+    public void delete(String namespace, String set, List<String> entities) {
+
+        SetAccessProfile profile = getProfile(namespace, set);
+        profile.recordDeletes(entities.size());
+        for (String entityId : entities) {
+            if(isSampled()) {
+                profile.recordKey(entityId, sampleInterval);
+            }
+        }
+        delegate.delete(namespace, set, entities);
+    }
+
+    @Override
+    public void write(String namespace, List<DBWriteOperation> operations) {
+
+        for (DBWriteOperation operation : operations) {
+            SetAccessProfile profile = getProfile(namespace, operation.getSet());
+            if(operation.getType() == DBWriteOperation.Type.PUT) {
+                profile.recordWrites(1);
+                recordWrite(profile, operation.getEntityId(), operation.getFields());
+            } else {
+                profile.recordDeletes(1);
+                if(isSampled()) {
+                    profile.recordKey(operation.getEntityId(), sampleInterval);
+                }
+            }
+        }
+        delegate.write(namespace, operations);
+    }
+
+    @Override
+    public List<String> getIds(String namespace, String set) {
+        return delegate.getIds(namespace, set);
+    }
+
+    @Override
+    public List<String> getIds(String namespace) {
+        return delegate.getIds(namespace);
+    }
+
+    @Override
+    public List<ScanRange> getScanRanges(String namespace, String set, int maxRanges) {
+        return delegate.getScanRanges(namespace, set, maxRanges);
+    }
+
+    @Override
+    public void scan(String namespace, String set, ScanRange range, EncodingFormat encodingFormat,
+                     BiConsumer<String, Map<String, Object>> consumer) {
+        delegate.scan(namespace, set, range, encodingFormat, consumer);
+    }
+
+    private void recordWrite(SetAccessProfile profile, String entityId, Map<String, Object> fields) {
+        if(isSampled()) {
+            profile.recordKey(entityId, sampleInterval);
+            profile.recordValueSize(JsonUtil.write(fields).length());
+        }
+    }
+
+    private void recordRead(SetAccessProfile profile, String entityId, Map<String, Object> fields) {
+        if(isSampled()) {
+            profile.recordKey(entityId, sampleInterval);
+            if(fields != null) {
+                profile.recordValueSize(JsonUtil.write(fields).length());
+            }
+        }
+    }
+
+    private boolean isSampled() {
+        return sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0;
+    }
+
+    private SetAccessProfile getProfile(String namespace, String set) {
+
+        ConcurrentMap<String, SetAccessProfile> namespaceProfiles = profiles.get(namespace);
+        if(namespaceProfiles == null) {
+            namespaceProfiles = profiles.computeIfAbsent(namespace, newNamespace -> new ConcurrentHashMap<>());
+        }
+        SetAccessProfile profile = namespaceProfiles.get(set);
+        if(profile == null) {
+            profile = namespaceProfiles.computeIfAbsent(
+                set, newSet -> new SetAccessProfile(namespace, newSet, topK, sketchDepth, sketchWidth)
+            );
+        }
+        return profile;
+    }
+
+    /**
+     * Profiles of every (namespace, set) that saw at least one call
+     */
+    public List<SetAccessProfile> getProfiles() {
+
+        List<SetAccessProfile> setProfiles = new ArrayList<>();
+        profiles.values().forEach(namespaceProfiles -> setProfiles.addAll(namespaceProfiles.values()));
+        return setProfiles;
+    }
+
+    /**
+     * Hottest ids of the set, hottest first, empty if the set saw no call.
+     * Ids are kept out of the statistic names, see {@link #getStatistics()}
+     */
+    public List<TopKSketch.HotKey> getHotKeys(String namespace, String set) {
+
+        ConcurrentMap<String, SetAccessProfile> namespaceProfiles = profiles.get(namespace);
+        SetAccessProfile profile = namespaceProfiles == null ? null : namespaceProfiles.get(set);
+        return profile == null ? Collections.emptyList() : profile.getHotKeys();
+    }
+
+    /**
+     * Forgets the hot ids seen so far, so that the next ones reflect recent traffic only
+     */
+    public void resetHotKeys() {
+        getProfiles().forEach(SetAccessProfile::resetHotKeys);
+    }
+
+    /**
+     * Statistics of the wrapped client along with, per namespace and set,
+     * [namespace]_[set]_reads, _writes, _deletes, _read_share_bps (reads out of
+     * reads and writes, in basis points), _value_size_p50_bytes, _p99_bytes and
+     * _max_bytes, and the estimated accesses of the hottest ids as
+     * _hot_key_[rank]. The ids themselves are left out of the names, which
+     * would churn with the traffic and may be sensitive, see
+     * {@link #getHotKeys(String, String)}.
+     */
+    @Override
+    public DBStats getStatistics() {
+
+        DBStats dbStats = new DBStats();
+        dbStats.addAll(delegate.getStatistics());
+        for (SetAccessProfile profile : getProfiles()) {
+            String prefix = profile.getNamespace() + "_" + profile.getSet() + "_";
+            long reads = profile.getReads();
+            long writes = profile.getWrites();
+            dbStats.add(prefix + "reads", reads);
+            dbStats.add(prefix + "writes", writes);
+            dbStats.add(prefix + "deletes", profile.getDeletes());
+            dbStats.addNonSummable(prefix + "read_share_bps", reads + writes == 0 ? 0 : (reads * 10000L) / (reads + writes));
+            HistogramSnapshot valueSizes = profile.getValueSizes();
+            if(valueSizes.getCount() > 0) {
+                dbStats.addNonSummable(prefix + "value_size_p50_bytes", valueSizes.getValueAtPercentile(50));
+                dbStats.addNonSummable(prefix + "value_size_p99_bytes", valueSizes.getValueAtPercentile(99));
+                dbStats.addNonSummable(prefix + "value_size_max_bytes", valueSizes.getMax());
+            }
+            List<TopKSketch.HotKey> hotKeys = profile.getHotKeys();
+            for (int rank = 0; rank < hotKeys.size(); rank++) {
+                dbStats.addNonSummable(prefix + "hot_key_" + (rank + 1), hotKeys.get(rank).getCount());
+            }
+        }
+        return dbStats;
+    }
+
+    public IDBClient getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+}
@@ -0,0 +1,90 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+import java.util.List;
+
+import com.adtsw.jcommons.metrics.prometheus.PrometheusStatsCollector;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Gauge;
+
+/**
+ * Exports the access profiles of a {@link ProfilingDBClient}. Operation counts
+ * are totals since the client was created, hot keys are replaced on every
+ * update so that ids which cooled down drop out of the export.
+ */
+public class ProfilingStatsCollector implements PrometheusStatsCollector {
+
+    protected static Logger logger = LogManager.getLogger(ProfilingStatsCollector.class);
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final ProfilingDBClient dbClient;
+    private final boolean resetHotKeys;
+    private final Gauge gaugeOperations;
+    private final Gauge gaugeValueSize;
+    private final Gauge gaugeHotKeys;
+
+    /**
+     * @param resetHotKeys forget hot keys after every update, so that each update
+     * exports the hottest ids of the last interval instead of since start
+     */
+    public ProfilingStatsCollector(ProfilingDBClient dbClient, String name, CollectorRegistry registry,
+                                   boolean resetHotKeys) {
+
+        this.dbClient = dbClient;
+        this.resetHotKeys = resetHotKeys;
+
+        this.gaugeOperations = Gauge.build()
+            .name("jdatalayer_" + name + "_set_operations")
+            .help("Reads, writes and deletes per set of " + name + " since start")
+            .labelNames("namespace", "set", "type")
+            .create().register(registry);
+
+        this.gaugeValueSize = Gauge.build()
+            .name("jdatalayer_" + name + "_value_size_bytes")
+            .help("Sampled value sizes per set of " + name)
+            .labelNames("namespace", "set", "quantile")
+            .create().register(registry);
+
+        this.gaugeHotKeys = Gauge.build()
+            .name("jdatalayer_" + name + "_hot_keys")
+            .help("Estimated accesses of the hottest ids per set of " + name)
+            .labelNames("namespace", "set", "rank", "key")
+            .create().register(registry);
+    }
+
+    @Override
+    public synchronized void update() {
+
+        gaugeHotKeys.clear();
+        for (SetAccessProfile profile : dbClient.getProfiles()) {
+
+            String namespace = profile.getNamespace();
+            String set = profile.getSet();
+            gaugeOperations.labels(namespace, set, "read").set(profile.getReads());
+            gaugeOperations.labels(namespace, set, "write").set(profile.getWrites());
+            gaugeOperations.labels(namespace, set, "delete").set(profile.getDeletes());
+
+            HistogramSnapshot valueSizes = profile.getValueSizes();
+            if(valueSizes.getCount() > 0) {
+                for (double quantile : QUANTILES) {
+                    gaugeValueSize.labels(namespace, set, String.valueOf(quantile))
+                        .set(valueSizes.getValueAtPercentile(quantile * 100));
+                }
+                gaugeValueSize.labels(namespace, set, "max").set(valueSizes.getMax());
+            }
+
+            List<TopKSketch.HotKey> hotKeys = profile.getHotKeys();
+            for (int rank = 0; rank < hotKeys.size(); rank++) {
+                gaugeHotKeys.labels(namespace, set, String.valueOf(rank + 1), hotKeys.get(rank).getKey())
+                    .set(hotKeys.get(rank).getCount());
+            }
+        }
+        if(resetHotKeys) {
+            dbClient.resetHotKeys();
+        }
+    }
+}
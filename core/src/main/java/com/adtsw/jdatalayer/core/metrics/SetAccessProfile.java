@@ -0,0 +1,81 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * Access pattern of one (namespace, set): read, write and delete counts, value
+ * sizes and hottest entity ids, see {@link ProfilingDBClient}
+ */
+public class SetAccessProfile {
+
+    @Getter
+    private final String namespace;
+    @Getter
+    private final String set;
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+    private final LatencyHistogram valueSizes = new LatencyHistogram();
+    private final TopKSketch hotKeys;
+
+    SetAccessProfile(String namespace, String set, int topK, int sketchDepth, int sketchWidth) {
+
+        this.namespace = namespace;
+        this.set = set;
+        this.hotKeys = new TopKSketch(topK, sketchDepth, sketchWidth);
+    }
+
+    void recordReads(long count) {
+        reads.add(count);
+    }
+
+    void recordWrites(long count) {
+        writes.add(count);
+    }
+
+    void recordDeletes(long count) {
+        deletes.add(count);
+    }
+
+    void recordValueSize(long bytes) {
+        valueSizes.record(bytes);
+    }
+
+    void recordKey(String entityId, long weight) {
+        hotKeys.add(entityId, weight);
+    }
+
+    public long getReads() {
+        return reads.sum();
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public long getDeletes() {
+        return deletes.sum();
+    }
+
+    /**
+     * Sizes of sampled values in bytes, as json before encoding
+     */
+    public HistogramSnapshot getValueSizes() {
+        return valueSizes.snapshot();
+    }
+
+    /**
+     * Most accessed entity ids with their estimated number of accesses,
+     * scaled up by the sample interval
+     */
+    public List<TopKSketch.HotKey> getHotKeys() {
+        return hotKeys.getTopK();
+    }
+
+    void resetHotKeys() {
+        hotKeys.reset();
+    }
+}
@@ -0,0 +1,175 @@
+package com.adtsw.jdatalayer.core.metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Streaming top-K of the most frequent keys in fixed memory: a Count-Min
+ * sketch estimates the frequency of every key, and the k keys with the highest
+ * estimates are kept as candidates.
+ *
+ * Estimates never undercount and overcount by at most 2 * total / width with
+ * probability 1 - (1/2)^depth. Adding a key that is not a candidate takes
+ * depth atomic increments; the candidates are only locked when its estimate
+ * beats the smallest candidate. Candidates are kept in an indexed min-heap,
+ * so that updating or replacing one takes O(log k).
+ */
+public class TopKSketch {
+
+    private final int k;
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray counters;
+    private final String[] heapKeys;
+    private final long[] heapCounts;
+    private final Map<String, Integer> heapPositions;
+    private int heapSize;
+    private volatile long minCandidateCount;
+
+    /**
+     * @param k number of keys to keep
+     * @param depth number of hash rows, more rows lower the chance of overcounting
+     * @param width counters per row, more counters lower the overcount
+     */
+    public TopKSketch(int k, int depth, int width) {
+
+        if(k <= 0 || depth <= 0 || width <= 0) {
+            throw new IllegalArgumentException("k, depth and width must be positive");
+        }
+        this.k = k;
+        this.depth = depth;
+        this.width = width;
+        this.counters = new AtomicLongArray(depth * width);
+        this.heapKeys = new String[k];
+        this.heapCounts = new long[k];
+        this.heapPositions = new HashMap<>(k * 2);
+    }
+
+    /**
+     * Counts one occurrence of the key, with the given weight
+     */
+    public void add(String key, long weight) {
+
+        long[] hash = MurmurHash3.hash128x64(key.getBytes(StandardCharsets.UTF_8));
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            // Kirsch-Mitzenmacher, row hashes derived from two independent hashes
+            int column = (int) Long.remainderUnsigned(hash[0] + row * hash[1], width);
+            estimate = Math.min(estimate, counters.addAndGet(row * width + column, weight));
+        }
+        if(estimate > minCandidateCount) {
+            offer(key, estimate);
+        }
+    }
+
+    private synchronized void offer(String key, long estimate) {
+
+        Integer position = heapPositions.get(key);
+        if(position != null) {
+            // estimates only grow, the candidate can only move down
+            heapCounts[position] = Math.max(heapCounts[position], estimate);
+            siftDown(position);
+        } else if(heapSize < k) {
+            heapKeys[heapSize] = key;
+            heapCounts[heapSize] = estimate;
+            heapPositions.put(key, heapSize);
+            siftUp(heapSize++);
+        } else if(estimate > heapCounts[0]) {
+            heapPositions.remove(heapKeys[0]);
+            heapKeys[0] = key;
+            heapCounts[0] = estimate;
+            heapPositions.put(key, 0);
+            siftDown(0);
+        }
+        minCandidateCount = heapSize < k ? 0 : heapCounts[0];
+    }
+
+    private void siftUp(int position) {
+
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if(heapCounts[parent] <= heapCounts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if(left < heapSize && heapCounts[left] < heapCounts[smallest]) {
+                smallest = left;
+            }
+            if(right < heapSize && heapCounts[right] < heapCounts[smallest]) {
+                smallest = right;
+            }
+            if(smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int first, int second) {
+
+        String key = heapKeys[first];
+        long count = heapCounts[first];
+        heapKeys[first] = heapKeys[second];
+        heapCounts[first] = heapCounts[second];
+        heapKeys[second] = key;
+        heapCounts[second] = count;
+        heapPositions.put(heapKeys[first], first);
+        heapPositions.put(heapKeys[second], second);
+    }
+
+    /**
+     * @return the keys with the highest estimated counts, highest first
+     */
+    public synchronized List<HotKey> getTopK() {
+
+        List<HotKey> topK = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            topK.add(new HotKey(heapKeys[i], heapCounts[i]));
+        }
+        topK.sort((first, second) -> Long.compare(second.getCount(), first.getCount()));
+        return topK;
+    }
+
+    /**
+     * Forgets all counts, e.g. to look at the traffic of the next interval only
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        Arrays.fill(heapKeys, null);
+        heapPositions.clear();
+        heapSize = 0;
+        minCandidateCount = 0;
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class HotKey {
+        private final String key;
+        private final long count;
+    }
+}
@@ -0,0 +1,113 @@
+package com.adtsw.jdatalayer.mapdb;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.mapdb.BTreeMap;
+
+/**
+ * Samples split ids of a BTreeMap from the separator keys of its upper
+ * nodes, descending only as far as needed for the requested number of
+ * splits. Subtrees of a level hold roughly as many keys each, so every
+ * (keys / splits)th separator of a level splits the map into ranges of
+ * roughly equal size, without reading the leaves of large maps. MapDB
+ * doesn't expose its nodes, they are read through reflection.
+ */
+class BTreeKeySampler {
+
+    private static final Method GET_ROOT_RECID;
+    private static final Method GET_NODE;
+    private static final Method IS_DIR;
+    private static final Field KEYS;
+    private static final Method GET_CHILDREN;
+
+    static {
+        Method getRootRecid = null;
+        Method getNode = null;
+        Method isDir = null;
+        Field keys = null;
+        Method getChildren = null;
+        try {
+            getRootRecid = BTreeMap.class.getDeclaredMethod("getRootRecid");
+            getNode = BTreeMap.class.getDeclaredMethod("getNode", long.class);
+            Class<?> nodeClass = Class.forName("org.mapdb.BTreeMapJava$Node");
+            isDir = nodeClass.getDeclaredMethod("isDir");
+            keys = nodeClass.getDeclaredField("keys");
+            getChildren = nodeClass.getDeclaredMethod("getChildren");
+            getRootRecid.setAccessible(true);
+            getNode.setAccessible(true);
+            isDir.setAccessible(true);
+            keys.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            MapDBClient.logger.warn("BTree nodes can't be read, scan ranges are split by walking the keys", e);
+            getRootRecid = null;
+        }
+        GET_ROOT_RECID = getRootRecid;
+        GET_NODE = getNode;
+        IS_DIR = isDir;
+        KEYS = keys;
+        GET_CHILDREN = getChildren;
+    }
+
+    private BTreeKeySampler() {
+    }
+
+    static boolean isAvailable() {
+        return GET_ROOT_RECID != null;
+    }
+
+    /**
+     * Up to maxRanges - 1 ids in order that split the map into ranges of
+     * roughly equal size, fewer for maps with fewer keys
+     */
+    static List<String> getSplitIds(BTreeMap<String, String> table, int maxRanges) {
+
+        try {
+            List<Object> level = new ArrayList<>();
+            level.add(GET_NODE.invoke(table, (long) GET_ROOT_RECID.invoke(table)));
+            TreeSet<String> levelKeys = getKeys(table, level);
+            while (levelKeys.size() < maxRanges - 1 && (boolean) IS_DIR.invoke(level.get(0))) {
+                List<Object> children = new ArrayList<>();
+                for (Object node : level) {
+                    for (long childRecid : (long[]) GET_CHILDREN.invoke(node)) {
+                        if(childRecid != 0) {
+                            children.add(GET_NODE.invoke(table, childRecid));
+                        }
+                    }
+                }
+                level = children;
+                levelKeys = getKeys(table, level);
+            }
+
+            List<String> keys = new ArrayList<>(levelKeys);
+            if(keys.size() < maxRanges) {
+                // nothing to split off before the first key
+                return keys.subList(Math.min(1, keys.size()), keys.size());
+            }
+            List<String> splitIds = new ArrayList<>(maxRanges - 1);
+            for (int split = 1; split < maxRanges; split++) {
+                splitIds.add(keys.get((int) ((long) split * keys.size() / maxRanges)));
+            }
+            return splitIds;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to read BTree nodes", e);
+        }
+    }
+
+    private static TreeSet<String> getKeys(BTreeMap<String, String> table, List<Object> nodes)
+        throws ReflectiveOperationException {
+
+        TreeSet<String> keys = new TreeSet<>();
+        for (Object node : nodes) {
+            for (Object key : table.getKeySerializer().valueArrayToArray(KEYS.get(node))) {
+                if(key != null) {
+                    keys.add((String) key);
+                }
+            }
+        }
+        return keys;
+    }
+}
@@ -3,18 +3,40 @@ package com.adtsw.jdatalayer.mapdb;
 import static com.adtsw.jcommons.utils.EncoderUtil.decode;
 import static com.adtsw.jcommons.utils.EncoderUtil.encode;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.adtsw.jcommons.models.EncodingFormat;
 import com.adtsw.jcommons.utils.JsonUtil;
 import com.adtsw.jdatalayer.core.client.AbstractDBClient;
 import com.adtsw.jdatalayer.core.client.DBStats;
+import com.adtsw.jdatalayer.core.client.DBWriteOperation;
+import com.adtsw.jdatalayer.core.client.ScanRange;
+import com.adtsw.jdatalayer.core.metrics.OperationPhase;
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import org.apache.commons.io.FileUtils;
@@ -23,31 +45,128 @@ import org.apache.logging.log4j.Logger;
 import org.mapdb.BTreeMap;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
 import org.mapdb.Serializer;
 
 public class MapDBClient extends AbstractDBClient {
 
     protected static Logger logger = LogManager.getLogger(MapDBClient.class);
-    
+
     private final Map<String, DB> namespaces;
     private final Map<String, String> namespaceStorageLocations;
+    private final Map<String, Map<String, ConcurrentMap<String, String>>> tables;
+    private final Map<String, MapDBSetConfig> setConfigs;
+    private final Queue<Closeable> memoryStores;
+    private final ScheduledExecutorService expirationScheduler;
+    private final Map<String, ReentrantReadWriteLock> commitLocks;
+    private final Map<String, AtomicLong> pendingWrites;
+    private final Map<String, AtomicLong> commits;
+    private final MapDBDurabilityMode durabilityMode;
+    private final int groupCommitWrites;
+    private final ScheduledExecutorService groupCommitScheduler;
     private final TypeReference<TreeMap<String, Object>> mapTypeReference = new TypeReference<>() {};
 
+    private static final long EXPIRATION_PERIOD_MS = 1000;
+    private static final String CATALOG_TYPE_SUFFIX = "#type";
+
     public MapDBClient(String baseStorageLocation, String namespace) {
+        this(baseStorageLocation, namespace, 0);
+    }
+
+    public MapDBClient(String baseStorageLocation, String namespace, int concurrencyScale) {
+        this(baseStorageLocation, namespace, concurrencyScale, MapDBDurabilityMode.NO_TX, 0, 0);
+    }
+
+    public MapDBClient(String baseStorageLocation, String namespace, int concurrencyScale,
+                       MapDBDurabilityMode durabilityMode, long groupCommitIntervalMs, int groupCommitWrites) {
+        this(baseStorageLocation, namespace, concurrencyScale, durabilityMode, groupCommitIntervalMs,
+            groupCommitWrites, Collections.emptyMap());
+    }
 
+    /**
+     * @param concurrencyScale number of segments (each with its own lock) the
+     * store is split into, rounded up to a power of two. Should be around the
+     * number of threads accessing the store concurrently. 0 keeps the MapDB
+     * default
+     * @param durabilityMode see {@link MapDBDurabilityMode}
+     * @param groupCommitIntervalMs TX_GROUP_COMMIT only, commit pending writes at
+     * this interval. 0 disables time based commits
+     * @param groupCommitWrites TX_GROUP_COMMIT only, commit once this many writes
+     * are pending. 0 disables count based commits, at least one of the two
+     * must be enabled
+     * @param setConfigs storage of individual sets by set name, sets without a
+     * config are stored as {@link MapDBSetConfig#DEFAULT}
+     */
+    public MapDBClient(String baseStorageLocation, String namespace, int concurrencyScale,
+                       MapDBDurabilityMode durabilityMode, long groupCommitIntervalMs, int groupCommitWrites,
+                       Map<String, MapDBSetConfig> setConfigs) {
+
+        if(durabilityMode == MapDBDurabilityMode.TX_GROUP_COMMIT && groupCommitIntervalMs <= 0
+            && groupCommitWrites <= 0) {
+            // nothing would ever commit, every write would be lost on a crash
+            throw new IllegalArgumentException(
+                "TX_GROUP_COMMIT needs a positive groupCommitIntervalMs or groupCommitWrites"
+            );
+        }
         initDB(baseStorageLocation);
 
-        this.namespaces = new HashMap<>();
-        this.namespaceStorageLocations = new HashMap<>();
+        this.namespaces = new ConcurrentHashMap<>();
+        this.namespaceStorageLocations = new ConcurrentHashMap<>();
+        this.tables = new ConcurrentHashMap<>();
+        this.commitLocks = new ConcurrentHashMap<>();
+        this.pendingWrites = new ConcurrentHashMap<>();
+        this.commits = new ConcurrentHashMap<>();
+        this.setConfigs = new HashMap<>(setConfigs);
+        this.memoryStores = new ConcurrentLinkedQueue<>();
+        this.durabilityMode = durabilityMode;
+        this.groupCommitWrites = durabilityMode == MapDBDurabilityMode.TX_GROUP_COMMIT ? groupCommitWrites : 0;
+
         String namespaceStorageLocation = baseStorageLocation + "/" + namespace;
-        DB defaultNamespace = DBMaker.fileDB(new File(namespaceStorageLocation))
-            .fileMmapEnable().checksumHeaderBypass().make();
+        DBMaker.Maker namespaceMaker = DBMaker.fileDB(new File(namespaceStorageLocation))
+            .fileMmapEnable().checksumHeaderBypass();
+        if(concurrencyScale > 0) {
+            namespaceMaker = namespaceMaker.concurrencyScale(concurrencyScale);
+        }
+        if(durabilityMode.isTransactional()) {
+            namespaceMaker = namespaceMaker.transactionEnable();
+        }
+        DB defaultNamespace = namespaceMaker.make();
         this.namespaces.put(namespace, defaultNamespace);
         this.namespaceStorageLocations.put(namespace, namespaceStorageLocation);
+        this.tables.put(namespace, new ConcurrentHashMap<>());
+        this.commitLocks.put(namespace, new ReentrantReadWriteLock());
+        this.pendingWrites.put(namespace, new AtomicLong());
+        this.commits.put(namespace, new AtomicLong());
+
+        if(durabilityMode == MapDBDurabilityMode.TX_GROUP_COMMIT && groupCommitIntervalMs > 0) {
+            this.groupCommitScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mapdb-" + namespace + "-group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.groupCommitScheduler.scheduleWithFixedDelay(
+                this::commit, groupCommitIntervalMs, groupCommitIntervalMs, TimeUnit.MILLISECONDS
+            );
+        } else {
+            this.groupCommitScheduler = null;
+        }
+
+        boolean timeBasedExpiration = this.setConfigs.values().stream().anyMatch(
+            setConfig -> setConfig.getExpireAfterWriteMs() > 0 || setConfig.getExpireAfterAccessMs() > 0
+        );
+        if(timeBasedExpiration) {
+            this.expirationScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mapdb-" + namespace + "-expiration");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.expirationScheduler = null;
+        }
     }
 
     private void initDB(String baseStorageLocation) {
-    
+
         try {
             FileUtils.forceMkdir(new File(baseStorageLocation));
         } catch (IOException e) {
@@ -55,94 +174,488 @@ public class MapDBClient extends AbstractDBClient {
         }
     }
 
+    public MapDBSetConfig getSetConfig(String set) {
+        return setConfigs.getOrDefault(set, MapDBSetConfig.DEFAULT);
+    }
+
+    /**
+     * Opening a map goes through the MapDB name catalog, so opened maps are
+     * cached per (namespace, set) and shared by all threads. BTreeMap and
+     * HTreeMap are safe for concurrent use.
+     */
+    private ConcurrentMap<String, String> getTable(String namespace, String set) {
+
+        Map<String, ConcurrentMap<String, String>> namespaceTables = tables.get(namespace);
+        if(namespaceTables == null) {
+            throw new IllegalArgumentException("Unknown namespace " + namespace);
+        }
+        ConcurrentMap<String, String> table = namespaceTables.get(set);
+        if(table == null) {
+            table = namespaceTables.computeIfAbsent(set, newSet -> createTable(namespace, newSet));
+        }
+        return table;
+    }
+
+    private ConcurrentMap<String, String> createTable(String namespace, String set) {
+
+        MapDBSetConfig setConfig = getSetConfig(set);
+        switch (getStorageType(namespace, set, setConfig)) {
+            case HTREE:
+                return withEviction(namespaces.get(namespace).hashMap(set, Serializer.STRING, Serializer.STRING),
+                    setConfig).createOrOpen();
+            case MEMORY_DIRECT_HTREE:
+                DB memoryDB = DBMaker.memoryDirectDB().make();
+                memoryStores.add(memoryDB);
+                return withEviction(memoryDB.hashMap(set, Serializer.STRING, Serializer.STRING),
+                    setConfig).create();
+            case MEMORY_SHARDED_HTREE:
+                HTreeMap<String, String> shardedMap = withEviction(
+                    DBMaker.memoryShardedHashMap(setConfig.getShards())
+                        .keySerializer(Serializer.STRING)
+                        .valueSerializer(Serializer.STRING),
+                    setConfig).create();
+                memoryStores.add(shardedMap);
+                return shardedMap;
+            case BTREE:
+            default:
+                return namespaces.get(namespace).treeMap(set, Serializer.STRING, Serializer.STRING).createOrOpen();
+        }
+    }
+
+    /**
+     * Storage type of the set, as recorded in the MapDB name catalog for sets
+     * that already exist in the namespace file. Sets without a config keep
+     * the type they were created with, sets whose config disagrees with the
+     * file fail instead of being reopened through the wrong map type
+     */
+    private MapDBStorageType getStorageType(String namespace, String set, MapDBSetConfig setConfig) {
+
+        MapDBStorageType configuredType = setConfig.getStorageType();
+        if(configuredType.isInMemory()) {
+            return configuredType;
+        }
+        String catalogType = namespaces.get(namespace).nameCatalogLoad().get(set + CATALOG_TYPE_SUFFIX);
+        if(catalogType == null) {
+            return configuredType;
+        }
+        MapDBStorageType storedType;
+        switch (catalogType) {
+            case "HashMap":
+                storedType = MapDBStorageType.HTREE;
+                break;
+            case "TreeMap":
+                storedType = MapDBStorageType.BTREE;
+                break;
+            default:
+                throw new IllegalStateException("Set " + set + " is stored as an unsupported " + catalogType);
+        }
+        if(storedType != configuredType && setConfigs.containsKey(set)) {
+            throw new IllegalStateException(
+                "Set " + set + " is configured as " + configuredType + " but stored as " + storedType
+            );
+        }
+        return storedType;
+    }
+
+    /**
+     * Entries only take part in eviction once they are in an expiration queue,
+     * so any limit puts created and updated entries in one, and read entries
+     * too when expiring by access.
+     */
+    private DB.HashMapMaker<String, String> withEviction(DB.HashMapMaker<String, String> maker,
+                                                         MapDBSetConfig setConfig) {
+
+        boolean sizeBased = setConfig.getMaxEntries() > 0 || setConfig.getMaxStoreSizeKB() > 0;
+        if(setConfig.getExpireAfterWriteMs() > 0) {
+            maker = maker.expireAfterCreate(setConfig.getExpireAfterWriteMs())
+                .expireAfterUpdate(setConfig.getExpireAfterWriteMs());
+        } else if(sizeBased || setConfig.getExpireAfterAccessMs() > 0) {
+            maker = maker.expireAfterCreate().expireAfterUpdate();
+        }
+        if(setConfig.getExpireAfterAccessMs() > 0) {
+            maker = maker.expireAfterGet(setConfig.getExpireAfterAccessMs());
+        } else if(sizeBased) {
+            maker = maker.expireAfterGet();
+        }
+        if(setConfig.getMaxEntries() > 0) {
+            maker = maker.counterEnable().expireMaxSize(setConfig.getMaxEntries());
+        }
+        if(setConfig.getMaxStoreSizeKB() > 0) {
+            maker = maker.expireStoreSize(setConfig.getMaxStoreSizeKB() * 1024L);
+        }
+        if(expirationScheduler != null) {
+            maker = maker.expireExecutor(expirationScheduler).expireExecutorPeriod(EXPIRATION_PERIOD_MS);
+        }
+        return maker;
+    }
+
     public void put(String namespace, String set, String entityId, Map<String, Object> fields,
                            EncodingFormat encodingFormat) {
 
-        BTreeMap<String, String> table = namespaces.get(namespace)
-            .treeMap(set, Serializer.STRING, Serializer.STRING)
-            .createOrOpen();
+        ConcurrentMap<String, String> table = getTable(namespace, set);
 
+        long codecStart = startPhase();
         String payload = JsonUtil.write(fields);
-        payload = encode(encodingFormat, payload);
-        table.put(entityId, payload);
+        String encodedPayload = encode(encodingFormat, payload);
+        endPhase(OperationPhase.CODEC, codecStart);
+        write(namespace, 1, () -> table.put(entityId, encodedPayload));
     }
 
     public void put(String namespace, String set, Map<String, Map<String, Object>> entities,
                              EncodingFormat encodingFormat) {
-    
-        BTreeMap<String, String> table = namespaces.get(namespace)
-            .treeMap(set, Serializer.STRING, Serializer.STRING)
-            .createOrOpen();
 
+        ConcurrentMap<String, String> table = getTable(namespace, set);
+
+        long codecStart = startPhase();
+        Map<String, String> payloads = new TreeMap<>();
         entities.forEach((String entityId, Map<String, Object> fields) -> {
             String payload = JsonUtil.write(fields);
             payload = encode(encodingFormat, payload);
-            table.put(entityId, payload);
+            payloads.put(entityId, payload);
         });
+        endPhase(OperationPhase.CODEC, codecStart);
+        write(namespace, payloads.size(), () -> table.putAll(payloads));
     }
 
     public Map<String, Object> get(String namespace, String set, String entityId,
                                           EncodingFormat encodingFormat) {
 
-        BTreeMap<String, String> table = namespaces.get(namespace)
-            .treeMap(set, Serializer.STRING, Serializer.STRING)
-            .createOrOpen();
+        ConcurrentMap<String, String> table = getTable(namespace, set);
 
+        long storageStart = startPhase();
         String storedPayload = table.get(entityId);
+        endPhase(OperationPhase.STORAGE, storageStart);
+        long codecStart = startPhase();
+        Map<String, Object> fields = toFields(storedPayload, encodingFormat);
+        endPhase(OperationPhase.CODEC, codecStart);
+        return fields;
+    }
+
+    private Map<String, Object> toFields(String storedPayload, EncodingFormat encodingFormat) {
         storedPayload = storedPayload == null ? null : decode(encodingFormat, storedPayload);
         return storedPayload == null ? null : JsonUtil.read(storedPayload, mapTypeReference);
     }
 
     @Override
     public void delete(String namespace, String set, String entityId) {
-        BTreeMap<String, String> table = namespaces.get(namespace)
-            .treeMap(set, Serializer.STRING, Serializer.STRING)
-            .createOrOpen();
+        ConcurrentMap<String, String> table = getTable(namespace, set);
 
-        table.remove(entityId);
+        write(namespace, 1, () -> table.remove(entityId));
     }
 
     @Override
     public void delete(String namespace, String set, List<String> entities) {
-        BTreeMap<String, String> table = namespaces.get(namespace)
-            .treeMap(set, Serializer.STRING, Serializer.STRING)
-            .createOrOpen();
+        ConcurrentMap<String, String> table = getTable(namespace, set);
 
-        entities.forEach((String entityId) -> {
-            table.remove(entityId);
+        write(namespace, entities.size(), () -> {
+            entities.forEach((String entityId) -> {
+                table.remove(entityId);
+            });
         });
     }
 
+    /**
+     * Applies the operations in one hold of the commit lock, so that no group
+     * commit splits them. In TX_GROUP_COMMIT mode the namespace is then
+     * committed once, in TX_EXPLICIT_COMMIT mode the operations join the
+     * caller's open transaction, to be committed or rolled back with the
+     * writes before them. NO_TX stores and in memory sets apply them without
+     * atomicity
+     */
     @Override
-    public List<String> getIds(String namespace, String set) {
+    public void write(String namespace, List<DBWriteOperation> operations) {
+
+        List<ConcurrentMap<String, String>> operationTables = new ArrayList<>(operations.size());
+        List<String> payloads = new ArrayList<>(operations.size());
+        long codecStart = startPhase();
+        for (DBWriteOperation operation : operations) {
+            operationTables.add(getTable(namespace, operation.getSet()));
+            payloads.add(operation.getType() == DBWriteOperation.Type.PUT
+                ? encode(operation.getEncodingFormat(), JsonUtil.write(operation.getFields())) : null);
+        }
+        endPhase(OperationPhase.CODEC, codecStart);
+        write(namespace, operations.size(), () -> {
+            for (int i = 0; i < operations.size(); i++) {
+                String entityId = operations.get(i).getEntityId();
+                if(payloads.get(i) != null) {
+                    operationTables.get(i).put(entityId, payloads.get(i));
+                } else {
+                    operationTables.get(i).remove(entityId);
+                }
+            }
+        });
+        if(durabilityMode == MapDBDurabilityMode.TX_GROUP_COMMIT) {
+            commit(namespace);
+        }
+    }
 
-        List<String> entityIds = new ArrayList<>();
+    /**
+     * Runs a write while holding the namespace commit lock in shared mode, so
+     * that a commit never splits a bulk write across two transactions. Group
+     * commits are triggered after the lock is released.
+     */
+    private void write(String namespace, int writes, Runnable operation) {
+
+        long pending;
+        ReadLock commitReadLock = commitLocks.get(namespace).readLock();
+        long lockStart = startPhase();
+        commitReadLock.lock();
+        endPhase(OperationPhase.LOCK_WAIT, lockStart);
+        try {
+            long storageStart = startPhase();
+            operation.run();
+            endPhase(OperationPhase.STORAGE, storageStart);
+            pending = pendingWrites.get(namespace).addAndGet(writes);
+        } finally {
+            commitReadLock.unlock();
+        }
+        if(groupCommitWrites > 0 && pending >= groupCommitWrites) {
+            commit(namespace);
+        }
+    }
 
-        BTreeMap<String, String> table = namespaces.get(namespace)
-            .treeMap(set, Serializer.STRING, Serializer.STRING)
-            .createOrOpen();
+    /**
+     * Commits pending writes of all namespaces
+     */
+    public void commit() {
+        namespaces.keySet().forEach(this::commit);
+    }
 
-        table.getKeys().forEach(key -> {
-            entityIds.add(key);
-        });
+    /**
+     * Makes pending writes of the namespace durable. No-op in NO_TX mode.
+     */
+    public void commit(String namespace) {
+
+        if(!durabilityMode.isTransactional()) {
+            return;
+        }
+        WriteLock commitWriteLock = commitLocks.get(namespace).writeLock();
+        commitWriteLock.lock();
+        try {
+            DB db = namespaces.get(namespace);
+            if(!db.isClosed() && pendingWrites.get(namespace).getAndSet(0) > 0) {
+                db.commit();
+                commits.get(namespace).incrementAndGet();
+            }
+        } finally {
+            commitWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Discards writes made since the last commit of the namespace
+     */
+    public void rollback(String namespace) {
+
+        if(!durabilityMode.isTransactional()) {
+            throw new UnsupportedOperationException("Rollback is not supported in " + durabilityMode + " mode");
+        }
+        WriteLock commitWriteLock = commitLocks.get(namespace).writeLock();
+        commitWriteLock.lock();
+        try {
+            namespaces.get(namespace).rollback();
+            pendingWrites.get(namespace).set(0);
+            // maps created in the rolled back transaction no longer exist, in memory sets are not transactional
+            tables.get(namespace).keySet().removeIf(set -> !getSetConfig(set).getStorageType().isInMemory());
+        } finally {
+            commitWriteLock.unlock();
+        }
+    }
 
-        return entityIds;
+    @Override
+    public List<String> getIds(String namespace, String set) {
+        return new ArrayList<>(getTable(namespace, set).keySet());
     }
 
+    /**
+     * Ids of all sets in the namespace as set$$entityId, the same form
+     * RocksDBKVClient uses. Sets are found through the MapDB name catalog, in
+     * memory sets only once they have been used.
+     */
     @Override
     public List<String> getIds(String namespace) {
-        throw new UnsupportedOperationException("Get all ids not supported by MapDBClient");
+        return streamIds(namespace).collect(Collectors.toList());
+    }
+
+    public Stream<String> streamIds(String namespace) {
+
+        TreeSet<String> sets = new TreeSet<>(tables.get(namespace).keySet());
+        namespaces.get(namespace).getAllNames().forEach(sets::add);
+        return sets.stream().flatMap(set -> streamIds(namespace, set).map(entityId -> set + "$$" + entityId));
+    }
+
+    /**
+     * Lazily streams the ids of the set, nothing is copied up front. The
+     * stream reflects concurrent writes in the same way as the map iterators.
+     */
+    public Stream<String> streamIds(String namespace, String set) {
+        return getTable(namespace, set).keySet().stream();
+    }
+
+    /**
+     * Ids from fromId (inclusive) to toId (exclusive) in id order, a null
+     * bound leaves that side of the range open. BTREE sets only.
+     */
+    public Stream<String> streamIds(String namespace, String set, String fromId, String toId) {
+        return getRange(namespace, set, fromId, toId).keySet().stream();
+    }
+
+    /**
+     * Ids starting with the prefix in id order. BTREE sets only.
+     */
+    public Stream<String> streamIdsWithPrefix(String namespace, String set, String prefix) {
+        return getPrefixRange(namespace, set, prefix).keySet().stream();
+    }
+
+    /**
+     * Entities from fromId (inclusive) to toId (exclusive) in id order, decoded
+     * as they are consumed. BTREE sets only.
+     */
+    public Stream<Map.Entry<String, Map<String, Object>>> stream(String namespace, String set,
+                                                                 String fromId, String toId,
+                                                                 EncodingFormat encodingFormat) {
+        return toEntities(getRange(namespace, set, fromId, toId), encodingFormat);
+    }
+
+    /**
+     * Entities with ids starting with the prefix in id order, decoded as they
+     * are consumed. BTREE sets only.
+     */
+    public Stream<Map.Entry<String, Map<String, Object>>> streamWithPrefix(String namespace, String set,
+                                                                           String prefix,
+                                                                           EncodingFormat encodingFormat) {
+        return toEntities(getPrefixRange(namespace, set, prefix), encodingFormat);
+    }
+
+    /**
+     * Splits BTREE sets at separator ids sampled from the upper nodes of the
+     * tree, see {@link BTreeKeySampler}, or at every (size / maxRanges)th id
+     * of the ordered keys when the nodes can't be read. HTREE sets are
+     * unordered and come as a single range.
+     */
+    @Override
+    public List<ScanRange> getScanRanges(String namespace, String set, int maxRanges) {
+
+        ConcurrentMap<String, String> table = getTable(namespace, set);
+        if(!(table instanceof BTreeMap) || maxRanges <= 1) {
+            return Collections.singletonList(ScanRange.ALL);
+        }
+        BTreeMap<String, String> orderedTable = (BTreeMap<String, String>) table;
+        List<String> splitIds = BTreeKeySampler.isAvailable()
+            ? BTreeKeySampler.getSplitIds(orderedTable, maxRanges)
+            : getEvenlySpacedIds(orderedTable, maxRanges);
+        List<ScanRange> ranges = new ArrayList<>();
+        String fromId = null;
+        for (String splitId : splitIds) {
+            ranges.add(new ScanRange(fromId, splitId));
+            fromId = splitId;
+        }
+        ranges.add(new ScanRange(fromId, null));
+        return ranges;
+    }
+
+    private List<String> getEvenlySpacedIds(BTreeMap<String, String> table, int maxRanges) {
+
+        int size = table.size();
+        List<String> splitIds = new ArrayList<>();
+        if(size <= 1) {
+            return splitIds;
+        }
+        int rangeSize = (size + maxRanges - 1) / maxRanges;
+        int position = 0;
+        for (String entityId : table.keySet()) {
+            if(position > 0 && position % rangeSize == 0) {
+                splitIds.add(entityId);
+            }
+            position++;
+        }
+        return splitIds;
+    }
+
+    /**
+     * Entities of the range in id order, HTREE sets only support the whole set
+     */
+    @Override
+    public void scan(String namespace, String set, ScanRange range, EncodingFormat encodingFormat,
+                     BiConsumer<String, Map<String, Object>> consumer) {
+
+        ConcurrentMap<String, String> table = range.isAll()
+            ? getTable(namespace, set)
+            : getRange(namespace, set, range.getFromId(), range.getToId());
+        table.forEach((entityId, storedPayload) -> {
+            Map<String, Object> fields = toFields(storedPayload, encodingFormat);
+            if(fields != null) {
+                consumer.accept(entityId, fields);
+            }
+        });
+    }
+
+    private Stream<Map.Entry<String, Map<String, Object>>> toEntities(ConcurrentNavigableMap<String, String> range,
+                                                                      EncodingFormat encodingFormat) {
+        return range.entrySet().stream().map(entry -> new AbstractMap.SimpleImmutableEntry<>(
+            entry.getKey(), toFields(entry.getValue(), encodingFormat)
+        ));
+    }
+
+    private ConcurrentNavigableMap<String, String> getRange(String namespace, String set,
+                                                            String fromId, String toId) {
+
+        BTreeMap<String, String> table = getOrderedTable(namespace, set);
+        if(fromId == null && toId == null) {
+            return table;
+        } else if(fromId == null) {
+            return table.headMap(toId, false);
+        } else if(toId == null) {
+            return table.tailMap(fromId, true);
+        }
+        return table.subMap(fromId, true, toId, false);
+    }
+
+    /**
+     * Serializer.STRING has no next value, so the range ends before the prefix
+     * with its last incrementable char incremented.
+     */
+    private ConcurrentNavigableMap<String, String> getPrefixRange(String namespace, String set, String prefix) {
+
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        String toId = end == 0 ? null : prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+        return getRange(namespace, set, prefix.isEmpty() ? null : prefix, toId);
+    }
+
+    private BTreeMap<String, String> getOrderedTable(String namespace, String set) {
+
+        ConcurrentMap<String, String> table = getTable(namespace, set);
+        if(!(table instanceof BTreeMap)) {
+            throw new UnsupportedOperationException(
+                "Ordered scans need BTREE storage, set " + set + " is stored as a " + table.getClass().getSimpleName()
+            );
+        }
+        return (BTreeMap<String, String>) table;
     }
 
     @Override
     public DBStats getStatistics() {
 
         DBStats dbStats = new DBStats();
+        namespaces.keySet().forEach(namespace -> {
+            dbStats.add(namespace + "_mapdb_pending_writes", pendingWrites.get(namespace).get());
+            dbStats.add(namespace + "_mapdb_commits", commits.get(namespace).get());
+        });
         return dbStats;
     }
 
     public void shutdown() {
-        
+
+        if(groupCommitScheduler != null) {
+            groupCommitScheduler.shutdownNow();
+        }
+        if(expirationScheduler != null) {
+            expirationScheduler.shutdownNow();
+        }
+        commit();
         namespaces.forEach((s, db) -> {
 
             logger.info("closing MapDB database " + db);
@@ -150,15 +663,42 @@ public class MapDBClient extends AbstractDBClient {
                 db.close();
             }
         });
+        Closeable memoryStore;
+        while ((memoryStore = memoryStores.poll()) != null) {
+            try {
+                memoryStore.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close in memory store " + memoryStore, e);
+            }
+        }
+        tables.forEach((namespace, namespaceTables) -> namespaceTables.clear());
     }
 
+    /**
+     * Deletes the namespace store file along with its companion files (e.g. write ahead logs)
+     */
     public void clear() {
 
+        this.tables.forEach((namespace, namespaceTables) -> namespaceTables.forEach((set, table) -> {
+            if(getSetConfig(set).getStorageType().isInMemory()) {
+                table.clear();
+            }
+        }));
+
         this.namespaceStorageLocations.forEach((namespace, namespaceStorageLocation) -> {
-            try {
-                FileUtils.deleteDirectory(new File(namespaceStorageLocation));
-            } catch (IOException e) {
-                throw new RuntimeException("Unable to delete directory at " + namespaceStorageLocation, e);
+            File namespaceFile = new File(namespaceStorageLocation);
+            File[] namespaceFiles = namespaceFile.getAbsoluteFile().getParentFile().listFiles(
+                (dir, name) -> name.equals(namespaceFile.getName()) || name.startsWith(namespaceFile.getName() + ".")
+            );
+            if(namespaceFiles == null) {
+                return;
+            }
+            for (File file : namespaceFiles) {
+                try {
+                    FileUtils.forceDelete(file);
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to delete file at " + file.getAbsolutePath(), e);
+                }
             }
         });
     }
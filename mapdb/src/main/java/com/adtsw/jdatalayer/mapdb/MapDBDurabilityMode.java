@@ -0,0 +1,26 @@
+package com.adtsw.jdatalayer.mapdb;
+
+/**
+ * Durability of writes made through {@link MapDBClient}.
+ *
+ * NO_TX - no write ahead log, writes go straight to the store. Fastest, but a
+ * crash can leave the store corrupted.
+ *
+ * TX_EXPLICIT_COMMIT - transactions enabled, writes become durable when the
+ * caller invokes {@link MapDBClient#commit(String)} and can be rolled back
+ * until then.
+ *
+ * TX_GROUP_COMMIT - transactions enabled, the client commits on its own every
+ * N milliseconds and/or every N writes, so the sync cost is shared by all
+ * writes in the group.
+ */
+public enum MapDBDurabilityMode {
+
+    NO_TX,
+    TX_EXPLICIT_COMMIT,
+    TX_GROUP_COMMIT;
+
+    public boolean isTransactional() {
+        return this != NO_TX;
+    }
+}
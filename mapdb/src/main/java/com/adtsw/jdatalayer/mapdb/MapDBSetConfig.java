@@ -0,0 +1,32 @@
+package com.adtsw.jdatalayer.mapdb;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Storage of a single set in {@link MapDBClient}. Eviction settings only apply
+ * to HTree storage types, 0 disables the respective limit.
+ */
+@Getter
+@Builder
+@ToString
+public class MapDBSetConfig {
+
+    public static final MapDBSetConfig DEFAULT = MapDBSetConfig.builder().build();
+
+    @Builder.Default
+    private final MapDBStorageType storageType = MapDBStorageType.BTREE;
+    /**
+     * Number of shards for MEMORY_SHARDED_HTREE
+     */
+    @Builder.Default
+    private final int shards = 8;
+    /**
+     * Approximate maximum number of entries, MapDB enforces the limit per segment
+     */
+    private final long maxEntries;
+    private final long maxStoreSizeKB;
+    private final long expireAfterWriteMs;
+    private final long expireAfterAccessMs;
+}
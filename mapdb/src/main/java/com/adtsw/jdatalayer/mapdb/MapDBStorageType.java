@@ -0,0 +1,30 @@
+package com.adtsw.jdatalayer.mapdb;
+
+/**
+ * How {@link MapDBClient} stores the entities of a set.
+ *
+ * BTREE - BTreeMap in the namespace file, ordered by entity id. Default.
+ *
+ * HTREE - HTreeMap in the namespace file, unordered, split into segments with
+ * their own locks for highly concurrent point access.
+ *
+ * MEMORY_DIRECT_HTREE - HTreeMap in its own off-heap (direct memory) store,
+ * not persisted.
+ *
+ * MEMORY_SHARDED_HTREE - HTreeMap sharded over several off-heap stores, each
+ * with its own lock, not persisted. Scales best across cores.
+ *
+ * All HTree types support size and time based eviction through
+ * {@link MapDBSetConfig}.
+ */
+public enum MapDBStorageType {
+
+    BTREE,
+    HTREE,
+    MEMORY_DIRECT_HTREE,
+    MEMORY_SHARDED_HTREE;
+
+    public boolean isInMemory() {
+        return this == MEMORY_DIRECT_HTREE || this == MEMORY_SHARDED_HTREE;
+    }
+}
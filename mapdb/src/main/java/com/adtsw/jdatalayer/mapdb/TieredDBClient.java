@@ -0,0 +1,493 @@
+package com.adtsw.jdatalayer.mapdb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.function.BiConsumer;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+import com.adtsw.jcommons.utils.JsonUtil;
+import com.adtsw.jdatalayer.core.client.AbstractDBClient;
+import com.adtsw.jdatalayer.core.client.DBStats;
+import com.adtsw.jdatalayer.core.client.DBWriteOperation;
+import com.adtsw.jdatalayer.core.client.IDBClient;
+import com.adtsw.jdatalayer.core.client.ScanRange;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+
+/**
+ * Two tier client keeping a small, hot working set in an in-memory MapDB
+ * HTreeMap in front of a large cold tier, usually a RocksDBKVClient.
+ *
+ * Hot reads are served from the MapDB tier and never reach the cold tier.
+ * Cold reads are promoted to the hot tier, and the hot tier evicts by entry
+ * count and store size. Evicted dirty entries (WRITE_BACK) are queued by
+ * the eviction listener and demoted to the cold tier by the next operation,
+ * outside of the hot tier's segment locks.
+ */
+public class TieredDBClient extends AbstractDBClient {
+
+    protected static Logger logger = LogManager.getLogger(TieredDBClient.class);
+
+    private static final char DIRTY = 'D';
+    private static final char CLEAN = 'C';
+    private static final EncodingFormat[] ENCODING_FORMATS = EncodingFormat.values();
+    private static final int KEY_LOCK_STRIPES = 64;
+
+    private final IDBClient coldTier;
+    private final TieredWritePolicy writePolicy;
+    private final DB hotDB;
+    private final HTreeMap<String, String> hotTier;
+    private final TypeReference<TreeMap<String, Object>> mapTypeReference = new TypeReference<>() {};
+    /**
+     * Promotions hold the read lock of the key's stripe from the cold read
+     * on, deletes the write lock, so that a deleted entity is never promoted
+     */
+    private final ReentrantReadWriteLock[] keyLocks;
+    /**
+     * Dirty entries evicted from the hot tier and not yet demoted, by key.
+     * They are still served from here until they reach the cold tier
+     */
+    private final Map<String, String> evictedEntries = new ConcurrentHashMap<>();
+    private final ReentrantLock demotionLock = new ReentrantLock();
+    /**
+     * Set by WRITE_BACK writes, so that a flush with nothing written since the
+     * last one does not walk the hot tier
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private final LongAdder hotHits = new LongAdder();
+    private final LongAdder hotMisses = new LongAdder();
+    private final LongAdder coldHits = new LongAdder();
+    private final LongAdder coldMisses = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+
+    /**
+     * @param coldTier client serving everything that is not in the hot tier
+     * @param writePolicy how writes reach the cold tier
+     * @param offHeap keep the hot tier in direct memory (memoryDirectDB) instead of heap byte arrays
+     * @param maxHotEntries maximum number of entries in the hot tier, 0 for no limit. MapDB splits the
+     * limit across the map segments, so it is approximate and only enforced once it exceeds the segment count
+     * @param maxHotStoreSizeKB maximum store size of the hot tier, 0 for no limit
+     */
+    public TieredDBClient(IDBClient coldTier, TieredWritePolicy writePolicy, boolean offHeap,
+                          long maxHotEntries, long maxHotStoreSizeKB) {
+
+        this.coldTier = coldTier;
+        this.writePolicy = writePolicy;
+        this.keyLocks = new ReentrantReadWriteLock[KEY_LOCK_STRIPES];
+        for (int i = 0; i < KEY_LOCK_STRIPES; i++) {
+            this.keyLocks[i] = new ReentrantReadWriteLock();
+        }
+        this.hotDB = (offHeap ? DBMaker.memoryDirectDB() : DBMaker.memoryDB()).make();
+
+        DB.HashMapMaker<String, String> hotTierMaker = hotDB
+            .hashMap("hotTier", Serializer.STRING, Serializer.STRING)
+            .expireAfterCreate()
+            .expireAfterUpdate()
+            .expireAfterGet()
+            .counterEnable()
+            .modificationListener(this::onHotTierModification);
+        if(maxHotEntries > 0) {
+            hotTierMaker = hotTierMaker.expireMaxSize(maxHotEntries);
+        }
+        if(maxHotStoreSizeKB > 0) {
+            hotTierMaker = hotTierMaker.expireStoreSize(maxHotStoreSizeKB * 1024L);
+        }
+        this.hotTier = hotTierMaker.create();
+    }
+
+    @Override
+    public void put(String namespace, String set, String entityId, Map<String, Object> fields,
+                    EncodingFormat encodingFormat) {
+
+        if(writePolicy == TieredWritePolicy.WRITE_THROUGH) {
+            coldTier.put(namespace, set, entityId, fields, encodingFormat);
+            hotTier.put(getKey(namespace, set, entityId), toHotValue(CLEAN, encodingFormat, fields));
+        } else {
+            hotTier.put(getKey(namespace, set, entityId), toHotValue(DIRTY, encodingFormat, fields));
+            dirty.set(true);
+        }
+        demoteEvicted(false);
+    }
+
+    @Override
+    public void put(String namespace, String set, Map<String, Map<String, Object>> entities,
+                    EncodingFormat encodingFormat) {
+
+        if(writePolicy == TieredWritePolicy.WRITE_THROUGH) {
+            coldTier.put(namespace, set, entities, encodingFormat);
+        }
+        char state = writePolicy == TieredWritePolicy.WRITE_THROUGH ? CLEAN : DIRTY;
+        entities.forEach((String entityId, Map<String, Object> fields) -> {
+            hotTier.put(getKey(namespace, set, entityId), toHotValue(state, encodingFormat, fields));
+        });
+        if(state == DIRTY) {
+            dirty.set(true);
+        }
+        demoteEvicted(false);
+    }
+
+    @Override
+    public Map<String, Object> get(String namespace, String set, String entityId,
+                                   EncodingFormat encodingFormat) {
+
+        try {
+            return getUnlocked(namespace, set, entityId, encodingFormat);
+        } finally {
+            demoteEvicted(false);
+        }
+    }
+
+    private Map<String, Object> getUnlocked(String namespace, String set, String entityId,
+                                            EncodingFormat encodingFormat) {
+
+        String key = getKey(namespace, set, entityId);
+        String hotValue = hotTier.get(key);
+        if(hotValue != null) {
+            hotHits.increment();
+            return JsonUtil.read(hotValue.substring(2), mapTypeReference);
+        }
+        hotMisses.increment();
+
+        ReadLock readLock = getKeyLock(key).readLock();
+        readLock.lock();
+        try {
+            // demotions hold the write lock, an evicted entry found here has not reached the cold tier
+            String evictedValue = evictedEntries.get(key);
+            if(evictedValue != null) {
+                return JsonUtil.read(evictedValue.substring(2), mapTypeReference);
+            }
+            Map<String, Object> coldValue = coldTier.get(namespace, set, entityId, encodingFormat);
+            if(coldValue == null) {
+                coldMisses.increment();
+                return null;
+            }
+            coldHits.increment();
+            // a concurrent write may have landed in the hot tier meanwhile, it wins over the promoted value
+            if(!evictedEntries.containsKey(key)
+                && hotTier.putIfAbsent(key, toHotValue(CLEAN, encodingFormat, coldValue)) == null) {
+                promotions.increment();
+            }
+            return coldValue;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(String namespace, String set, String entityId) {
+
+        String key = getKey(namespace, set, entityId);
+        WriteLock writeLock = getKeyLock(key).writeLock();
+        writeLock.lock();
+        try {
+            hotTier.remove(key);
+            evictedEntries.remove(key);
+            coldTier.delete(namespace, set, entityId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(String namespace, String set, List<String> entities) {
+
+        List<String> keys = new ArrayList<>(entities.size());
+        entities.forEach((String entityId) -> keys.add(getKey(namespace, set, entityId)));
+        runLocked(keys, () -> {
+            keys.forEach(key -> {
+                hotTier.remove(key);
+                evictedEntries.remove(key);
+            });
+            coldTier.delete(namespace, set, entities);
+        });
+    }
+
+    /**
+     * Under WRITE_THROUGH the cold tier writes all operations as one unit
+     * before the hot tier is updated. Under WRITE_BACK puts only go to the
+     * hot tier and the deletes are written to the cold tier as one unit
+     */
+    @Override
+    public void write(String namespace, List<DBWriteOperation> operations) {
+
+        List<String> deletedKeys = new ArrayList<>();
+        for (DBWriteOperation operation : operations) {
+            if(operation.getType() == DBWriteOperation.Type.DELETE) {
+                deletedKeys.add(getKey(namespace, operation.getSet(), operation.getEntityId()));
+            }
+        }
+        runLocked(deletedKeys, () -> writeUnlocked(namespace, operations));
+        demoteEvicted(false);
+    }
+
+    private void writeUnlocked(String namespace, List<DBWriteOperation> operations) {
+
+        char state = writePolicy == TieredWritePolicy.WRITE_THROUGH ? CLEAN : DIRTY;
+        List<DBWriteOperation> coldOperations = new ArrayList<>();
+        if(writePolicy == TieredWritePolicy.WRITE_THROUGH) {
+            coldTier.write(namespace, operations);
+        }
+        for (DBWriteOperation operation : operations) {
+            String key = getKey(namespace, operation.getSet(), operation.getEntityId());
+            if(operation.getType() == DBWriteOperation.Type.PUT) {
+                hotTier.put(key, toHotValue(state, operation.getEncodingFormat(), operation.getFields()));
+                if(state == DIRTY) {
+                    dirty.set(true);
+                }
+            } else {
+                hotTier.remove(key);
+                evictedEntries.remove(key);
+                coldOperations.add(operation);
+            }
+        }
+        if(writePolicy == TieredWritePolicy.WRITE_BACK && !coldOperations.isEmpty()) {
+            coldTier.write(namespace, coldOperations);
+        }
+    }
+
+    private ReentrantReadWriteLock getKeyLock(String key) {
+        return keyLocks[Math.floorMod(key.hashCode(), KEY_LOCK_STRIPES)];
+    }
+
+    /**
+     * Runs the deletes holding the write locks of the keys' stripes, taken in
+     * stripe order so that concurrent multi-key deletes cannot deadlock
+     */
+    private void runLocked(List<String> keys, Runnable deletes) {
+
+        TreeSet<Integer> stripes = new TreeSet<>();
+        keys.forEach(key -> stripes.add(Math.floorMod(key.hashCode(), KEY_LOCK_STRIPES)));
+        List<WriteLock> writeLocks = new ArrayList<>(stripes.size());
+        try {
+            for (int stripe : stripes) {
+                WriteLock writeLock = keyLocks[stripe].writeLock();
+                writeLock.lock();
+                writeLocks.add(writeLock);
+            }
+            deletes.run();
+        } finally {
+            writeLocks.forEach(WriteLock::unlock);
+        }
+    }
+
+    @Override
+    public List<String> getIds(String namespace, String set) {
+        flush();
+        return coldTier.getIds(namespace, set);
+    }
+
+    @Override
+    public List<String> getIds(String namespace) {
+        flush();
+        return coldTier.getIds(namespace);
+    }
+
+    @Override
+    public List<ScanRange> getScanRanges(String namespace, String set, int maxRanges) {
+        flush();
+        return coldTier.getScanRanges(namespace, set, maxRanges);
+    }
+
+    /**
+     * Scans the cold tier, after writing back dirty hot tier entries. The
+     * ranges of a parallel scan only walk the hot tier again if there were
+     * writes since getScanRanges flushed. Scanned entities are not promoted
+     */
+    @Override
+    public void scan(String namespace, String set, ScanRange range, EncodingFormat encodingFormat,
+                     BiConsumer<String, Map<String, Object>> consumer) {
+        flush();
+        coldTier.scan(namespace, set, range, encodingFormat, consumer);
+    }
+
+    /**
+     * Writes all dirty hot tier entries to the cold tier. No-op for WRITE_THROUGH.
+     */
+    public void flush() {
+
+        if(writePolicy != TieredWritePolicy.WRITE_BACK) {
+            return;
+        }
+        demoteEvicted(true);
+        if(!dirty.getAndSet(false)) {
+            return;
+        }
+        hotTier.forEach((key, hotValue) -> {
+            if(hotValue.charAt(0) == DIRTY) {
+                demoteDirty(key, hotValue);
+            }
+        });
+    }
+
+    /**
+     * Demotes a dirty entry holding its stripe's write lock. The entry is
+     * marked clean first, and only if it is still there with the value that
+     * was read, so that an entry deleted or overwritten meanwhile is left alone
+     */
+    private void demoteDirty(String key, String hotValue) {
+
+        WriteLock writeLock = getKeyLock(key).writeLock();
+        writeLock.lock();
+        try {
+            String cleanValue = CLEAN + hotValue.substring(1);
+            if(!hotTier.replace(key, hotValue, cleanValue)) {
+                return;
+            }
+            try {
+                demote(key, hotValue);
+            } catch (RuntimeException e) {
+                hotTier.replace(key, cleanValue, hotValue);
+                dirty.set(true);
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Runs under the lock of the hot tier segment, so evicted dirty entries
+     * are only queued here and demoted by {@link #demoteEvicted}
+     */
+    private void onHotTierModification(String key, String oldValue, String newValue, boolean triggered) {
+        if(triggered && oldValue != null && oldValue.charAt(0) == DIRTY) {
+            evictedEntries.put(key, oldValue);
+        }
+    }
+
+    /**
+     * Demotes the queued evicted entries, each holding its stripe's write
+     * lock. Operations skip this while another thread is demoting, a flush
+     * waits for it
+     *
+     * @param wait wait for a demotion in progress instead of leaving the queue to it
+     */
+    private void demoteEvicted(boolean wait) {
+
+        if(evictedEntries.isEmpty()) {
+            return;
+        }
+        if(wait) {
+            demotionLock.lock();
+        } else if(!demotionLock.tryLock()) {
+            return;
+        }
+        try {
+            for (String key : evictedEntries.keySet()) {
+                WriteLock writeLock = getKeyLock(key).writeLock();
+                writeLock.lock();
+                try {
+                    String evictedValue = evictedEntries.get(key);
+                    if(evictedValue != null) {
+                        demote(key, evictedValue);
+                        evictedEntries.remove(key, evictedValue);
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        } finally {
+            demotionLock.unlock();
+        }
+    }
+
+    private void demote(String key, String hotValue) {
+
+        String[] keyParts = parseKey(key);
+        EncodingFormat encodingFormat = ENCODING_FORMATS[hotValue.charAt(1) - '0'];
+        Map<String, Object> fields = JsonUtil.read(hotValue.substring(2), mapTypeReference);
+        coldTier.put(keyParts[0], keyParts[1], keyParts[2], fields, encodingFormat);
+        demotions.increment();
+    }
+
+    /**
+     * Hot tier values carry their state and encoding format ahead of the json
+     * payload, so that eviction can demote an entry without any other lookup.
+     */
+    private String toHotValue(char state, EncodingFormat encodingFormat, Map<String, Object> fields) {
+        return state + String.valueOf((char) ('0' + encodingFormat.ordinal())) + JsonUtil.write(fields);
+    }
+
+    private String getKey(String namespace, String set, String entityId) {
+        return namespace.length() + ":" + namespace + set.length() + ":" + set + entityId;
+    }
+
+    private String[] parseKey(String key) {
+
+        String[] keyParts = new String[3];
+        int offset = 0;
+        for (int i = 0; i < 2; i++) {
+            int separator = key.indexOf(':', offset);
+            int length = Integer.parseInt(key.substring(offset, separator));
+            keyParts[i] = key.substring(separator + 1, separator + 1 + length);
+            offset = separator + 1 + length;
+        }
+        keyParts[2] = key.substring(offset);
+        return keyParts;
+    }
+
+    @Override
+    public DBStats getStatistics() {
+
+        DBStats dbStats = new DBStats();
+        dbStats.addAll(coldTier.getStatistics());
+
+        dbStats.add("tiered_hot_entries", (long) hotTier.size());
+        dbStats.add("tiered_hot_hits", hotHits.sum());
+        dbStats.add("tiered_hot_misses", hotMisses.sum());
+        dbStats.addNonSummable("tiered_hot_hit_rate_bps", getHitRateBps(hotHits.sum(), hotMisses.sum()));
+        dbStats.add("tiered_cold_hits", coldHits.sum());
+        dbStats.add("tiered_cold_misses", coldMisses.sum());
+        dbStats.addNonSummable("tiered_cold_hit_rate_bps", getHitRateBps(coldHits.sum(), coldMisses.sum()));
+        dbStats.add("tiered_promotions", promotions.sum());
+        dbStats.add("tiered_demotions", demotions.sum());
+        dbStats.add("tiered_pending_demotions", (long) evictedEntries.size());
+        return dbStats;
+    }
+
+    /**
+     * Hit rate in basis points (1/100th of a percent), DBStats only holds longs.
+     */
+    private long getHitRateBps(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (hits * 10000L) / total;
+    }
+
+    @Override
+    public void shutdown() {
+
+        flush();
+        logger.info("closing hot tier " + hotDB);
+        if(!hotDB.isClosed()) {
+            hotDB.close();
+        }
+        coldTier.shutdown();
+    }
+
+    @Override
+    public void clear() {
+        if(!hotDB.isClosed()) {
+            hotTier.clear();
+        }
+        evictedEntries.clear();
+        coldTier.clear();
+    }
+}
@@ -0,0 +1,17 @@
+package com.adtsw.jdatalayer.mapdb;
+
+/**
+ * How {@link TieredDBClient} propagates writes to the cold tier.
+ *
+ * WRITE_THROUGH - every write goes to the cold tier before the hot tier is
+ * updated, eviction from the hot tier is free.
+ *
+ * WRITE_BACK - writes only go to the hot tier and are marked dirty, dirty
+ * entries are demoted to the cold tier when they are evicted, on
+ * {@link TieredDBClient#flush()} and on shutdown.
+ */
+public enum TieredWritePolicy {
+
+    WRITE_THROUGH,
+    WRITE_BACK
+}
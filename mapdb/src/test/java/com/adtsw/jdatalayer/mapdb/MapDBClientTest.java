@@ -2,22 +2,71 @@ package com.adtsw.jdatalayer.mapdb;
 
 import com.adtsw.jcommons.models.EncodingFormat;
 import com.adtsw.jdatalayer.core.accessobject.DBAccessObject;
+import com.adtsw.jdatalayer.core.accessobject.DBUnitOfWork;
 import com.adtsw.jdatalayer.core.annotations.DBEntityConfiguration;
 import com.adtsw.jdatalayer.core.annotations.EntityId;
+import com.adtsw.jdatalayer.core.client.IDBClient;
+import com.adtsw.jdatalayer.core.client.ScanRange;
+import com.adtsw.jdatalayer.core.metrics.ProfilingDBClient;
+import com.adtsw.jdatalayer.core.metrics.ProfilingStatsCollector;
+import com.adtsw.jdatalayer.core.metrics.TopKSketch;
 import com.adtsw.jdatalayer.core.model.DBEntity;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.prometheus.client.CollectorRegistry;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 public class MapDBClientTest {
 
+    private static final List<Order> ORDER_ITEMS = Arrays.asList(
+        new Order("o1", "s1", "msg1")
+    );
+
+    private final List<DBAccessObject> openDbos = new ArrayList<>();
+
+    /**
+     * Access object of the namespace, shut down and cleared after the test
+     */
+    private DBAccessObject open(IDBClient dbClient, String namespace) {
+        DBAccessObject dbo = new DBAccessObject(dbClient, namespace);
+        openDbos.add(dbo);
+        return dbo;
+    }
+
+    /**
+     * Shuts the access object down during the test, keeping its data to reopen the namespace
+     */
+    private void shutdown(DBAccessObject dbo) {
+        openDbos.remove(dbo);
+        dbo.shutdown();
+    }
+
+    @After
+    public void shutdownAndClear() {
+        for (DBAccessObject dbo : openDbos) {
+            dbo.shutdown();
+            dbo.clear();
+        }
+        openDbos.clear();
+    }
+
     @Test
     public void testClient() {
 
@@ -41,6 +90,329 @@ public class MapDBClientTest {
         
         dbo.shutdown();
     }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+
+        MapDBClient dbClient = new MapDBClient("/tmp", "mapDBConcurrencyTest", 8);
+        DBAccessObject dbo = open(dbClient, "mapDBConcurrencyTest");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            int threadIndex = thread;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    dbo.put(new OrdersString("t" + threadIndex + "u" + i, ORDER_ITEMS));
+                    dbo.put(new OrdersGzip("t" + threadIndex + "u" + i, ORDER_ITEMS));
+                    Assert.assertNotNull(dbo.get("t" + threadIndex + "u" + i, OrdersString.class));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(800, dbo.getIds(OrdersString.class).size());
+        Assert.assertEquals(800, dbo.getIds(OrdersGzip.class).size());
+    }
+
+    @Test
+    public void testTieredClient() {
+
+        MapDBClient coldClient = new MapDBClient("/tmp", "tieredColdTest");
+        TieredDBClient dbClient = new TieredDBClient(coldClient, TieredWritePolicy.WRITE_BACK, true, 16, 0);
+        DBAccessObject dbo = open(dbClient, "tieredColdTest");
+
+        for (int i = 0; i < 64; i++) {
+            dbo.put(new OrdersString("u" + i, ORDER_ITEMS));
+        }
+        dbo.put(new OrdersGzip("u1", ORDER_ITEMS));
+        
+        for (int i = 0; i < 64; i++) {
+            Assert.assertNotNull(dbo.get("u" + i, OrdersString.class));
+        }
+        Assert.assertEquals(1, dbo.get("u1", OrdersGzip.class).getOrderItems().size());
+        Assert.assertEquals(64, dbo.getIds(OrdersString.class).size());
+        Assert.assertNotNull(coldClient.get("tieredColdTest", "ordersGZIP", "u1", EncodingFormat.GZIP_WITH_BASE64));
+
+        dbo.delete("u1", OrdersString.class);
+        Assert.assertNull(dbo.get("u1", OrdersString.class));
+
+        // a flush leaves deleted entries deleted and empties the queue of evicted entries
+        dbo.put(new OrdersString("u64", ORDER_ITEMS));
+        dbo.delete("u64", OrdersString.class);
+        dbClient.flush();
+        Assert.assertNull(coldClient.get("tieredColdTest", "ordersSTRING", "u1", EncodingFormat.STRING));
+        Assert.assertNull(coldClient.get("tieredColdTest", "ordersSTRING", "u64", EncodingFormat.STRING));
+
+        Map<String, Long> statistics = dbClient.getStatistics().getStatistics();
+        Assert.assertEquals(0L, (long) statistics.get("tiered_pending_demotions"));
+        Assert.assertTrue(statistics.get("tiered_demotions") > 0);
+        Assert.assertTrue(statistics.get("tiered_cold_hits") > 0);
+    }
+
+    @Test
+    public void testTieredPromotionRacingDelete() throws Exception {
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Future<?>> deletes = new ArrayList<>();
+        TieredDBClient[] tieredClient = new TieredDBClient[1];
+        MapDBClient coldClient = new MapDBClient("/tmp", "tieredRaceTest") {
+            @Override
+            public Map<String, Object> get(String namespace, String set, String entityId,
+                                           EncodingFormat encodingFormat) {
+                Map<String, Object> fields = super.get(namespace, set, entityId, encodingFormat);
+                // a delete starting between the cold read and the promotion
+                if(deletes.isEmpty()) {
+                    deletes.add(executor.submit(() -> tieredClient[0].delete(namespace, set, entityId)));
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return fields;
+            }
+        };
+        new DBAccessObject(coldClient, "tieredRaceTest").put(new OrdersString("u1", ORDER_ITEMS));
+        tieredClient[0] = new TieredDBClient(coldClient, TieredWritePolicy.WRITE_THROUGH, false, 0, 0);
+        DBAccessObject dbo = open(tieredClient[0], "tieredRaceTest");
+
+        Assert.assertNotNull(dbo.get("u1", OrdersString.class));
+        deletes.get(0).get();
+        executor.shutdown();
+        Assert.assertNull(dbo.get("u1", OrdersString.class));
+    }
+
+    @Test
+    public void testTransactionalClient() {
+
+        MapDBClient groupCommitClient = new MapDBClient(
+            "/tmp", "mapDBGroupCommitTest", 0, MapDBDurabilityMode.TX_GROUP_COMMIT, 0, 10
+        );
+        DBAccessObject groupCommitDbo = open(groupCommitClient, "mapDBGroupCommitTest");
+        for (int i = 0; i < 25; i++) {
+            groupCommitDbo.put(new OrdersString("u" + i, ORDER_ITEMS));
+        }
+        Map<String, Long> statistics = groupCommitClient.getStatistics().getStatistics();
+        Assert.assertEquals(2L, (long) statistics.get("mapDBGroupCommitTest_mapdb_commits"));
+        Assert.assertEquals(5L, (long) statistics.get("mapDBGroupCommitTest_mapdb_pending_writes"));
+
+        // group commits need an interval or a write count, or nothing would ever be committed
+        Assert.assertThrows(IllegalArgumentException.class, () -> new MapDBClient(
+            "/tmp", "mapDBNoGroupCommitTest", 0, MapDBDurabilityMode.TX_GROUP_COMMIT, 0, 0
+        ));
+
+        MapDBClient explicitCommitClient = new MapDBClient(
+            "/tmp", "mapDBExplicitCommitTest", 0, MapDBDurabilityMode.TX_EXPLICIT_COMMIT, 0, 0
+        );
+        DBAccessObject explicitCommitDbo = open(explicitCommitClient, "mapDBExplicitCommitTest");
+        explicitCommitDbo.put(new OrdersString("u1", ORDER_ITEMS));
+        explicitCommitClient.commit();
+        explicitCommitDbo.put(new OrdersString("u2", ORDER_ITEMS));
+        explicitCommitClient.rollback("mapDBExplicitCommitTest");
+        Assert.assertNotNull(explicitCommitDbo.get("u1", OrdersString.class));
+        Assert.assertNull(explicitCommitDbo.get("u2", OrdersString.class));
+    }
+
+    @Test
+    public void testUnitOfWork() {
+
+        MapDBClient dbClient = new MapDBClient(
+            "/tmp", "mapDBUnitOfWorkTest", 0, MapDBDurabilityMode.TX_EXPLICIT_COMMIT, 0, 0
+        );
+        DBAccessObject dbo = open(dbClient, "mapDBUnitOfWorkTest");
+        dbo.put(new OrdersGzip("cart1", ORDER_ITEMS));
+        dbo.put(new OrdersString("u0", ORDER_ITEMS));
+        dbClient.commit();
+
+        // a batch joins the caller's open transaction, pending writes before it included
+        dbo.put(new OrdersString("pending", ORDER_ITEMS));
+        dbo.batch()
+            .put(new OrdersString("u1", ORDER_ITEMS))
+            .delete("cart1", OrdersGzip.class)
+            .commit();
+        Assert.assertNotNull(dbo.get("u1", OrdersString.class));
+        Assert.assertEquals(1L, (long) dbClient.getStatistics().getStatistics().get("mapDBUnitOfWorkTest_mapdb_commits"));
+        dbClient.rollback("mapDBUnitOfWorkTest");
+        Assert.assertNull(dbo.get("pending", OrdersString.class));
+        Assert.assertNull(dbo.get("u1", OrdersString.class));
+        Assert.assertNotNull(dbo.get("cart1", OrdersGzip.class));
+
+        DBUnitOfWork unitOfWork = dbo.batch()
+            .put(new OrdersString("u1", ORDER_ITEMS))
+            .put(Arrays.asList(new OrdersString("u2", ORDER_ITEMS), new OrdersGzip("g1", ORDER_ITEMS)))
+            .delete("cart1", OrdersGzip.class);
+        Assert.assertEquals(4, unitOfWork.size());
+        Assert.assertNotNull(dbo.get("cart1", OrdersGzip.class));
+        unitOfWork.commit();
+        dbClient.commit("mapDBUnitOfWorkTest");
+
+        // written and committed as one transaction
+        Map<String, Long> statistics = dbClient.getStatistics().getStatistics();
+        Assert.assertEquals(2L, (long) statistics.get("mapDBUnitOfWorkTest_mapdb_commits"));
+        dbClient.rollback("mapDBUnitOfWorkTest");
+        Assert.assertNotNull(dbo.get("u2", OrdersString.class));
+        Assert.assertNotNull(dbo.get("g1", OrdersGzip.class));
+        Assert.assertNull(dbo.get("cart1", OrdersGzip.class));
+        Assert.assertThrows(IllegalStateException.class, unitOfWork::commit);
+
+        // group commit stores commit each batch
+        MapDBClient groupCommitClient = new MapDBClient(
+            "/tmp", "mapDBUnitOfWorkGroupTest", 0, MapDBDurabilityMode.TX_GROUP_COMMIT, 0, 1000
+        );
+        DBAccessObject groupCommitDbo = open(groupCommitClient, "mapDBUnitOfWorkGroupTest");
+        groupCommitDbo.batch().put(new OrdersString("u1", ORDER_ITEMS)).commit();
+        Assert.assertEquals(1L, (long) groupCommitClient.getStatistics().getStatistics()
+            .get("mapDBUnitOfWorkGroupTest_mapdb_commits"));
+    }
+
+    @Test
+    public void testSetStorageTypes() {
+
+        Map<String, MapDBSetConfig> setConfigs = new HashMap<>();
+        setConfigs.put("ordersSTRING", MapDBSetConfig.builder()
+            .storageType(MapDBStorageType.MEMORY_SHARDED_HTREE)
+            .shards(4)
+            .maxEntries(64)
+            .build());
+        setConfigs.put("ordersGZIP", MapDBSetConfig.builder()
+            .storageType(MapDBStorageType.HTREE)
+            .build());
+        MapDBClient dbClient = new MapDBClient(
+            "/tmp", "mapDBStorageTypeTest", 0, MapDBDurabilityMode.NO_TX, 0, 0, setConfigs
+        );
+        DBAccessObject dbo = open(dbClient, "mapDBStorageTypeTest");
+
+        for (int i = 0; i < 512; i++) {
+            dbo.put(new OrdersString("u" + i, ORDER_ITEMS));
+            dbo.put(new OrdersGzip("u" + i, ORDER_ITEMS));
+        }
+        Assert.assertEquals(1, dbo.get("u511", OrdersString.class).getOrderItems().size());
+        int cachedEntries = dbo.getIds(OrdersString.class).size();
+        Assert.assertTrue(cachedEntries > 0 && cachedEntries < 512);
+        Assert.assertEquals(512, dbo.getIds(OrdersGzip.class).size());
+        shutdown(dbo);
+
+        // without its config, the set is reopened as the HTREE it is stored as
+        MapDBClient reopenedClient = new MapDBClient("/tmp", "mapDBStorageTypeTest");
+        dbo = open(reopenedClient, "mapDBStorageTypeTest");
+        Assert.assertEquals(512, dbo.getIds(OrdersGzip.class).size());
+        Assert.assertThrows(UnsupportedOperationException.class, () -> reopenedClient.streamIds(
+            "mapDBStorageTypeTest", "ordersGZIP", null, null
+        ));
+        shutdown(dbo);
+
+        // a config that disagrees with the file fails clearly
+        MapDBClient misconfiguredClient = new MapDBClient(
+            "/tmp", "mapDBStorageTypeTest", 0, MapDBDurabilityMode.NO_TX, 0, 0,
+            Map.of("ordersGZIP", MapDBSetConfig.builder().storageType(MapDBStorageType.BTREE).build())
+        );
+        dbo = open(misconfiguredClient, "mapDBStorageTypeTest");
+        Assert.assertThrows(IllegalStateException.class, () -> misconfiguredClient.get(
+            "mapDBStorageTypeTest", "ordersGZIP", "u1", EncodingFormat.GZIP_WITH_BASE64
+        ));
+    }
+
+    @Test
+    public void testRangeScans() {
+
+        MapDBClient dbClient = new MapDBClient("/tmp", "mapDBRangeTest");
+        DBAccessObject dbo = open(dbClient, "mapDBRangeTest");
+
+        for (int day = 10; day < 20; day++) {
+            for (int i = 0; i < 5; i++) {
+                dbo.put(new OrdersString("202401" + day + "-u" + i, ORDER_ITEMS));
+            }
+        }
+        dbo.put(new OrdersGzip("u1", ORDER_ITEMS));
+
+        Assert.assertEquals(15, dbClient.streamIds(
+            "mapDBRangeTest", "ordersSTRING", "20240112", "20240115"
+        ).count());
+        Assert.assertEquals(5, dbClient.streamIdsWithPrefix("mapDBRangeTest", "ordersSTRING", "20240119").count());
+        Assert.assertEquals("20240118-u4", dbClient.streamIds(
+            "mapDBRangeTest", "ordersSTRING", null, "20240119"
+        ).reduce((first, second) -> second).get());
+
+        List<Map.Entry<String, Map<String, Object>>> entities = dbClient.streamWithPrefix(
+            "mapDBRangeTest", "ordersSTRING", "20240110", EncodingFormat.STRING
+        ).collect(Collectors.toList());
+        Assert.assertEquals(5, entities.size());
+        Assert.assertEquals("20240110-u0", entities.get(0).getKey());
+        Assert.assertEquals("20240110-u0", entities.get(0).getValue().get("uId"));
+
+        List<String> allIds = dbo.getIds();
+        Assert.assertEquals(51, allIds.size());
+        Assert.assertTrue(allIds.contains("ordersGZIP$$u1"));
+    }
+
+    @Test
+    public void testParallelScan() {
+
+        MapDBClient dbClient = new MapDBClient("/tmp", "mapDBParallelScanTest");
+        DBAccessObject dbo = open(dbClient, "mapDBParallelScanTest");
+        for (int i = 0; i < 1000; i++) {
+            dbo.put(new OrdersString("u" + i, ORDER_ITEMS));
+        }
+
+        List<ScanRange> ranges = dbClient.getScanRanges("mapDBParallelScanTest", "ordersSTRING", 8);
+        Assert.assertEquals(8, ranges.size());
+        Assert.assertNull(ranges.get(0).getFromId());
+        Assert.assertNull(ranges.get(7).getToId());
+        long rangeEntities = 0;
+        for (ScanRange range : ranges) {
+            List<String> entityIds = new ArrayList<>();
+            dbClient.scan("mapDBParallelScanTest", "ordersSTRING", range, EncodingFormat.STRING,
+                (entityId, fields) -> entityIds.add(entityId));
+            // ranges are split at sampled ids, roughly 125 entities each
+            Assert.assertTrue(entityIds.size() > 0 && entityIds.size() <= 250);
+            rangeEntities += entityIds.size();
+        }
+        Assert.assertEquals(1000, rangeEntities);
+
+        Set<String> scannedIds = ConcurrentHashMap.newKeySet();
+        Assert.assertEquals(1000, dbo.scan(OrdersString.class, 4, order -> scannedIds.add(order.getUserId())));
+        Assert.assertEquals(1000, scannedIds.size());
+    }
+
+    @Test
+    public void testProfilingClient() {
+
+        ProfilingDBClient dbClient = new ProfilingDBClient(new MapDBClient("/tmp", "mapDBProfilingTest"), 1, 3, 4, 256);
+        DBAccessObject dbo = open(dbClient, "mapDBProfilingTest");
+        for (int i = 0; i < 50; i++) {
+            dbo.put(new OrdersString("u" + i, ORDER_ITEMS));
+        }
+        for (int i = 0; i < 500; i++) {
+            dbo.get("u" + (i % 2 == 0 ? 7 : i % 50), OrdersString.class);
+        }
+
+        List<TopKSketch.HotKey> hotKeys = dbClient.getProfiles().get(0).getHotKeys();
+        Assert.assertEquals(3, hotKeys.size());
+        Assert.assertEquals("u7", hotKeys.get(0).getKey());
+        Assert.assertTrue(hotKeys.get(0).getCount() >= 251);
+
+        Map<String, Long> statistics = dbClient.getStatistics().getStatistics();
+        Assert.assertEquals(500L, (long) statistics.get("mapDBProfilingTest_ordersSTRING_reads"));
+        Assert.assertEquals(50L, (long) statistics.get("mapDBProfilingTest_ordersSTRING_writes"));
+        Assert.assertEquals(9090L, (long) statistics.get("mapDBProfilingTest_ordersSTRING_read_share_bps"));
+        Assert.assertTrue(statistics.get("mapDBProfilingTest_ordersSTRING_value_size_max_bytes") > 0);
+        Assert.assertEquals(hotKeys.get(0).getCount(), (long) statistics.get("mapDBProfilingTest_ordersSTRING_hot_key_1"));
+        Assert.assertTrue(hotKeys.get(1).getCount() >= hotKeys.get(2).getCount());
+        Assert.assertEquals("u7", dbClient.getHotKeys("mapDBProfilingTest", "ordersSTRING").get(0).getKey());
+
+        CollectorRegistry registry = new CollectorRegistry();
+        new ProfilingStatsCollector(dbClient, "profiling_test", registry, true).update();
+        Assert.assertNotNull(registry.getSampleValue(
+            "jdatalayer_profiling_test_hot_keys",
+            new String[] {"namespace", "set", "rank", "key"},
+            new String[] {"mapDBProfilingTest", "ordersSTRING", "1", "u7"}
+        ));
+        Assert.assertTrue(dbClient.getProfiles().get(0).getHotKeys().isEmpty());
+    }
 }
 
 @Getter
@@ -2,14 +2,22 @@ package com.adtsw.jdatalayer.rocksdb;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 
 import org.apache.commons.io.FileUtils;
 import org.rocksdb.BlockBasedTableConfig;
@@ -20,37 +28,72 @@ import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ColumnFamilyOptions;
 import org.rocksdb.CompactionStyle;
 import org.rocksdb.CompressionType;
+import org.rocksdb.DataBlockIndexType;
 import org.rocksdb.DBOptions;
 import org.rocksdb.Env;
 import org.rocksdb.Filter;
+import org.rocksdb.IndexType;
 import org.rocksdb.LRUCache;
+import org.rocksdb.LiveFileMetaData;
 import org.rocksdb.MemoryUsageType;
 import org.rocksdb.MemoryUtil;
 import org.rocksdb.Options;
+import org.rocksdb.Range;
 import org.rocksdb.RateLimiter;
 import org.rocksdb.ReadOptions;
+import org.rocksdb.ReadTier;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.SizeApproximationFlag;
 import org.rocksdb.SkipListMemTableConfig;
+import org.rocksdb.Slice;
 import org.rocksdb.SstFileManager;
 import org.rocksdb.Statistics;
+import org.rocksdb.StatsLevel;
+import org.rocksdb.Status;
+import org.rocksdb.VectorMemTableConfig;
 import org.rocksdb.WriteOptions;
+import org.rocksdb.WriteStallCondition;
 import org.rocksdb.util.SizeUnit;
 
 import com.adtsw.jdatalayer.core.client.AbstractDBClient;
 import com.adtsw.jdatalayer.core.client.DBStats;
+import com.adtsw.jdatalayer.core.metrics.DBOperation;
+import com.adtsw.jdatalayer.core.metrics.OperationPhase;
+import com.adtsw.jdatalayer.rocksdb.buffers.DirectBuffers;
+import com.adtsw.jdatalayer.rocksdb.compaction.CompactionManager;
+import com.adtsw.jdatalayer.rocksdb.keys.KeyEncoder;
+import com.adtsw.jdatalayer.rocksdb.metrics.RocksDBStatsCollector;
+import com.adtsw.jdatalayer.rocksdb.metrics.SlowOperationTracer;
+import com.adtsw.jdatalayer.rocksdb.stall.WriteAdmissionController;
+import com.adtsw.jdatalayer.rocksdb.stall.WriteStallException;
+import com.adtsw.jdatalayer.rocksdb.warmup.CacheWarmer;
+import com.adtsw.jdatalayer.rocksdb.warmup.HotKeyTracker;
+import com.adtsw.jdatalayer.rocksdb.warmup.WarmupProgress;
+import com.adtsw.jdatalayer.rocksdb.warmup.WarmupRange;
+
+import io.prometheus.client.CollectorRegistry;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public abstract class RocksDBClient extends AbstractDBClient {
 
+    /**
+     * Tickers and histograms without per-operation timers, see {@link #setStatsLevel(String, StatsLevel)}
+     */
+    protected static final StatsLevel DEFAULT_STATS_LEVEL = StatsLevel.EXCEPT_DETAILED_TIMERS;
+
+    private static final int DIRECT_KEY_BUFFER_SIZE = 256;
+
     private final Map<String, String> namespaceStorageLocations;
     private final Map<String, RocksDB> namespaces;
     private final Map<String, ReentrantReadWriteLock> locks;
     private final Map<String, Boolean> isDBOpen;
     private final Map<String, ReadOptions> readOptions;
+    private final Map<String, ReadOptions> cacheOnlyReadOptions;
     private final Map<String, WriteOptions> writeOptions;
+    private final Map<String, WriteOptions> noSlowdownWriteOptions;
     private final Map<String, Filter> bloomFilters;
     private final Map<String, LRUCache> blockCaches;
     private final Map<String, LRUCache> compressedBlockCaches;
@@ -59,7 +102,26 @@ public abstract class RocksDBClient extends AbstractDBClient {
     private final Map<String, List<ColumnFamilyDescriptor>> cfDescriptors;
     private final Map<String, List<ColumnFamilyHandle>> cfHandles;
     private final Map<String, Map<String, ColumnFamilyHandle>> cfNameToHandleMap;
+    private final Map<String, RocksDBOpenMode> openModes;
+    private final Map<String, RocksDBClientOptions> clientOptions;
+    private final Map<String, KeyEncoder> keyEncoders;
+    private final Map<String, CompactionManager> compactionManagers;
+    private final Map<String, WriteAdmissionController> writeAdmissionControllers;
+    private final Map<String, HotKeyTracker> hotKeyTrackers;
+    private final Map<String, CacheWarmer> cacheWarmers;
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Polls change feed subscriptions, apart from the scheduler so that slow
+     * subscribers do not hold up catch-up and write stall polling
+     */
+    private final ScheduledExecutorService changeFeedScheduler;
+    private final DirectBuffers directBuffers;
+    private volatile SlowOperationTracer slowOperationTracer;
     
+    /**
+     * @deprecated use {@link #RocksDBClient(String, String, RocksDBClientOptions)}
+     */
+    @Deprecated
     public RocksDBClient(String baseStorageLocation, String namespace,
                          int blockCacheCapacityKB, int blockCacheCompressedCapacityKB,
                          int rowCacheCapacityKB, int rateBytesPerSecond, 
@@ -67,6 +129,53 @@ public abstract class RocksDBClient extends AbstractDBClient {
                          CompressionType compressionType, CompactionStyle compactionStyle, int maxAllowedSpaceUsageKB,
                          int maxBackgroundJobs, boolean fillReadCache, boolean disableWAL, boolean syncOnWrite) {
 
+        this(baseStorageLocation, namespace, blockCacheCapacityKB, blockCacheCompressedCapacityKB, rowCacheCapacityKB,
+                rateBytesPerSecond, maxWriteBuffers, writeBufferSizeKB, maxTotalWalSizeKB, compressionType,
+                compactionStyle, maxAllowedSpaceUsageKB, maxBackgroundJobs, fillReadCache, disableWAL, syncOnWrite,
+                RocksDBOpenMode.READ_WRITE, null, 0, 0);
+    }
+
+    /**
+     * @deprecated use {@link #RocksDBClient(String, String, RocksDBClientOptions)}
+     */
+    @Deprecated
+    protected RocksDBClient(String baseStorageLocation, String namespace,
+                            int blockCacheCapacityKB, int blockCacheCompressedCapacityKB,
+                            int rowCacheCapacityKB, int rateBytesPerSecond, 
+                            int maxWriteBuffers, int writeBufferSizeKB, int maxTotalWalSizeKB,
+                            CompressionType compressionType, CompactionStyle compactionStyle, int maxAllowedSpaceUsageKB,
+                            int maxBackgroundJobs, boolean fillReadCache, boolean disableWAL, boolean syncOnWrite,
+                            RocksDBOpenMode openMode, String secondaryStorageLocation, long catchUpIntervalMs,
+                            long walTtlSeconds) {
+
+        this(baseStorageLocation, namespace, RocksDBClientOptions.builder()
+            .blockCacheCapacityKB(blockCacheCapacityKB)
+            .blockCacheCompressedCapacityKB(blockCacheCompressedCapacityKB)
+            .rowCacheCapacityKB(rowCacheCapacityKB)
+            .rateBytesPerSecond(rateBytesPerSecond)
+            .maxWriteBuffers(maxWriteBuffers)
+            .writeBufferSizeKB(writeBufferSizeKB)
+            .maxTotalWalSizeKB(maxTotalWalSizeKB)
+            .compressionType(compressionType)
+            .compactionStyle(compactionStyle)
+            .maxAllowedSpaceUsageKB(maxAllowedSpaceUsageKB)
+            .maxBackgroundJobs(maxBackgroundJobs)
+            .fillReadCache(fillReadCache)
+            .disableWAL(disableWAL)
+            .syncOnWrite(syncOnWrite)
+            .openMode(openMode)
+            .secondaryStorageLocation(secondaryStorageLocation)
+            .catchUpIntervalMs(catchUpIntervalMs)
+            .walTtlSeconds(walTtlSeconds)
+            .build());
+    }
+
+    /**
+     * @param clientOptions settings of the namespace, usually built from a
+     * {@link RocksDBTuningProfile}, see {@link RocksDBClientOptions}
+     */
+    protected RocksDBClient(String baseStorageLocation, String namespace, RocksDBClientOptions clientOptions) {
+
         initDB(baseStorageLocation);
 
         this.namespaceStorageLocations = new HashMap<>();
@@ -74,7 +183,9 @@ public abstract class RocksDBClient extends AbstractDBClient {
         this.locks = new HashMap<>();
         this.isDBOpen = new HashMap<>();
         this.readOptions = new HashMap<>();
+        this.cacheOnlyReadOptions = new HashMap<>();
         this.writeOptions = new HashMap<>();
+        this.noSlowdownWriteOptions = new HashMap<>();
         this.bloomFilters = new HashMap<>();
         this.blockCaches = new HashMap<>();
         this.compressedBlockCaches = new HashMap<>();
@@ -83,32 +194,72 @@ public abstract class RocksDBClient extends AbstractDBClient {
         this.cfDescriptors = new HashMap<>();
         this.cfHandles = new HashMap<>();
         this.cfNameToHandleMap = new HashMap<>();
+        this.openModes = new HashMap<>();
+        this.clientOptions = new HashMap<>();
+        this.keyEncoders = new HashMap<>();
+        this.compactionManagers = new HashMap<>();
+        this.writeAdmissionControllers = new HashMap<>();
+        this.hotKeyTrackers = new HashMap<>();
+        this.cacheWarmers = new HashMap<>();
+        this.directBuffers = new DirectBuffers(
+            DIRECT_KEY_BUFFER_SIZE, (int) (clientOptions.getDirectBufferSizeKB() * SizeUnit.KB),
+            (int) (clientOptions.getDirectBufferMaxRetainedKB() * SizeUnit.KB)
+        );
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rocksdb-" + namespace + "-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.changeFeedScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rocksdb-" + namespace + "-changefeed");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        initNamespace(baseStorageLocation, namespace, clientOptions);
+        initWarmup(namespace, clientOptions);
+
+        long catchUpIntervalMs = clientOptions.getCatchUpIntervalMs();
+        if(clientOptions.getOpenMode() == RocksDBOpenMode.SECONDARY && catchUpIntervalMs > 0) {
+            this.scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    tryCatchUpWithPrimary(namespace);
+                } catch (Exception e) {
+                    log.warn("Error catching up with primary for namespace {}. message: '{}'", namespace, e.getMessage());
+                }
+            }, catchUpIntervalMs, catchUpIntervalMs, TimeUnit.MILLISECONDS);
+        }
 
-        initNamespace(baseStorageLocation, namespace, blockCacheCapacityKB, blockCacheCompressedCapacityKB,
-                rowCacheCapacityKB, rateBytesPerSecond, maxWriteBuffers, writeBufferSizeKB, maxTotalWalSizeKB,
-                compressionType, compactionStyle, maxAllowedSpaceUsageKB, maxBackgroundJobs, fillReadCache, 
-                disableWAL, syncOnWrite);
+        WriteAdmissionController writeAdmissionController = this.writeAdmissionControllers.get(namespace);
+        long writeStallPollIntervalMs = clientOptions.getWriteStallPollIntervalMs();
+        if(writeAdmissionController != null && writeStallPollIntervalMs > 0
+            && clientOptions.getWriteAdmissionPolicy() != RocksDBWriteAdmissionPolicy.BLOCK) {
+            this.scheduler.scheduleWithFixedDelay(
+                writeAdmissionController::refresh, 0, writeStallPollIntervalMs, TimeUnit.MILLISECONDS
+            );
+        }
     }
 
-    private void initNamespace(String baseStorageLocation, String namespace, int blockCacheCapacityKB,
-            int blockCacheCompressedCapacityKB, int rowCacheCapacityKB, int rateBytesPerSecond, int maxWriteBuffers,
-            int writeBufferSizeKB, int maxTotalWalSizeKB, CompressionType compressionType,
-            CompactionStyle compactionStyle, int maxAllowedSpaceUsageKB, int maxBackgroundJobs, boolean fillReadCache,
-            boolean disableWAL, boolean syncOnWrite) {
+    private void initNamespace(String baseStorageLocation, String namespace, RocksDBClientOptions clientOptions) {
 
         final Options options = new Options();
+        RocksDBOpenMode openMode = clientOptions.getOpenMode();
+        String secondaryStorageLocation = clientOptions.getSecondaryStorageLocation();
 
         String namespaceStorageLocation = baseStorageLocation + "/" + namespace;
         ReadOptions namespaceReadOptions = new ReadOptions();
         WriteOptions namespaceWriteOptions = new WriteOptions();
         Statistics namespaceStats = new Statistics();
-        BloomFilter namespaceBloomFilter = new BloomFilter(10);
-        LRUCache namespaceBlockCache = new LRUCache(blockCacheCapacityKB * SizeUnit.KB, 10);
-        LRUCache namespaceBlockCacheCompressed = new LRUCache(blockCacheCompressedCapacityKB * SizeUnit.KB, 10);
-        LRUCache namespaceRowCache = new LRUCache(rowCacheCapacityKB * SizeUnit.KB, 10);
+        namespaceStats.setStatsLevel(DEFAULT_STATS_LEVEL);
+        BloomFilter namespaceBloomFilter = clientOptions.getBloomBitsPerKey() > 0 
+            ? new BloomFilter(clientOptions.getBloomBitsPerKey()) : null;
+        LRUCache namespaceBlockCache = new LRUCache(clientOptions.getBlockCacheCapacityKB() * SizeUnit.KB, 10);
+        // no compressed block cache or row cache at all rather than empty ones when their capacity is 0
+        LRUCache namespaceBlockCacheCompressed = clientOptions.getBlockCacheCompressedCapacityKB() > 0
+            ? new LRUCache(clientOptions.getBlockCacheCompressedCapacityKB() * SizeUnit.KB, 10) : null;
+        LRUCache namespaceRowCache = clientOptions.getRowCacheCapacityKB() > 0
+            ? new LRUCache(clientOptions.getRowCacheCapacityKB() * SizeUnit.KB, 10) : null;
 
-        ColumnFamilyDescriptor defaultCFDescriptor = createCFDesc(new String(RocksDB.DEFAULT_COLUMN_FAMILY));
-        List<ColumnFamilyDescriptor> namespaceCFDescriptors = Arrays.asList(defaultCFDescriptor);
         List<ColumnFamilyHandle> namespaceCFHandles = new ArrayList<>();
         Map<String, ColumnFamilyHandle> namespaceCFNameToHandleMap = new HashMap<>();
 
@@ -120,34 +271,58 @@ public abstract class RocksDBClient extends AbstractDBClient {
         this.blockCaches.put(namespace, namespaceBlockCache);
         this.compressedBlockCaches.put(namespace, namespaceBlockCacheCompressed);
         this.rowCaches.put(namespace, namespaceRowCache);
-        this.cfDescriptors.put(namespace, namespaceCFDescriptors);
         this.cfHandles.put(namespace, namespaceCFHandles);
         this.cfNameToHandleMap.put(namespace, namespaceCFNameToHandleMap);
+        this.openModes.put(namespace, openMode);
+        this.clientOptions.put(namespace, clientOptions);
+        this.keyEncoders.put(namespace, new KeyEncoder(clientOptions.getKeyFormats()));
 
-        setBasicOptions(
-            options, namespaceStats,
-            maxWriteBuffers, writeBufferSizeKB, maxTotalWalSizeKB,
-            compressionType, compactionStyle, maxBackgroundJobs
+        setBasicOptions(options, namespaceStats, clientOptions);
+        setReadWriteOptions(namespaceReadOptions, namespaceWriteOptions, clientOptions);
+        this.cacheOnlyReadOptions.put(
+            namespace, new ReadOptions(namespaceReadOptions).setReadTier(ReadTier.BLOCK_CACHE_TIER)
         );
-
-        setReadWriteOptions(namespaceReadOptions, namespaceWriteOptions, fillReadCache, disableWAL, syncOnWrite);
-        setLSMOptions(options);
-        setMemTableOptions(options);
-        setTableFormatOptions(options, namespaceBloomFilter, namespaceBlockCache, namespaceBlockCacheCompressed);
-        setFileManagerOptions(maxAllowedSpaceUsageKB, options);
-        setRateLimitOptions(rateBytesPerSecond, options);
+        this.noSlowdownWriteOptions.put(namespace, new WriteOptions(namespaceWriteOptions).setNoSlowdown(true));
+        setLSMOptions(options, clientOptions);
+        setBlobOptions(options, clientOptions);
+        setMemTableOptions(options, clientOptions.getMemTableType());
+        setTableFormatOptions(options, clientOptions, 
+            namespaceBloomFilter, namespaceBlockCache, namespaceBlockCacheCompressed);
+        setFileManagerOptions(clientOptions.getMaxAllowedSpaceUsageKB(), options);
+        setRateLimitOptions(clientOptions.getRateBytesPerSecond(), options);
         setRowCacheOptions(options, namespaceRowCache);
+        setOpenModeOptions(options, openMode);
+        setWalRetentionOptions(options, clientOptions.getWalTtlSeconds());
+        WriteAdmissionController writeAdmissionController = createWriteAdmissionController(
+            namespace, options, clientOptions
+        );
+
+        // column family settings (memtable, LSM, table format, blobs) are taken from the descriptors
+        ColumnFamilyDescriptor defaultCFDescriptor = createCFDesc(new String(RocksDB.DEFAULT_COLUMN_FAMILY), options);
+        List<ColumnFamilyDescriptor> namespaceCFDescriptors = Arrays.asList(defaultCFDescriptor);
+        this.cfDescriptors.put(namespace, namespaceCFDescriptors);
 
         try {
             File baseDir = new File(namespaceStorageLocation);
-            RocksDB defaultNamespace = RocksDB.open(
-                new DBOptions(options), baseDir.getAbsolutePath(), 
-                namespaceCFDescriptors, namespaceCFHandles
+            RocksDB defaultNamespace = openDB(
+                options, baseDir.getAbsolutePath(), namespaceCFDescriptors, namespaceCFHandles,
+                openMode, secondaryStorageLocation == null ? null : secondaryStorageLocation + "/" + namespace
             );
             namespaceCFNameToHandleMap.put(
                 new String(RocksDB.DEFAULT_COLUMN_FAMILY), namespaceCFHandles.get(0)
             );
             this.namespaces.put(namespace, defaultNamespace);
+            if(writeAdmissionController != null) {
+                writeAdmissionController.attach(defaultNamespace);
+                this.writeAdmissionControllers.put(namespace, writeAdmissionController);
+            }
+            if(openMode.isWritable()) {
+                this.compactionManagers.put(namespace, new CompactionManager(
+                    namespace, defaultNamespace, clientOptions.getCompactAfterDeletes(),
+                    clientOptions.isCompactAfterRangeDelete(),
+                    clientOptions.getOffPeakCompactionStart(), clientOptions.getOffPeakCompactionEnd()
+                ));
+            }
             this.locks.put(namespace, new ReentrantReadWriteLock());
             this.isDBOpen.put(namespace, true);
         } catch (RocksDBException e) {
@@ -156,8 +331,130 @@ public abstract class RocksDBClient extends AbstractDBClient {
         }
     }
 
-    private ColumnFamilyDescriptor createCFDesc(String cfName) {
-        ColumnFamilyOptions op = new ColumnFamilyOptions();
+    /**
+     * Starts reading the hot keys saved at the last shutdown and the warmup
+     * sets into the caches, and tracks the hot keys to save at the next
+     * shutdown of a writable namespace
+     */
+    private void initWarmup(String namespace, RocksDBClientOptions clientOptions) {
+
+        List<byte[]> hotKeys = Collections.emptyList();
+        if(clientOptions.getHotKeysToPersist() > 0) {
+            hotKeys = HotKeyTracker.load(getHotKeysFile(namespace));
+            if(clientOptions.getOpenMode().isWritable()) {
+                this.hotKeyTrackers.put(namespace, new HotKeyTracker(clientOptions.getHotKeysToPersist()));
+            }
+        }
+        List<WarmupRange> warmupRanges = getWarmupRanges(namespace, clientOptions.getWarmupSets());
+        if(hotKeys.isEmpty() && warmupRanges.isEmpty()) {
+            return;
+        }
+        CacheWarmer cacheWarmer = new CacheWarmer(
+            namespace, getDB(namespace), getLock(namespace), () -> isDBOpen(namespace), hotKeys, warmupRanges,
+            clientOptions.getWarmupRateBytesPerSecond(), clientOptions.getWarmupReadaheadSizeKB() * SizeUnit.KB
+        );
+        this.cacheWarmers.put(namespace, cacheWarmer);
+        cacheWarmer.start();
+    }
+
+    /**
+     * Key ranges holding the given sets, read sequentially at warmup. Called
+     * from the constructor, implementations must not depend on their own state
+     */
+    protected List<WarmupRange> getWarmupRanges(String namespace, List<String> sets) {
+        return Collections.emptyList();
+    }
+
+    private File getHotKeysFile(String namespace) {
+        return new File(this.namespaceStorageLocations.get(namespace), HotKeyTracker.FILE_NAME);
+    }
+
+    /**
+     * Counts a read of the key towards the hot keys saved at shutdown
+     */
+    protected void recordRead(String namespace, byte[] key) {
+        HotKeyTracker hotKeyTracker = this.hotKeyTrackers.get(namespace);
+        if(hotKeyTracker != null) {
+            hotKeyTracker.record(key);
+        }
+    }
+
+    /**
+     * Counts a read of the key, from the buffer's position to its limit, towards the hot keys saved at shutdown
+     */
+    protected void recordRead(String namespace, ByteBuffer key) {
+        HotKeyTracker hotKeyTracker = this.hotKeyTrackers.get(namespace);
+        if(hotKeyTracker != null) {
+            hotKeyTracker.record(key);
+        }
+    }
+
+    private RocksDB openDB(Options options, String path, List<ColumnFamilyDescriptor> namespaceCFDescriptors,
+                           List<ColumnFamilyHandle> namespaceCFHandles, RocksDBOpenMode openMode,
+                           String secondaryPath) throws RocksDBException {
+
+        switch (openMode) {
+            case READ_ONLY:
+                return RocksDB.openReadOnly(new DBOptions(options), path, namespaceCFDescriptors, namespaceCFHandles);
+            case SECONDARY:
+                if(secondaryPath == null) {
+                    throw new IllegalArgumentException("Secondary storage location is required for SECONDARY mode");
+                }
+                initDB(secondaryPath);
+                return RocksDB.openAsSecondary(
+                    new DBOptions(options), path, secondaryPath, namespaceCFDescriptors, namespaceCFHandles
+                );
+            default:
+                return RocksDB.open(new DBOptions(options), path, namespaceCFDescriptors, namespaceCFHandles);
+        }
+    }
+
+    /**
+     * Secondary instances need all table files kept open, as the primary may
+     * delete files that the secondary still refers to until it catches up.
+     */
+    private void setOpenModeOptions(Options options, RocksDBOpenMode openMode) {
+        if(!openMode.isWritable()) {
+            options.setCreateIfMissing(false)
+                .setCreateMissingColumnFamilies(false);
+        }
+        if(openMode == RocksDBOpenMode.SECONDARY) {
+            options.setMaxOpenFiles(-1);
+        }
+    }
+
+    /**
+     * --rocksdb.wal-ttl-seconds Obsolete WAL files are moved to the archive
+     * and deleted once they are older than this, instead of being deleted as
+     * soon as their memtables are flushed. Needed for getUpdatesSince to
+     * replay writes that are already flushed.
+     */
+    private void setWalRetentionOptions(Options options, long walTtlSeconds) {
+        if(walTtlSeconds > 0) {
+            options.setWalTtlSeconds(walTtlSeconds);
+        }
+    }
+
+    /**
+     * Writable namespaces follow their write stall condition through an event
+     * listener, which has to be registered before open
+     */
+    private WriteAdmissionController createWriteAdmissionController(String namespace, Options options,
+                                                                    RocksDBClientOptions clientOptions) {
+        if(!clientOptions.getOpenMode().isWritable()) {
+            return null;
+        }
+        WriteAdmissionController writeAdmissionController = new WriteAdmissionController(
+            namespace, clientOptions.getWriteAdmissionPolicy(), clientOptions.getWriteAdmissionMaxWaitMs(),
+            clientOptions.getMaxPendingWrites(), clientOptions.getMaxPendingWritesWhenDelayed(),
+            clientOptions.getMaxPendingCompactionBytesKB() * SizeUnit.KB
+        );
+        options.setListeners(Arrays.asList(writeAdmissionController.getListener()));
+        return writeAdmissionController;
+    }
+
+    private ColumnFamilyDescriptor createCFDesc(String cfName, Options options) {
+        ColumnFamilyOptions op = new ColumnFamilyOptions(options);
         return new ColumnFamilyDescriptor(cfName.getBytes(), op);
     }
 
@@ -178,20 +475,47 @@ public abstract class RocksDBClient extends AbstractDBClient {
      * TableFormatConfig should be properly set and passed into Options via
      * Options.setTableFormatConfig() and open the db using that Options.
      */
-    private void setTableFormatOptions(Options options, 
+    private void setTableFormatOptions(Options options, RocksDBClientOptions clientOptions,
                                        Filter bloomFilter, LRUCache blockCache, LRUCache blockCacheCompressed) {
     
-        options.setTableFormatConfig(new BlockBasedTableConfig()
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig()
             .setBlockCache(blockCache)
-            .setFilterPolicy(bloomFilter)
-            .setBlockSizeDeviation(5)
-            .setBlockRestartInterval(10)
-            .setCacheIndexAndFilterBlocks(true)
-            .setBlockCacheCompressed(blockCacheCompressed));
+            .setBlockSizeDeviation(clientOptions.getBlockSizeDeviation())
+            .setBlockRestartInterval(clientOptions.getBlockRestartInterval())
+            .setCacheIndexAndFilterBlocks(clientOptions.isCacheIndexAndFilterBlocks())
+            .setPinL0FilterAndIndexBlocksInCache(clientOptions.isPinL0FilterAndIndexBlocksInCache());
+        if(blockCacheCompressed != null) {
+            tableConfig.setBlockCacheCompressed(blockCacheCompressed);
+        }
+        if(bloomFilter != null) {
+            tableConfig.setFilterPolicy(bloomFilter);
+        }
+        if(clientOptions.getBlockSizeKB() > 0) {
+            tableConfig.setBlockSize(clientOptions.getBlockSizeKB() * SizeUnit.KB);
+        }
+        if(clientOptions.isDataBlockHashIndex()) {
+            tableConfig.setDataBlockIndexType(DataBlockIndexType.kDataBlockBinaryAndHash)
+                .setDataBlockHashTableUtilRatio(clientOptions.getDataBlockHashTableUtilRatio());
+        }
+        if(clientOptions.isPartitionedIndexAndFilters()) {
+            tableConfig.setIndexType(IndexType.kTwoLevelIndexSearch)
+                .setPartitionFilters(bloomFilter != null)
+                .setPinTopLevelIndexAndFilter(clientOptions.isPinTopLevelIndexAndFilter())
+                .setCacheIndexAndFilterBlocksWithHighPriority(true);
+            if(clientOptions.getMetadataBlockSizeKB() > 0) {
+                tableConfig.setMetadataBlockSize(clientOptions.getMetadataBlockSizeKB() * SizeUnit.KB);
+            }
+        }
+        tableConfig.setWholeKeyFiltering(clientOptions.isWholeKeyFiltering())
+            .setOptimizeFiltersForMemory(clientOptions.isOptimizeFiltersForMemory());
+        options.setTableFormatConfig(tableConfig)
+            .setOptimizeFiltersForHits(clientOptions.isOptimizeFiltersForHits());
     }
 
     private void setRowCacheOptions(Options options, Cache rowCache) {
-        options.setRowCache(rowCache);
+        if(rowCache != null) {
+            options.setRowCache(rowCache);
+        }
     }
 
     /**
@@ -203,9 +527,13 @@ public abstract class RocksDBClient extends AbstractDBClient {
      * MemTableConfig should be properly set and passed into Options via
      * Options.setMemTableFactory() and open the db using that Options.
      */
-    private void setMemTableOptions(Options options) {
-        options.setMemTableConfig(
-            new SkipListMemTableConfig());
+    private void setMemTableOptions(Options options, RocksDBMemTableType memTableType) {
+        if(memTableType == RocksDBMemTableType.VECTOR) {
+            options.setMemTableConfig(new VectorMemTableConfig())
+                .setAllowConcurrentMemtableWrite(false);
+        } else {
+            options.setMemTableConfig(new SkipListMemTableConfig());
+        }
     }
 
     /**
@@ -232,29 +560,35 @@ public abstract class RocksDBClient extends AbstractDBClient {
      * second) if we are writing to the last in-memory buffer allowed and we allow
      * more than 3 buffers. Default: 16MiB/s.
      */
-    private void setBasicOptions(Options options, Statistics stats,
-                                 int maxWriteBuffers, int writeBufferSizeKB, int maxTotalWalSizeKB,
-                                 CompressionType compressionType, CompactionStyle compactionStyle,
-                                 int maxBackgroundJobs) {
+    private void setBasicOptions(Options options, Statistics stats, RocksDBClientOptions clientOptions) {
         options.setCreateIfMissing(true)
             .setCreateMissingColumnFamilies(true)
             .setStatistics(stats)
-            .setWriteBufferSize(writeBufferSizeKB * SizeUnit.KB)
-            .setMaxWriteBufferNumber(maxWriteBuffers)
-            .setMaxTotalWalSize(maxTotalWalSizeKB * SizeUnit.KB)
-            .setMaxBackgroundJobs(maxBackgroundJobs)
-            .setCompressionType(compressionType)
-            .setCompactionStyle(compactionStyle)
+            .setWriteBufferSize(clientOptions.getWriteBufferSizeKB() * SizeUnit.KB)
+            .setMaxWriteBufferNumber(clientOptions.getMaxWriteBuffers())
+            .setMaxTotalWalSize(clientOptions.getMaxTotalWalSizeKB() * SizeUnit.KB)
+            .setMaxBackgroundJobs(clientOptions.getMaxBackgroundJobs())
+            .setCompressionType(clientOptions.getCompressionType())
+            .setCompactionStyle(clientOptions.getCompactionStyle())
             .setMaxLogFileSize(10485760) // 10 * 1024 * 1024 = 10 MB
             .setKeepLogFileNum(2);
+        if(clientOptions.getMaxOpenFiles() != 0) {
+            options.setMaxOpenFiles(clientOptions.getMaxOpenFiles());
+        }
+        if(clientOptions.getCompactionReadaheadSizeKB() > 0) {
+            options.setCompactionReadaheadSize(clientOptions.getCompactionReadaheadSizeKB() * SizeUnit.KB);
+        }
     }
 
     private void setReadWriteOptions(ReadOptions namespaceReadOptions, WriteOptions namespaceWriteOptions, 
-        boolean fillReadCache, boolean disableWAL, boolean syncOnWrite) {
-        namespaceReadOptions.setFillCache(fillReadCache);
-        namespaceReadOptions.setVerifyChecksums(false);
-        namespaceWriteOptions.setDisableWAL(disableWAL);
-        namespaceWriteOptions.setSync(syncOnWrite);
+        RocksDBClientOptions clientOptions) {
+        namespaceReadOptions.setFillCache(clientOptions.isFillReadCache());
+        namespaceReadOptions.setVerifyChecksums(clientOptions.isVerifyChecksums());
+        if(clientOptions.getReadaheadSizeKB() > 0) {
+            namespaceReadOptions.setReadaheadSize(clientOptions.getReadaheadSizeKB() * SizeUnit.KB);
+        }
+        namespaceWriteOptions.setDisableWAL(clientOptions.isDisableWAL());
+        namespaceWriteOptions.setSync(clientOptions.isSyncOnWrite());
     }
 
     /**
@@ -292,11 +626,44 @@ public abstract class RocksDBClient extends AbstractDBClient {
      * --rocksdb.level0-stop-trigger When this many files accumulate in level-0,
      * writes will be stopped to allow compaction to catch up. Default: 36.
      */
-    private void setLSMOptions(Options options) {
-        options.setNumLevels(7)
-            .setLevel0FileNumCompactionTrigger(2)
-            .setLevel0SlowdownWritesTrigger(10)
-            .setLevel0StopWritesTrigger(36);
+    private void setLSMOptions(Options options, RocksDBClientOptions clientOptions) {
+        options.setNumLevels(clientOptions.getNumLevels())
+            .setLevel0FileNumCompactionTrigger(clientOptions.getLevel0FileNumCompactionTrigger())
+            .setLevel0SlowdownWritesTrigger(clientOptions.getLevel0SlowdownWritesTrigger())
+            .setLevel0StopWritesTrigger(clientOptions.getLevel0StopWritesTrigger())
+            .setLevelCompactionDynamicLevelBytes(clientOptions.isDynamicLevelBytes())
+            .setMaxBytesForLevelMultiplier(clientOptions.getMaxBytesForLevelMultiplier());
+        if(clientOptions.getMaxBytesForLevelBaseKB() > 0) {
+            options.setMaxBytesForLevelBase(clientOptions.getMaxBytesForLevelBaseKB() * SizeUnit.KB);
+        }
+        if(clientOptions.getTargetFileSizeBaseKB() > 0) {
+            options.setTargetFileSizeBase(clientOptions.getTargetFileSizeBaseKB() * SizeUnit.KB);
+        }
+    }
+
+    /**
+     * Integrated BlobDB, values of at least min blob size are written to blob
+     * files at flush, and compactions only rewrite the index entries referring
+     * to them. Blob garbage collection relocates the live blobs of the oldest
+     * blob files during compaction.
+     */
+    private void setBlobOptions(Options options, RocksDBClientOptions clientOptions) {
+        if(!clientOptions.isEnableBlobFiles()) {
+            return;
+        }
+        options.setEnableBlobFiles(true)
+            .setMinBlobSize(clientOptions.getMinBlobSizeBytes())
+            .setBlobCompressionType(clientOptions.getBlobCompressionType())
+            .setEnableBlobGarbageCollection(clientOptions.isEnableBlobGarbageCollection())
+            .setBlobGarbageCollectionAgeCutoff(clientOptions.getBlobGarbageCollectionAgeCutoff())
+            .setBlobGarbageCollectionForceThreshold(clientOptions.getBlobGarbageCollectionForceThreshold())
+            .setBlobFileStartingLevel(clientOptions.getBlobFileStartingLevel());
+        if(clientOptions.getBlobFileSizeKB() > 0) {
+            options.setBlobFileSize(clientOptions.getBlobFileSizeKB() * SizeUnit.KB);
+        }
+        if(clientOptions.getBlobCompactionReadaheadSizeKB() > 0) {
+            options.setBlobCompactionReadaheadSize(clientOptions.getBlobCompactionReadaheadSizeKB() * SizeUnit.KB);
+        }
     }
 
     private void setFileManagerOptions(long maxAllowedSpaceUsageKB, Options options) {
@@ -332,8 +699,30 @@ public abstract class RocksDBClient extends AbstractDBClient {
 
                 LRUCache namespaceRowCache = this.rowCaches.get(namespace);
                 addCacheMetrics(dbStats, namespace, db, "row_cache", namespaceRowCache);
+
+                CompactionManager compactionManager = this.compactionManagers.get(namespace);
+                if(compactionManager != null) {
+                    compactionManager.addStatistics(dbStats);
+                }
+
+                WriteAdmissionController writeAdmissionController = this.writeAdmissionControllers.get(namespace);
+                if(writeAdmissionController != null) {
+                    writeAdmissionController.refresh();
+                    writeAdmissionController.addStatistics(dbStats);
+                }
+
+                CacheWarmer cacheWarmer = this.cacheWarmers.get(namespace);
+                if(cacheWarmer != null) {
+                    cacheWarmer.addStatistics(dbStats);
+                }
             }
         });
+        directBuffers.addStatistics(dbStats);
+        SlowOperationTracer tracer = this.slowOperationTracer;
+        if(tracer != null) {
+            dbStats.add("rocksdb_sampled_operations", tracer.getSampledOperations());
+            dbStats.add("rocksdb_slow_operations", tracer.getSlowOperations());
+        }
         return dbStats;
     }
 
@@ -356,6 +745,10 @@ public abstract class RocksDBClient extends AbstractDBClient {
     private void addCacheMetrics(DBStats dbStats, String namespace, RocksDB db, String cacheName,
             LRUCache namespaceCache) {
 
+        if(namespaceCache == null) {
+            dbStats.add(namespace + "_" + cacheName + "_k_cache_total", 0L);
+            return;
+        }
         Set<Cache> namespaceCaches = new HashSet<Cache>();
         namespaceCaches.add(namespaceCache);
         Map<MemoryUsageType, Long> memoryUsage = MemoryUtil.getApproximateMemoryUsageByType(
@@ -368,6 +761,310 @@ public abstract class RocksDBClient extends AbstractDBClient {
         // dbStats.add(namespace + "_" + cacheName + "_pinnedMemUsage", namespaceCache.getPinnedUsage() / 1024L);
     }
 
+    /**
+     * Makes a SECONDARY namespace replay the primary's MANIFEST and WAL so
+     * that reads see the primary's latest writes.
+     */
+    public void tryCatchUpWithPrimary(String namespace) {
+
+        if(getOpenMode(namespace) != RocksDBOpenMode.SECONDARY) {
+            throw new UnsupportedOperationException(
+                "Namespace " + namespace + " is opened in " + getOpenMode(namespace) + " mode, not as secondary"
+            );
+        }
+        ReadLock readLock = getLock(namespace).readLock();
+        readLock.lock();
+        try {
+            assertDBOpen(namespace);
+            getDB(namespace).tryCatchUpWithPrimary();
+        } catch (RocksDBException e) {
+            log.error("Error catching up with primary. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+            throw new RuntimeException(e);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Compacts the whole namespace down to the last level, dropping deleted
+     * and overwritten entries. Blocks until done, holding the namespace read
+     * lock so that the database does not close underneath the compaction, a
+     * shutdown aborts it
+     */
+    public void compactRange(String namespace) {
+        compactRange(namespace, null, null);
+    }
+
+    /**
+     * Compacts the keys from begin (inclusive) to end (exclusive), null
+     * bounds for the start or end of the namespace
+     */
+    public void compactRange(String namespace, byte[] begin, byte[] end) {
+
+        ReadLock readLock = getLock(namespace).readLock();
+        readLock.lock();
+        try {
+            assertDBOpen(namespace);
+            getCompactionManager(namespace).compactRange(begin, end);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Stops background flushes and compactions of the namespace, e.g. during
+     * a latency critical window, until {@link #continueBackgroundWork(String)}.
+     * Writes stall once the memtables are full, keep the pause short
+     */
+    public void pauseBackgroundWork(String namespace) {
+        assertDBOpen(namespace);
+        getCompactionManager(namespace).pauseBackgroundWork();
+    }
+
+    public void continueBackgroundWork(String namespace) {
+        assertDBOpen(namespace);
+        getCompactionManager(namespace).continueBackgroundWork();
+    }
+
+    public CompactionManager getCompactionManager(String namespace) {
+        assertWritable(namespace);
+        return this.compactionManagers.get(namespace);
+    }
+
+    public WriteAdmissionController getWriteAdmissionController(String namespace) {
+        assertWritable(namespace);
+        return this.writeAdmissionControllers.get(namespace);
+    }
+
+    /**
+     * Current write stall condition of a writable namespace: NORMAL, DELAYED or STOPPED
+     */
+    public WriteStallCondition getWriteStallCondition(String namespace) {
+        return getWriteAdmissionController(namespace).getCondition();
+    }
+
+    /**
+     * Back-pressure signal, whether the next write to the namespace would be
+     * rejected or held back by its admission policy
+     */
+    public boolean isWriteOverloaded(String namespace) {
+        return getWriteAdmissionController(namespace).isOverloaded();
+    }
+
+    /**
+     * Runs a write under the namespace write lock, once admitted by the
+     * namespace's {@link WriteAdmissionController}. Unless the policy is
+     * BLOCK, writes never wait inside RocksDB while holding the lock: a write
+     * hitting a delay or a stop fails with the lock released, and is rejected
+     * under FAIL_FAST or retried once admitted again under BOUNDED_WAIT.
+     *
+     * @throws WriteStallException if the write is not admitted
+     */
+    protected void executeWrite(String namespace, RocksDBWrite write) {
+
+        WriteAdmissionController admissionController = getWriteAdmissionController(namespace);
+        WriteOptions options = admissionController.getPolicy() == RocksDBWriteAdmissionPolicy.BLOCK
+            ? getWriteOptions(namespace) : this.noSlowdownWriteOptions.get(namespace);
+        WriteLock writeLock = getLock(namespace).writeLock();
+        long stalledSinceMs = 0;
+        while (true) {
+            long lockStart = startPhase();
+            admissionController.acquire();
+            writeLock.lock();
+            endPhase(OperationPhase.LOCK_WAIT, lockStart);
+            try {
+                assertDBOpen(namespace);
+                long storageStart = startPhase();
+                write.write(getDB(namespace), options);
+                endPhase(OperationPhase.STORAGE, storageStart);
+                return;
+            } catch (RocksDBException e) {
+                if(admissionController.getPolicy() == RocksDBWriteAdmissionPolicy.BLOCK || e.getStatus() == null
+                    || e.getStatus().getCode() != Status.Code.Incomplete) {
+                    log.error("Error writing entry. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+                    throw new RuntimeException(e);
+                }
+            } finally {
+                writeLock.unlock();
+                admissionController.release();
+            }
+            // stalled inside RocksDB, the namespace lock is released while the write waits to be retried
+            if(stalledSinceMs == 0) {
+                stalledSinceMs = System.currentTimeMillis();
+            }
+            admissionController.awaitRetry(stalledSinceMs);
+        }
+    }
+
+    /**
+     * Progress of the cache warmup started at open, null if the namespace had nothing to warm up
+     */
+    public WarmupProgress getWarmupProgress(String namespace) {
+        CacheWarmer cacheWarmer = this.cacheWarmers.get(namespace);
+        return cacheWarmer == null ? null : cacheWarmer.getProgress();
+    }
+
+    /**
+     * Whether the cache warmup of the namespace is done, or there was none
+     */
+    public boolean isWarmedUp(String namespace) {
+        CacheWarmer cacheWarmer = this.cacheWarmers.get(namespace);
+        return cacheWarmer == null || cacheWarmer.getState().isDone();
+    }
+
+    /**
+     * Waits for the cache warmup of the namespace, e.g. before reporting the service ready
+     *
+     * @return whether the warmup is done
+     */
+    public boolean awaitWarmup(String namespace, long timeout, TimeUnit unit) {
+        CacheWarmer cacheWarmer = this.cacheWarmers.get(namespace);
+        try {
+            return cacheWarmer == null || cacheWarmer.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getLatestSequenceNumber(String namespace) {
+
+        ReadLock readLock = getLock(namespace).readLock();
+        readLock.lock();
+        try {
+            assertDBOpen(namespace);
+            return getDB(namespace).getLatestSequenceNumber();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Keys splitting begin (inclusive) to end (exclusive) into up to
+     * maxRanges ranges of roughly equal size in table files and memtables.
+     * Split points are table file boundaries, so data that is only in the
+     * memtables or in a single table file is not split
+     */
+    protected List<byte[]> getSplitKeys(String namespace, byte[] begin, byte[] end, int maxRanges) {
+
+        if(maxRanges <= 1) {
+            return Collections.emptyList();
+        }
+        ReadLock readLock = getLock(namespace).readLock();
+        readLock.lock();
+        try {
+            assertDBOpen(namespace);
+            RocksDB db = getDB(namespace);
+            TreeSet<byte[]> boundaries = new TreeSet<>(Arrays::compareUnsigned);
+            for (LiveFileMetaData file : db.getLiveFilesMetaData()) {
+                for (byte[] key : Arrays.asList(file.smallestKey(), file.largestKey())) {
+                    if(Arrays.compareUnsigned(key, begin) > 0 && Arrays.compareUnsigned(key, end) < 0) {
+                        boundaries.add(key);
+                    }
+                }
+            }
+            if(boundaries.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<byte[]> points = new ArrayList<>();
+            points.add(begin);
+            points.addAll(boundaries);
+            points.add(end);
+            long[] sizes = getApproximateSizes(db, points);
+            long totalSize = 0;
+            for (int i = 0; i < sizes.length; i++) {
+                // empty estimates split by number of segments instead
+                sizes[i] = Math.max(sizes[i], 1);
+                totalSize += sizes[i];
+            }
+            List<byte[]> splitKeys = new ArrayList<>();
+            long size = 0;
+            for (int i = 0; i < sizes.length - 1 && splitKeys.size() < maxRanges - 1; i++) {
+                size += sizes[i];
+                if(size * maxRanges >= totalSize * (splitKeys.size() + 1)) {
+                    splitKeys.add(points.get(i + 1));
+                }
+            }
+            return splitKeys;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Approximate sizes of the ranges between consecutive points
+     */
+    private long[] getApproximateSizes(RocksDB db, List<byte[]> points) {
+
+        List<Slice> slices = new ArrayList<>();
+        try {
+            List<Range> ranges = new ArrayList<>();
+            for (byte[] point : points) {
+                slices.add(new Slice(point));
+            }
+            for (int i = 0; i < slices.size() - 1; i++) {
+                ranges.add(new Range(slices.get(i), slices.get(i + 1)));
+            }
+            return db.getApproximateSizes(
+                ranges, SizeApproximationFlag.INCLUDE_FILES, SizeApproximationFlag.INCLUDE_MEMTABLES
+            );
+        } finally {
+            slices.forEach(Slice::close);
+        }
+    }
+
+    /**
+     * Read options for scans over large ranges: readahead for sequential
+     * reads, RocksDB's own growing readahead when scanReadaheadSizeKB is 0,
+     * and no block cache fills, so that scans do not evict the blocks of
+     * point reads. Iteration stops at upperBound (exclusive) when given,
+     * without reading past the range. To be closed by the caller, before
+     * the upper bound
+     */
+    protected ReadOptions createScanReadOptions(String namespace, Slice upperBound) {
+
+        RocksDBClientOptions clientOptions = getClientOptions(namespace);
+        ReadOptions scanReadOptions = new ReadOptions()
+            .setFillCache(false)
+            .setVerifyChecksums(clientOptions.isVerifyChecksums());
+        if(clientOptions.getScanReadaheadSizeKB() > 0) {
+            scanReadOptions.setReadaheadSize(clientOptions.getScanReadaheadSizeKB() * SizeUnit.KB);
+        }
+        if(upperBound != null) {
+            scanReadOptions.setIterateUpperBound(upperBound);
+        }
+        return scanReadOptions;
+    }
+
+    /**
+     * Thread-local off-heap buffers of the zero copy reads and writes
+     */
+    public DirectBuffers getDirectBuffers() {
+        return directBuffers;
+    }
+
+    public KeyEncoder getKeyEncoder(String namespace) {
+        return this.keyEncoders.get(namespace);
+    }
+
+    public RocksDBClientOptions getClientOptions(String namespace) {
+        return this.clientOptions.get(namespace);
+    }
+
+    public RocksDBOpenMode getOpenMode(String namespace) {
+        return this.openModes.get(namespace);
+    }
+
+    protected boolean assertWritable(String namespace) {
+        RocksDBOpenMode openMode = getOpenMode(namespace);
+        if(openMode == null || !openMode.isWritable()) {
+            throw new UnsupportedOperationException(
+                "Namespace " + namespace + " is opened in " + openMode + " mode, writes are not supported"
+            );
+        }
+        return true;
+    }
+
     protected ReentrantReadWriteLock getLock(String namespace) {
         return this.locks.get(namespace);
     }
@@ -387,10 +1084,22 @@ public abstract class RocksDBClient extends AbstractDBClient {
         return this.namespaces.get(namespace);
     }
 
+    protected ScheduledExecutorService getChangeFeedScheduler() {
+        return this.changeFeedScheduler;
+    }
+
+    /**
+     * Read options of point reads, filling the block cache as per fillReadCache
+     */
     protected ReadOptions getReadOptions(String namespace) {
         return this.readOptions.get(namespace);
     }
 
+    protected ReadOptions getReadOptions(String namespace, RocksDBReadTier readTier) {
+        return readTier == RocksDBReadTier.CACHE_ONLY
+            ? this.cacheOnlyReadOptions.get(namespace) : this.readOptions.get(namespace);
+    }
+
     protected WriteOptions getWriteOptions(String namespace) {
         return this.writeOptions.get(namespace);
     }
@@ -403,15 +1112,94 @@ public abstract class RocksDBClient extends AbstractDBClient {
         return this.stats.get(namespace);
     }
 
+    /**
+     * Changes how much RocksDB measures, takes effect immediately. Timers
+     * (EXCEPT_TIME_FOR_MUTEX, ALL) add a clock read to every operation
+     */
+    public void setStatsLevel(String namespace, StatsLevel statsLevel) {
+        this.stats.get(namespace).setStatsLevel(statsLevel);
+    }
+
+    public StatsLevel getStatsLevel(String namespace) {
+        return this.stats.get(namespace).statsLevel();
+    }
+
+    /**
+     * Collector exporting properties, tickers and histograms of the namespace
+     */
+    public RocksDBStatsCollector createStatsCollector(String namespace, CollectorRegistry registry) {
+        return new RocksDBStatsCollector(
+            getDB(namespace), namespace, getStatistics(namespace), getCfHandles(namespace), registry
+        );
+    }
+
+    /**
+     * Traces sampled and slow operations, null to stop tracing
+     */
+    public void setSlowOperationTracer(SlowOperationTracer slowOperationTracer) {
+        this.slowOperationTracer = slowOperationTracer;
+    }
+
+    public SlowOperationTracer getSlowOperationTracer() {
+        return slowOperationTracer;
+    }
+
+    protected void beginTrace(String namespace) {
+        SlowOperationTracer tracer = this.slowOperationTracer;
+        if(tracer != null) {
+            tracer.begin(getStatistics(namespace));
+        }
+    }
+
+    protected void endTrace(DBOperation operation, String namespace, String set, String entityId) {
+        SlowOperationTracer tracer = this.slowOperationTracer;
+        if(tracer != null) {
+            tracer.end(getStatistics(namespace), operation, namespace, set, entityId);
+        }
+    }
+
+    @Override
+    protected boolean isTimingPhases() {
+        return slowOperationTracer != null || super.isTimingPhases();
+    }
+
+    @Override
+    protected void recordPhase(OperationPhase phase, long nanos) {
+        super.recordPhase(phase, nanos);
+        SlowOperationTracer tracer = this.slowOperationTracer;
+        if(tracer != null) {
+            tracer.recordPhase(phase, nanos);
+        }
+    }
+
+    /**
+     * One write to the namespace, see {@link #executeWrite(String, RocksDBWrite)}
+     */
+    protected interface RocksDBWrite {
+        void write(RocksDB db, WriteOptions writeOptions) throws RocksDBException;
+    }
+
     public void shutdown() {
 
+        scheduler.shutdownNow();
+        changeFeedScheduler.shutdownNow();
+        cacheWarmers.values().forEach(CacheWarmer::cancel);
+        // aborts running compactions, before the namespace locks they may hold are taken below
+        compactionManagers.values().forEach(CompactionManager::close);
         namespaces.forEach((namespace, db) -> {
 
             logger.info("closing RocksDB database " + namespace);
             try {
                 locks.get(namespace).writeLock().lock();
-                db.syncWal();
+                if(getOpenMode(namespace).isWritable()) {
+                    db.syncWal();
+                }
+                HotKeyTracker hotKeyTracker = this.hotKeyTrackers.get(namespace);
+                if(hotKeyTracker != null) {
+                    hotKeyTracker.save(getHotKeysFile(namespace));
+                }
                 this.readOptions.get(namespace).close();
+                this.cacheOnlyReadOptions.get(namespace).close();
                 db.close();
                 this.isDBOpen.put(namespace, false);
                 locks.get(namespace).writeLock().unlock();
@@ -425,6 +1213,7 @@ public abstract class RocksDBClient extends AbstractDBClient {
     public void clear() {
 
         this.namespaceStorageLocations.forEach((namespace, namespaceStorageLocation) -> {
+            assertWritable(namespace);
             try {
                 locks.get(namespace).writeLock().lock();
                 FileUtils.deleteDirectory(new File(namespaceStorageLocation));
@@ -0,0 +1,356 @@
+package com.adtsw.jdatalayer.rocksdb;
+
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.CompressionType;
+
+import com.adtsw.jdatalayer.rocksdb.keys.KeyFormat;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+
+/**
+ * Settings of a {@link RocksDBClient} namespace. Start from a tuning profile
+ * and override single options as needed:
+ *
+ * RocksDBClientOptions.builder(RocksDBTuningProfile.POINT_LOOKUP)
+ *     .blockCacheCapacityKB(512 * 1024)
+ *     .build()
+ *
+ * Sizes are in KB, 0 for a size or count that is documented as optional keeps
+ * the RocksDB default.
+ */
+@Getter
+@Builder(toBuilder = true)
+@ToString
+public class RocksDBClientOptions {
+
+    public static final RocksDBClientOptions DEFAULT = RocksDBClientOptions.builder().build();
+
+    /**
+     * Profile the options started from, for reference only
+     */
+    @Builder.Default
+    private final RocksDBTuningProfile profile = RocksDBTuningProfile.DEFAULT;
+
+    // caches and resources
+
+    @Builder.Default
+    private final int blockCacheCapacityKB = 64 * 1024;
+    private final int blockCacheCompressedCapacityKB;
+    private final int rowCacheCapacityKB;
+    @Builder.Default
+    private final int rateBytesPerSecond = 10000000;
+    /**
+     * Maximum size of the table files, 0 for no limit
+     */
+    private final int maxAllowedSpaceUsageKB;
+    @Builder.Default
+    private final int maxBackgroundJobs = 2;
+
+    // write path
+
+    @Builder.Default
+    private final RocksDBMemTableType memTableType = RocksDBMemTableType.SKIP_LIST;
+    @Builder.Default
+    private final int maxWriteBuffers = 2;
+    @Builder.Default
+    private final int writeBufferSizeKB = 64 * 1024;
+    @Builder.Default
+    private final int maxTotalWalSizeKB = 64 * 1024;
+    private final boolean disableWAL;
+    private final boolean syncOnWrite;
+    /**
+     * How long obsolete WAL files are kept for the change feed, 0 deletes them once flushed
+     */
+    private final long walTtlSeconds;
+
+    // LSM shape
+
+    @Builder.Default
+    private final CompressionType compressionType = CompressionType.NO_COMPRESSION;
+    @Builder.Default
+    private final CompactionStyle compactionStyle = CompactionStyle.LEVEL;
+    @Builder.Default
+    private final int numLevels = 7;
+    @Builder.Default
+    private final int level0FileNumCompactionTrigger = 2;
+    @Builder.Default
+    private final int level0SlowdownWritesTrigger = 10;
+    @Builder.Default
+    private final int level0StopWritesTrigger = 36;
+    /**
+     * Size levels from the last level up, keeping space amplification low
+     * regardless of the total data size
+     */
+    private final boolean dynamicLevelBytes;
+    /**
+     * Target size of level 1, optional
+     */
+    private final long maxBytesForLevelBaseKB;
+    @Builder.Default
+    private final double maxBytesForLevelMultiplier = 10;
+    /**
+     * Target size of level 1 table files, optional
+     */
+    private final long targetFileSizeBaseKB;
+
+    // table format
+
+    /**
+     * Bits per key of the bloom filter, 0 for no filter
+     */
+    @Builder.Default
+    private final int bloomBitsPerKey = 10;
+    /**
+     * Uncompressed size of data blocks, optional
+     */
+    private final int blockSizeKB;
+    @Builder.Default
+    private final int blockRestartInterval = 10;
+    @Builder.Default
+    private final int blockSizeDeviation = 5;
+    @Builder.Default
+    private final boolean cacheIndexAndFilterBlocks = true;
+    private final boolean pinL0FilterAndIndexBlocksInCache;
+    /**
+     * Hash index inside data blocks next to the binary search restart points,
+     * point lookups find their key without a binary search at a few bytes per key
+     */
+    private final boolean dataBlockHashIndex;
+    /**
+     * Fill ratio of the data block hash index, lower is faster and larger
+     */
+    @Builder.Default
+    private final double dataBlockHashTableUtilRatio = 0.75;
+    /**
+     * Two level index and filters split into partitions loaded through the
+     * block cache, so that index and filter memory stays bounded by the cache
+     * as the data grows
+     */
+    private final boolean partitionedIndexAndFilters;
+    /**
+     * Keep the top level of partitioned indexes and filters pinned in the block cache
+     */
+    @Builder.Default
+    private final boolean pinTopLevelIndexAndFilter = true;
+    /**
+     * Size of index and filter partitions, optional
+     */
+    private final int metadataBlockSizeKB;
+    /**
+     * Add whole keys to the filter, point lookups are only filtered on whole keys
+     */
+    @Builder.Default
+    private final boolean wholeKeyFiltering = true;
+    /**
+     * Size filters to fit allocator size classes, less memory for the same false positive rate
+     */
+    private final boolean optimizeFiltersForMemory;
+    /**
+     * Skip filters on the last level. Saves most of the filter memory when
+     * lookups nearly always find their key, misses then read the last level
+     */
+    private final boolean optimizeFiltersForHits;
+
+    // blob files
+
+    /**
+     * Store values of at least minBlobSizeBytes in blob files, so that
+     * compactions only rewrite the small index entries pointing to them.
+     * Applies to the whole namespace, entities of every set that stay below
+     * minBlobSizeBytes remain inline
+     */
+    private final boolean enableBlobFiles;
+    @Builder.Default
+    private final long minBlobSizeBytes = 4096;
+    /**
+     * Size of blob files, optional
+     */
+    private final long blobFileSizeKB;
+    @Builder.Default
+    private final CompressionType blobCompressionType = CompressionType.NO_COMPRESSION;
+    /**
+     * Relocate live blobs out of old blob files during compaction, without it
+     * overwritten and deleted values are never reclaimed
+     */
+    @Builder.Default
+    private final boolean enableBlobGarbageCollection = true;
+    /**
+     * Fraction of the oldest blob files whose live blobs compaction relocates
+     */
+    @Builder.Default
+    private final double blobGarbageCollectionAgeCutoff = 0.25;
+    /**
+     * Garbage ratio of the oldest blob files above which compactions are forced
+     * to clean them up, 1.0 never forces
+     */
+    @Builder.Default
+    private final double blobGarbageCollectionForceThreshold = 1.0;
+    /**
+     * Readahead of blob files during compaction, optional
+     */
+    private final long blobCompactionReadaheadSizeKB;
+    /**
+     * First level at which values are written to blob files, so that short
+     * lived values are dropped by compaction before reaching blob files
+     */
+    private final int blobFileStartingLevel;
+
+    // read path
+
+    /**
+     * Whether point reads fill the block cache, scans never do
+     */
+    @Builder.Default
+    private final boolean fillReadCache = true;
+    private final boolean verifyChecksums;
+    /**
+     * Readahead of iterators, optional
+     */
+    private final long readaheadSizeKB;
+    /**
+     * Readahead of compaction inputs, optional
+     */
+    private final long compactionReadaheadSizeKB;
+    /**
+     * Readahead of the iterators of id and parallel scans, which do not fill
+     * the block cache. 0 for RocksDB's automatic readahead, growing from 8 KB
+     * on sequential reads
+     */
+    @Builder.Default
+    private final long scanReadaheadSizeKB = 2 * 1024;
+    /**
+     * Size of each thread's first off-heap value buffer for the zero copy
+     * reads and writes of {@link RocksDBKVClient}, larger values grow it
+     */
+    @Builder.Default
+    private final long directBufferSizeKB = 16;
+    /**
+     * Size up to which each thread's off-heap buffers grow and are kept, keys
+     * and values above it are read and written through temporary buffers
+     */
+    @Builder.Default
+    private final long directBufferMaxRetainedKB = 1024;
+
+    // write stalls
+
+    @Builder.Default
+    private final RocksDBWriteAdmissionPolicy writeAdmissionPolicy = RocksDBWriteAdmissionPolicy.BLOCK;
+    /**
+     * Longest wait for admission under BOUNDED_WAIT
+     */
+    @Builder.Default
+    private final long writeAdmissionMaxWaitMs = 1000;
+    /**
+     * Writes waiting for the namespace lock or writing, beyond which new
+     * writes are not admitted, 0 for no limit
+     */
+    private final int maxPendingWrites;
+    /**
+     * Pending writes admitted while RocksDB delays writes, 0 for no limit.
+     * Bounded by default, so that a delay sheds writers instead of queueing them
+     */
+    @Builder.Default
+    private final int maxPendingWritesWhenDelayed = 16;
+    /**
+     * Pending compaction bytes from which writes are not admitted, ahead of
+     * RocksDB stopping writes at its own limit, 0 to disable
+     */
+    private final long maxPendingCompactionBytesKB;
+    /**
+     * Interval at which the write stall properties are polled, unless writes are admitted with BLOCK
+     */
+    @Builder.Default
+    private final long writeStallPollIntervalMs = 100;
+
+    // compaction
+
+    /**
+     * Compact the whole namespace after this many single deletes, 0 to leave
+     * tombstones to regular compactions
+     */
+    private final long compactAfterDeletes;
+    /**
+     * Compact every range deleted through deleteRange right after the delete,
+     * so that reads do not skip over its tombstones
+     */
+    @Builder.Default
+    private final boolean compactAfterRangeDelete = true;
+    /**
+     * Daily window in which the whole namespace is compacted once, null for
+     * no window. Windows ending before their start span midnight
+     */
+    private final LocalTime offPeakCompactionStart;
+    private final LocalTime offPeakCompactionEnd;
+
+    // warmup
+
+    /**
+     * Table files kept open, 0 for the RocksDB default. -1 opens every table
+     * file at open time, loading their index and filter blocks before the
+     * first read, along with pinL0FilterAndIndexBlocksInCache
+     */
+    private final int maxOpenFiles;
+    /**
+     * Number of most read keys tracked and saved at shutdown, to be read back
+     * into the caches right after the next open, 0 to disable
+     */
+    private final int hotKeysToPersist;
+    /**
+     * Sets read sequentially into the block cache right after open
+     */
+    @Builder.Default
+    private final List<String> warmupSets = Collections.emptyList();
+    /**
+     * Read rate of the warmup, 0 for no limit
+     */
+    private final long warmupRateBytesPerSecond;
+    @Builder.Default
+    private final long warmupReadaheadSizeKB = 2 * 1024;
+
+    // keys
+
+    /**
+     * Binary key layout per set, see {@link KeyFormat}. Sets without one keep
+     * text keys [set]$$[entity id]. Changing the key layout of a set with
+     * data makes that data unreachable
+     */
+    @Singular
+    private final Map<String, KeyFormat> keyFormats;
+
+    // open mode
+
+    @Builder.Default
+    private final RocksDBOpenMode openMode = RocksDBOpenMode.READ_WRITE;
+    /**
+     * Base directory for the info logs of a SECONDARY instance, must be
+     * different for every secondary process. Ignored for other modes
+     */
+    private final String secondaryStorageLocation;
+    /**
+     * Interval at which a SECONDARY instance catches up with the primary, 0 to
+     * only catch up through explicit {@link RocksDBClient#tryCatchUpWithPrimary(String)} calls
+     */
+    private final long catchUpIntervalMs;
+
+    /**
+     * Builder preset with the settings of the DEFAULT profile
+     */
+    public static RocksDBClientOptionsBuilder builder() {
+        return new RocksDBClientOptionsBuilder();
+    }
+
+    /**
+     * Builder preset with the settings of the profile
+     */
+    public static RocksDBClientOptionsBuilder builder(RocksDBTuningProfile profile) {
+        return profile.apply(builder().profile(profile));
+    }
+}
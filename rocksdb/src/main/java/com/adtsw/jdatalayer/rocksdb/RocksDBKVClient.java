@@ -3,24 +3,46 @@ package com.adtsw.jdatalayer.rocksdb;
 import static com.adtsw.jcommons.utils.EncoderUtil.decode;
 import static com.adtsw.jcommons.utils.EncoderUtil.encode;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.StringUtils;
 import org.javatuples.Pair;
+import org.javatuples.Triplet;
 import org.rocksdb.CompactionStyle;
 import org.rocksdb.CompressionType;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+import org.rocksdb.Status;
+import org.rocksdb.TransactionLogIterator;
+import org.rocksdb.WriteBatch;
 
 import com.adtsw.jcommons.models.EncodingFormat;
 import com.adtsw.jcommons.utils.JsonUtil;
+import com.adtsw.jdatalayer.core.client.DBWriteOperation;
+import com.adtsw.jdatalayer.core.client.ScanRange;
+import com.adtsw.jdatalayer.core.metrics.DBOperation;
+import com.adtsw.jdatalayer.core.metrics.OperationPhase;
+import com.adtsw.jdatalayer.rocksdb.buffers.DirectBuffers;
+import com.adtsw.jdatalayer.rocksdb.changefeed.ChangeEvent;
+import com.adtsw.jdatalayer.rocksdb.changefeed.ChangeFeedSubscriber;
+import com.adtsw.jdatalayer.rocksdb.changefeed.ChangeFeedSubscription;
+import com.adtsw.jdatalayer.rocksdb.changefeed.ChangeType;
+import com.adtsw.jdatalayer.rocksdb.keys.KeyEncoder;
+import com.adtsw.jdatalayer.rocksdb.warmup.WarmupRange;
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +52,14 @@ public class RocksDBKVClient extends RocksDBClient {
 
     private final TypeReference<TreeMap<String, Object>> mapTypeReference = new TypeReference<>() {};
     
+    public RocksDBKVClient(String baseStorageLocation, String namespace, RocksDBClientOptions clientOptions) {
+        super(baseStorageLocation, namespace, clientOptions);
+    }
+
+    /**
+     * @deprecated use {@link #RocksDBKVClient(String, String, RocksDBClientOptions)}
+     */
+    @Deprecated
     public RocksDBKVClient(String baseStorageLocation, String namespace,
                          int blockCacheCapacityKB, int blockCacheCompressedCapacityKB,
                          int rowCacheCapacityKB, int rateBytesPerSecond, 
@@ -42,33 +72,89 @@ public class RocksDBKVClient extends RocksDBClient {
                 compactionStyle, maxAllowedSpaceUsageKB, maxBackgroundJobs, fillReadCache, disableWAL, syncOnWrite);
     }
 
+    /**
+     * @deprecated use {@link #RocksDBKVClient(String, String, RocksDBClientOptions)}
+     */
+    @Deprecated
+    public RocksDBKVClient(String baseStorageLocation, String namespace,
+                         int blockCacheCapacityKB, int blockCacheCompressedCapacityKB,
+                         int rowCacheCapacityKB, int rateBytesPerSecond, 
+                         int maxWriteBuffers, int writeBufferSizeKB, int maxTotalWalSizeKB,
+                         CompressionType compressionType, CompactionStyle compactionStyle, int maxAllowedSpaceUsageKB,
+                         int maxBackgroundJobs, boolean fillReadCache, boolean disableWAL, boolean syncOnWrite,
+                         RocksDBOpenMode openMode, String secondaryStorageLocation, long catchUpIntervalMs,
+                         long walTtlSeconds) {
+        
+        super(baseStorageLocation, namespace, blockCacheCapacityKB, blockCacheCompressedCapacityKB, rowCacheCapacityKB,
+                rateBytesPerSecond, maxWriteBuffers, writeBufferSizeKB, maxTotalWalSizeKB, compressionType,
+                compactionStyle, maxAllowedSpaceUsageKB, maxBackgroundJobs, fillReadCache, disableWAL, syncOnWrite,
+                openMode, secondaryStorageLocation, catchUpIntervalMs, walTtlSeconds);
+    }
+
+    /**
+     * Opens an existing namespace for reads only, without taking its lock file,
+     * so that any number of reader processes can share data written by one
+     * primary. The view is fixed as of open time.
+     */
+    public static RocksDBKVClient openReadOnly(String baseStorageLocation, String namespace,
+                                               int blockCacheCapacityKB, int blockCacheCompressedCapacityKB,
+                                               int rowCacheCapacityKB, boolean fillReadCache) {
+
+        return new RocksDBKVClient(baseStorageLocation, namespace, RocksDBClientOptions.builder()
+            .blockCacheCapacityKB(blockCacheCapacityKB)
+            .blockCacheCompressedCapacityKB(blockCacheCompressedCapacityKB)
+            .rowCacheCapacityKB(rowCacheCapacityKB)
+            .fillReadCache(fillReadCache)
+            .openMode(RocksDBOpenMode.READ_ONLY)
+            .build());
+    }
+
+    /**
+     * Opens an existing namespace as a secondary instance. Writes are rejected,
+     * reads catch up with the primary every catchUpIntervalMs (0 to only catch
+     * up through explicit {@link #tryCatchUpWithPrimary(String)} calls).
+     * 
+     * @param secondaryStorageLocation base directory for this instance's own
+     * info logs, must not be shared with other secondaries
+     */
+    public static RocksDBKVClient openAsSecondary(String baseStorageLocation, String namespace,
+                                                  String secondaryStorageLocation,
+                                                  int blockCacheCapacityKB, int blockCacheCompressedCapacityKB,
+                                                  int rowCacheCapacityKB, boolean fillReadCache,
+                                                  long catchUpIntervalMs) {
+
+        return new RocksDBKVClient(baseStorageLocation, namespace, RocksDBClientOptions.builder()
+            .blockCacheCapacityKB(blockCacheCapacityKB)
+            .blockCacheCompressedCapacityKB(blockCacheCompressedCapacityKB)
+            .rowCacheCapacityKB(rowCacheCapacityKB)
+            .fillReadCache(fillReadCache)
+            .openMode(RocksDBOpenMode.SECONDARY)
+            .secondaryStorageLocation(secondaryStorageLocation)
+            .catchUpIntervalMs(catchUpIntervalMs)
+            .build());
+    }
+
     @Override
     public void put(String namespace, String set, String entityId, Map<String, Object> fields,
                     EncodingFormat encodingFormat) {
 
+        assertWritable(namespace);
+        beginTrace(namespace);
+        long codecStart = startPhase();
         String payload = JsonUtil.write(fields);
         payload = encode(encodingFormat, payload);
-        try {
-            WriteLock writeLock = getLock(namespace).writeLock();
-            writeLock.lock();
-            assertDBOpen(namespace);
-            RocksDB db = getDB(namespace);
-            db.put(
-                getWriteOptions(namespace),
-                getKey(set, entityId).getBytes(StandardCharsets.UTF_8),
-                payload.getBytes(StandardCharsets.UTF_8)
-            );
-            writeLock.unlock();
-        } catch (RocksDBException e) {
-            log.error("Error saving entry. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
-            throw new RuntimeException(e);
-        }
+        endPhase(OperationPhase.CODEC, codecStart);
+        byte[] key = getKeyEncoder(namespace).encode(set, entityId);
+        byte[] value = payload.getBytes(StandardCharsets.UTF_8);
+        executeWrite(namespace, (db, writeOptions) -> db.put(writeOptions, key, value));
+        endTrace(DBOperation.PUT, namespace, set, entityId);
     }
 
     @Override
     public void put(String namespace, String set, Map<String, Map<String, Object>> entities,
                     EncodingFormat encodingFormat) {
 
+        assertWritable(namespace);
         entities.forEach((String entityId, Map<String, Object> fields) -> {
             put(namespace, set, entityId, fields, encodingFormat);
         });
@@ -77,75 +163,335 @@ public class RocksDBKVClient extends RocksDBClient {
     @Override
     public Map<String, Object> get(String namespace, String set, String entityId,
                     EncodingFormat encodingFormat) {
+        return get(namespace, set, entityId, encodingFormat, RocksDBReadTier.ALL);
+    }
 
+    /**
+     * Point read limited to the read tier, under CACHE_ONLY null also stands
+     * for an entity that is not cached
+     */
+    public Map<String, Object> get(String namespace, String set, String entityId,
+                    EncodingFormat encodingFormat, RocksDBReadTier readTier) {
+
+        beginTrace(namespace);
+        byte[] key = getKeyEncoder(namespace).encode(set, entityId);
+        recordRead(namespace, key);
         String storedPayload = null;
+        ReadLock readLock = getLock(namespace).readLock();
+        long lockStart = startPhase();
+        readLock.lock();
+        endPhase(OperationPhase.LOCK_WAIT, lockStart);
         try {
-            ReadLock readLock = getLock(namespace).readLock();
-            readLock.lock();
             assertDBOpen(namespace);
-            byte[] storedBytes = getDB(namespace).get(
-                getReadOptions(namespace), getKey(set, entityId).getBytes(StandardCharsets.UTF_8)
-            );
-            readLock.unlock();
+            long storageStart = startPhase();
+            byte[] storedBytes = getDB(namespace).get(getReadOptions(namespace, readTier), key);
+            endPhase(OperationPhase.STORAGE, storageStart);
             storedPayload = storedBytes == null ? null : new String(storedBytes, StandardCharsets.UTF_8);
         } catch (RocksDBException e) {
+            if(isNotCached(e, readTier)) {
+                endTrace(DBOperation.GET, namespace, set, entityId);
+                return null;
+            }
             log.error("Error loading entry. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
             throw new RuntimeException(e);
+        } finally {
+            readLock.unlock();
         }
+        long codecStart = startPhase();
         storedPayload = storedPayload == null ? null : decode(encodingFormat, storedPayload);
-        return storedPayload == null ? null : JsonUtil.read(storedPayload, mapTypeReference);
+        Map<String, Object> fields = storedPayload == null ? null : JsonUtil.read(storedPayload, mapTypeReference);
+        endPhase(OperationPhase.CODEC, codecStart);
+        endTrace(DBOperation.GET, namespace, set, entityId);
+        return fields;
     }
     
     @Override
-    public void delete(String namespace, String set, String entityId) {
+    public Map<String, Map<String, Object>> get(String namespace, String set, List<String> entityIds,
+                    EncodingFormat encodingFormat) {
+        return get(namespace, set, entityIds, encodingFormat, RocksDBReadTier.ALL);
+    }
 
+    /**
+     * Multi-get limited to the read tier, under CACHE_ONLY entities that are
+     * not cached are left out of the result
+     */
+    public Map<String, Map<String, Object>> get(String namespace, String set, List<String> entityIds,
+                    EncodingFormat encodingFormat, RocksDBReadTier readTier) {
+
+        beginTrace(namespace);
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        List<byte[]> keys = new ArrayList<>(entityIds.size());
+        for (String entityId : entityIds) {
+            byte[] key = keyEncoder.encode(set, entityId);
+            recordRead(namespace, key);
+            keys.add(key);
+        }
+        List<byte[]> storedValues;
+        ReadLock readLock = getLock(namespace).readLock();
+        long lockStart = startPhase();
+        readLock.lock();
+        endPhase(OperationPhase.LOCK_WAIT, lockStart);
         try {
-            WriteLock writeLock = getLock(namespace).writeLock();
-            writeLock.lock();
             assertDBOpen(namespace);
-            RocksDB db = getDB(namespace);
-            db.delete(
-                getWriteOptions(namespace),
-                getKey(set, entityId).getBytes(StandardCharsets.UTF_8)
-            );
-            writeLock.unlock();
+            long storageStart = startPhase();
+            storedValues = getDB(namespace).multiGetAsList(getReadOptions(namespace, readTier), keys);
+            endPhase(OperationPhase.STORAGE, storageStart);
+        } catch (RocksDBException e) {
+            log.error("Error loading entries. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+            throw new RuntimeException(e);
+        } finally {
+            readLock.unlock();
+        }
+
+        long codecStart = startPhase();
+        Map<String, Map<String, Object>> entities = new HashMap<>();
+        for (int i = 0; i < entityIds.size(); i++) {
+            byte[] storedBytes = storedValues.get(i);
+            if(storedBytes != null) {
+                String storedPayload = decode(encodingFormat, new String(storedBytes, StandardCharsets.UTF_8));
+                entities.put(entityIds.get(i), JsonUtil.read(storedPayload, mapTypeReference));
+            }
+        }
+        endPhase(OperationPhase.CODEC, codecStart);
+        endTrace(DBOperation.MULTI_GET, namespace, set, null);
+        return entities;
+    }
+    
+    /**
+     * Cache only reads of entries that are not cached end with an Incomplete status
+     */
+    private boolean isNotCached(RocksDBException e, RocksDBReadTier readTier) {
+        return readTier == RocksDBReadTier.CACHE_ONLY && e.getStatus() != null
+            && e.getStatus().getCode() == Status.Code.Incomplete;
+    }
+
+    /**
+     * Zero copy point read: the stored value is read straight into the
+     * calling thread's off-heap value buffer, see {@link DirectBuffers}, and
+     * handed to the reader from position 0 to its length, without byte[] or
+     * String copies. Values are the stored bytes, in the encoding they were
+     * written with. The buffer is reused by the thread's next call, readers
+     * decode what they need before returning
+     *
+     * @return what the reader returned, null if there is no such entity
+     */
+    public <T> T getDirect(String namespace, String set, String entityId, Function<ByteBuffer, T> valueReader) {
+        return getDirect(namespace, set, entityId, valueReader, RocksDBReadTier.ALL);
+    }
+
+    /**
+     * Zero copy point read limited to the read tier, under CACHE_ONLY null
+     * also stands for an entity that is not cached
+     */
+    public <T> T getDirect(String namespace, String set, String entityId, Function<ByteBuffer, T> valueReader,
+                           RocksDBReadTier readTier) {
+
+        beginTrace(namespace);
+        ByteBuffer key = encodeDirectKey(namespace, set, entityId);
+        recordRead(namespace, key);
+        ByteBuffer value = getDirectBuffers().getValueBuffer(0);
+        int valueLength;
+        ReadLock readLock = getLock(namespace).readLock();
+        long lockStart = startPhase();
+        readLock.lock();
+        endPhase(OperationPhase.LOCK_WAIT, lockStart);
+        try {
+            assertDBOpen(namespace);
+            long storageStart = startPhase();
+            ReadOptions options = getReadOptions(namespace, readTier);
+            valueLength = getDB(namespace).get(options, key, value);
+            if(valueLength > value.capacity()) {
+                // the value was cut short, read it again into a buffer it fits in
+                value = getDirectBuffers().getValueBuffer(valueLength);
+                key.rewind();
+                valueLength = getDB(namespace).get(options, key, value);
+            }
+            endPhase(OperationPhase.STORAGE, storageStart);
         } catch (RocksDBException e) {
-            log.error("Error saving entry. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+            if(isNotCached(e, readTier)) {
+                endTrace(DBOperation.GET, namespace, set, entityId);
+                return null;
+            }
+            log.error("Error loading entry. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
             throw new RuntimeException(e);
+        } finally {
+            readLock.unlock();
+        }
+        long codecStart = startPhase();
+        T result = valueLength == RocksDB.NOT_FOUND ? null : valueReader.apply(value);
+        endPhase(OperationPhase.CODEC, codecStart);
+        endTrace(DBOperation.GET, namespace, set, entityId);
+        return result;
+    }
+
+    /**
+     * Zero copy put of the bytes from the value's position to its limit,
+     * written straight from off-heap memory. Values are stored as is,
+     * without an {@link EncodingFormat}. Heap buffers are copied to the
+     * calling thread's value buffer first, callers can fill that buffer
+     * themselves through {@link DirectBuffers#getValueBuffer(int)}. The
+     * value's position is moved to its limit, as with a relative put
+     */
+    public void putDirect(String namespace, String set, String entityId, ByteBuffer value) {
+
+        assertWritable(namespace);
+        beginTrace(namespace);
+        ByteBuffer key = encodeDirectKey(namespace, set, entityId);
+        ByteBuffer directValue = value;
+        if(!value.isDirect()) {
+            directValue = getDirectBuffers().getValueBuffer(value.remaining());
+            directValue.put(value).flip();
         }
+        ByteBuffer storedValue = directValue;
+        executeWrite(namespace, (db, writeOptions) -> db.put(writeOptions, key, storedValue));
+        endTrace(DBOperation.PUT, namespace, set, entityId);
+    }
+
+    /**
+     * Key of the entity in the calling thread's off-heap key buffer, grown until it fits
+     */
+    private ByteBuffer encodeDirectKey(String namespace, String set, String entityId) {
+
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        ByteBuffer key = getDirectBuffers().getKeyBuffer(0);
+        while (true) {
+            try {
+                keyEncoder.encode(set, entityId, key);
+                key.flip();
+                return key;
+            } catch (BufferOverflowException e) {
+                key = getDirectBuffers().getKeyBuffer(key.capacity() * 2);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String namespace, String set, String entityId) {
+
+        assertWritable(namespace);
+        beginTrace(namespace);
+        byte[] key = getKeyEncoder(namespace).encode(set, entityId);
+        executeWrite(namespace, (db, writeOptions) -> db.delete(writeOptions, key));
+        getCompactionManager(namespace).recordDeletes(1);
+        endTrace(DBOperation.DELETE, namespace, set, entityId);
     }
 
     @Override
     public void delete(String namespace, String set, List<String> entities) {
 
+        assertWritable(namespace);
         entities.forEach((String entityId) -> {
             delete(namespace, set, entityId);
         });
     }
 
+    /**
+     * Writes the puts and deletes as one atomic WriteBatch, with a single WAL
+     * write and sync. Deletes count towards compactAfterDeletes and are part
+     * of the change feed like single deletes
+     */
+    @Override
+    public void write(String namespace, List<DBWriteOperation> operations) {
+
+        assertWritable(namespace);
+        beginTrace(namespace);
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        long deletes = 0;
+        try (WriteBatch writeBatch = new WriteBatch()) {
+            long codecStart = startPhase();
+            for (DBWriteOperation operation : operations) {
+                byte[] key = keyEncoder.encode(operation.getSet(), operation.getEntityId());
+                if(operation.getType() == DBWriteOperation.Type.PUT) {
+                    String payload = encode(operation.getEncodingFormat(), JsonUtil.write(operation.getFields()));
+                    writeBatch.put(key, payload.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    writeBatch.delete(key);
+                    deletes++;
+                }
+            }
+            endPhase(OperationPhase.CODEC, codecStart);
+            executeWrite(namespace, (db, writeOptions) -> db.write(writeOptions, writeBatch));
+        } catch (RocksDBException e) {
+            log.error("Error writing batch. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+            throw new RuntimeException(e);
+        }
+        if(deletes > 0) {
+            getCompactionManager(namespace).recordDeletes(deletes);
+        }
+        endTrace(DBOperation.WRITE_BATCH, namespace, null, null);
+    }
+
+    /**
+     * Deletes every entity of the set with a single range tombstone instead of
+     * one tombstone per entity, see {@link #deleteRange(String, String, String, String)}
+     */
+    public void deleteSet(String namespace, String set) {
+        deleteRange(namespace, set, null, null);
+    }
+
+    /**
+     * Deletes the entities of the set with ids from fromId (inclusive) to
+     * toIdExclusive, in byte order of the ids, null bounds for the first or
+     * last id of the set. The range is compacted right after unless
+     * compactAfterRangeDelete is disabled. The change feed has a single
+     * DELETE_RANGE event for the range, not one event per entity
+     */
+    public void deleteRange(String namespace, String set, String fromId, String toIdExclusive) {
+
+        assertWritable(namespace);
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        byte[] begin = keyEncoder.getRangeStart(set, fromId);
+        byte[] end = keyEncoder.getRangeEnd(set, toIdExclusive);
+        executeWrite(namespace, (db, writeOptions) -> db.deleteRange(writeOptions, begin, end));
+        getCompactionManager(namespace).recordRangeDelete(begin, end);
+    }
+
+    /**
+     * Compacts the entities of the set, blocking until done
+     */
+    public void compactSet(String namespace, String set) {
+        compactRange(namespace, set, null, null);
+    }
+
+    /**
+     * Compacts the entities of the set with ids from fromId (inclusive) to
+     * toIdExclusive, null bounds for the first or last id of the set
+     */
+    public void compactRange(String namespace, String set, String fromId, String toIdExclusive) {
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        compactRange(namespace, keyEncoder.getRangeStart(set, fromId), keyEncoder.getRangeEnd(set, toIdExclusive));
+    }
+
+    /**
+     * Ids of the set in key order, read from the set's key range only with
+     * the scan read options, see {@link #createScanReadOptions}
+     */
     @Override
     public List<String> getIds(String namespace, String set) {
 
         List<String> keys = new ArrayList<>();
-        try {
-            ReadLock readLock = getLock(namespace).readLock();
-            readLock.lock();
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        ReadLock readLock = getLock(namespace).readLock();
+        readLock.lock();
+        try (Slice upperBound = new Slice(keyEncoder.getRangeEnd(set, null));
+             ReadOptions scanReadOptions = createScanReadOptions(namespace, upperBound)) {
             assertDBOpen(namespace);
-            RocksIterator itr = getDB(namespace).newIterator(getReadOptions(namespace));
-            itr.seekToFirst();
-            while (itr.isValid()) {
-                byte[] storedBytes = itr.key();
-                Pair<String, String> setWithEntityId = getEntityIdDetails(new String(storedBytes, StandardCharsets.UTF_8));
-                if(StringUtils.equals(setWithEntityId.getValue0(), set)) {
-                    String entityId = setWithEntityId.getValue1();
-                    keys.add(entityId);
+            try (RocksIterator itr = getDB(namespace).newIterator(scanReadOptions)) {
+                itr.seek(keyEncoder.getRangeStart(set, null));
+                while (itr.isValid()) {
+                    Pair<String, String> setWithEntityId = keyEncoder.decode(itr.key());
+                    if(StringUtils.equals(setWithEntityId.getValue0(), set)) {
+                        keys.add(setWithEntityId.getValue1());
+                    }
+                    itr.next();
                 }
-                itr.next();
+                itr.status();
             }
-            readLock.unlock();
         } catch (Exception e) {
             log.error("Error getting all entries. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
             throw new RuntimeException(e);
+        } finally {
+            readLock.unlock();
         }
         return keys;
     }
@@ -154,37 +500,299 @@ public class RocksDBKVClient extends RocksDBClient {
     public List<String> getIds(String namespace) {
 
         List<String> keys = new ArrayList<>();
-        try {
-            ReadLock readLock = getLock(namespace).readLock();
-            readLock.lock();
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        ReadLock readLock = getLock(namespace).readLock();
+        readLock.lock();
+        try (ReadOptions scanReadOptions = createScanReadOptions(namespace, null)) {
             assertDBOpen(namespace);
-            RocksIterator itr = getDB(namespace).newIterator(getReadOptions(namespace));
-            itr.seekToFirst();
-            while (itr.isValid()) {
-                byte[] storedBytes = itr.key();
-                String storedKey = new String(storedBytes, StandardCharsets.UTF_8);
-                keys.add(storedKey);
-                itr.next();
+            try (RocksIterator itr = getDB(namespace).newIterator(scanReadOptions)) {
+                itr.seekToFirst();
+                while (itr.isValid()) {
+                    keys.add(keyEncoder.toString(itr.key()));
+                    itr.next();
+                }
+                itr.status();
             }
-            readLock.unlock();
         } catch (Exception e) {
             log.error("Error getting all entries. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
             throw new RuntimeException(e);
+        } finally {
+            readLock.unlock();
         }
         return keys;
     }
 
-    private String getKey(String set, String entityId) {
-        return set + "$$" + entityId;
+    /**
+     * Splits the set at table file boundaries into ranges of roughly equal
+     * size, see {@link #getSplitKeys}
+     */
+    @Override
+    public List<ScanRange> getScanRanges(String namespace, String set, int maxRanges) {
+
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        List<byte[]> splitKeys = getSplitKeys(
+            namespace, keyEncoder.getRangeStart(set, null), keyEncoder.getRangeEnd(set, null), maxRanges
+        );
+        List<ScanRange> ranges = new ArrayList<>();
+        String fromId = null;
+        for (byte[] splitKey : splitKeys) {
+            String toId = keyEncoder.decode(splitKey).getValue1();
+            ranges.add(new ScanRange(fromId, toId));
+            fromId = toId;
+        }
+        ranges.add(new ScanRange(fromId, null));
+        return ranges;
+    }
+
+    /**
+     * Iterates over the range in key order with the scan read options, see
+     * {@link #createScanReadOptions}. Entries are read in chunks of
+     * SCAN_BATCH_SIZE under the namespace read lock and handed to the
+     * consumer after the lock is released, each chunk sees the writes made
+     * before it started.
+     */
+    @Override
+    public void scan(String namespace, String set, ScanRange range, EncodingFormat encodingFormat,
+                     BiConsumer<String, Map<String, Object>> consumer) {
+
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        byte[] begin = keyEncoder.getRangeStart(set, range.getFromId());
+        byte[] end = keyEncoder.getRangeEnd(set, range.getToId());
+        List<byte[]> keys = new ArrayList<>(SCAN_BATCH_SIZE);
+        List<byte[]> values = new ArrayList<>(SCAN_BATCH_SIZE);
+        ReadLock readLock = getLock(namespace).readLock();
+        try (Slice upperBound = new Slice(end);
+             ReadOptions scanReadOptions = createScanReadOptions(namespace, upperBound)) {
+            boolean completed = false;
+            while (!completed) {
+                byte[] lastKey = keys.isEmpty() ? null : keys.get(keys.size() - 1);
+                keys.clear();
+                values.clear();
+                readLock.lock();
+                try {
+                    assertDBOpen(namespace);
+                    try (RocksIterator itr = getDB(namespace).newIterator(scanReadOptions)) {
+                        // resume after the last key of the previous chunk
+                        itr.seek(lastKey == null ? begin : lastKey);
+                        if(lastKey != null && itr.isValid() && Arrays.equals(itr.key(), lastKey)) {
+                            itr.next();
+                        }
+                        while (itr.isValid() && keys.size() < SCAN_BATCH_SIZE) {
+                            keys.add(itr.key());
+                            values.add(itr.value());
+                            itr.next();
+                        }
+                        completed = !itr.isValid();
+                        itr.status();
+                    }
+                } finally {
+                    readLock.unlock();
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    String storedPayload = decode(encodingFormat, new String(values.get(i), StandardCharsets.UTF_8));
+                    consumer.accept(
+                        keyEncoder.decode(keys.get(i)).getValue1(), JsonUtil.read(storedPayload, mapTypeReference)
+                    );
+                }
+            }
+        } catch (RocksDBException e) {
+            log.error("Error scanning entries. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads up to maxEvents puts, deletes and range deletes from the WAL,
+     * starting at the given sequence number. WAL files are only kept after
+     * their data is flushed if the namespace is opened with a WAL ttl,
+     * reading from a sequence number that is no longer available fails.
+     */
+    public List<ChangeEvent> getChangesSince(String namespace, long sequenceNumber, int maxEvents) {
+
+        List<ChangeEvent> events = new ArrayList<>();
+        ReadLock readLock = getLock(namespace).readLock();
+        readLock.lock();
+        try {
+            assertDBOpen(namespace);
+            RocksDB db = getDB(namespace);
+            if(sequenceNumber > db.getLatestSequenceNumber()) {
+                return events;
+            }
+            try (TransactionLogIterator itr = db.getUpdatesSince(sequenceNumber)) {
+                while (itr.isValid() && events.size() < maxEvents) {
+                    itr.status();
+                    TransactionLogIterator.BatchResult batchResult = itr.getBatch();
+                    try (WriteBatch writeBatch = batchResult.writeBatch();
+                         ChangeEventCollector collector = new ChangeEventCollector(
+                             getKeyEncoder(namespace), batchResult.sequenceNumber(), sequenceNumber, maxEvents, events
+                         )) {
+                        writeBatch.iterate(collector);
+                    }
+                    itr.next();
+                }
+            }
+        } catch (RocksDBException e) {
+            log.error("Error reading changes. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+            throw new RuntimeException(e);
+        } finally {
+            readLock.unlock();
+        }
+        return events;
+    }
+
+    /**
+     * Delivers puts, deletes and range deletes from the given sequence
+     * number onwards to the subscriber, polling the WAL every pollIntervalMs.
+     * Subscriptions are polled on a thread of their own, shared by the
+     * subscriptions of the client. Close the returned subscription to stop.
+     */
+    public ChangeFeedSubscription subscribe(String namespace, long fromSequenceNumber, int maxBatchSize,
+                                           long pollIntervalMs, ChangeFeedSubscriber subscriber) {
+
+        return new ChangeFeedSubscription(
+            (sequenceNumber, maxEvents) -> getChangesSince(namespace, sequenceNumber, maxEvents),
+            subscriber, fromSequenceNumber, maxBatchSize, getChangeFeedScheduler(), pollIntervalMs
+        );
     }
 
-    private Pair<String, String> getEntityIdDetails(String storedKey) {
-        String[] splits = storedKey.split("\\$\\$");
-        if(splits.length > 1) {
-            return new Pair<String,String>(
-                splits[0], storedKey.substring(splits[0].length() + 2, storedKey.length())
-            );
+    /**
+     * Decodes the records of one WAL write batch into change events. Every
+     * put, delete or range delete in a batch consumes one sequence number,
+     * starting with the batch's own.
+     */
+    private static class ChangeEventCollector extends WriteBatch.Handler {
+
+        private final KeyEncoder keyEncoder;
+        private final long fromSequenceNumber;
+        private final int maxEvents;
+        private final List<ChangeEvent> events;
+        private long sequenceNumber;
+
+        ChangeEventCollector(KeyEncoder keyEncoder, long batchSequenceNumber, long fromSequenceNumber,
+                             int maxEvents, List<ChangeEvent> events) {
+            this.keyEncoder = keyEncoder;
+            this.sequenceNumber = batchSequenceNumber;
+            this.fromSequenceNumber = fromSequenceNumber;
+            this.maxEvents = maxEvents;
+            this.events = events;
+        }
+
+        private void collect(ChangeType type, byte[] key, byte[] value) {
+
+            long recordSequenceNumber = sequenceNumber++;
+            if(recordSequenceNumber < fromSequenceNumber || events.size() >= maxEvents) {
+                return;
+            }
+            Pair<String, String> setWithEntityId = keyEncoder.decode(key);
+            events.add(new ChangeEvent(
+                recordSequenceNumber, type, setWithEntityId.getValue0(), setWithEntityId.getValue1(), null, value
+            ));
+        }
+
+        private void collectRange(byte[] beginKey, byte[] endKey) {
+
+            long recordSequenceNumber = sequenceNumber++;
+            if(recordSequenceNumber < fromSequenceNumber || events.size() >= maxEvents) {
+                return;
+            }
+            Triplet<String, String, String> range = keyEncoder.decodeRange(beginKey, endKey);
+            events.add(new ChangeEvent(
+                recordSequenceNumber, ChangeType.DELETE_RANGE, range.getValue0(), range.getValue1(), range.getValue2(),
+                null
+            ));
+        }
+
+        @Override
+        public void put(int columnFamilyId, byte[] key, byte[] value) {
+            collect(ChangeType.PUT, key, value);
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            collect(ChangeType.PUT, key, value);
+        }
+
+        @Override
+        public void delete(int columnFamilyId, byte[] key) {
+            collect(ChangeType.DELETE, key, null);
+        }
+
+        @Override
+        public void delete(byte[] key) {
+            collect(ChangeType.DELETE, key, null);
+        }
+
+        @Override
+        public void singleDelete(int columnFamilyId, byte[] key) {
+            collect(ChangeType.DELETE, key, null);
+        }
+
+        @Override
+        public void singleDelete(byte[] key) {
+            collect(ChangeType.DELETE, key, null);
+        }
+
+        @Override
+        public void merge(int columnFamilyId, byte[] key, byte[] value) {
+            sequenceNumber++;
+        }
+
+        @Override
+        public void merge(byte[] key, byte[] value) {
+            sequenceNumber++;
+        }
+
+        @Override
+        public void deleteRange(int columnFamilyId, byte[] beginKey, byte[] endKey) {
+            collectRange(beginKey, endKey);
+        }
+
+        @Override
+        public void deleteRange(byte[] beginKey, byte[] endKey) {
+            collectRange(beginKey, endKey);
+        }
+
+        @Override
+        public void putBlobIndex(int columnFamilyId, byte[] key, byte[] value) {
+            sequenceNumber++;
+        }
+
+        @Override
+        public void logData(byte[] blob) {
+        }
+
+        @Override
+        public void markBeginPrepare() {
+        }
+
+        @Override
+        public void markEndPrepare(byte[] xid) {
+        }
+
+        @Override
+        public void markNoop(boolean emptyBatch) {
+        }
+
+        @Override
+        public void markRollback(byte[] xid) {
+        }
+
+        @Override
+        public void markCommit(byte[] xid) {
+        }
+
+        @Override
+        public void markCommitWithTimestamp(byte[] xid, byte[] ts) {
+        }
+    }
+
+    @Override
+    protected List<WarmupRange> getWarmupRanges(String namespace, List<String> sets) {
+        KeyEncoder keyEncoder = getKeyEncoder(namespace);
+        List<WarmupRange> ranges = new ArrayList<>();
+        for (String set : sets) {
+            ranges.add(new WarmupRange(set, keyEncoder.getRangeStart(set, null), keyEncoder.getRangeEnd(set, null)));
         }
-        return new Pair<>(splits[0], splits[0]);
+        return ranges;
     }
-}
\ No newline at end of file
+}
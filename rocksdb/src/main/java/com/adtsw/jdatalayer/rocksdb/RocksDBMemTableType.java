@@ -0,0 +1,17 @@
+package com.adtsw.jdatalayer.rocksdb;
+
+/**
+ * Memtable implementation of a namespace.
+ *
+ * SKIP_LIST - the default, sorted on insert, supports concurrent writes and
+ * serves point lookups and scans alike.
+ *
+ * VECTOR - appends unsorted and sorts on flush, the cheapest inserts for bulk
+ * loads, but lookups that reach the memtable scan it and concurrent memtable
+ * writes are disabled.
+ */
+public enum RocksDBMemTableType {
+
+    SKIP_LIST,
+    VECTOR
+}
@@ -0,0 +1,24 @@
+package com.adtsw.jdatalayer.rocksdb;
+
+/**
+ * How a namespace is opened by {@link RocksDBClient}.
+ *
+ * READ_WRITE - the default, owns the namespace lock file and accepts writes.
+ *
+ * READ_ONLY - opens the namespace without taking the lock file, sees the data
+ * as of open time and rejects writes. Any number of read-only instances can
+ * be opened alongside the primary.
+ *
+ * SECONDARY - like READ_ONLY, but can catch up with the primary by tailing its
+ * MANIFEST and WAL through {@link RocksDBClient#tryCatchUpWithPrimary(String)}.
+ */
+public enum RocksDBOpenMode {
+
+    READ_WRITE,
+    READ_ONLY,
+    SECONDARY;
+
+    public boolean isWritable() {
+        return this == READ_WRITE;
+    }
+}
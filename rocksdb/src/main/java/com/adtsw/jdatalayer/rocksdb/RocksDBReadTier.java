@@ -0,0 +1,17 @@
+package com.adtsw.jdatalayer.rocksdb;
+
+/**
+ * Where point reads of {@link RocksDBKVClient} may look for an entry.
+ *
+ * ALL - the default, memtables, block cache and table files, filling the
+ * block cache as per fillReadCache.
+ *
+ * CACHE_ONLY - memtables, row cache and block cache only, never reading
+ * from disk. Entries that would need I/O are treated as not found, for
+ * latency-bounded lookups that fall back to another source.
+ */
+public enum RocksDBReadTier {
+
+    ALL,
+    CACHE_ONLY
+}
@@ -0,0 +1,138 @@
+package com.adtsw.jdatalayer.rocksdb;
+
+import org.rocksdb.CompressionType;
+
+/**
+ * Named sets of memtable, LSM, table and readahead settings that go together,
+ * see {@link RocksDBClientOptions#builder(RocksDBTuningProfile)}.
+ *
+ * DEFAULT - the settings RocksDBClient always used: skip list memtable, 7
+ * fixed size levels, L0 compaction at 2 files, 10 bit bloom filters.
+ *
+ * POINT_LOOKUP - gets by id: more bloom bits and pinned L0 filters to avoid
+ * disk reads for absent keys, data block hash indexes and short restart
+ * intervals for faster in-block search, partitioned index and filters so
+ * that their memory stays bounded past the cache size, dynamic level sizing
+ * so that most data sits in the last level.
+ *
+ * BULK_LOAD - write heavy ingestion: vector memtable, large and more write
+ * buffers, large table files and high L0 triggers so that compaction does
+ * not stall the load. Reads during the load are slower.
+ *
+ * SCAN_HEAVY - range and id scans: no bloom filter (whole key filters do not
+ * help scans), large blocks and readahead for sequential reads.
+ *
+ * LARGE_VALUES - entities of tens to hundreds of KB: values from 16KB up go
+ * to compressed blob files with garbage collection, so that compactions and
+ * the block cache only deal with small entries and blob references.
+ *
+ * MEMORY_CONSTRAINED - small caches and write buffers, partitioned index and
+ * filter blocks charged to the block cache, larger blocks for a smaller index.
+ */
+public enum RocksDBTuningProfile {
+
+    DEFAULT {
+        @Override
+        RocksDBClientOptions.RocksDBClientOptionsBuilder apply(RocksDBClientOptions.RocksDBClientOptionsBuilder builder) {
+            return builder;
+        }
+    },
+    POINT_LOOKUP {
+        @Override
+        RocksDBClientOptions.RocksDBClientOptionsBuilder apply(RocksDBClientOptions.RocksDBClientOptionsBuilder builder) {
+            return builder
+                .memTableType(RocksDBMemTableType.SKIP_LIST)
+                .dynamicLevelBytes(true)
+                .level0FileNumCompactionTrigger(2)
+                .level0SlowdownWritesTrigger(20)
+                .level0StopWritesTrigger(36)
+                .bloomBitsPerKey(14)
+                .blockSizeKB(4)
+                .blockRestartInterval(4)
+                .cacheIndexAndFilterBlocks(true)
+                .pinL0FilterAndIndexBlocksInCache(true)
+                .dataBlockHashIndex(true)
+                .partitionedIndexAndFilters(true)
+                .pinTopLevelIndexAndFilter(true)
+                .optimizeFiltersForMemory(true)
+                .readaheadSizeKB(0);
+        }
+    },
+    BULK_LOAD {
+        @Override
+        RocksDBClientOptions.RocksDBClientOptionsBuilder apply(RocksDBClientOptions.RocksDBClientOptionsBuilder builder) {
+            return builder
+                .memTableType(RocksDBMemTableType.VECTOR)
+                .maxWriteBuffers(4)
+                .writeBufferSizeKB(256 * 1024)
+                .maxTotalWalSizeKB(1024 * 1024)
+                .maxBackgroundJobs(4)
+                .level0FileNumCompactionTrigger(16)
+                .level0SlowdownWritesTrigger(64)
+                .level0StopWritesTrigger(128)
+                .targetFileSizeBaseKB(256 * 1024)
+                .maxBytesForLevelBaseKB(1024 * 1024)
+                .bloomBitsPerKey(10)
+                .compactionReadaheadSizeKB(2 * 1024);
+        }
+    },
+    SCAN_HEAVY {
+        @Override
+        RocksDBClientOptions.RocksDBClientOptionsBuilder apply(RocksDBClientOptions.RocksDBClientOptionsBuilder builder) {
+            return builder
+                .memTableType(RocksDBMemTableType.SKIP_LIST)
+                .dynamicLevelBytes(true)
+                .level0FileNumCompactionTrigger(4)
+                .level0SlowdownWritesTrigger(20)
+                .level0StopWritesTrigger(36)
+                .bloomBitsPerKey(0)
+                .blockSizeKB(64)
+                .blockRestartInterval(16)
+                .readaheadSizeKB(2 * 1024)
+                .compactionReadaheadSizeKB(2 * 1024);
+        }
+    },
+    LARGE_VALUES {
+        @Override
+        RocksDBClientOptions.RocksDBClientOptionsBuilder apply(RocksDBClientOptions.RocksDBClientOptionsBuilder builder) {
+            return builder
+                .memTableType(RocksDBMemTableType.SKIP_LIST)
+                .writeBufferSizeKB(128 * 1024)
+                .dynamicLevelBytes(true)
+                .bloomBitsPerKey(10)
+                .enableBlobFiles(true)
+                .minBlobSizeBytes(16 * 1024)
+                .blobFileSizeKB(256 * 1024)
+                .blobCompressionType(CompressionType.LZ4_COMPRESSION)
+                .enableBlobGarbageCollection(true)
+                .blobGarbageCollectionAgeCutoff(0.25)
+                .blobGarbageCollectionForceThreshold(0.8)
+                .blobCompactionReadaheadSizeKB(2 * 1024);
+        }
+    },
+    MEMORY_CONSTRAINED {
+        @Override
+        RocksDBClientOptions.RocksDBClientOptionsBuilder apply(RocksDBClientOptions.RocksDBClientOptionsBuilder builder) {
+            return builder
+                .memTableType(RocksDBMemTableType.SKIP_LIST)
+                .blockCacheCapacityKB(16 * 1024)
+                .blockCacheCompressedCapacityKB(0)
+                .rowCacheCapacityKB(0)
+                .maxWriteBuffers(2)
+                .writeBufferSizeKB(8 * 1024)
+                .maxTotalWalSizeKB(32 * 1024)
+                .dynamicLevelBytes(true)
+                .level0FileNumCompactionTrigger(2)
+                .level0SlowdownWritesTrigger(10)
+                .level0StopWritesTrigger(20)
+                .bloomBitsPerKey(10)
+                .blockSizeKB(16)
+                .cacheIndexAndFilterBlocks(true)
+                .pinL0FilterAndIndexBlocksInCache(false)
+                .partitionedIndexAndFilters(true)
+                .optimizeFiltersForMemory(true);
+        }
+    };
+
+    abstract RocksDBClientOptions.RocksDBClientOptionsBuilder apply(RocksDBClientOptions.RocksDBClientOptionsBuilder builder);
+}
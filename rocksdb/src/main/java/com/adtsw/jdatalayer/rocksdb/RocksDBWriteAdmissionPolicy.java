@@ -0,0 +1,22 @@
+package com.adtsw.jdatalayer.rocksdb;
+
+/**
+ * What writes do while RocksDB delays or stops writes, or while too many
+ * writes are already pending, see {@link RocksDBClientOptions#getMaxPendingWrites()}.
+ *
+ * BLOCK - the default, writes wait inside RocksDB for as long as the stall
+ * lasts, holding the namespace lock, and every other writer queues behind.
+ *
+ * FAIL_FAST - writes that cannot be admitted right away fail with a
+ * {@link com.adtsw.jdatalayer.rocksdb.stall.WriteStallException} before
+ * taking the namespace lock.
+ *
+ * BOUNDED_WAIT - writes wait up to writeAdmissionMaxWaitMs for the stall to
+ * clear or a pending write to complete, then fail like FAIL_FAST.
+ */
+public enum RocksDBWriteAdmissionPolicy {
+
+    BLOCK,
+    FAIL_FAST,
+    BOUNDED_WAIT
+}
@@ -0,0 +1,110 @@
+package com.adtsw.jdatalayer.rocksdb.buffers;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.adtsw.jdatalayer.core.client.DBStats;
+
+/**
+ * Off-heap key and value buffers of each thread, for reads and writes that
+ * go through RocksDB's direct ByteBuffer calls without byte[] copies. A
+ * thread's buffers are allocated on its first use and replaced only by
+ * larger ones when a key or value does not fit, so that once they have grown
+ * to the largest entries, reads and writes allocate nothing. Buffers grow up
+ * to maxRetainedCapacity, larger keys and values get a temporary buffer that
+ * is dropped after the call, so that a few outsized values do not pin their
+ * size of off-heap memory on every thread that read them.
+ *
+ * Buffers are reused by the next call on the same thread, callers must not
+ * keep them past the call they were handed to.
+ */
+public class DirectBuffers {
+
+    private static final int KEY = 0;
+    private static final int VALUE = 1;
+
+    private final int initialKeyCapacity;
+    private final int initialValueCapacity;
+    private final int maxRetainedCapacity;
+    private final ThreadLocal<ByteBuffer[]> buffers;
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder temporaryAllocations = new LongAdder();
+
+    /**
+     * @param initialKeyCapacity bytes of a thread's first key buffer
+     * @param initialValueCapacity bytes of a thread's first value buffer
+     * @param maxRetainedCapacity bytes up to which a thread's buffers grow and are kept
+     */
+    public DirectBuffers(int initialKeyCapacity, int initialValueCapacity, int maxRetainedCapacity) {
+        this.initialKeyCapacity = Math.max(initialKeyCapacity, 16);
+        this.initialValueCapacity = Math.max(initialValueCapacity, 16);
+        this.maxRetainedCapacity = Math.max(
+            maxRetainedCapacity, Math.max(this.initialKeyCapacity, this.initialValueCapacity)
+        );
+        this.buffers = ThreadLocal.withInitial(() -> new ByteBuffer[2]);
+    }
+
+    /**
+     * Cleared key buffer of the calling thread, with room for at least
+     * minCapacity bytes, a temporary buffer above the maximum retained capacity
+     */
+    public ByteBuffer getKeyBuffer(int minCapacity) {
+        return getBuffer(KEY, Math.max(minCapacity, initialKeyCapacity));
+    }
+
+    /**
+     * Cleared value buffer of the calling thread, with room for at least
+     * minCapacity bytes, a temporary buffer above the maximum retained capacity
+     */
+    public ByteBuffer getValueBuffer(int minCapacity) {
+        return getBuffer(VALUE, Math.max(minCapacity, initialValueCapacity));
+    }
+
+    private ByteBuffer getBuffer(int index, int minCapacity) {
+
+        if(minCapacity > maxRetainedCapacity) {
+            // freed with the buffer object once the caller is done with it
+            temporaryAllocations.increment();
+            return ByteBuffer.allocateDirect(minCapacity);
+        }
+        ByteBuffer[] threadBuffers = buffers.get();
+        ByteBuffer buffer = threadBuffers[index];
+        if(buffer == null || buffer.capacity() < minCapacity) {
+            // grow by at least half, so that slowly growing values do not reallocate every time
+            int capacity = buffer == null ? minCapacity
+                : Math.min(Math.max(minCapacity, buffer.capacity() * 3 / 2), maxRetainedCapacity);
+            buffer = ByteBuffer.allocateDirect(capacity);
+            threadBuffers[index] = buffer;
+            allocations.increment();
+            allocatedBytes.add(capacity);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Number of retained buffers allocated so far, growing buffers included
+     */
+    public long getAllocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * Number of temporary buffers allocated for keys and values above the maximum retained capacity
+     */
+    public long getTemporaryAllocations() {
+        return temporaryAllocations.sum();
+    }
+
+    /**
+     * Adds rocksdb_direct_buffer_allocations, rocksdb_direct_buffer_allocated_bytes
+     * and rocksdb_direct_buffer_temporary_allocations
+     */
+    public void addStatistics(DBStats dbStats) {
+        dbStats.add("rocksdb_direct_buffer_allocations", allocations.sum());
+        dbStats.add("rocksdb_direct_buffer_allocated_bytes", allocatedBytes.sum());
+        dbStats.add("rocksdb_direct_buffer_temporary_allocations", temporaryAllocations.sum());
+    }
+}
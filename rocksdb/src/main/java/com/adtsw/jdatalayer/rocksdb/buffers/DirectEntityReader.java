@@ -0,0 +1,63 @@
+package com.adtsw.jdatalayer.rocksdb.buffers;
+
+import static com.adtsw.jcommons.utils.EncoderUtil.decode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+import com.adtsw.jcommons.utils.JsonUtil;
+import com.adtsw.jdatalayer.core.annotations.DBEntityConfiguration;
+import com.adtsw.jdatalayer.core.model.DBEntity;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Value reader for {@link com.adtsw.jdatalayer.rocksdb.RocksDBKVClient#getDirect}
+ * that decodes entities written through the entity API. The JSON of STRING
+ * encoded values is parsed straight from the off-heap buffer, without a
+ * byte[] or String copy of the value, into tokens that are bound to the
+ * entity by {@link JsonUtil}, so that entities read the same as through the
+ * entity API. Other encodings need the whole value to decode it and are read
+ * through a String of the value.
+ */
+public class DirectEntityReader<T> implements Function<ByteBuffer, T> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Class<T> type;
+    private final EncodingFormat encodingFormat;
+
+    public DirectEntityReader(Class<T> type, EncodingFormat encodingFormat) {
+        this.type = type;
+        this.encodingFormat = encodingFormat;
+    }
+
+    /**
+     * Reader of the entity class, in the encoding of its {@link DBEntityConfiguration}
+     */
+    public static <T extends DBEntity> DirectEntityReader<T> of(Class<T> entityClass) {
+        DBEntityConfiguration configs = entityClass.getAnnotation(DBEntityConfiguration.class);
+        return new DirectEntityReader<>(entityClass, configs.encodingFormat());
+    }
+
+    @Override
+    public T apply(ByteBuffer value) {
+
+        if(encodingFormat != EncodingFormat.STRING) {
+            return JsonUtil.read(decode(encodingFormat, StandardCharsets.UTF_8.decode(value).toString()), type);
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(new ByteBufferBackedInputStream(value))) {
+            TokenBuffer tokens = new TokenBuffer(parser);
+            parser.nextToken();
+            tokens.copyCurrentStructure(parser);
+            return JsonUtil.convert(tokens, type);
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading entity", e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.adtsw.jdatalayer.rocksdb.changefeed;
+
+import static com.adtsw.jcommons.utils.EncoderUtil.decode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+import com.adtsw.jcommons.utils.JsonUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A single put or delete of an entity, or a range delete of a set, as decoded from the WAL.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ChangeEvent {
+
+    private static final TypeReference<TreeMap<String, Object>> MAP_TYPE_REFERENCE = new TypeReference<>() {};
+
+    private final long sequenceNumber;
+    private final ChangeType type;
+    private final String set;
+    /**
+     * Id of the entity, the first id for DELETE_RANGE events (null from the first id of the set)
+     */
+    private final String entityId;
+    /**
+     * Id past the last deleted entity for DELETE_RANGE events (null up to the
+     * last id of the set), null for other events
+     */
+    private final String endEntityId;
+    /**
+     * Stored bytes of the value for PUT events, null for DELETE and
+     * DELETE_RANGE events. Raw values written with putDirect are only
+     * available here, see {@link #getPayload()} for entities
+     */
+    private final byte[] value;
+
+    /**
+     * Stored (encoded) payload of entities for PUT events, null for DELETE and DELETE_RANGE events
+     */
+    public String getPayload() {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decoded fields of entities for PUT events, null for DELETE and DELETE_RANGE events
+     */
+    public Map<String, Object> getFields(EncodingFormat encodingFormat) {
+        return value == null ? null : JsonUtil.read(decode(encodingFormat, getPayload()), MAP_TYPE_REFERENCE);
+    }
+}
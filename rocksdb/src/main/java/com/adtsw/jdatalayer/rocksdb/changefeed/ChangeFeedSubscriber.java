@@ -0,0 +1,22 @@
+package com.adtsw.jdatalayer.rocksdb.changefeed;
+
+import java.util.List;
+
+public interface ChangeFeedSubscriber {
+
+    /**
+     * Receives the next batch of changes, in sequence number order. The feed
+     * only moves past a batch once this returns, so a subscriber that throws
+     * gets the same batch again on the next poll (at-least-once delivery).
+     * Subscribers resume after a restart by storing the sequence number of the
+     * last event they processed and subscribing from the one after it.
+     */
+    void onChanges(List<ChangeEvent> events);
+
+    /**
+     * Called when the feed can not be read, e.g. when the requested sequence
+     * number is no longer in the WAL or its archive.
+     */
+    default void onError(Exception e) {
+    }
+}
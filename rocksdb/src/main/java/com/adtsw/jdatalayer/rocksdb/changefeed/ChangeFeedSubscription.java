@@ -0,0 +1,92 @@
+package com.adtsw.jdatalayer.rocksdb.changefeed;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Polls a change source on a schedule and hands the changes to a subscriber
+ * in batches of at most maxBatchSize events.
+ */
+public class ChangeFeedSubscription implements AutoCloseable {
+
+    protected static Logger logger = LogManager.getLogger(ChangeFeedSubscription.class);
+
+    private final ChangeSource changeSource;
+    private final ChangeFeedSubscriber subscriber;
+    private final int maxBatchSize;
+    private final ScheduledFuture<?> pollFuture;
+    /**
+     * Held by a poll while it reads and hands over batches, so that close can wait for it
+     */
+    private final ReentrantLock pollLock = new ReentrantLock();
+    private volatile long nextSequenceNumber;
+    private volatile boolean closed;
+
+    public ChangeFeedSubscription(ChangeSource changeSource, ChangeFeedSubscriber subscriber,
+                                  long fromSequenceNumber, int maxBatchSize,
+                                  ScheduledExecutorService scheduler, long pollIntervalMs) {
+
+        this.changeSource = changeSource;
+        this.subscriber = subscriber;
+        this.maxBatchSize = maxBatchSize;
+        this.nextSequenceNumber = fromSequenceNumber;
+        this.pollFuture = scheduler.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+
+        pollLock.lock();
+        try {
+            if(closed) {
+                return;
+            }
+            List<ChangeEvent> events;
+            do {
+                events = changeSource.getChangesSince(nextSequenceNumber, maxBatchSize);
+                if(!events.isEmpty() && !closed) {
+                    subscriber.onChanges(events);
+                    nextSequenceNumber = events.get(events.size() - 1).getSequenceNumber() + 1;
+                }
+            } while (!closed && events.size() >= maxBatchSize);
+        } catch (Exception e) {
+            logger.warn("Exception reading change feed from sequence number " + nextSequenceNumber, e);
+            subscriber.onError(e);
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    /**
+     * Sequence number of the next event to be delivered
+     */
+    public long getNextSequenceNumber() {
+        return nextSequenceNumber;
+    }
+
+    /**
+     * Stops polling, waiting for a poll in progress to hand over its batch so
+     * that the next sequence number is final once this returns
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pollFuture.cancel(false);
+        // no new poll starts once closed, wait for the one in progress, if any
+        pollLock.lock();
+        try {
+            logger.debug("closed change feed at sequence number " + nextSequenceNumber);
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    public interface ChangeSource {
+        List<ChangeEvent> getChangesSince(long sequenceNumber, int maxEvents);
+    }
+}
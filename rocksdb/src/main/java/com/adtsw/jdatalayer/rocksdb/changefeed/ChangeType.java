@@ -0,0 +1,12 @@
+package com.adtsw.jdatalayer.rocksdb.changefeed;
+
+public enum ChangeType {
+
+    PUT,
+    DELETE,
+    /**
+     * Deletes every entity of the set from entityId (inclusive) to
+     * endEntityId (exclusive), null bounds for the first or last id of the set
+     */
+    DELETE_RANGE
+}
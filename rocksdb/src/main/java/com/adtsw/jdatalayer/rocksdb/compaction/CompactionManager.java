@@ -0,0 +1,303 @@
+package com.adtsw.jdatalayer.rocksdb.compaction;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rocksdb.CompactRangeOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+import com.adtsw.jdatalayer.core.client.DBStats;
+
+/**
+ * Manual and scheduled compactions of one namespace. Compactions run one at a
+ * time on a thread of their own, so that long compactions do not hold up
+ * the client's other scheduled tasks, and are forced down to the last level
+ * so that the tombstones of deleted ranges are dropped.
+ *
+ * Besides explicit requests, compactions are triggered
+ * - once per off-peak window, when a window is configured
+ * - after compactAfterDeletes single deletes, when the threshold is positive
+ * - over the deleted range after every range delete, when enabled
+ *
+ * Background flushes and compactions can be paused around latency critical
+ * windows, scheduled compactions are skipped while paused.
+ */
+public class CompactionManager implements AutoCloseable {
+
+    protected static Logger logger = LogManager.getLogger(CompactionManager.class);
+
+    private static final long OFF_PEAK_CHECK_INTERVAL_MS = 60 * 1000L;
+
+    private final String namespace;
+    private final RocksDB db;
+    private final long compactAfterDeletes;
+    private final boolean compactAfterRangeDelete;
+    private final LocalTime offPeakStart;
+    private final LocalTime offPeakEnd;
+    private final ScheduledExecutorService executor;
+
+    private final LongAdder requestedCompactions = new LongAdder();
+    private final LongAdder completedCompactions = new LongAdder();
+    private final LongAdder failedCompactions = new LongAdder();
+    private final AtomicInteger runningCompactions = new AtomicInteger();
+    private final AtomicLong deletesSinceCompaction = new AtomicLong();
+    private volatile long lastCompactionMs;
+    private volatile long lastCompactionTimestampMs;
+    private volatile LocalDate lastOffPeakWindow;
+    private volatile boolean backgroundWorkPaused;
+    private volatile boolean closed;
+
+    /**
+     * @param compactAfterDeletes compact the namespace after this many deletes, 0 to disable
+     * @param compactAfterRangeDelete compact every deleted range right after the delete
+     * @param offPeakStart start of the daily off-peak window, null for no window
+     * @param offPeakEnd end of the daily off-peak window, before the start for windows spanning midnight
+     */
+    public CompactionManager(String namespace, RocksDB db, long compactAfterDeletes,
+                             boolean compactAfterRangeDelete, LocalTime offPeakStart, LocalTime offPeakEnd) {
+
+        if((offPeakStart == null) != (offPeakEnd == null)) {
+            throw new IllegalArgumentException("Off-peak window needs both a start and an end");
+        }
+        this.namespace = namespace;
+        this.db = db;
+        this.compactAfterDeletes = compactAfterDeletes;
+        this.compactAfterRangeDelete = compactAfterRangeDelete;
+        this.offPeakStart = offPeakStart;
+        this.offPeakEnd = offPeakEnd;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rocksdb-" + namespace + "-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if(offPeakStart != null) {
+            this.executor.scheduleWithFixedDelay(() -> {
+                try {
+                    compactIfOffPeak(LocalDateTime.now());
+                } catch (Exception e) {
+                    // already logged, try again in the next window
+                }
+            }, 0, OFF_PEAK_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Compacts the keys from begin (inclusive) to end (exclusive) on the
+     * calling thread, null bounds for the start or end of the namespace
+     */
+    public void compactRange(byte[] begin, byte[] end) {
+
+        requestedCompactions.increment();
+        runCompaction(begin, end);
+    }
+
+    /**
+     * Queues a compaction of the keys from begin (inclusive) to end (exclusive)
+     */
+    public Future<?> requestCompaction(byte[] begin, byte[] end) {
+
+        requestedCompactions.increment();
+        return executor.submit(() -> runCompaction(begin, end));
+    }
+
+    /**
+     * Counts single deletes towards compactAfterDeletes, queuing a compaction
+     * of the whole namespace once the threshold is reached
+     */
+    public void recordDeletes(long count) {
+
+        if(compactAfterDeletes <= 0) {
+            return;
+        }
+        long deletes = deletesSinceCompaction.addAndGet(count);
+        if(deletes >= compactAfterDeletes && deletesSinceCompaction.compareAndSet(deletes, 0)) {
+            logger.info("Compacting namespace " + namespace + " after " + deletes + " deletes");
+            requestCompaction(null, null);
+        }
+    }
+
+    /**
+     * Queues a compaction of a range that was just deleted, if enabled
+     */
+    public void recordRangeDelete(byte[] begin, byte[] end) {
+
+        if(compactAfterRangeDelete) {
+            requestCompaction(begin, end);
+        }
+    }
+
+    /**
+     * Stops background flushes and compactions until {@link #continueBackgroundWork()}.
+     * Writes keep filling the memtables and stall once they are full
+     */
+    public synchronized void pauseBackgroundWork() {
+
+        if(backgroundWorkPaused) {
+            return;
+        }
+        try {
+            db.pauseBackgroundWork();
+            backgroundWorkPaused = true;
+            logger.info("Paused background work of namespace " + namespace);
+        } catch (RocksDBException e) {
+            logger.warn("Exception pausing background work of namespace " + namespace, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized void continueBackgroundWork() {
+
+        if(!backgroundWorkPaused) {
+            return;
+        }
+        try {
+            db.continueBackgroundWork();
+            backgroundWorkPaused = false;
+            logger.info("Resumed background work of namespace " + namespace);
+        } catch (RocksDBException e) {
+            logger.warn("Exception resuming background work of namespace " + namespace, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean isBackgroundWorkPaused() {
+        return backgroundWorkPaused;
+    }
+
+    /**
+     * Whether the time of day falls in the off-peak window, always false without a window
+     */
+    public boolean isOffPeak(LocalTime time) {
+
+        if(offPeakStart == null) {
+            return false;
+        }
+        if(offPeakStart.isBefore(offPeakEnd)) {
+            return !time.isBefore(offPeakStart) && time.isBefore(offPeakEnd);
+        }
+        return !time.isBefore(offPeakStart) || time.isBefore(offPeakEnd);
+    }
+
+    /**
+     * Compacts the whole namespace if the time falls in an off-peak window
+     * that has not seen its compaction yet
+     *
+     * @return whether a compaction ran
+     */
+    boolean compactIfOffPeak(LocalDateTime now) {
+
+        LocalTime time = now.toLocalTime();
+        if(closed || backgroundWorkPaused || !isOffPeak(time)) {
+            return false;
+        }
+        // windows spanning midnight belong to the day they started
+        LocalDate window = offPeakStart.isBefore(offPeakEnd) || !time.isBefore(offPeakStart)
+            ? now.toLocalDate() : now.toLocalDate().minusDays(1);
+        if(window.equals(lastOffPeakWindow)) {
+            return false;
+        }
+        lastOffPeakWindow = window;
+        logger.info("Starting off-peak compaction of namespace " + namespace);
+        requestedCompactions.increment();
+        runCompaction(null, null);
+        return true;
+    }
+
+    private void runCompaction(byte[] begin, byte[] end) {
+
+        if(closed) {
+            return;
+        }
+        runningCompactions.incrementAndGet();
+        long start = System.currentTimeMillis();
+        try (CompactRangeOptions compactRangeOptions = new CompactRangeOptions()
+            .setBottommostLevelCompaction(CompactRangeOptions.BottommostLevelCompaction.kForce)
+            .setExclusiveManualCompaction(false)) {
+            db.compactRange(db.getDefaultColumnFamily(), begin, end, compactRangeOptions);
+            if(begin == null && end == null) {
+                deletesSinceCompaction.set(0);
+            }
+            completedCompactions.increment();
+        } catch (RocksDBException e) {
+            failedCompactions.increment();
+            logger.warn("Exception compacting namespace " + namespace, e);
+            throw new RuntimeException(e);
+        } finally {
+            lastCompactionMs = System.currentTimeMillis() - start;
+            lastCompactionTimestampMs = System.currentTimeMillis();
+            runningCompactions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Adds [namespace]_compactions_requested, _completed, _failed and
+     * _running, _last_compaction_ms, _last_compaction_timestamp_ms,
+     * _deletes_since_compaction and _background_work_paused, along with the
+     * compactions RocksDB is running on its own, its pending compaction bytes
+     * and level 0 files
+     */
+    public void addStatistics(DBStats dbStats) {
+
+        String prefix = namespace + "_";
+        dbStats.add(prefix + "compactions_requested", requestedCompactions.sum());
+        dbStats.add(prefix + "compactions_completed", completedCompactions.sum());
+        dbStats.add(prefix + "compactions_failed", failedCompactions.sum());
+        dbStats.add(prefix + "compactions_running", (long) runningCompactions.get());
+        dbStats.addNonSummable(prefix + "last_compaction_ms", lastCompactionMs);
+        dbStats.addNonSummable(prefix + "last_compaction_timestamp_ms", lastCompactionTimestampMs);
+        dbStats.add(prefix + "deletes_since_compaction", deletesSinceCompaction.get());
+        dbStats.addNonSummable(prefix + "background_work_paused", backgroundWorkPaused ? 1L : 0L);
+        try {
+            dbStats.add(prefix + "num_running_compactions", db.getLongProperty("rocksdb.num-running-compactions"));
+            dbStats.add(prefix + "estimate_pending_compaction_bytes",
+                db.getLongProperty("rocksdb.estimate-pending-compaction-bytes"));
+            dbStats.add(prefix + "num_files_at_level0", Long.parseLong(db.getProperty("rocksdb.num-files-at-level0")));
+        } catch (RocksDBException e) {
+            logger.warn("Exception reading compaction properties of namespace " + namespace, e);
+        }
+    }
+
+    /**
+     * Stops scheduled compactions and resumes background work, then cancels
+     * all background work, which aborts a running manual compaction that the
+     * executor could not interrupt, so that the database can close. Errors
+     * are logged, closing goes on
+     */
+    @Override
+    public void close() {
+
+        if(closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdownNow();
+        try {
+            continueBackgroundWork();
+        } catch (RuntimeException e) {
+            // already logged, background work is cancelled below either way
+        }
+        try {
+            db.cancelAllBackgroundWork(true);
+        } catch (RuntimeException e) {
+            logger.warn("Exception cancelling background work of namespace " + namespace, e);
+        }
+        try {
+            if(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Compaction of namespace " + namespace + " still running after close");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.adtsw.jdatalayer.rocksdb.keys;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.adtsw.jdatalayer.core.annotations.EntityId;
+
+/**
+ * Tuples of several ids, ordered by the first component, then the second and
+ * so on. The entity id is the components joined by
+ * {@link EntityId#COMPOSITE_SEPARATOR}, as built by DBAccessObject for
+ * entities with several {@link EntityId} fields; only the last component may
+ * contain the separator.
+ */
+public class CompositeKeyCodec implements KeyCodec {
+
+    private static final Pattern SEPARATOR = Pattern.compile(Pattern.quote(EntityId.COMPOSITE_SEPARATOR));
+
+    private final KeyCodec[] components;
+
+    public CompositeKeyCodec(List<KeyCodec> components) {
+
+        if(components.size() < 2) {
+            throw new IllegalArgumentException("Composite keys need at least 2 components, got " + components.size());
+        }
+        this.components = components.toArray(new KeyCodec[0]);
+    }
+
+    @Override
+    public byte[] encode(String entityId, boolean terminal) {
+
+        String[] parts = SEPARATOR.split(entityId, components.length);
+        if(parts.length != components.length) {
+            throw new IllegalArgumentException(
+                "Entity id " + entityId + " does not have " + components.length + " components"
+            );
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < components.length; i++) {
+            byte[] encoded = components[i].encode(parts[i], terminal && i == components.length - 1);
+            out.write(encoded, 0, encoded.length);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public String decode(ByteBuffer key, boolean terminal) {
+
+        StringBuilder entityId = new StringBuilder();
+        for (int i = 0; i < components.length; i++) {
+            if(i > 0) {
+                entityId.append(EntityId.COMPOSITE_SEPARATOR);
+            }
+            entityId.append(components[i].decode(key, terminal && i == components.length - 1));
+        }
+        return entityId.toString();
+    }
+}
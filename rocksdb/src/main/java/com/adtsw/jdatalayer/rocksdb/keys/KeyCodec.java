@@ -0,0 +1,32 @@
+package com.adtsw.jdatalayer.rocksdb.keys;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encoding of entity ids whose unsigned byte order matches the order
+ * of the ids, so that RocksDB iterates, range deletes and compacts in id
+ * order. See {@link KeyCodecs} for the available codecs.
+ */
+public interface KeyCodec {
+
+    /**
+     * @param terminal whether the id ends the key, variable length ids that
+     * are followed by other components need a delimiter
+     */
+    byte[] encode(String entityId, boolean terminal);
+
+    /**
+     * Writes the encoded id at the buffer's position, codecs that can should
+     * write it without an intermediate array
+     *
+     * @throws java.nio.BufferOverflowException if the id does not fit
+     */
+    default void encode(String entityId, boolean terminal, ByteBuffer target) {
+        target.put(encode(entityId, terminal));
+    }
+
+    /**
+     * Reads an id from the buffer's position on, leaving the position after it
+     */
+    String decode(ByteBuffer key, boolean terminal);
+}
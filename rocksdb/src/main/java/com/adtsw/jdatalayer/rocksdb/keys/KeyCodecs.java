@@ -0,0 +1,47 @@
+package com.adtsw.jdatalayer.rocksdb.keys;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.adtsw.jdatalayer.core.accessobject.EntityIds;
+import com.adtsw.jdatalayer.core.annotations.EntityId;
+import com.adtsw.jdatalayer.core.model.DBEntity;
+
+public class KeyCodecs {
+
+    public static final KeyCodec STRING = new StringKeyCodec();
+    public static final KeyCodec LONG = new LongKeyCodec();
+    public static final KeyCodec UUID = new UuidKeyCodec();
+
+    private KeyCodecs() {
+    }
+
+    public static KeyCodec composite(KeyCodec... components) {
+        return new CompositeKeyCodec(List.of(components));
+    }
+
+    /**
+     * Codec matching the types of the entity's {@link EntityId} fields or
+     * methods: LONG for long, int, short and byte ids, UUID for UUIDs and
+     * STRING for anything else, composite for entities with a composite id,
+     * see {@link EntityIds}
+     */
+    public static KeyCodec forEntity(Class<? extends DBEntity> entityClass) {
+
+        List<KeyCodec> components = new ArrayList<>();
+        EntityIds.getIdTypes(entityClass).forEach(idType -> components.add(forType(idType)));
+        return components.size() == 1 ? components.get(0) : new CompositeKeyCodec(components);
+    }
+
+    private static KeyCodec forType(Class<?> type) {
+
+        if(type == long.class || type == Long.class || type == int.class || type == Integer.class
+            || type == short.class || type == Short.class || type == byte.class || type == Byte.class) {
+            return LONG;
+        }
+        if(type == java.util.UUID.class) {
+            return UUID;
+        }
+        return STRING;
+    }
+}
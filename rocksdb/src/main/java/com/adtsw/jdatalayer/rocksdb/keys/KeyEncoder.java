@@ -0,0 +1,207 @@
+package com.adtsw.jdatalayer.rocksdb.keys;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.javatuples.Pair;
+import org.javatuples.Triplet;
+
+/**
+ * Builds and parses the keys of a namespace. Sets with a {@link KeyFormat}
+ * get binary keys: 0x00, the 2 byte set id and the id encoded by the set's
+ * {@link KeyCodec}, so that keys are short and sort in id order. Other sets
+ * keep the text keys [set]$$[entity id], which sort as strings. Their names
+ * must not end with '$' or contain "$$", the keys of such a set would start
+ * with the key prefix of another set.
+ */
+public class KeyEncoder {
+
+    public static final String SEPARATOR = "$$";
+
+    private static final byte BINARY_KEY_MARKER = 0x00;
+    private static final int BINARY_PREFIX_LENGTH = 3;
+    private static final int MAX_SET_ID = 0xFFFF;
+
+    private final Map<String, KeyFormat> keyFormats;
+    private final Map<Integer, String> setsById;
+
+    public KeyEncoder(Map<String, KeyFormat> keyFormats) {
+
+        this.keyFormats = new HashMap<>(keyFormats);
+        this.setsById = new HashMap<>();
+        keyFormats.forEach((set, keyFormat) -> {
+            int setId = keyFormat.getSetId();
+            if(setId < 0 || setId > MAX_SET_ID) {
+                throw new IllegalArgumentException("Set id of " + set + " must be between 0 and " + MAX_SET_ID);
+            }
+            String previous = setsById.put(setId, set);
+            if(previous != null) {
+                throw new IllegalArgumentException("Sets " + previous + " and " + set + " share set id " + setId);
+            }
+        });
+    }
+
+    public byte[] encode(String set, String entityId) {
+
+        KeyFormat keyFormat = keyFormats.get(set);
+        if(keyFormat == null) {
+            assertTextSetName(set);
+            return (set + SEPARATOR + entityId).getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] encodedId = keyFormat.getCodec().encode(entityId, true);
+        return ByteBuffer.allocate(BINARY_PREFIX_LENGTH + encodedId.length)
+            .put(getPrefix(keyFormat.getSetId()))
+            .put(encodedId)
+            .array();
+    }
+
+    /**
+     * Writes the key at the buffer's position, without allocating for ASCII
+     * text keys and for binary keys whose codec writes to buffers
+     *
+     * @throws java.nio.BufferOverflowException if the key does not fit
+     */
+    public void encode(String set, String entityId, ByteBuffer target) {
+
+        KeyFormat keyFormat = keyFormats.get(set);
+        if(keyFormat == null) {
+            assertTextSetName(set);
+            putText(set, target);
+            putText(SEPARATOR, target);
+            putText(entityId, target);
+            return;
+        }
+        int setId = keyFormat.getSetId();
+        target.put(BINARY_KEY_MARKER).put((byte) (setId >>> 8)).put((byte) setId);
+        keyFormat.getCodec().encode(entityId, true, target);
+    }
+
+    /**
+     * Text keys of a set named [set]$ or [set]$$[...] fall into the key range
+     * of [set], so that scans and range deletes of [set] would reach them
+     */
+    private void assertTextSetName(String set) {
+        if(set.endsWith("$") || set.contains(SEPARATOR)) {
+            throw new IllegalArgumentException("Set name " + set + " must not end with '$' or contain " + SEPARATOR);
+        }
+    }
+
+    private void putText(String text, ByteBuffer target) {
+
+        for (int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) >= 0x80) {
+                target.put(text.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        for (int i = 0; i < text.length(); i++) {
+            target.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Set and entity id of a key
+     */
+    public Pair<String, String> decode(byte[] key) {
+
+        if(isBinary(key)) {
+            ByteBuffer buffer = ByteBuffer.wrap(key);
+            buffer.get();
+            String set = getSet(Short.toUnsignedInt(buffer.getShort()));
+            return new Pair<>(set, keyFormats.get(set).getCodec().decode(buffer, true));
+        }
+        String storedKey = new String(key, StandardCharsets.UTF_8);
+        int separator = storedKey.indexOf(SEPARATOR);
+        if(separator >= 0) {
+            return new Pair<>(storedKey.substring(0, separator), storedKey.substring(separator + SEPARATOR.length()));
+        }
+        return new Pair<>(storedKey, storedKey);
+    }
+
+    /**
+     * Set, first id and id past the last id of a range from
+     * {@link #getRangeStart} and {@link #getRangeEnd}, null ids for the
+     * first and last id of the set
+     */
+    public Triplet<String, String, String> decodeRange(byte[] begin, byte[] end) {
+
+        String set;
+        String fromId;
+        if(isBinary(begin) && begin.length == BINARY_PREFIX_LENGTH) {
+            set = getSet(Short.toUnsignedInt(ByteBuffer.wrap(begin, 1, 2).getShort()));
+            fromId = null;
+        } else {
+            Pair<String, String> setWithEntityId = decode(begin);
+            set = setWithEntityId.getValue0();
+            fromId = setWithEntityId.getValue1().isEmpty() ? null : setWithEntityId.getValue1();
+        }
+        String toIdExclusive = Arrays.equals(end, getRangeEnd(set, null)) ? null : decode(end).getValue1();
+        return new Triplet<>(set, fromId, toIdExclusive);
+    }
+
+    /**
+     * Key as text, [set]$$[entity id] for binary keys as well
+     */
+    public String toString(byte[] key) {
+
+        if(isBinary(key)) {
+            Pair<String, String> setWithEntityId = decode(key);
+            return setWithEntityId.getValue0() + SEPARATOR + setWithEntityId.getValue1();
+        }
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * First key of the set from fromId on, null for the first key of the set
+     */
+    public byte[] getRangeStart(String set, String fromId) {
+
+        KeyFormat keyFormat = keyFormats.get(set);
+        if(fromId != null || keyFormat == null) {
+            return encode(set, fromId == null ? "" : fromId);
+        }
+        return getPrefix(keyFormat.getSetId());
+    }
+
+    /**
+     * Key past the set's keys before toIdExclusive, null for the key past all keys of the set
+     */
+    public byte[] getRangeEnd(String set, String toIdExclusive) {
+
+        if(toIdExclusive != null) {
+            return encode(set, toIdExclusive);
+        }
+        KeyFormat keyFormat = keyFormats.get(set);
+        if(keyFormat == null) {
+            // '%' follows '$', [set]$% is past the last key of the set and, as set
+            // names do not end with '$' or contain $$, before the keys of any other set
+            assertTextSetName(set);
+            return (set + "$%").getBytes(StandardCharsets.UTF_8);
+        }
+        int setId = keyFormat.getSetId();
+        return setId == MAX_SET_ID ? new byte[] {BINARY_KEY_MARKER + 1} : getPrefix(setId + 1);
+    }
+
+    public boolean isBinary(String set) {
+        return keyFormats.containsKey(set);
+    }
+
+    private boolean isBinary(byte[] key) {
+        return key.length >= BINARY_PREFIX_LENGTH && key[0] == BINARY_KEY_MARKER;
+    }
+
+    private String getSet(int setId) {
+        String set = setsById.get(setId);
+        if(set == null) {
+            throw new IllegalArgumentException("Unknown set id " + setId);
+        }
+        return set;
+    }
+
+    private byte[] getPrefix(int setId) {
+        return new byte[] {BINARY_KEY_MARKER, (byte) (setId >>> 8), (byte) setId};
+    }
+}
@@ -0,0 +1,19 @@
+package com.adtsw.jdatalayer.rocksdb.keys;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Binary key layout of one set: keys are 0x00, the 2 byte set id and the
+ * encoded entity id. The set id replaces the set name in every key and must
+ * stay the same for the lifetime of the data.
+ */
+@Getter
+@ToString
+@AllArgsConstructor(staticName = "of")
+public class KeyFormat {
+
+    private final int setId;
+    private final KeyCodec codec;
+}
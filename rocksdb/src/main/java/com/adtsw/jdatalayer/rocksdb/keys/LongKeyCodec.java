@@ -0,0 +1,25 @@
+package com.adtsw.jdatalayer.rocksdb.keys;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Signed 64 bit ids as 8 big endian bytes with the sign bit flipped, so that
+ * negative ids sort before positive ones
+ */
+public class LongKeyCodec implements KeyCodec {
+
+    @Override
+    public byte[] encode(String entityId, boolean terminal) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(Long.parseLong(entityId) ^ Long.MIN_VALUE).array();
+    }
+
+    @Override
+    public void encode(String entityId, boolean terminal, ByteBuffer target) {
+        target.putLong(Long.parseLong(entityId) ^ Long.MIN_VALUE);
+    }
+
+    @Override
+    public String decode(ByteBuffer key, boolean terminal) {
+        return String.valueOf(key.getLong() ^ Long.MIN_VALUE);
+    }
+}
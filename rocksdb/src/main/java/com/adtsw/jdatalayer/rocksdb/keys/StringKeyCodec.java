@@ -0,0 +1,57 @@
+package com.adtsw.jdatalayer.rocksdb.keys;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 ids, as is when they end the key. Ids followed by other components
+ * escape 0x00 as 0x00 0xFF and end with 0x00 0x01, which keeps shorter ids
+ * before longer ones with the same start.
+ */
+public class StringKeyCodec implements KeyCodec {
+
+    private static final byte ESCAPE = 0x00;
+    private static final byte ESCAPED_ZERO = (byte) 0xFF;
+    private static final byte TERMINATOR = 0x01;
+
+    @Override
+    public byte[] encode(String entityId, boolean terminal) {
+
+        byte[] bytes = entityId.getBytes(StandardCharsets.UTF_8);
+        if(terminal) {
+            return bytes;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + 2);
+        for (byte b : bytes) {
+            out.write(b);
+            if(b == ESCAPE) {
+                out.write(ESCAPED_ZERO);
+            }
+        }
+        out.write(ESCAPE);
+        out.write(TERMINATOR);
+        return out.toByteArray();
+    }
+
+    @Override
+    public String decode(ByteBuffer key, boolean terminal) {
+
+        if(terminal) {
+            byte[] bytes = new byte[key.remaining()];
+            key.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (key.hasRemaining()) {
+            byte b = key.get();
+            if(b == ESCAPE) {
+                if(key.get() == TERMINATOR) {
+                    break;
+                }
+            }
+            out.write(b);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
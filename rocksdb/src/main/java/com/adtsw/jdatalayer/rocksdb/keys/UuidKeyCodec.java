@@ -0,0 +1,25 @@
+package com.adtsw.jdatalayer.rocksdb.keys;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * UUIDs as their 16 bytes, most significant first. Time ordered UUIDs (e.g.
+ * version 7) sort by creation time
+ */
+public class UuidKeyCodec implements KeyCodec {
+
+    @Override
+    public byte[] encode(String entityId, boolean terminal) {
+        UUID uuid = UUID.fromString(entityId);
+        return ByteBuffer.allocate(16)
+            .putLong(uuid.getMostSignificantBits())
+            .putLong(uuid.getLeastSignificantBits())
+            .array();
+    }
+
+    @Override
+    public String decode(ByteBuffer key, boolean terminal) {
+        return new UUID(key.getLong(), key.getLong()).toString();
+    }
+}
@@ -42,7 +42,11 @@ public class RocksDBProperties {
 //            "rocksdb.estimate-oldest-key-time",
             "rocksdb.block-cache-capacity",
             "rocksdb.block-cache-usage",
-            "rocksdb.block-cache-pinned-usage"
+            "rocksdb.block-cache-pinned-usage",
+            "rocksdb.num-blob-files",
+            "rocksdb.total-blob-file-size",
+            "rocksdb.live-blob-file-size",
+            "rocksdb.live-blob-file-garbage-size"
     );
 
     public static final List<String> SORTED_ROCKSDB_PROPERTIES = new ArrayList<>(ROCKSDB_PROPERTIES);
@@ -1,12 +1,19 @@
 package com.adtsw.jdatalayer.rocksdb.metrics;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.HistogramData;
+import org.rocksdb.HistogramType;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.Statistics;
@@ -21,13 +28,25 @@ public class RocksDBStatsCollector implements PrometheusStatsCollector {
 
     protected static Logger logger = LogManager.getLogger(RocksDBStatsCollector.class);
 
+    private static final String[] HISTOGRAM_STATS = {"p50", "p95", "p99", "max", "count", "sum"};
+
     private final RocksDB rocksDB;
     private final String namespace;
     private final Statistics rocksDBStats;
     private final List<ColumnFamilyHandle> columnFamilyHandles;
-    private final Set<String> columnFamilyNames;
+    private final Map<ColumnFamilyHandle, String> columnFamilyNames;
     private final Gauge gaugeProperties;
     private final Gauge gaugeStats;
+    private final Gauge gaugeHistograms;
+
+    /**
+     * Gauge children are resolved once, label lookups build a label list on
+     * every call
+     */
+    private final Gauge.Child[] aggregatedPropertyGauges;
+    private final Map<ColumnFamilyHandle, Gauge.Child[]> columnFamilyPropertyGauges;
+    private final Map<TickerType, Gauge.Child> tickerGauges;
+    private final Map<HistogramType, Gauge.Child[]> histogramGauges;
 
     /**
      * Wrap RocksDB instance from Application
@@ -38,12 +57,27 @@ public class RocksDBStatsCollector implements PrometheusStatsCollector {
     public RocksDBStatsCollector(RocksDB rocksDB, String namespace,
         Statistics rocksDBStats, List<ColumnFamilyHandle> listCFHandles, 
         CollectorRegistry registry) {
+
+        this(rocksDB, namespace, rocksDBStats, listCFHandles, registry,
+            EnumSet.complementOf(EnumSet.of(TickerType.TICKER_ENUM_MAX)),
+            EnumSet.complementOf(EnumSet.of(HistogramType.HISTOGRAM_ENUM_MAX)));
+    }
+
+    /**
+     * @param tickers tickers to export, RocksJava reads tickers one at a time,
+     * so exporting only the tickers that are watched cuts the cost of an update
+     * @param histograms histograms to export with p50, p95, p99, max, count and sum
+     */
+    public RocksDBStatsCollector(RocksDB rocksDB, String namespace,
+        Statistics rocksDBStats, List<ColumnFamilyHandle> listCFHandles,
+        CollectorRegistry registry, Set<TickerType> tickers, Set<HistogramType> histograms) {
         
         this.rocksDB = rocksDB;
         this.namespace = namespace;
         this.rocksDBStats = rocksDBStats;
         this.columnFamilyHandles = listCFHandles;
-        this.columnFamilyNames = new HashSet<>();
+        this.columnFamilyNames = new HashMap<>();
+        this.columnFamilyPropertyGauges = new HashMap<>();
 
         this.gaugeProperties = Gauge.build()
             .name("rocksdb_" + this.namespace + "_props")
@@ -57,6 +91,32 @@ public class RocksDBStatsCollector implements PrometheusStatsCollector {
             .labelNames("namespace", "ticker")
             .create().register(registry);
 
+        this.gaugeHistograms = Gauge.build()
+            .name("rocksdb_" + this.namespace + "_histograms")
+            .help("RocksDB " + this.namespace + " Histograms")
+            .labelNames("namespace", "histogram", "stat")
+            .create().register(registry);
+
+        List<String> props = RocksDBProperties.SORTED_ROCKSDB_PROPERTIES;
+        this.aggregatedPropertyGauges = new Gauge.Child[props.size()];
+        for (int i = 0; i < props.size(); i++) {
+            aggregatedPropertyGauges[i] = gaugeProperties.labels(this.namespace, "aggregated", props.get(i));
+        }
+
+        this.tickerGauges = new EnumMap<>(TickerType.class);
+        for (TickerType ticker : tickers) {
+            tickerGauges.put(ticker, gaugeStats.labels(this.namespace, ticker.toString()));
+        }
+
+        this.histogramGauges = new EnumMap<>(HistogramType.class);
+        for (HistogramType histogram : histograms) {
+            Gauge.Child[] statGauges = new Gauge.Child[HISTOGRAM_STATS.length];
+            for (int i = 0; i < HISTOGRAM_STATS.length; i++) {
+                statGauges[i] = gaugeHistograms.labels(this.namespace, histogram.toString(), HISTOGRAM_STATS[i]);
+            }
+            histogramGauges.put(histogram, statGauges);
+        }
+
         updateColumnFamilyNames();
     }
 
@@ -110,45 +170,56 @@ public class RocksDBStatsCollector implements PrometheusStatsCollector {
     }
 
     private synchronized void onCFHandleChange() {
-        Set<String> existingCFNames = new HashSet<>();
-        existingCFNames.addAll(columnFamilyNames);
+        Collection<String> existingCFNames = new ArrayList<>(columnFamilyNames.values());
 
         updateColumnFamilyNames();
 
         List<String> props = RocksDBProperties.SORTED_ROCKSDB_PROPERTIES;
         for (String cfName : existingCFNames) {
-            if (!columnFamilyNames.contains(cfName)) { // CF is dropped
+            if (!columnFamilyNames.containsValue(cfName)) { // CF is dropped
                 for (String prop : props) {
-                    gaugeProperties.remove(cfName, prop);
+                    gaugeProperties.remove(this.namespace, cfName, prop);
                 }
             }
         }
     }
 
-    private void updateColumnFamilyNames() {
+    /**
+     * Resolves names and property gauges of the column families, so that
+     * updates don't read names over JNI or build label lists
+     */
+    private synchronized void updateColumnFamilyNames() {
         logger.info("Updating CF Names");
-        synchronized (columnFamilyNames) {
-            columnFamilyNames.clear();
+        List<String> props = RocksDBProperties.SORTED_ROCKSDB_PROPERTIES;
+        columnFamilyNames.clear();
+        columnFamilyPropertyGauges.clear();
+        synchronized (columnFamilyHandles) {
             for (ColumnFamilyHandle cfHandle : columnFamilyHandles) {
                 try {
                     String cfName = new String(cfHandle.getName());
-                    columnFamilyNames.add(cfName);
+                    columnFamilyNames.put(cfHandle, cfName);
+                    Gauge.Child[] propertyGauges = new Gauge.Child[props.size()];
+                    for (int i = 0; i < props.size(); i++) {
+                        propertyGauges[i] = gaugeProperties.labels(this.namespace, cfName, props.get(i));
+                    }
+                    columnFamilyPropertyGauges.put(cfHandle, propertyGauges);
                 } catch (RocksDBException ex) {
                     logger.warn("Exception updating column family names : " + ex.getMessage());
                 }
             }
         }
-        logger.info("Updated CF Names: " + columnFamilyNames);
+        logger.info("Updated CF Names: " + columnFamilyNames.values());
     }
 
-    private void updateGaugeProps() {
+    private synchronized void updateGaugeProps() {
         if(this.rocksDB != null) {
             try {
                 List<String> props = RocksDBProperties.SORTED_ROCKSDB_PROPERTIES;
-                for (String prop : props) {
-                    updateAggregatedGuageProps(prop);
-                    for (ColumnFamilyHandle cfHandle : columnFamilyHandles) {
-                        updateCFGuageProps(prop, cfHandle);
+                for (int i = 0; i < props.size(); i++) {
+                    String prop = props.get(i);
+                    updateAggregatedGuageProps(prop, aggregatedPropertyGauges[i]);
+                    for (Map.Entry<ColumnFamilyHandle, Gauge.Child[]> cfGauges : columnFamilyPropertyGauges.entrySet()) {
+                        updateCFGuageProps(prop, cfGauges.getKey(), cfGauges.getValue()[i]);
                     }
                 }
             } catch (Exception ex) {
@@ -157,20 +228,17 @@ public class RocksDBStatsCollector implements PrometheusStatsCollector {
         }
     }
 
-    private void updateAggregatedGuageProps(String prop) {
+    private void updateAggregatedGuageProps(String prop, Gauge.Child gauge) {
         try {
-            long longProperty = rocksDB.getAggregatedLongProperty(prop);
-            gaugeProperties.labels(this.namespace, "aggregated", prop).set(longProperty);
+            gauge.set(rocksDB.getAggregatedLongProperty(prop));
         } catch (RocksDBException ex) {
             logger.warn("Exception getting property value for " + prop, ex);
         }
     }
 
-    private void updateCFGuageProps(String prop, ColumnFamilyHandle cfHandle) {
+    private void updateCFGuageProps(String prop, ColumnFamilyHandle cfHandle, Gauge.Child gauge) {
         try {
-            String cfName = new String(cfHandle.getName());
-            long value = rocksDB.getLongProperty(cfHandle, prop);
-            gaugeProperties.labels(this.namespace, cfName, prop).set(value);
+            gauge.set(rocksDB.getLongProperty(cfHandle, prop));
         } catch (RocksDBException ex) {
             logger.warn("Exception getting property value for " + prop, ex);
         }
@@ -178,14 +246,31 @@ public class RocksDBStatsCollector implements PrometheusStatsCollector {
 
     private void updateGaugeStats() {
         if(rocksDBStats != null) {
-            for (TickerType ticker : TickerType.values()) {
+            tickerGauges.forEach((ticker, gauge) -> {
                 try {
-                    long value = rocksDBStats.getTickerCount(ticker);
-                    gaugeStats.labels(this.namespace, ticker.toString()).set(value);
+                    gauge.set(rocksDBStats.getTickerCount(ticker));
                 } catch (Exception ex) {
                     logger.warn("Exception updating gauge stats: ticker=" + ticker, ex);
                 }
-            }
+            });
+        }
+    }
+
+    private void updateGaugeHistograms() {
+        if(rocksDBStats != null) {
+            histogramGauges.forEach((histogram, gauges) -> {
+                try {
+                    HistogramData histogramData = rocksDBStats.getHistogramData(histogram);
+                    gauges[0].set(histogramData.getMedian());
+                    gauges[1].set(histogramData.getPercentile95());
+                    gauges[2].set(histogramData.getPercentile99());
+                    gauges[3].set(histogramData.getMax());
+                    gauges[4].set(histogramData.getCount());
+                    gauges[5].set(histogramData.getSum());
+                } catch (Exception ex) {
+                    logger.warn("Exception updating gauge histograms: histogram=" + histogram, ex);
+                }
+            });
         }
     }
 
@@ -193,5 +278,6 @@ public class RocksDBStatsCollector implements PrometheusStatsCollector {
     public void update() {
         updateGaugeProps();
         updateGaugeStats();
+        updateGaugeHistograms();
     }
 }
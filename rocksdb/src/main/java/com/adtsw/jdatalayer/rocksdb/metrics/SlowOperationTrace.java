@@ -0,0 +1,39 @@
+package com.adtsw.jdatalayer.rocksdb.metrics;
+
+import java.util.Map;
+
+import org.rocksdb.TickerType;
+
+import com.adtsw.jdatalayer.core.metrics.DBOperation;
+import com.adtsw.jdatalayer.core.metrics.OperationPhase;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Breakdown of one traced RocksDBKVClient operation, see {@link SlowOperationTracer}
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SlowOperationTrace {
+
+    private final long timestampMs;
+    private final DBOperation operation;
+    private final String namespace;
+    private final String set;
+    private final String entityId;
+    private final long totalMicros;
+    /**
+     * Whether the operation was picked by sampling. Only sampled operations
+     * carry ticker deltas, the others were traced for exceeding the threshold
+     */
+    private final boolean sampled;
+    private final Map<OperationPhase, Long> phaseMicros;
+    /**
+     * Change of the namespace tickers over the operation. Tickers are shared by
+     * all threads, so concurrent operations show up in these deltas as well
+     */
+    private final Map<TickerType, Long> tickerDeltas;
+}
@@ -0,0 +1,193 @@
+package com.adtsw.jdatalayer.rocksdb.metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+
+import com.adtsw.jdatalayer.core.metrics.DBOperation;
+import com.adtsw.jdatalayer.core.metrics.OperationPhase;
+
+/**
+ * Traces a sample of RocksDBKVClient operations, and every operation slower
+ * than a threshold, with their lock wait, storage and codec time. Sampled
+ * operations also carry the change of the read path tickers (block cache,
+ * bloom filter, memtable and per level hits, bytes read) over the operation.
+ *
+ * Slow operations are logged at WARN, sampled ones at DEBUG, and the latest
+ * traces are kept for {@link #getRecentTraces()}. Clients without a tracer
+ * only pay a field read per operation.
+ */
+public class SlowOperationTracer {
+
+    protected static Logger logger = LogManager.getLogger(SlowOperationTracer.class);
+
+    public static final TickerType[] DEFAULT_TICKERS = {
+        TickerType.BLOCK_CACHE_HIT,
+        TickerType.BLOCK_CACHE_MISS,
+        TickerType.BLOCK_CACHE_DATA_MISS,
+        TickerType.BLOCK_CACHE_INDEX_MISS,
+        TickerType.BLOCK_CACHE_FILTER_MISS,
+        TickerType.BLOCK_CACHE_BYTES_READ,
+        TickerType.BLOOM_FILTER_USEFUL,
+        TickerType.BLOOM_FILTER_FULL_POSITIVE,
+        TickerType.BLOOM_FILTER_FULL_TRUE_POSITIVE,
+        TickerType.MEMTABLE_HIT,
+        TickerType.MEMTABLE_MISS,
+        TickerType.GET_HIT_L0,
+        TickerType.GET_HIT_L1,
+        TickerType.GET_HIT_L2_AND_UP,
+        TickerType.BYTES_READ,
+        TickerType.BYTES_WRITTEN,
+        TickerType.NO_FILE_OPENS
+    };
+
+    private static final OperationPhase[] PHASES = OperationPhase.values();
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+    private final int maxRecentTraces;
+    private final TickerType[] tickers;
+    private final Deque<SlowOperationTrace> recentTraces;
+    private final ThreadLocal<ActiveTrace> activeTrace = ThreadLocal.withInitial(ActiveTrace::new);
+
+    private final LongAdder sampledOperations = new LongAdder();
+    private final LongAdder slowOperations = new LongAdder();
+
+    public SlowOperationTracer(double sampleRate, long slowThresholdMicros, int maxRecentTraces) {
+        this(sampleRate, slowThresholdMicros, maxRecentTraces, DEFAULT_TICKERS);
+    }
+
+    /**
+     * @param sampleRate fraction of operations to trace with ticker deltas, 0 to trace only slow operations
+     * @param slowThresholdMicros operations taking at least this long are traced, 0 to trace only sampled operations
+     * @param maxRecentTraces number of latest traces kept in memory
+     * @param tickers tickers whose deltas are recorded for sampled operations, each is one JNI call per read
+     */
+    public SlowOperationTracer(double sampleRate, long slowThresholdMicros, int maxRecentTraces,
+                               TickerType[] tickers) {
+
+        if(sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1, got " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThresholdMicros > 0 ? slowThresholdMicros * 1000L : Long.MAX_VALUE;
+        this.maxRecentTraces = maxRecentTraces;
+        this.tickers = tickers.clone();
+        this.recentTraces = new ArrayDeque<>(maxRecentTraces);
+    }
+
+    /**
+     * Starts tracing the operation about to run on the current thread
+     */
+    public void begin(Statistics statistics) {
+
+        ActiveTrace trace = activeTrace.get();
+        trace.active = true;
+        trace.sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        for (int i = 0; i < PHASES.length; i++) {
+            trace.phaseNanos[i] = 0;
+        }
+        if(trace.sampled) {
+            if(trace.tickersBefore == null || trace.tickersBefore.length != tickers.length) {
+                trace.tickersBefore = new long[tickers.length];
+            }
+            for (int i = 0; i < tickers.length; i++) {
+                trace.tickersBefore[i] = statistics.getTickerCount(tickers[i]);
+            }
+        }
+        trace.startNanos = System.nanoTime();
+    }
+
+    public void recordPhase(OperationPhase phase, long nanos) {
+
+        ActiveTrace trace = activeTrace.get();
+        if(trace.active) {
+            trace.phaseNanos[phase.ordinal()] += nanos;
+        }
+    }
+
+    /**
+     * Ends the operation started with {@link #begin(Statistics)} on the current
+     * thread, keeping and logging it if it was sampled or slow
+     */
+    public void end(Statistics statistics, DBOperation operation, String namespace, String set, String entityId) {
+
+        ActiveTrace trace = activeTrace.get();
+        if(!trace.active) {
+            return;
+        }
+        trace.active = false;
+        long totalNanos = System.nanoTime() - trace.startNanos;
+        boolean slow = totalNanos >= slowThresholdNanos;
+        if(!slow && !trace.sampled) {
+            return;
+        }
+
+        Map<OperationPhase, Long> phaseMicros = new EnumMap<>(OperationPhase.class);
+        for (int i = 0; i < PHASES.length; i++) {
+            if(PHASES[i] != OperationPhase.TOTAL) {
+                phaseMicros.put(PHASES[i], trace.phaseNanos[i] / 1000L);
+            }
+        }
+        Map<TickerType, Long> tickerDeltas = new EnumMap<>(TickerType.class);
+        if(trace.sampled) {
+            sampledOperations.increment();
+            for (int i = 0; i < tickers.length; i++) {
+                tickerDeltas.put(tickers[i], statistics.getTickerCount(tickers[i]) - trace.tickersBefore[i]);
+            }
+        }
+        SlowOperationTrace slowOperationTrace = new SlowOperationTrace(
+            System.currentTimeMillis(), operation, namespace, set, entityId, totalNanos / 1000L,
+            trace.sampled, phaseMicros, tickerDeltas
+        );
+        if(slow) {
+            slowOperations.increment();
+            logger.warn("slow operation " + slowOperationTrace);
+        } else if(logger.isDebugEnabled()) {
+            logger.debug("sampled operation " + slowOperationTrace);
+        }
+        synchronized (recentTraces) {
+            if(recentTraces.size() >= maxRecentTraces) {
+                recentTraces.pollFirst();
+            }
+            if(maxRecentTraces > 0) {
+                recentTraces.addLast(slowOperationTrace);
+            }
+        }
+    }
+
+    /**
+     * @return latest traces, oldest first
+     */
+    public List<SlowOperationTrace> getRecentTraces() {
+        synchronized (recentTraces) {
+            return new ArrayList<>(recentTraces);
+        }
+    }
+
+    public long getSampledOperations() {
+        return sampledOperations.sum();
+    }
+
+    public long getSlowOperations() {
+        return slowOperations.sum();
+    }
+
+    private static class ActiveTrace {
+        private boolean active;
+        private boolean sampled;
+        private long startNanos;
+        private long[] tickersBefore;
+        private final long[] phaseNanos = new long[PHASES.length];
+    }
+}
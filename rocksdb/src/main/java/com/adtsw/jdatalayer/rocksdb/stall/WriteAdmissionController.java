@@ -0,0 +1,272 @@
+package com.adtsw.jdatalayer.rocksdb.stall;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteStallCondition;
+
+import com.adtsw.jdatalayer.core.client.DBStats;
+import com.adtsw.jdatalayer.rocksdb.RocksDBWriteAdmissionPolicy;
+
+/**
+ * Admits the writes of one namespace according to its write stall state, so
+ * that overload turns into fast {@link WriteStallException}s instead of
+ * threads piling up behind a write blocked inside RocksDB.
+ *
+ * The stall state combines the condition reported to the
+ * {@link WriteStallListener} with properties polled through {@link #refresh()}:
+ * rocksdb.is-write-stopped, rocksdb.actual-delayed-write-rate and
+ * rocksdb.estimate-pending-compaction-bytes, which counts as stopped from
+ * maxPendingCompactionBytes on, ahead of RocksDB's own hard limit.
+ *
+ * The number of pending writes, waiting for the namespace lock or writing,
+ * adapts to the state: up to maxPendingWrites when normal, up to
+ * maxPendingWritesWhenDelayed when delayed, none when stopped. Writes over
+ * the limit fail or wait as per the {@link RocksDBWriteAdmissionPolicy}.
+ */
+public class WriteAdmissionController {
+
+    protected static Logger logger = LogManager.getLogger(WriteAdmissionController.class);
+
+    private final String namespace;
+    private final RocksDBWriteAdmissionPolicy policy;
+    private final long maxWaitMs;
+    private final int maxPendingWrites;
+    private final int maxPendingWritesWhenDelayed;
+    private final long maxPendingCompactionBytes;
+    private final WriteStallListener listener;
+    private final Object monitor = new Object();
+
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final AtomicInteger waitingWrites = new AtomicInteger();
+    private final LongAdder rejectedWrites = new LongAdder();
+    private final LongAdder delayedAdmissions = new LongAdder();
+    private volatile RocksDB db;
+    private volatile boolean writeStopped;
+    private volatile long delayedWriteRate;
+    private volatile long pendingCompactionBytes;
+
+    /**
+     * @param maxWaitMs longest wait for admission under BOUNDED_WAIT
+     * @param maxPendingWrites pending writes admitted when not stalled, 0 for no limit
+     * @param maxPendingWritesWhenDelayed pending writes admitted while writes are delayed, 0 for no limit
+     * @param maxPendingCompactionBytes pending compaction bytes from which writes are treated as stopped, 0 to disable
+     */
+    public WriteAdmissionController(String namespace, RocksDBWriteAdmissionPolicy policy, long maxWaitMs,
+                                    int maxPendingWrites, int maxPendingWritesWhenDelayed,
+                                    long maxPendingCompactionBytes) {
+
+        this.namespace = namespace;
+        this.policy = policy;
+        this.maxWaitMs = maxWaitMs;
+        this.maxPendingWrites = maxPendingWrites > 0 ? maxPendingWrites : Integer.MAX_VALUE;
+        this.maxPendingWritesWhenDelayed = maxPendingWritesWhenDelayed > 0
+            ? maxPendingWritesWhenDelayed : Integer.MAX_VALUE;
+        this.maxPendingCompactionBytes = maxPendingCompactionBytes;
+        this.listener = new WriteStallListener(namespace, this::signalWaiters);
+    }
+
+    /**
+     * Listener to add to the options of the namespace before it opens
+     */
+    public WriteStallListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Database whose properties {@link #refresh()} polls, once it is open
+     */
+    public void attach(RocksDB db) {
+        this.db = db;
+    }
+
+    /**
+     * Polls the stall related properties of the database
+     */
+    public void refresh() {
+
+        RocksDB db = this.db;
+        if(db == null) {
+            return;
+        }
+        try {
+            boolean wasStalled = isStalled();
+            writeStopped = db.getLongProperty("rocksdb.is-write-stopped") > 0;
+            delayedWriteRate = db.getLongProperty("rocksdb.actual-delayed-write-rate");
+            pendingCompactionBytes = db.getLongProperty("rocksdb.estimate-pending-compaction-bytes");
+            if(wasStalled && !isStalled()) {
+                signalWaiters();
+            }
+        } catch (RocksDBException e) {
+            logger.warn("Exception reading write stall properties of namespace " + namespace, e);
+        }
+    }
+
+    /**
+     * Current stall state, the worse of the listener's condition and the polled properties
+     */
+    public WriteStallCondition getCondition() {
+
+        WriteStallCondition condition = listener.getCondition();
+        if(condition == WriteStallCondition.STOPPED || writeStopped
+            || (maxPendingCompactionBytes > 0 && pendingCompactionBytes >= maxPendingCompactionBytes)) {
+            return WriteStallCondition.STOPPED;
+        }
+        if(condition == WriteStallCondition.DELAYED || delayedWriteRate > 0) {
+            return WriteStallCondition.DELAYED;
+        }
+        return WriteStallCondition.NORMAL;
+    }
+
+    private boolean isStalled() {
+        return getCondition() != WriteStallCondition.NORMAL;
+    }
+
+    /**
+     * Whether a write would be held back right now, for callers that would
+     * rather shed or defer work than get a {@link WriteStallException}
+     */
+    public boolean isOverloaded() {
+        return pendingWrites.get() >= getAdmissionLimit(getCondition());
+    }
+
+    private int getAdmissionLimit(WriteStallCondition condition) {
+        switch (condition) {
+            case STOPPED:
+                return 0;
+            case DELAYED:
+                return maxPendingWritesWhenDelayed;
+            default:
+                return maxPendingWrites;
+        }
+    }
+
+    /**
+     * Admits a write, to be followed by {@link #release()} once the write
+     * completed. Without a limit under BLOCK admission always succeeds
+     *
+     * @throws WriteStallException if the write is not admitted
+     */
+    public void acquire() {
+
+        if(policy == RocksDBWriteAdmissionPolicy.BLOCK) {
+            pendingWrites.incrementAndGet();
+            return;
+        }
+        long deadline = 0;
+        while (true) {
+            WriteStallCondition condition = getCondition();
+            int limit = getAdmissionLimit(condition);
+            int pending = pendingWrites.get();
+            if(pending < limit) {
+                if(pendingWrites.compareAndSet(pending, pending + 1)) {
+                    if(condition == WriteStallCondition.DELAYED) {
+                        delayedAdmissions.increment();
+                    }
+                    return;
+                }
+                continue;
+            }
+            if(policy == RocksDBWriteAdmissionPolicy.FAIL_FAST) {
+                reject(condition, pending);
+            }
+            long now = System.currentTimeMillis();
+            if(deadline == 0) {
+                deadline = now + maxWaitMs;
+            }
+            if(now >= deadline) {
+                reject(condition, pending);
+            }
+            await(deadline - now);
+        }
+    }
+
+    /**
+     * Called by a write that RocksDB failed on a delay or a stop, after it
+     * released the namespace lock. Under FAIL_FAST the write is rejected,
+     * under BOUNDED_WAIT it waits a little before it is retried, up to
+     * maxWaitMs from its first stall
+     *
+     * @param stalledSinceMs when the write first failed on a stall
+     * @throws WriteStallException if the write is not to be retried
+     */
+    public void awaitRetry(long stalledSinceMs) {
+
+        refresh();
+        long deadline = stalledSinceMs + maxWaitMs;
+        long now = System.currentTimeMillis();
+        if(policy == RocksDBWriteAdmissionPolicy.FAIL_FAST || now >= deadline) {
+            reject(getCondition(), pendingWrites.get());
+        }
+        await(deadline - now);
+    }
+
+    public void release() {
+        pendingWrites.decrementAndGet();
+        if(waitingWrites.get() > 0) {
+            signalWaiters();
+        }
+    }
+
+    private void reject(WriteStallCondition condition, int pending) {
+        rejectedWrites.increment();
+        throw new WriteStallException(namespace, condition, pending);
+    }
+
+    private void await(long waitMs) {
+        waitingWrites.incrementAndGet();
+        try {
+            synchronized (monitor) {
+                // the stall may clear without a notification, the properties are re-read on the next poll
+                monitor.wait(Math.min(waitMs, 10));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            waitingWrites.decrementAndGet();
+        }
+    }
+
+    private void signalWaiters() {
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+    }
+
+    public RocksDBWriteAdmissionPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getPendingWrites() {
+        return pendingWrites.get();
+    }
+
+    public long getRejectedWrites() {
+        return rejectedWrites.sum();
+    }
+
+    /**
+     * Adds [namespace]_write_stall_condition (0 normal, 1 delayed, 2
+     * stopped), _write_stalls_delayed and _write_stalls_stopped (number of
+     * stalls), _write_stall_ms, _is_write_stopped, _actual_delayed_write_rate,
+     * _pending_writes, _writes_rejected and _writes_admitted_delayed
+     */
+    public void addStatistics(DBStats dbStats) {
+
+        String prefix = namespace + "_";
+        dbStats.addNonSummable(prefix + "write_stall_condition", (long) getCondition().ordinal());
+        dbStats.add(prefix + "write_stalls_delayed", listener.getDelayedStalls());
+        dbStats.add(prefix + "write_stalls_stopped", listener.getStoppedStalls());
+        dbStats.add(prefix + "write_stall_ms", listener.getStalledMs());
+        dbStats.addNonSummable(prefix + "is_write_stopped", writeStopped ? 1L : 0L);
+        dbStats.addNonSummable(prefix + "actual_delayed_write_rate", delayedWriteRate);
+        dbStats.add(prefix + "pending_writes", (long) pendingWrites.get());
+        dbStats.add(prefix + "writes_rejected", rejectedWrites.sum());
+        dbStats.add(prefix + "writes_admitted_delayed", delayedAdmissions.sum());
+    }
+}
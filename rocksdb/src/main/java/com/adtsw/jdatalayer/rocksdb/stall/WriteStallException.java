@@ -0,0 +1,26 @@
+package com.adtsw.jdatalayer.rocksdb.stall;
+
+import org.rocksdb.WriteStallCondition;
+
+import lombok.Getter;
+
+/**
+ * Back-pressure signal, a write was not admitted because the namespace is
+ * stalled or has too many pending writes. Nothing was written, callers can
+ * retry later, shed the write or slow down their producers.
+ */
+@Getter
+public class WriteStallException extends RuntimeException {
+
+    private final String namespace;
+    private final WriteStallCondition condition;
+    private final int pendingWrites;
+
+    public WriteStallException(String namespace, WriteStallCondition condition, int pendingWrites) {
+        super("Write to namespace " + namespace + " rejected, write stall condition " + condition
+            + ", pending writes " + pendingWrites);
+        this.namespace = namespace;
+        this.condition = condition;
+        this.pendingWrites = pendingWrites;
+    }
+}
@@ -0,0 +1,95 @@
+package com.adtsw.jdatalayer.rocksdb.stall;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rocksdb.AbstractEventListener;
+import org.rocksdb.WriteStallCondition;
+import org.rocksdb.WriteStallInfo;
+
+/**
+ * Follows the write stall condition RocksDB reports when writes get delayed
+ * or stopped, e.g. by too many L0 files, full memtables or too many pending
+ * compaction bytes. Must be added to the options before the database opens.
+ */
+public class WriteStallListener extends AbstractEventListener {
+
+    protected static Logger logger = LogManager.getLogger(WriteStallListener.class);
+
+    private final String namespace;
+    private final Runnable onChange;
+    private final LongAdder delayedStalls = new LongAdder();
+    private final LongAdder stoppedStalls = new LongAdder();
+    private final AtomicLong stalledNanos = new AtomicLong();
+    private volatile WriteStallCondition condition = WriteStallCondition.NORMAL;
+    private volatile long stallStartNanos;
+
+    /**
+     * @param onChange called on the RocksDB background thread after every change, must not block
+     */
+    public WriteStallListener(String namespace, Runnable onChange) {
+        super(EnabledEventCallback.ON_STALL_CONDITIONS_CHANGED);
+        this.namespace = namespace;
+        this.onChange = onChange;
+    }
+
+    @Override
+    public void onStallConditionsChanged(WriteStallInfo writeStallInfo) {
+
+        try {
+            WriteStallCondition current = writeStallInfo.getCurrentCondition();
+            WriteStallCondition previous = this.condition;
+            if(current == previous) {
+                return;
+            }
+            long now = System.nanoTime();
+            if(previous == WriteStallCondition.NORMAL) {
+                stallStartNanos = now;
+            } else if(current == WriteStallCondition.NORMAL) {
+                stalledNanos.addAndGet(now - stallStartNanos);
+            }
+            if(current == WriteStallCondition.DELAYED) {
+                delayedStalls.increment();
+            } else if(current == WriteStallCondition.STOPPED) {
+                stoppedStalls.increment();
+            }
+            this.condition = current;
+            logger.info("Write stall condition of namespace " + namespace + " changed from " + previous
+                + " to " + current);
+            onChange.run();
+        } catch (Exception e) {
+            logger.warn("Exception handling write stall change of namespace " + namespace, e);
+        }
+    }
+
+    public WriteStallCondition getCondition() {
+        return condition;
+    }
+
+    /**
+     * Number of times writes got delayed
+     */
+    public long getDelayedStalls() {
+        return delayedStalls.sum();
+    }
+
+    /**
+     * Number of times writes got stopped
+     */
+    public long getStoppedStalls() {
+        return stoppedStalls.sum();
+    }
+
+    /**
+     * Total time writes were delayed or stopped, including an ongoing stall
+     */
+    public long getStalledMs() {
+        long nanos = stalledNanos.get();
+        if(condition != WriteStallCondition.NORMAL) {
+            nanos += System.nanoTime() - stallStartNanos;
+        }
+        return nanos / 1000000L;
+    }
+}
@@ -0,0 +1,251 @@
+package com.adtsw.jdatalayer.rocksdb.warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
+import java.util.function.BooleanSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+import com.adtsw.jdatalayer.core.client.DBStats;
+
+/**
+ * Fills the block and row caches of a freshly opened namespace on a thread of
+ * its own: first point reads of the hot keys saved at the last shutdown, see
+ * {@link HotKeyTracker}, then sequential reads with readahead over the
+ * configured ranges, at most rateBytesPerSecond.
+ *
+ * Reads run in chunks under the namespace read lock, so that writes and
+ * shutdown are only held up for one chunk at a time. Services can delay
+ * readiness with {@link #await(long, TimeUnit)} or poll {@link #getProgress()}.
+ */
+public class CacheWarmer {
+
+    protected static Logger logger = LogManager.getLogger(CacheWarmer.class);
+
+    private static final int CHUNK_SIZE = 256;
+
+    private final String namespace;
+    private final RocksDB db;
+    private final ReentrantReadWriteLock lock;
+    private final BooleanSupplier isDBOpen;
+    private final List<byte[]> hotKeys;
+    private final List<WarmupRange> ranges;
+    private final long rateBytesPerSecond;
+    private final long readaheadSizeBytes;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private final AtomicInteger hotKeysLoaded = new AtomicInteger();
+    private final AtomicInteger rangesCompleted = new AtomicInteger();
+    private final AtomicLong entriesRead = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private volatile WarmupState state = WarmupState.PENDING;
+    private volatile long startMs;
+    private volatile long endMs;
+
+    /**
+     * @param isDBOpen checked under the read lock before every chunk
+     * @param rateBytesPerSecond read rate of the warmup, 0 for no limit
+     * @param readaheadSizeBytes readahead of the range scans, 0 for the RocksDB default
+     */
+    public CacheWarmer(String namespace, RocksDB db, ReentrantReadWriteLock lock, BooleanSupplier isDBOpen,
+                       List<byte[]> hotKeys, List<WarmupRange> ranges, long rateBytesPerSecond,
+                       long readaheadSizeBytes) {
+
+        this.namespace = namespace;
+        this.db = db;
+        this.lock = lock;
+        this.isDBOpen = isDBOpen;
+        this.hotKeys = hotKeys;
+        this.ranges = ranges;
+        this.rateBytesPerSecond = rateBytesPerSecond;
+        this.readaheadSizeBytes = readaheadSizeBytes;
+    }
+
+    /**
+     * Starts the warmup on a new daemon thread
+     */
+    public void start() {
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rocksdb-" + namespace + "-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.submit(this::run);
+        executor.shutdown();
+    }
+
+    void run() {
+
+        if(state == WarmupState.CANCELLED) {
+            done.countDown();
+            return;
+        }
+        startMs = System.currentTimeMillis();
+        state = WarmupState.RUNNING;
+        logger.info("Warming up namespace " + namespace + " with " + hotKeys.size() + " hot keys and "
+            + ranges.size() + " ranges");
+        try (ReadOptions readOptions = new ReadOptions().setFillCache(true)) {
+            if(readaheadSizeBytes > 0) {
+                readOptions.setReadaheadSize(readaheadSizeBytes);
+            }
+            boolean completed = loadHotKeys(readOptions);
+            for (int i = 0; completed && i < ranges.size(); i++) {
+                completed = scanRange(readOptions, ranges.get(i));
+                if(completed) {
+                    rangesCompleted.incrementAndGet();
+                }
+            }
+            state = completed ? WarmupState.COMPLETED : WarmupState.CANCELLED;
+        } catch (Exception e) {
+            logger.warn("Exception warming up namespace " + namespace, e);
+            state = WarmupState.FAILED;
+        } finally {
+            endMs = System.currentTimeMillis();
+            done.countDown();
+        }
+        logger.info("Warmup of namespace " + namespace + " " + state + ": " + getProgress());
+    }
+
+    private boolean loadHotKeys(ReadOptions readOptions) throws RocksDBException, InterruptedException {
+
+        for (int offset = 0; offset < hotKeys.size(); offset += CHUNK_SIZE) {
+            ReadLock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                if(isCancelled()) {
+                    return false;
+                }
+                int end = Math.min(offset + CHUNK_SIZE, hotKeys.size());
+                for (byte[] key : hotKeys.subList(offset, end)) {
+                    byte[] value = db.get(readOptions, key);
+                    if(value != null) {
+                        recordRead(key, value);
+                    }
+                    hotKeysLoaded.incrementAndGet();
+                }
+            } finally {
+                readLock.unlock();
+            }
+            throttle();
+        }
+        return true;
+    }
+
+    private boolean scanRange(ReadOptions readOptions, WarmupRange range) throws InterruptedException {
+
+        byte[] lastKey = null;
+        while (true) {
+            ReadLock readLock = lock.readLock();
+            readLock.lock();
+            try (RocksIterator itr = isCancelled() ? null : db.newIterator(readOptions)) {
+                if(itr == null) {
+                    return false;
+                }
+                // resume after the last key of the previous chunk
+                if(lastKey == null) {
+                    itr.seek(range.getBegin());
+                } else {
+                    itr.seek(lastKey);
+                    if(itr.isValid() && Arrays.equals(itr.key(), lastKey)) {
+                        itr.next();
+                    }
+                }
+                for (int i = 0; i < CHUNK_SIZE; i++) {
+                    if(!itr.isValid() || Arrays.compareUnsigned(itr.key(), range.getEnd()) >= 0) {
+                        return true;
+                    }
+                    lastKey = itr.key();
+                    recordRead(lastKey, itr.value());
+                    itr.next();
+                }
+            } finally {
+                readLock.unlock();
+            }
+            throttle();
+        }
+    }
+
+    private boolean isCancelled() {
+        return state == WarmupState.CANCELLED || !isDBOpen.getAsBoolean();
+    }
+
+    private void recordRead(byte[] key, byte[] value) {
+        entriesRead.incrementAndGet();
+        bytesRead.addAndGet(key.length + value.length);
+    }
+
+    private void throttle() throws InterruptedException {
+
+        if(rateBytesPerSecond <= 0) {
+            return;
+        }
+        long targetElapsedMs = bytesRead.get() * 1000L / rateBytesPerSecond;
+        long elapsedMs = System.currentTimeMillis() - startMs;
+        if(targetElapsedMs > elapsedMs) {
+            Thread.sleep(targetElapsedMs - elapsedMs);
+        }
+    }
+
+    /**
+     * Stops the warmup after the current chunk
+     */
+    public void cancel() {
+        if(!state.isDone()) {
+            state = WarmupState.CANCELLED;
+        }
+    }
+
+    /**
+     * Waits for the warmup to complete, fail or be cancelled
+     *
+     * @return whether the warmup is done
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    public WarmupState getState() {
+        return state;
+    }
+
+    public WarmupProgress getProgress() {
+
+        long start = startMs;
+        long elapsedMs = start == 0 ? 0 : (state.isDone() ? endMs : System.currentTimeMillis()) - start;
+        return new WarmupProgress(
+            state, hotKeys.size(), hotKeysLoaded.get(), ranges.size(), rangesCompleted.get(),
+            entriesRead.get(), bytesRead.get(), elapsedMs
+        );
+    }
+
+    /**
+     * Adds [namespace]_warmup_state (ordinal of {@link WarmupState}),
+     * _warmup_hot_keys_loaded, _warmup_ranges_completed,
+     * _warmup_entries_read, _warmup_bytes_read and _warmup_ms
+     */
+    public void addStatistics(DBStats dbStats) {
+
+        WarmupProgress progress = getProgress();
+        String prefix = namespace + "_warmup_";
+        dbStats.addNonSummable(prefix + "state", (long) progress.getState().ordinal());
+        dbStats.add(prefix + "hot_keys_loaded", (long) progress.getHotKeysLoaded());
+        dbStats.add(prefix + "ranges_completed", (long) progress.getRangesCompleted());
+        dbStats.add(prefix + "entries_read", progress.getEntriesRead());
+        dbStats.add(prefix + "bytes_read", progress.getBytesRead());
+        dbStats.addNonSummable(prefix + "ms", progress.getElapsedMs());
+    }
+}
@@ -0,0 +1,116 @@
+package com.adtsw.jdatalayer.rocksdb.warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.adtsw.jdatalayer.core.metrics.TopKSketch;
+
+/**
+ * Tracks the most read keys of a namespace from a sample of reads, so that
+ * they can be saved at shutdown and read back into the caches by the
+ * {@link CacheWarmer} at the next open. Keys are saved hottest first, one
+ * base64 encoded key per line.
+ */
+public class HotKeyTracker {
+
+    protected static Logger logger = LogManager.getLogger(HotKeyTracker.class);
+
+    public static final String FILE_NAME = "jdatalayer-hot-keys";
+
+    private static final int SAMPLE_INTERVAL = 16;
+    private static final int SKETCH_DEPTH = 4;
+
+    private final TopKSketch sketch;
+
+    /**
+     * @param maxKeys number of hottest keys kept, each candidate update scans them once they are full
+     */
+    public HotKeyTracker(int maxKeys) {
+        this.sketch = new TopKSketch(maxKeys, SKETCH_DEPTH, Math.max(2048, maxKeys * 4));
+    }
+
+    /**
+     * Counts a read of the key, one in every SAMPLE_INTERVAL reads is recorded
+     */
+    public void record(byte[] key) {
+        if(ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) == 0) {
+            // one char per byte, binary keys survive the round trip
+            sketch.add(new String(key, StandardCharsets.ISO_8859_1), SAMPLE_INTERVAL);
+        }
+    }
+
+    /**
+     * Counts a read of the key from the buffer's position to its limit,
+     * copying it only when the read is recorded
+     */
+    public void record(ByteBuffer key) {
+        if(ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) == 0) {
+            byte[] keyBytes = new byte[key.remaining()];
+            key.duplicate().get(keyBytes);
+            sketch.add(new String(keyBytes, StandardCharsets.ISO_8859_1), SAMPLE_INTERVAL);
+        }
+    }
+
+    /**
+     * Hottest keys, hottest first, one char per key byte
+     */
+    public List<String> getHotKeys() {
+        List<String> keys = new ArrayList<>();
+        sketch.getTopK().forEach(hotKey -> keys.add(hotKey.getKey()));
+        return keys;
+    }
+
+    /**
+     * Replaces the file with the current hot keys
+     */
+    public void save(File file) {
+
+        List<String> lines = new ArrayList<>();
+        Base64.Encoder encoder = Base64.getEncoder();
+        for (String key : getHotKeys()) {
+            lines.add(encoder.encodeToString(key.getBytes(StandardCharsets.ISO_8859_1)));
+        }
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            FileUtils.writeLines(tmpFile, StandardCharsets.UTF_8.name(), lines);
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Exception saving hot keys to " + file, e);
+        }
+    }
+
+    /**
+     * Keys saved by {@link #save(File)}, empty if there is no such file
+     */
+    public static List<byte[]> load(File file) {
+
+        if(!file.exists()) {
+            return Collections.emptyList();
+        }
+        List<byte[]> keys = new ArrayList<>();
+        Base64.Decoder decoder = Base64.getDecoder();
+        try {
+            for (String line : FileUtils.readLines(file, StandardCharsets.UTF_8)) {
+                if(!line.isEmpty()) {
+                    keys.add(decoder.decode(line));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Exception loading hot keys from " + file, e);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,23 @@
+package com.adtsw.jdatalayer.rocksdb.warmup;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of a namespace's cache warmup, see {@link CacheWarmer}
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class WarmupProgress {
+
+    private final WarmupState state;
+    private final int hotKeysTotal;
+    private final int hotKeysLoaded;
+    private final int rangesTotal;
+    private final int rangesCompleted;
+    private final long entriesRead;
+    private final long bytesRead;
+    private final long elapsedMs;
+}
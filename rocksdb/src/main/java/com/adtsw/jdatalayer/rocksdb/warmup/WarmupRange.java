@@ -0,0 +1,17 @@
+package com.adtsw.jdatalayer.rocksdb.warmup;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Keys from begin (inclusive) to end (exclusive) read sequentially by a
+ * {@link CacheWarmer}, usually all keys of a set
+ */
+@Getter
+@AllArgsConstructor
+public class WarmupRange {
+
+    private final String name;
+    private final byte[] begin;
+    private final byte[] end;
+}
@@ -0,0 +1,18 @@
+package com.adtsw.jdatalayer.rocksdb.warmup;
+
+/**
+ * Stage of a namespace's cache warmup, see {@link CacheWarmer}.
+ * COMPLETED, FAILED and CANCELLED are final.
+ */
+public enum WarmupState {
+
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED;
+
+    public boolean isDone() {
+        return this == COMPLETED || this == FAILED || this == CANCELLED;
+    }
+}
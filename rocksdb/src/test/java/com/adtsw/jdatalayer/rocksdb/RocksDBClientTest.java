@@ -1,21 +1,63 @@
 package com.adtsw.jdatalayer.rocksdb;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 import org.rocksdb.CompactionStyle;
 import org.rocksdb.CompressionType;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.StatsLevel;
+import org.rocksdb.TickerType;
+import org.rocksdb.WriteStallCondition;
 
 import com.adtsw.jcommons.models.EncodingFormat;
 import com.adtsw.jdatalayer.core.accessobject.DBAccessObject;
 import com.adtsw.jdatalayer.core.annotations.DBEntityConfiguration;
 import com.adtsw.jdatalayer.core.annotations.EntityId;
 import com.adtsw.jdatalayer.core.client.DBStats;
+import com.adtsw.jdatalayer.core.client.IDBClient;
+import com.adtsw.jdatalayer.core.client.ScanRange;
+import com.adtsw.jdatalayer.core.client.ShardedDBClient;
+import com.adtsw.jdatalayer.core.metrics.DBClientStatsCollector;
+import com.adtsw.jdatalayer.core.metrics.DBOperation;
+import com.adtsw.jdatalayer.core.metrics.InstrumentedDBClient;
+import com.adtsw.jdatalayer.core.metrics.OperationPhase;
 import com.adtsw.jdatalayer.core.model.DBEntity;
+import com.adtsw.jdatalayer.rocksdb.buffers.DirectEntityReader;
+import com.adtsw.jdatalayer.rocksdb.changefeed.ChangeEvent;
+import com.adtsw.jdatalayer.rocksdb.changefeed.ChangeFeedSubscription;
+import com.adtsw.jdatalayer.rocksdb.changefeed.ChangeType;
+import com.adtsw.jdatalayer.rocksdb.compaction.CompactionManager;
+import com.adtsw.jdatalayer.rocksdb.keys.KeyCodec;
+import com.adtsw.jdatalayer.rocksdb.keys.KeyCodecs;
+import com.adtsw.jdatalayer.rocksdb.keys.KeyFormat;
+import com.adtsw.jdatalayer.rocksdb.metrics.SlowOperationTrace;
+import com.adtsw.jdatalayer.rocksdb.metrics.SlowOperationTracer;
+import com.adtsw.jdatalayer.rocksdb.stall.WriteAdmissionController;
+import com.adtsw.jdatalayer.rocksdb.stall.WriteStallException;
+import com.adtsw.jdatalayer.rocksdb.warmup.WarmupProgress;
+import com.adtsw.jdatalayer.rocksdb.warmup.WarmupState;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import io.prometheus.client.CollectorRegistry;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -23,6 +65,38 @@ import lombok.Setter;
 
 public class RocksDBClientTest {
 
+    private static final List<Order> ORDER_ITEMS = Arrays.asList(
+        new Order("o1", "s1", "msg1")
+    );
+
+    private final List<DBAccessObject> openDbos = new ArrayList<>();
+
+    /**
+     * Access object of the namespace, shut down and cleared after the test
+     */
+    private DBAccessObject open(IDBClient dbClient, String namespace) {
+        DBAccessObject dbo = new DBAccessObject(dbClient, namespace);
+        openDbos.add(dbo);
+        return dbo;
+    }
+
+    /**
+     * Shuts the access object down during the test, keeping its data to reopen the namespace
+     */
+    private void shutdown(DBAccessObject dbo) {
+        openDbos.remove(dbo);
+        dbo.shutdown();
+    }
+
+    @After
+    public void shutdownAndClear() {
+        for (DBAccessObject dbo : openDbos) {
+            dbo.shutdown();
+            dbo.clear();
+        }
+        openDbos.clear();
+    }
+
     @Test
     public void testClient() {
 
@@ -87,6 +161,807 @@ public class RocksDBClientTest {
 
         dbo.shutdown();
     }
+
+    @Test
+    public void testReadOnlyAndSecondaryClients() {
+
+        RocksDBKVClient primaryClient = new RocksDBKVClient(
+            "/tmp", "rocksDBMultiReaderTest",
+            64, 64, 64, 10000000, 
+            3, 8, 1024,
+            CompressionType.NO_COMPRESSION, CompactionStyle.LEVEL, 0, 2,
+            true, false, true
+        );
+        DBAccessObject primaryDbo = open(primaryClient, "rocksDBMultiReaderTest");
+        primaryDbo.put(new OrdersString("u1", ORDER_ITEMS));
+
+        RocksDBKVClient readOnlyClient = RocksDBKVClient.openReadOnly(
+            "/tmp", "rocksDBMultiReaderTest", 64, 64, 64, true
+        );
+        RocksDBKVClient secondaryClient = RocksDBKVClient.openAsSecondary(
+            "/tmp", "rocksDBMultiReaderTest", "/tmp/rocksDBMultiReaderTestSecondary", 64, 64, 64, true, 0
+        );
+        DBAccessObject readOnlyDbo = new DBAccessObject(readOnlyClient, "rocksDBMultiReaderTest");
+        DBAccessObject secondaryDbo = new DBAccessObject(secondaryClient, "rocksDBMultiReaderTest");
+
+        Assert.assertNotNull(readOnlyDbo.get("u1", OrdersString.class));
+        Assert.assertNotNull(secondaryDbo.get("u1", OrdersString.class));
+        Assert.assertThrows(RuntimeException.class, () -> readOnlyDbo.put(new OrdersString("u2", ORDER_ITEMS)));
+        Assert.assertThrows(RuntimeException.class, () -> secondaryDbo.delete("u1", OrdersString.class));
+
+        primaryDbo.put(new OrdersString("u2", ORDER_ITEMS));
+        Assert.assertNull(secondaryDbo.get("u2", OrdersString.class));
+        secondaryClient.tryCatchUpWithPrimary("rocksDBMultiReaderTest");
+        Assert.assertNotNull(secondaryDbo.get("u2", OrdersString.class));
+
+        readOnlyDbo.shutdown();
+        secondaryDbo.shutdown();
+    }
+
+    @Test
+    public void testShardedClient() {
+
+        List<RocksDBKVClient> shards = new ArrayList<>();
+        for (int shardIndex = 0; shardIndex < 3; shardIndex++) {
+            shards.add(new RocksDBKVClient(
+                "/tmp/rocksDBShard" + shardIndex, "rocksDBShardedTest",
+                64, 64, 64, 10000000, 
+                3, 8, 1024,
+                CompressionType.NO_COMPRESSION, CompactionStyle.LEVEL, 0, 2,
+                true, false, false
+            ));
+        }
+        ShardedDBClient dbClient = new ShardedDBClient(shards);
+        DBAccessObject dbo = open(dbClient, "rocksDBShardedTest");
+
+        List<OrdersString> orders = new ArrayList<>();
+        List<String> entityIds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            orders.add(new OrdersString("u" + i, ORDER_ITEMS));
+            entityIds.add("u" + i);
+        }
+        dbo.put(orders);
+
+        Assert.assertEquals(30, dbo.getIds(OrdersString.class).size());
+        Assert.assertEquals(30, dbo.get(entityIds, OrdersString.class).size());
+        Assert.assertNotNull(dbo.get("u7", OrdersString.class));
+        for (RocksDBKVClient shard : shards) {
+            Assert.assertTrue(shard.getIds("rocksDBShardedTest", "ordersSTRING").size() > 0);
+        }
+        int shardIndex = dbClient.getShardIndex("u7");
+        for (int i = 0; i < shards.size(); i++) {
+            Assert.assertEquals(i == shardIndex, shards.get(i).getIds("rocksDBShardedTest", "ordersSTRING").contains("u7"));
+        }
+        // placement depends on the id and the shard count only
+        Assert.assertEquals(shardIndex, new ShardedDBClient(shards).getShardIndex("u7"));
+
+        // shards are scanned in parallel, the consumer is called by one at a time
+        List<String> scannedIds = new ArrayList<>();
+        dbClient.scan("rocksDBShardedTest", "ordersSTRING", ScanRange.ALL, EncodingFormat.STRING,
+            (entityId, fields) -> scannedIds.add(entityId));
+        Assert.assertEquals(30, scannedIds.size());
+
+        dbo.delete(entityIds.subList(0, 10), OrdersString.class);
+        Assert.assertEquals(20, dbo.getIds(OrdersString.class).size());
+        Map<String, Long> statistics = dbClient.getStatistics().getStatistics();
+        Assert.assertTrue(statistics.containsKey("shard_2_rocksDBShardedTest_k_mem_table_total"));
+        long memTableTotal = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            memTableTotal += statistics.get("shard_" + i + "_rocksDBShardedTest_k_mem_table_total");
+        }
+        Assert.assertEquals(Long.valueOf(memTableTotal), statistics.get("rocksDBShardedTest_k_mem_table_total"));
+        // timestamps are only reported per shard
+        Assert.assertTrue(statistics.containsKey("shard_0_rocksDBShardedTest_last_compaction_timestamp_ms"));
+        Assert.assertFalse(statistics.containsKey("rocksDBShardedTest_last_compaction_timestamp_ms"));
+    }
+
+    @Test
+    public void testChangeFeed() throws InterruptedException {
+
+        RocksDBKVClient dbClient = new RocksDBKVClient(
+            "/tmp", "rocksDBChangeFeedTest",
+            64, 64, 64, 10000000, 
+            3, 8, 1024,
+            CompressionType.NO_COMPRESSION, CompactionStyle.LEVEL, 0, 2,
+            true, false, false,
+            RocksDBOpenMode.READ_WRITE, null, 0, 3600
+        );
+        DBAccessObject dbo = open(dbClient, "rocksDBChangeFeedTest");
+        long fromSequenceNumber = dbClient.getLatestSequenceNumber("rocksDBChangeFeedTest") + 1;
+
+        dbo.put(new OrdersString("u1", ORDER_ITEMS));
+        dbo.put(new OrdersGzip("u2", ORDER_ITEMS));
+        dbo.delete("u1", OrdersString.class);
+
+        List<ChangeEvent> events = dbClient.getChangesSince("rocksDBChangeFeedTest", fromSequenceNumber, 10);
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(ChangeType.PUT, events.get(0).getType());
+        Assert.assertEquals("ordersSTRING", events.get(0).getSet());
+        Assert.assertEquals("u1", events.get(0).getEntityId());
+        Assert.assertEquals("u2", events.get(1).getFields(EncodingFormat.GZIP_WITH_BASE64).get("uId"));
+        Assert.assertEquals(ChangeType.DELETE, events.get(2).getType());
+
+        List<ChangeEvent> resumedEvents = dbClient.getChangesSince(
+            "rocksDBChangeFeedTest", events.get(0).getSequenceNumber() + 1, 10
+        );
+        Assert.assertEquals(2, resumedEvents.size());
+
+        List<ChangeEvent> subscribedEvents = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        ChangeFeedSubscription subscription = dbClient.subscribe(
+            "rocksDBChangeFeedTest", fromSequenceNumber, 2, 10, changes -> {
+                subscribedEvents.addAll(changes);
+                changes.forEach(change -> latch.countDown());
+            }
+        );
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        subscription.close();
+        Assert.assertEquals(events.get(2).getSequenceNumber() + 1, subscription.getNextSequenceNumber());
+
+        // range deletes are one event each, with the range's bounds
+        long rangeFromSequenceNumber = dbClient.getLatestSequenceNumber("rocksDBChangeFeedTest") + 1;
+        dbo.put(new OrdersString("u3", ORDER_ITEMS));
+        dbClient.deleteRange("rocksDBChangeFeedTest", "ordersSTRING", "u3", "u4");
+        dbClient.deleteSet("rocksDBChangeFeedTest", "ordersGZIP");
+        List<ChangeEvent> rangeEvents = dbClient.getChangesSince("rocksDBChangeFeedTest", rangeFromSequenceNumber, 10);
+        Assert.assertEquals(3, rangeEvents.size());
+        Assert.assertEquals(ChangeType.DELETE_RANGE, rangeEvents.get(1).getType());
+        Assert.assertEquals("ordersSTRING", rangeEvents.get(1).getSet());
+        Assert.assertEquals("u3", rangeEvents.get(1).getEntityId());
+        Assert.assertEquals("u4", rangeEvents.get(1).getEndEntityId());
+        Assert.assertNull(rangeEvents.get(1).getPayload());
+        Assert.assertEquals(ChangeType.DELETE_RANGE, rangeEvents.get(2).getType());
+        Assert.assertEquals("ordersGZIP", rangeEvents.get(2).getSet());
+        Assert.assertNull(rangeEvents.get(2).getEntityId());
+        Assert.assertNull(rangeEvents.get(2).getEndEntityId());
+    }
+
+    @Test
+    public void testTuningProfiles() throws Exception {
+
+        for (RocksDBTuningProfile profile : RocksDBTuningProfile.values()) {
+            String namespace = "rocksDBProfileTest" + profile.name();
+            RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", namespace, RocksDBClientOptions
+                .builder(profile)
+                .blockCacheCapacityKB(1024)
+                .build());
+            Assert.assertEquals(profile, dbClient.getClientOptions(namespace).getProfile());
+            Assert.assertEquals(1024, dbClient.getClientOptions(namespace).getBlockCacheCapacityKB());
+
+            DBAccessObject dbo = open(dbClient, namespace);
+            for (int i = 0; i < 10; i++) {
+                dbo.put(new OrdersString("u" + i, ORDER_ITEMS));
+            }
+            // table format options only apply to flushed table files
+            try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+                dbClient.getDB(namespace).flush(flushOptions);
+            }
+            Assert.assertEquals(1, dbo.get("u5", OrdersString.class).getOrderItems().size());
+            Assert.assertNull(dbo.get("u10", OrdersString.class));
+            Assert.assertEquals(10, dbo.getIds(OrdersString.class).size());
+
+            // the column family the namespace runs with has the profile's settings
+            RocksDBClientOptions clientOptions = dbClient.getClientOptions(namespace);
+            Map<String, String> cfOptions = readOptionsFile("/tmp/" + namespace, "CFOptions \"default\"");
+            Assert.assertEquals(String.valueOf(clientOptions.getWriteBufferSizeKB() * 1024L),
+                cfOptions.get("write_buffer_size"));
+            Assert.assertEquals(String.valueOf(clientOptions.getLevel0FileNumCompactionTrigger()),
+                cfOptions.get("level0_file_num_compaction_trigger"));
+            Assert.assertEquals(String.valueOf(clientOptions.getLevel0StopWritesTrigger()),
+                cfOptions.get("level0_stop_writes_trigger"));
+            Assert.assertEquals(String.valueOf(clientOptions.isDynamicLevelBytes()),
+                cfOptions.get("level_compaction_dynamic_level_bytes"));
+            Assert.assertTrue(cfOptions.get("memtable_factory").contains(
+                clientOptions.getMemTableType() == RocksDBMemTableType.VECTOR ? "VectorRepFactory" : "SkipListFactory"));
+            Map<String, String> tableOptions = readOptionsFile("/tmp/" + namespace,
+                "TableOptions/BlockBasedTable \"default\"");
+            Assert.assertEquals(clientOptions.isDataBlockHashIndex() ? "kDataBlockBinaryAndHash" : "kDataBlockBinarySearch",
+                tableOptions.get("data_block_index_type"));
+            Assert.assertEquals(clientOptions.isPartitionedIndexAndFilters() ? "kTwoLevelIndexSearch" : "kBinarySearch",
+                tableOptions.get("index_type"));
+            Assert.assertEquals(String.valueOf(clientOptions.isOptimizeFiltersForMemory()),
+                tableOptions.get("optimize_filters_for_memory"));
+            shutdown(dbo);
+            dbo.clear();
+        }
+        Assert.assertEquals(RocksDBMemTableType.VECTOR, 
+            RocksDBClientOptions.builder(RocksDBTuningProfile.BULK_LOAD).build().getMemTableType());
+        Assert.assertEquals(0, RocksDBClientOptions.builder(RocksDBTuningProfile.SCAN_HEAVY).build().getBloomBitsPerKey());
+    }
+
+    @Test
+    public void testTableFormatOptions() throws Exception {
+
+        String namespace = "rocksDBTableFormatTest";
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", namespace, RocksDBClientOptions
+            .builder()
+            .blockCacheCapacityKB(1024)
+            .dataBlockHashIndex(true)
+            .dataBlockHashTableUtilRatio(0.5)
+            .partitionedIndexAndFilters(true)
+            .pinTopLevelIndexAndFilter(false)
+            .metadataBlockSizeKB(8)
+            .wholeKeyFiltering(false)
+            .optimizeFiltersForMemory(true)
+            .optimizeFiltersForHits(true)
+            .build());
+        DBAccessObject dbo = open(dbClient, namespace);
+        dbo.put(new OrdersString("u1", ORDER_ITEMS));
+        try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+            dbClient.getDB(namespace).flush(flushOptions);
+        }
+        Assert.assertEquals(1, dbo.get("u1", OrdersString.class).getOrderItems().size());
+
+        Map<String, String> tableOptions = readOptionsFile("/tmp/" + namespace,
+            "TableOptions/BlockBasedTable \"default\"");
+        Assert.assertEquals("kDataBlockBinaryAndHash", tableOptions.get("data_block_index_type"));
+        Assert.assertEquals(0.5, Double.parseDouble(tableOptions.get("data_block_hash_table_util_ratio")), 0.0001);
+        Assert.assertEquals("kTwoLevelIndexSearch", tableOptions.get("index_type"));
+        Assert.assertEquals("true", tableOptions.get("partition_filters"));
+        Assert.assertEquals("false", tableOptions.get("pin_top_level_index_and_filter"));
+        Assert.assertEquals(String.valueOf(8 * 1024), tableOptions.get("metadata_block_size"));
+        Assert.assertEquals("false", tableOptions.get("whole_key_filtering"));
+        Assert.assertEquals("true", tableOptions.get("optimize_filters_for_memory"));
+        Map<String, String> cfOptions = readOptionsFile("/tmp/" + namespace, "CFOptions \"default\"");
+        Assert.assertEquals("true", cfOptions.get("optimize_filters_for_hits"));
+    }
+
+    /**
+     * Options of one section, e.g. CFOptions "default", of the latest OPTIONS
+     * file RocksDB wrote for the database at the location
+     */
+    private static Map<String, String> readOptionsFile(String storageLocation, String section) throws IOException {
+
+        File optionsFile = null;
+        long optionsFileNumber = -1;
+        for (File file : new File(storageLocation).listFiles()) {
+            if(file.getName().startsWith("OPTIONS-") && !file.getName().endsWith(".dbtmp")) {
+                long number = Long.parseLong(file.getName().substring("OPTIONS-".length()));
+                if(number > optionsFileNumber) {
+                    optionsFile = file;
+                    optionsFileNumber = number;
+                }
+            }
+        }
+        Map<String, String> options = new HashMap<>();
+        boolean inSection = false;
+        for (String line : FileUtils.readLines(optionsFile, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if(line.startsWith("[")) {
+                inSection = line.equals("[" + section + "]");
+            } else if(inSection && line.contains("=")) {
+                options.put(line.substring(0, line.indexOf('=')), line.substring(line.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    @Test
+    public void testBlobFiles() throws Exception {
+
+        List<Order> smallOrderItems = Arrays.asList(
+            new Order("o1", "s1", "msg1")
+        );
+        List<Order> largeOrderItems = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            largeOrderItems.add(new Order("o" + i, "s" + i, "msg" + i));
+        }
+
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", "rocksDBBlobTest", RocksDBClientOptions
+            .builder(RocksDBTuningProfile.LARGE_VALUES)
+            .blockCacheCapacityKB(1024)
+            .build());
+        DBAccessObject dbo = open(dbClient, "rocksDBBlobTest");
+        dbo.put(new OrdersString("small", smallOrderItems));
+        dbo.put(new OrdersString("large", largeOrderItems));
+        try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+            dbClient.getDB("rocksDBBlobTest").flush(flushOptions);
+        }
+        Assert.assertEquals(1, dbo.get("small", OrdersString.class).getOrderItems().size());
+        Assert.assertEquals(1000, dbo.get("large", OrdersString.class).getOrderItems().size());
+
+        RocksDBClientOptions clientOptions = dbClient.getClientOptions("rocksDBBlobTest");
+        Map<String, String> cfOptions = readOptionsFile("/tmp/rocksDBBlobTest", "CFOptions \"default\"");
+        Assert.assertEquals("true", cfOptions.get("enable_blob_files"));
+        Assert.assertEquals(String.valueOf(clientOptions.getMinBlobSizeBytes()), cfOptions.get("min_blob_size"));
+        Assert.assertEquals(String.valueOf(clientOptions.isEnableBlobGarbageCollection()),
+            cfOptions.get("enable_blob_garbage_collection"));
+
+        CollectorRegistry registry = new CollectorRegistry();
+        dbClient.createStatsCollector("rocksDBBlobTest", registry).update();
+        Assert.assertEquals(1.0, registry.getSampleValue(
+            "rocksdb_rocksDBBlobTest_props",
+            new String[] {"namespace", "cf", "prop"},
+            new String[] {"rocksDBBlobTest", "aggregated", "rocksdb.num-blob-files"}
+        ), 0);
+        Assert.assertTrue(registry.getSampleValue(
+            "rocksdb_rocksDBBlobTest_stats",
+            new String[] {"namespace", "ticker"},
+            new String[] {"rocksDBBlobTest", TickerType.BLOB_DB_BLOB_FILE_BYTES_READ.toString()}
+        ) > 0);
+    }
+
+    @Test
+    public void testCompaction() {
+
+        // a window that has not started yet, may span midnight
+        LocalTime offPeakStart = LocalTime.now().plusHours(2);
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", "rocksDBCompactionTest", RocksDBClientOptions
+            .builder()
+            .blockCacheCapacityKB(1024)
+            .compactAfterDeletes(5)
+            .compactAfterRangeDelete(false)
+            .offPeakCompactionStart(offPeakStart)
+            .offPeakCompactionEnd(offPeakStart.plusHours(4))
+            .build());
+        DBAccessObject dbo = open(dbClient, "rocksDBCompactionTest");
+        for (int i = 0; i < 20; i++) {
+            dbo.put(new OrdersString(String.format("u%02d", i), ORDER_ITEMS));
+        }
+        dbo.put(new OrdersGzip("g1", ORDER_ITEMS));
+
+        dbClient.compactSet("rocksDBCompactionTest", "ordersSTRING");
+        Map<String, Long> statistics = dbClient.getStatistics().getStatistics();
+        Assert.assertEquals(1L, (long) statistics.get("rocksDBCompactionTest_compactions_requested"));
+        Assert.assertEquals(1L, (long) statistics.get("rocksDBCompactionTest_compactions_completed"));
+        Assert.assertEquals(0L, (long) statistics.get("rocksDBCompactionTest_compactions_running"));
+        Assert.assertEquals(0L, (long) statistics.get("rocksDBCompactionTest_num_files_at_level0"));
+
+        // u10 to u19
+        dbClient.deleteRange("rocksDBCompactionTest", "ordersSTRING", "u10", null);
+        Assert.assertEquals(10, dbo.getIds(OrdersString.class).size());
+        Assert.assertNull(dbo.get("u15", OrdersString.class));
+        Assert.assertNotNull(dbo.get("u09", OrdersString.class));
+        Assert.assertNotNull(dbo.get("g1", OrdersGzip.class));
+        dbClient.compactRange("rocksDBCompactionTest", "ordersSTRING", null, "u20");
+
+        // the fifth delete queues a compaction of the namespace
+        for (int i = 0; i < 5; i++) {
+            dbo.delete(String.format("u%02d", i), OrdersString.class);
+        }
+        statistics = dbClient.getStatistics().getStatistics();
+        Assert.assertEquals(3L, (long) statistics.get("rocksDBCompactionTest_compactions_requested"));
+        Assert.assertEquals(5, dbo.getIds(OrdersString.class).size());
+
+        // sets whose names start with [set]$ are outside the key range of the set
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("uId", "g1");
+        dbClient.put("rocksDBCompactionTest", "ordersGZIP$archive", "g1", fields, EncodingFormat.STRING);
+        dbClient.put("rocksDBCompactionTest", "ordersGZIP%", "g1", fields, EncodingFormat.STRING);
+        Assert.assertThrows(IllegalArgumentException.class, () -> dbClient.put(
+            "rocksDBCompactionTest", "ordersGZIP$", "g1", fields, EncodingFormat.STRING));
+        Assert.assertThrows(IllegalArgumentException.class, () -> dbClient.put(
+            "rocksDBCompactionTest", "ordersGZIP$$archive", "g1", fields, EncodingFormat.STRING));
+
+        dbClient.deleteSet("rocksDBCompactionTest", "ordersGZIP");
+        Assert.assertNull(dbo.get("g1", OrdersGzip.class));
+        Assert.assertEquals(5, dbo.getIds(OrdersString.class).size());
+        Assert.assertNotNull(dbClient.get("rocksDBCompactionTest", "ordersGZIP$archive", "g1", EncodingFormat.STRING));
+        Assert.assertNotNull(dbClient.get("rocksDBCompactionTest", "ordersGZIP%", "g1", EncodingFormat.STRING));
+
+        dbClient.pauseBackgroundWork("rocksDBCompactionTest");
+        Assert.assertEquals(1L, (long) dbClient.getStatistics().getStatistics()
+            .get("rocksDBCompactionTest_background_work_paused"));
+        dbo.put(new OrdersString("u30", ORDER_ITEMS));
+        Assert.assertNotNull(dbo.get("u30", OrdersString.class));
+        dbClient.continueBackgroundWork("rocksDBCompactionTest");
+        Assert.assertEquals(0L, (long) dbClient.getStatistics().getStatistics()
+            .get("rocksDBCompactionTest_background_work_paused"));
+
+        CompactionManager compactionManager = dbClient.getCompactionManager("rocksDBCompactionTest");
+        Assert.assertTrue(compactionManager.isOffPeak(offPeakStart));
+        Assert.assertTrue(compactionManager.isOffPeak(offPeakStart.plusHours(3)));
+        Assert.assertFalse(compactionManager.isOffPeak(offPeakStart.plusHours(4)));
+        Assert.assertFalse(compactionManager.isOffPeak(offPeakStart.minusHours(1)));
+    }
+
+    @Test
+    public void testWriteAdmission() throws InterruptedException {
+
+        List<Order> orderItems = Arrays.asList(
+            new Order("o1", "s1", StringUtils.repeat("m", 1024))
+        );
+
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", "rocksDBAdmissionTest", RocksDBClientOptions
+            .builder()
+            .blockCacheCapacityKB(1024)
+            .maxWriteBuffers(2)
+            .writeBufferSizeKB(64)
+            .writeAdmissionPolicy(RocksDBWriteAdmissionPolicy.FAIL_FAST)
+            .build());
+        DBAccessObject dbo = open(dbClient, "rocksDBAdmissionTest");
+        Assert.assertEquals(WriteStallCondition.NORMAL, dbClient.getWriteStallCondition("rocksDBAdmissionTest"));
+
+        // without flushes the memtables fill up and RocksDB stops writes
+        dbClient.pauseBackgroundWork("rocksDBAdmissionTest");
+        WriteStallException rejection = null;
+        for (int i = 0; i < 10000 && rejection == null; i++) {
+            try {
+                dbo.put(new OrdersString("u" + i, orderItems));
+            } catch (RuntimeException e) {
+                rejection = (WriteStallException) e.getCause();
+            }
+        }
+        Assert.assertNotNull(rejection);
+        Assert.assertEquals(WriteStallCondition.STOPPED, rejection.getCondition());
+        Assert.assertTrue(dbClient.isWriteOverloaded("rocksDBAdmissionTest"));
+        Map<String, Long> statistics = dbClient.getStatistics().getStatistics();
+        Assert.assertEquals(2L, (long) statistics.get("rocksDBAdmissionTest_write_stall_condition"));
+        Assert.assertEquals(1L, (long) statistics.get("rocksDBAdmissionTest_writes_rejected"));
+        Assert.assertEquals(0L, (long) statistics.get("rocksDBAdmissionTest_pending_writes"));
+        Assert.assertNotNull(dbo.get("u0", OrdersString.class));
+
+        dbClient.continueBackgroundWork("rocksDBAdmissionTest");
+        for (int i = 0; i < 100 && dbClient.isWriteOverloaded("rocksDBAdmissionTest"); i++) {
+            Thread.sleep(100);
+        }
+        dbo.put(new OrdersString("after", orderItems));
+        Assert.assertNotNull(dbo.get("after", OrdersString.class));
+        Assert.assertEquals(1L, (long) dbClient.getStatistics().getStatistics()
+            .get("rocksDBAdmissionTest_write_stalls_stopped"));
+
+        // one pending write at a time, the second waits up to 50ms
+        WriteAdmissionController admissionController = new WriteAdmissionController(
+            "bounded", RocksDBWriteAdmissionPolicy.BOUNDED_WAIT, 50, 1, 1, 0
+        );
+        admissionController.acquire();
+        long waitStart = System.currentTimeMillis();
+        Assert.assertThrows(WriteStallException.class, admissionController::acquire);
+        Assert.assertTrue(System.currentTimeMillis() - waitStart >= 50);
+        admissionController.release();
+        admissionController.acquire();
+        Assert.assertEquals(1, admissionController.getPendingWrites());
+        Assert.assertEquals(1, admissionController.getRejectedWrites());
+    }
+
+    @Test
+    public void testWarmup() {
+
+        RocksDBClientOptions clientOptions = RocksDBClientOptions.builder()
+            .blockCacheCapacityKB(1024)
+            .rowCacheCapacityKB(1024)
+            .hotKeysToPersist(100)
+            .build();
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", "rocksDBWarmupTest", clientOptions);
+        DBAccessObject dbo = open(dbClient, "rocksDBWarmupTest");
+        for (int i = 0; i < 50; i++) {
+            dbo.put(new OrdersString("u" + i, ORDER_ITEMS));
+        }
+        dbo.put(new OrdersGzip("g1", ORDER_ITEMS));
+        for (int i = 0; i < 200; i++) {
+            dbo.get("u" + (i % 5), OrdersString.class);
+        }
+        Assert.assertNull(dbClient.getWarmupProgress("rocksDBWarmupTest"));
+        Assert.assertTrue(dbClient.isWarmedUp("rocksDBWarmupTest"));
+        shutdown(dbo);
+
+        // hot keys saved at shutdown are read back, then the whole set
+        dbClient = new RocksDBKVClient("/tmp", "rocksDBWarmupTest", clientOptions.toBuilder()
+            .maxOpenFiles(-1)
+            .warmupSets(Arrays.asList("ordersSTRING"))
+            .warmupRateBytesPerSecond(1024 * 1024)
+            .build());
+        dbo = open(dbClient, "rocksDBWarmupTest");
+        Assert.assertTrue(dbClient.awaitWarmup("rocksDBWarmupTest", 10, TimeUnit.SECONDS));
+        Assert.assertTrue(dbClient.isWarmedUp("rocksDBWarmupTest"));
+        WarmupProgress progress = dbClient.getWarmupProgress("rocksDBWarmupTest");
+        Assert.assertEquals(WarmupState.COMPLETED, progress.getState());
+        Assert.assertTrue(progress.getHotKeysTotal() > 0 && progress.getHotKeysTotal() <= 5);
+        Assert.assertEquals(progress.getHotKeysTotal(), progress.getHotKeysLoaded());
+        Assert.assertEquals(1, progress.getRangesCompleted());
+        Assert.assertEquals(50 + progress.getHotKeysTotal(), progress.getEntriesRead());
+        Map<String, Long> statistics = dbClient.getStatistics().getStatistics();
+        Assert.assertEquals(WarmupState.COMPLETED.ordinal(), (long) statistics.get("rocksDBWarmupTest_warmup_state"));
+        Assert.assertEquals(progress.getBytesRead(), (long) statistics.get("rocksDBWarmupTest_warmup_bytes_read"));
+        Assert.assertNotNull(dbo.get("u1", OrdersString.class));
+    }
+
+    @Test
+    public void testKeyCodecs() {
+
+        RocksDBClientOptions clientOptions = RocksDBClientOptions.builder()
+            .keyFormat("ordersLONG", KeyFormat.of(1, KeyCodecs.forEntity(OrdersLong.class)))
+            .keyFormat("shipments", KeyFormat.of(2, KeyCodecs.forEntity(Shipment.class)))
+            .build();
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", "rocksDBKeyCodecTest", clientOptions);
+        DBAccessObject dbo = open(dbClient, "rocksDBKeyCodecTest");
+        for (long userId : new long[] {10, -3, 2, 100, 0}) {
+            dbo.put(new OrdersLong(userId, ORDER_ITEMS));
+        }
+        dbo.put(new Shipment("us", 1, "s1"));
+        dbo.put(new Shipment("eu", 10, "s2"));
+        dbo.put(new Shipment("eu", 2, "s3"));
+        dbo.put(new OrdersString("u1", ORDER_ITEMS));
+
+        // binary keys sort numerically, composite keys by their components in order
+        Assert.assertEquals(Arrays.asList("-3", "0", "2", "10", "100"), dbo.getIds(OrdersLong.class));
+        Assert.assertEquals(Arrays.asList("eu|2", "eu|10", "us|1"), dbo.getIds(Shipment.class));
+        Assert.assertEquals(Arrays.asList("u1"), dbo.getIds(OrdersString.class));
+        Assert.assertEquals(10L, dbo.get("10", OrdersLong.class).getUserId());
+        Assert.assertEquals("s2", dbo.get("eu|10", Shipment.class).getStatus());
+        Assert.assertNotNull(dbo.get("u1", OrdersString.class));
+
+        // several ids form a composite id only if the entity orders them
+        dbo.put(new LegacyShipment("us", 7));
+        Assert.assertEquals(Arrays.asList("us"), dbo.getIds(LegacyShipment.class));
+        Assert.assertEquals(7L, dbo.get("us", LegacyShipment.class).getSequence());
+        Assert.assertEquals(KeyCodecs.STRING, KeyCodecs.forEntity(LegacyShipment.class));
+        dbo.put(new ShipmentLeg(3, "eu"));
+        Assert.assertEquals(Arrays.asList("eu|3"), dbo.getIds(ShipmentLeg.class));
+        KeyCodec legCodec = KeyCodecs.forEntity(ShipmentLeg.class);
+        Assert.assertEquals("eu|3", legCodec.decode(ByteBuffer.wrap(legCodec.encode("eu|3", true)), true));
+        Assert.assertThrows(IllegalArgumentException.class, () -> legCodec.encode("eu|x", true));
+
+        dbClient.deleteRange("rocksDBKeyCodecTest", "ordersLONG", "0", "100");
+        Assert.assertEquals(Arrays.asList("-3", "100"), dbo.getIds(OrdersLong.class));
+        Assert.assertEquals(8, dbo.getIds().size());
+
+        try {
+            dbo.get("ten", OrdersLong.class);
+            Assert.fail("Non numeric id encoded as long");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertEquals(KeyCodecs.STRING, KeyCodecs.forEntity(OrdersString.class));
+        Assert.assertEquals(KeyCodecs.LONG, KeyCodecs.forEntity(OrdersLong.class));
+    }
+
+    @Test
+    public void testParallelScan() {
+
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", "rocksDBParallelScanTest",
+            RocksDBClientOptions.builder().build());
+        DBAccessObject dbo = open(dbClient, "rocksDBParallelScanTest");
+        // one table file per batch of ids, the scan splits at their boundaries
+        for (int batch = 0; batch < 4; batch++) {
+            for (int i = 0; i < 500; i++) {
+                dbo.put(new OrdersString("u" + batch + "-" + i, ORDER_ITEMS));
+            }
+            try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+                dbClient.getDB("rocksDBParallelScanTest").flush(flushOptions);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        dbo.put(new OrdersGzip("u1", ORDER_ITEMS));
+
+        List<ScanRange> ranges = dbClient.getScanRanges("rocksDBParallelScanTest", "ordersSTRING", 4);
+        Assert.assertTrue(ranges.size() > 1 && ranges.size() <= 4);
+        long rangeEntities = 0;
+        for (ScanRange range : ranges) {
+            List<String> entityIds = new ArrayList<>();
+            dbClient.scan("rocksDBParallelScanTest", "ordersSTRING", range, EncodingFormat.STRING,
+                (entityId, fields) -> entityIds.add(entityId));
+            Assert.assertTrue(entityIds.size() < 2000);
+            rangeEntities += entityIds.size();
+        }
+        Assert.assertEquals(2000, rangeEntities);
+
+        Set<String> scannedIds = ConcurrentHashMap.newKeySet();
+        Assert.assertEquals(2000, dbo.scan(OrdersString.class, 4, order -> scannedIds.add(order.getUserId())));
+        Assert.assertEquals(2000, scannedIds.size());
+        Assert.assertTrue(scannedIds.contains("u3-499"));
+        Assert.assertEquals(1, dbo.scan(OrdersGzip.class, 4, order -> {}));
+    }
+
+    @Test
+    public void testReadTiers() throws Exception {
+
+        RocksDBClientOptions clientOptions = RocksDBClientOptions.builder()
+            .blockCacheCapacityKB(64 * 1024)
+            .build();
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", "rocksDBReadTierTest", clientOptions);
+        DBAccessObject dbo = open(dbClient, "rocksDBReadTierTest");
+        for (int i = 0; i < 500; i++) {
+            dbo.put(new OrdersString("u" + i, ORDER_ITEMS));
+        }
+        try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+            dbClient.getDB("rocksDBReadTierTest").flush(flushOptions);
+        }
+        shutdown(dbo);
+
+        // freshly opened, nothing is cached
+        dbClient = new RocksDBKVClient("/tmp", "rocksDBReadTierTest", clientOptions);
+        dbo = open(dbClient, "rocksDBReadTierTest");
+        Assert.assertNull(dbClient.get(
+            "rocksDBReadTierTest", "ordersSTRING", "u1", EncodingFormat.STRING, RocksDBReadTier.CACHE_ONLY
+        ));
+        Assert.assertTrue(dbClient.get(
+            "rocksDBReadTierTest", "ordersSTRING", Arrays.asList("u1", "u2"), EncodingFormat.STRING,
+            RocksDBReadTier.CACHE_ONLY
+        ).isEmpty());
+
+        // scans leave the block cache alone
+        long dataBlocksAdded = dbClient.getStatistics("rocksDBReadTierTest").getTickerCount(
+            TickerType.BLOCK_CACHE_DATA_ADD
+        );
+        Assert.assertEquals(500, dbo.getIds(OrdersString.class).size());
+        Assert.assertEquals(500, dbo.scan(OrdersString.class, 2, order -> {}));
+        Assert.assertEquals(dataBlocksAdded, dbClient.getStatistics("rocksDBReadTierTest").getTickerCount(
+            TickerType.BLOCK_CACHE_DATA_ADD
+        ));
+
+        // point reads fill it
+        Assert.assertNotNull(dbo.get("u1", OrdersString.class));
+        Assert.assertTrue(dbClient.getStatistics("rocksDBReadTierTest").getTickerCount(
+            TickerType.BLOCK_CACHE_DATA_ADD
+        ) > dataBlocksAdded);
+        Assert.assertNotNull(dbClient.get(
+            "rocksDBReadTierTest", "ordersSTRING", "u1", EncodingFormat.STRING, RocksDBReadTier.CACHE_ONLY
+        ));
+    }
+
+    @Test
+    public void testUnitOfWork() {
+
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", "rocksDBUnitOfWorkTest",
+            RocksDBClientOptions.builder().build());
+        DBAccessObject dbo = open(dbClient, "rocksDBUnitOfWorkTest");
+        dbo.put(new OrdersGzip("cart1", ORDER_ITEMS));
+
+        long writes = dbClient.getStatistics("rocksDBUnitOfWorkTest").getTickerCount(TickerType.WRITE_WITH_WAL);
+        long sequenceNumber = dbClient.getLatestSequenceNumber("rocksDBUnitOfWorkTest");
+        dbo.batch()
+            .put(new OrdersString("u1", ORDER_ITEMS))
+            .put(new OrdersGzip("g1", ORDER_ITEMS))
+            .delete("cart1", OrdersGzip.class)
+            .commit();
+
+        // a single write of the whole batch
+        Assert.assertEquals(writes + 1,
+            dbClient.getStatistics("rocksDBUnitOfWorkTest").getTickerCount(TickerType.WRITE_WITH_WAL));
+        Assert.assertEquals(sequenceNumber + 3, dbClient.getLatestSequenceNumber("rocksDBUnitOfWorkTest"));
+        Assert.assertNotNull(dbo.get("u1", OrdersString.class));
+        Assert.assertNotNull(dbo.get("g1", OrdersGzip.class));
+        Assert.assertNull(dbo.get("cart1", OrdersGzip.class));
+        List<ChangeEvent> events = dbClient.getChangesSince("rocksDBUnitOfWorkTest", sequenceNumber + 1, 10);
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(ChangeType.DELETE, events.get(2).getType());
+    }
+
+    @Test
+    public void testDirectBuffers() {
+
+        RocksDBKVClient dbClient = new RocksDBKVClient("/tmp", "rocksDBDirectBufferTest",
+            RocksDBClientOptions.builder()
+                .directBufferSizeKB(1)
+                .directBufferMaxRetainedKB(8)
+                .keyFormat("ordersLONG", KeyFormat.of(1, KeyCodecs.forEntity(OrdersLong.class)))
+                .build());
+        DBAccessObject dbo = open(dbClient, "rocksDBDirectBufferTest");
+
+        // values written through the entity API read back as stored
+        dbo.put(new OrdersString("u1", ORDER_ITEMS));
+        String storedPayload = dbClient.getDirect(
+            "rocksDBDirectBufferTest", "ordersSTRING", "u1", value -> StandardCharsets.UTF_8.decode(value).toString()
+        );
+        Assert.assertTrue(storedPayload.contains("msg1"));
+        Assert.assertNull(dbClient.getDirect("rocksDBDirectBufferTest", "ordersSTRING", "u2", ByteBuffer::getLong));
+
+        // entities decoded from the buffer, parsed in place for STRING encoding
+        dbo.put(new OrdersGzip("g1", ORDER_ITEMS));
+        OrdersString directEntity = dbClient.getDirect(
+            "rocksDBDirectBufferTest", "ordersSTRING", "u1", DirectEntityReader.of(OrdersString.class)
+        );
+        Assert.assertEquals("u1", directEntity.getUserId());
+        Assert.assertEquals("msg1", directEntity.getOrderItems().get(0).getStatusMessage());
+        Assert.assertEquals("g1", dbClient.getDirect(
+            "rocksDBDirectBufferTest", "ordersGZIP", "g1", DirectEntityReader.of(OrdersGzip.class)
+        ).getUserId());
+        long sequenceNumber = dbClient.getLatestSequenceNumber("rocksDBDirectBufferTest");
+
+        // binary values decoded straight from the buffer, on text and binary keys
+        ByteBuffer value = dbClient.getDirectBuffers().getValueBuffer(Long.BYTES);
+        value.putLong(42).flip();
+        dbClient.putDirect("rocksDBDirectBufferTest", "counters", "c1", value);
+        dbClient.putDirect("rocksDBDirectBufferTest", "ordersLONG", "-7",
+            ByteBuffer.allocate(Long.BYTES).putLong(7).flip());
+        Assert.assertEquals(Long.valueOf(42), dbClient.getDirect(
+            "rocksDBDirectBufferTest", "counters", "c1", ByteBuffer::getLong
+        ));
+        Assert.assertEquals(Long.valueOf(7), dbClient.getDirect(
+            "rocksDBDirectBufferTest", "ordersLONG", "-7", ByteBuffer::getLong
+        ));
+        Assert.assertEquals(Arrays.asList("-7"), dbClient.getIds("rocksDBDirectBufferTest", "ordersLONG"));
+
+        // raw values reach the change feed as the stored bytes
+        List<ChangeEvent> events = dbClient.getChangesSince("rocksDBDirectBufferTest", sequenceNumber + 1, 10);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(42, ByteBuffer.wrap(events.get(0).getValue()).getLong());
+        Assert.assertEquals(7, ByteBuffer.wrap(events.get(1).getValue()).getLong());
+
+        // values larger than the buffer grow it
+        byte[] largeValue = StringUtils.repeat('x', 4096).getBytes(StandardCharsets.UTF_8);
+        dbClient.putDirect("rocksDBDirectBufferTest", "blobs", "b1", ByteBuffer.wrap(largeValue));
+        Assert.assertEquals(Integer.valueOf(4096), dbClient.getDirect(
+            "rocksDBDirectBufferTest", "blobs", "b1", ByteBuffer::remaining
+        ));
+
+        // steady state reads and writes reuse the thread's buffers
+        long allocations = dbClient.getDirectBuffers().getAllocations();
+        for (int i = 0; i < 1000; i++) {
+            ByteBuffer counter = dbClient.getDirectBuffers().getValueBuffer(Long.BYTES);
+            counter.putLong(i).flip();
+            dbClient.putDirect("rocksDBDirectBufferTest", "counters", "c" + (i % 10), counter);
+            dbClient.getDirect("rocksDBDirectBufferTest", "blobs", "b1", ByteBuffer::remaining);
+        }
+        Assert.assertEquals(allocations, dbClient.getDirectBuffers().getAllocations());
+        Assert.assertEquals(Long.valueOf(999), dbClient.getDirect(
+            "rocksDBDirectBufferTest", "counters", "c9", ByteBuffer::getLong
+        ));
+        Assert.assertEquals(Long.valueOf(allocations),
+            dbClient.getStatistics().getStatistics().get("rocksdb_direct_buffer_allocations"));
+
+        // values above the maximum retained size go through temporary buffers
+        byte[] outsizedValue = StringUtils.repeat('y', 16 * 1024).getBytes(StandardCharsets.UTF_8);
+        dbClient.putDirect("rocksDBDirectBufferTest", "blobs", "b2", ByteBuffer.wrap(outsizedValue));
+        Assert.assertEquals(Integer.valueOf(16 * 1024), dbClient.getDirect(
+            "rocksDBDirectBufferTest", "blobs", "b2", ByteBuffer::remaining
+        ));
+        Assert.assertEquals(allocations, dbClient.getDirectBuffers().getAllocations());
+        Assert.assertEquals(2, dbClient.getDirectBuffers().getTemporaryAllocations());
+        Assert.assertEquals(Integer.valueOf(4096), dbClient.getDirect(
+            "rocksDBDirectBufferTest", "blobs", "b1", ByteBuffer::remaining
+        ));
+        Assert.assertEquals(2, dbClient.getDirectBuffers().getTemporaryAllocations());
+    }
+
+    @Test
+    public void testInstrumentedClient() {
+
+        RocksDBKVClient rocksDBClient = new RocksDBKVClient(
+            "/tmp", "rocksDBInstrumentedTest",
+            64, 64, 64, 10000000, 
+            3, 8, 1024,
+            CompressionType.NO_COMPRESSION, CompactionStyle.LEVEL, 0, 2,
+            true, false, false
+        );
+        InstrumentedDBClient dbClient = new InstrumentedDBClient(rocksDBClient);
+        DBAccessObject dbo = open(dbClient, "rocksDBInstrumentedTest");
+        for (int i = 0; i < 10; i++) {
+            dbo.put(new OrdersString("u" + i, ORDER_ITEMS));
+            Assert.assertNotNull(dbo.get("u" + i, OrdersString.class));
+        }
+        dbo.get(Arrays.asList("u1", "u2"), OrdersString.class);
+
+        Map<String, Long> statistics = dbClient.getStatistics().getStatistics();
+        Assert.assertEquals(10L, (long) statistics.get("rocksDBInstrumentedTest_ordersSTRING_put_count"));
+        Assert.assertEquals(10L, (long) statistics.get("rocksDBInstrumentedTest_ordersSTRING_get_count"));
+        Assert.assertEquals(1L, (long) statistics.get("rocksDBInstrumentedTest_ordersSTRING_multi_get_count"));
+        Assert.assertNotNull(statistics.get("rocksDBInstrumentedTest_ordersSTRING_get_storage_p99_us"));
+        Assert.assertNotNull(statistics.get("rocksDBInstrumentedTest_ordersSTRING_put_codec_p50_us"));
+        Assert.assertNotNull(statistics.get("rocksDBInstrumentedTest_ordersSTRING_put_lock_wait_max_us"));
+
+        CollectorRegistry registry = new CollectorRegistry();
+        new DBClientStatsCollector(dbClient, "instrumented_test", registry).update();
+        Assert.assertEquals(10.0, registry.getSampleValue(
+            "jdatalayer_instrumented_test_operations",
+            new String[] {"namespace", "set", "operation"},
+            new String[] {"rocksDBInstrumentedTest", "ordersSTRING", "get"}
+        ), 0);
+
+        rocksDBClient.createStatsCollector("rocksDBInstrumentedTest", registry).update();
+        Assert.assertEquals(10.0, registry.getSampleValue(
+            "rocksdb_rocksDBInstrumentedTest_histograms",
+            new String[] {"namespace", "histogram", "stat"},
+            new String[] {"rocksDBInstrumentedTest", "DB_GET", "count"}
+        ), 0);
+        rocksDBClient.setStatsLevel("rocksDBInstrumentedTest", StatsLevel.ALL);
+        Assert.assertEquals(StatsLevel.ALL, rocksDBClient.getStatsLevel("rocksDBInstrumentedTest"));
+
+        rocksDBClient.setSlowOperationTracer(new SlowOperationTracer(1.0, 0, 4));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull(dbo.get("u" + i, OrdersString.class));
+        }
+        List<SlowOperationTrace> traces = rocksDBClient.getSlowOperationTracer().getRecentTraces();
+        Assert.assertEquals(4, traces.size());
+        Assert.assertEquals(DBOperation.GET, traces.get(3).getOperation());
+        Assert.assertEquals("u9", traces.get(3).getEntityId());
+        Assert.assertEquals(1L, (long) traces.get(3).getTickerDeltas().get(TickerType.MEMTABLE_HIT));
+        Assert.assertTrue(traces.get(3).getPhaseMicros().containsKey(OperationPhase.STORAGE));
+        Assert.assertEquals(10L, (long) rocksDBClient.getStatistics().getStatistics().get("rocksdb_sampled_operations"));
+        rocksDBClient.setSlowOperationTracer(null);
+    }
 }
 
 @Getter
@@ -130,3 +1005,73 @@ class OrdersGzip implements DBEntity {
     @JsonProperty("oItms")
     private List<Order> orderItems;
 }
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@DBEntityConfiguration(setName = "ordersLONG", encodingFormat = EncodingFormat.STRING)
+class OrdersLong implements DBEntity {
+
+    @EntityId
+    @JsonProperty("uId")
+    public long userId;
+    @JsonProperty("oItms")
+    private List<Order> orderItems;
+}
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@DBEntityConfiguration(setName = "shipments", encodingFormat = EncodingFormat.STRING)
+class Shipment implements DBEntity {
+
+    @EntityId
+    @JsonProperty("rgn")
+    public String region;
+    @EntityId(order = 1)
+    @JsonProperty("seq")
+    public long sequence;
+    @JsonProperty("sts")
+    private String status;
+}
+
+/**
+ * Several ids without an order, stored under the first one as before composite ids
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@DBEntityConfiguration(setName = "legacyShipments", encodingFormat = EncodingFormat.STRING)
+class LegacyShipment implements DBEntity {
+
+    @EntityId
+    @JsonProperty("rgn")
+    public String region;
+    @EntityId
+    @JsonProperty("seq")
+    public long sequence;
+}
+
+@AllArgsConstructor
+@NoArgsConstructor
+@DBEntityConfiguration(setName = "shipmentLegs", encodingFormat = EncodingFormat.STRING)
+class ShipmentLeg implements DBEntity {
+
+    @JsonProperty("leg")
+    public int leg;
+    @JsonProperty("rgn")
+    public String region;
+
+    @EntityId(order = 1)
+    public int leg() {
+        return leg;
+    }
+
+    @EntityId
+    public String region() {
+        return region;
+    }
+}
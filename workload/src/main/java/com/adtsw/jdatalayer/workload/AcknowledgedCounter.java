@@ -0,0 +1,59 @@
+package com.adtsw.jdatalayer.workload;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Key numbers for inserts, as YCSB's AcknowledgedCounterGenerator. A key
+ * only counts as inserted once the inserts of every key number before it
+ * completed, so reads, updates and scans don't pick keys whose insert is
+ * still running on another thread.
+ */
+public class AcknowledgedCounter {
+
+    private static final int WINDOW_SIZE = 1 << 16;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private final AtomicLong nextKeyNumber;
+    private final boolean[] window = new boolean[WINDOW_SIZE];
+    private volatile long acknowledgedKeys;
+
+    /**
+     * @param insertedKeys number of keys inserted before, key numbers start after them
+     */
+    public AcknowledgedCounter(long insertedKeys) {
+        this.nextKeyNumber = new AtomicLong(insertedKeys);
+        this.acknowledgedKeys = insertedKeys;
+    }
+
+    /**
+     * @return the key number to insert next
+     */
+    public long next() {
+        return nextKeyNumber.getAndIncrement();
+    }
+
+    /**
+     * @return number of keys from key number 0 on whose inserts all completed
+     */
+    public long getAcknowledgedKeys() {
+        return acknowledgedKeys;
+    }
+
+    /**
+     * Marks the insert of a key number from {@link #next()} as completed,
+     * whether it succeeded or not
+     */
+    public synchronized void acknowledge(long keyNumber) {
+
+        if(keyNumber - acknowledgedKeys >= WINDOW_SIZE) {
+            throw new IllegalStateException("More than " + WINDOW_SIZE + " inserts are waiting for an earlier insert");
+        }
+        window[(int) (keyNumber & WINDOW_MASK)] = true;
+        long acknowledged = acknowledgedKeys;
+        while (window[(int) (acknowledged & WINDOW_MASK)]) {
+            window[(int) (acknowledged & WINDOW_MASK)] = false;
+            acknowledged++;
+        }
+        acknowledgedKeys = acknowledged;
+    }
+}
@@ -0,0 +1,48 @@
+package com.adtsw.jdatalayer.workload;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How the workload picks existing keys for reads, updates and scans.
+ *
+ * UNIFORM - every inserted key is equally likely.
+ *
+ * ZIPFIAN - a few keys are very hot. Hot keys are spread over the key space
+ * since key names are hashed, see {@link WorkloadConfig#isHashKeys()}.
+ *
+ * LATEST - zipfian over insertion order, recently inserted keys are hot.
+ */
+public enum KeyDistribution {
+
+    UNIFORM,
+    ZIPFIAN,
+    LATEST;
+
+    /**
+     * @param recordCount number of keys the distribution is computed over
+     */
+    public KeyChooser create(long recordCount, double zipfianConstant) {
+
+        switch (this) {
+            case ZIPFIAN: {
+                ZipfianGenerator zipfian = new ZipfianGenerator(recordCount, zipfianConstant);
+                return insertedKeys -> zipfian.next() % insertedKeys;
+            }
+            case LATEST: {
+                ZipfianGenerator zipfian = new ZipfianGenerator(recordCount, zipfianConstant);
+                return insertedKeys -> Math.max(0, insertedKeys - 1 - zipfian.next());
+            }
+            case UNIFORM:
+            default:
+                return insertedKeys -> ThreadLocalRandom.current().nextLong(insertedKeys);
+        }
+    }
+
+    public interface KeyChooser {
+
+        /**
+         * @return a key number in [0, insertedKeys)
+         */
+        long next(long insertedKeys);
+    }
+}
@@ -0,0 +1,124 @@
+package com.adtsw.jdatalayer.workload;
+
+import java.util.Properties;
+
+import com.adtsw.jcommons.models.EncodingFormat;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Parameters of a workload run. Proportions are relative weights of the
+ * operations and don't need to add up to 1.
+ */
+@Getter
+@Builder(toBuilder = true)
+@ToString
+public class WorkloadConfig {
+
+    @Builder.Default
+    private final String namespace = "workload";
+    @Builder.Default
+    private final String set = "usertable";
+    @Builder.Default
+    private final long recordCount = 1000000;
+    /**
+     * Whether to insert recordCount keys before running the operations
+     */
+    @Builder.Default
+    private final boolean load = true;
+    /**
+     * Stop after this many operations, 0 to only stop on duration
+     */
+    private final long operationCount;
+    /**
+     * Stop after this many seconds, 0 to only stop on operation count
+     */
+    @Builder.Default
+    private final long durationSeconds = 60;
+    @Builder.Default
+    private final int threads = 8;
+    /**
+     * Total operations per second across threads, 0 for as fast as possible
+     */
+    private final long targetOpsPerSecond;
+
+    @Builder.Default
+    private final double readProportion = 0.95;
+    @Builder.Default
+    private final double updateProportion = 0.05;
+    private final double insertProportion;
+    private final double scanProportion;
+    @Builder.Default
+    private final int scanLength = 10;
+
+    @Builder.Default
+    private final KeyDistribution keyDistribution = KeyDistribution.ZIPFIAN;
+    @Builder.Default
+    private final double zipfianConstant = ZipfianGenerator.DEFAULT_ZIPFIAN_CONSTANT;
+    /**
+     * Hash key numbers into key names, so that sequential inserts and hot
+     * keys do not cluster in the key space
+     */
+    @Builder.Default
+    private final boolean hashKeys = true;
+
+    @Builder.Default
+    private final int minValueSizeBytes = 1000;
+    @Builder.Default
+    private final int maxValueSizeBytes = 1000;
+    @Builder.Default
+    private final EncodingFormat encodingFormat = EncodingFormat.STRING;
+
+    @Builder.Default
+    private final int reportIntervalSeconds = 10;
+    @Builder.Default
+    private final String outputDirectory = "workload-results";
+
+    /**
+     * Reads the config from properties named as the fields, missing properties
+     * keep their defaults
+     */
+    public static WorkloadConfig fromProperties(Properties properties) {
+
+        WorkloadConfig defaults = WorkloadConfig.builder().build();
+        return WorkloadConfig.builder()
+            .namespace(properties.getProperty("namespace", defaults.namespace))
+            .set(properties.getProperty("set", defaults.set))
+            .recordCount(getLong(properties, "recordCount", defaults.recordCount))
+            .load(Boolean.parseBoolean(properties.getProperty("load", String.valueOf(defaults.load))))
+            .operationCount(getLong(properties, "operationCount", defaults.operationCount))
+            .durationSeconds(getLong(properties, "durationSeconds", defaults.durationSeconds))
+            .threads((int) getLong(properties, "threads", defaults.threads))
+            .targetOpsPerSecond(getLong(properties, "targetOpsPerSecond", defaults.targetOpsPerSecond))
+            .readProportion(getDouble(properties, "readProportion", defaults.readProportion))
+            .updateProportion(getDouble(properties, "updateProportion", defaults.updateProportion))
+            .insertProportion(getDouble(properties, "insertProportion", defaults.insertProportion))
+            .scanProportion(getDouble(properties, "scanProportion", defaults.scanProportion))
+            .scanLength((int) getLong(properties, "scanLength", defaults.scanLength))
+            .keyDistribution(KeyDistribution.valueOf(
+                properties.getProperty("keyDistribution", defaults.keyDistribution.name())
+            ))
+            .zipfianConstant(getDouble(properties, "zipfianConstant", defaults.zipfianConstant))
+            .hashKeys(Boolean.parseBoolean(properties.getProperty("hashKeys", String.valueOf(defaults.hashKeys))))
+            .minValueSizeBytes((int) getLong(properties, "minValueSizeBytes", defaults.minValueSizeBytes))
+            .maxValueSizeBytes((int) getLong(properties, "maxValueSizeBytes", defaults.maxValueSizeBytes))
+            .encodingFormat(EncodingFormat.valueOf(
+                properties.getProperty("encodingFormat", defaults.encodingFormat.name())
+            ))
+            .reportIntervalSeconds((int) getLong(properties, "reportIntervalSeconds", defaults.reportIntervalSeconds))
+            .outputDirectory(properties.getProperty("outputDirectory", defaults.outputDirectory))
+            .build();
+    }
+
+    private static long getLong(Properties properties, String name, long defaultValue) {
+        String value = properties.getProperty(name);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static double getDouble(Properties properties, String name, double defaultValue) {
+        String value = properties.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+}
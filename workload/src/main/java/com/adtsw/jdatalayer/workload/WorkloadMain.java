@@ -0,0 +1,109 @@
+package com.adtsw.jdatalayer.workload;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import com.adtsw.jdatalayer.core.client.IDBClient;
+import com.adtsw.jdatalayer.mapdb.MapDBClient;
+import com.adtsw.jdatalayer.rocksdb.RocksDBClientOptions;
+import com.adtsw.jdatalayer.rocksdb.RocksDBKVClient;
+import com.adtsw.jdatalayer.rocksdb.RocksDBTuningProfile;
+
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.CompressionType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs a workload described by a properties file against an on-disk store,
+ * see workload.properties for the available properties.
+ *
+ * java -jar workload.jar workload.properties
+ */
+@Slf4j
+public class WorkloadMain {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        Properties properties = new Properties();
+        if(args.length > 0) {
+            try (InputStream input = new FileInputStream(args[0])) {
+                properties.load(input);
+            }
+        } else {
+            try (InputStream input = WorkloadMain.class.getResourceAsStream("/workload.properties")) {
+                properties.load(input);
+            }
+        }
+        properties.putAll(System.getProperties());
+
+        WorkloadConfig config = WorkloadConfig.fromProperties(properties);
+        log.info("Running {}", config);
+        IDBClient dbClient = openClient(properties, config.getNamespace());
+        try {
+            WorkloadRunner runner = new WorkloadRunner(dbClient, config);
+            if(config.isLoad()) {
+                runner.load();
+            }
+            runner.run();
+        } finally {
+            dbClient.shutdown();
+        }
+    }
+
+    private static IDBClient openClient(Properties properties, String namespace) {
+
+        String backend = properties.getProperty("backend", "rocksdb");
+        String storageLocation = properties.getProperty("storageLocation", "/tmp/jdatalayer-workload");
+        switch (backend) {
+            case "rocksdb":
+                RocksDBTuningProfile profile = RocksDBTuningProfile.valueOf(
+                    properties.getProperty("rocksdb.profile", "DEFAULT")
+                );
+                RocksDBClientOptions defaults = RocksDBClientOptions.builder(profile).build();
+                return new RocksDBKVClient(storageLocation, namespace, RocksDBClientOptions.builder(profile)
+                    .blockCacheCapacityKB(getInt(properties, "rocksdb.blockCacheCapacityKB", 
+                        defaults.getBlockCacheCapacityKB()))
+                    .blockCacheCompressedCapacityKB(getInt(properties, "rocksdb.blockCacheCompressedCapacityKB", 
+                        defaults.getBlockCacheCompressedCapacityKB()))
+                    .rowCacheCapacityKB(getInt(properties, "rocksdb.rowCacheCapacityKB", 
+                        defaults.getRowCacheCapacityKB()))
+                    .rateBytesPerSecond(getInt(properties, "rocksdb.rateBytesPerSecond", 
+                        defaults.getRateBytesPerSecond()))
+                    .maxWriteBuffers(getInt(properties, "rocksdb.maxWriteBuffers", defaults.getMaxWriteBuffers()))
+                    .writeBufferSizeKB(getInt(properties, "rocksdb.writeBufferSizeKB", 
+                        defaults.getWriteBufferSizeKB()))
+                    .maxTotalWalSizeKB(getInt(properties, "rocksdb.maxTotalWalSizeKB", 
+                        defaults.getMaxTotalWalSizeKB()))
+                    .compressionType(CompressionType.valueOf(properties.getProperty(
+                        "rocksdb.compressionType", defaults.getCompressionType().name())))
+                    .compactionStyle(CompactionStyle.valueOf(properties.getProperty(
+                        "rocksdb.compactionStyle", defaults.getCompactionStyle().name())))
+                    .maxAllowedSpaceUsageKB(getInt(properties, "rocksdb.maxAllowedSpaceUsageKB", 
+                        defaults.getMaxAllowedSpaceUsageKB()))
+                    .maxBackgroundJobs(getInt(properties, "rocksdb.maxBackgroundJobs", 
+                        defaults.getMaxBackgroundJobs()))
+                    .bloomBitsPerKey(getInt(properties, "rocksdb.bloomBitsPerKey", defaults.getBloomBitsPerKey()))
+                    .fillReadCache(getBoolean(properties, "rocksdb.fillReadCache", defaults.isFillReadCache()))
+                    .disableWAL(getBoolean(properties, "rocksdb.disableWAL", defaults.isDisableWAL()))
+                    .syncOnWrite(getBoolean(properties, "rocksdb.syncOnWrite", defaults.isSyncOnWrite()))
+                    .build());
+            case "mapdb":
+                return new MapDBClient(storageLocation, namespace, getInt(properties, "mapdb.concurrencyScale", 0));
+            default:
+                throw new IllegalArgumentException("Unknown backend " + backend);
+        }
+    }
+
+    private static int getInt(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static boolean getBoolean(Properties properties, String name, boolean defaultValue) {
+        String value = properties.getProperty(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
@@ -0,0 +1,19 @@
+package com.adtsw.jdatalayer.workload;
+
+/**
+ * READ - get of an existing key.
+ *
+ * UPDATE - put over an existing key.
+ *
+ * INSERT - put of a new key, extends the key space.
+ *
+ * SCAN - multi-get of scanLength consecutive key numbers, IDBClient has no
+ * range read.
+ */
+public enum WorkloadOperation {
+
+    READ,
+    UPDATE,
+    INSERT,
+    SCAN
+}
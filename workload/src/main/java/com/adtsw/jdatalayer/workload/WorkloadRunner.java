@@ -0,0 +1,382 @@
+package com.adtsw.jdatalayer.workload;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.adtsw.jdatalayer.core.client.IDBClient;
+import com.adtsw.jdatalayer.core.client.ScanRange;
+import com.adtsw.jdatalayer.rocksdb.RocksDBClient;
+import com.adtsw.jdatalayer.workload.KeyDistribution.KeyChooser;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.apache.commons.io.FileUtils;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drives an IDBClient with the operation mix of a {@link WorkloadConfig} and
+ * records latencies per operation in HdrHistograms.
+ *
+ * Every report interval it writes, to the output directory,
+ * - latencies.csv, count, throughput and percentiles (us) per operation
+ * - [operation].hlog, the full interval histograms, for HistogramLogAnalyzer and similar tools
+ * - statistics.csv, getStatistics() of the client and, for RocksDB clients, the tickers
+ *
+ * With a target throughput operations are paced against an intended start
+ * time and latency is measured from that time, so that a stalled store shows
+ * up as latency instead of as fewer samples (coordinated omission).
+ */
+@Slf4j
+public class WorkloadRunner {
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final WorkloadOperation[] OPERATIONS = WorkloadOperation.values();
+    private static final ScanCompleted SCAN_COMPLETED = new ScanCompleted();
+
+    private final IDBClient dbClient;
+    private final WorkloadConfig config;
+    private final KeyChooser keyChooser;
+    private final double[] cumulativeProportions;
+    private final String valueSource;
+    private final AcknowledgedCounter insertedKeys;
+    private final AtomicLong issuedOperations = new AtomicLong();
+    private final Map<WorkloadOperation, Recorder> recorders = new EnumMap<>(WorkloadOperation.class);
+    private final Map<WorkloadOperation, LongAdder> errors = new EnumMap<>(WorkloadOperation.class);
+    private final Map<WorkloadOperation, HistogramLogWriter> histogramLogs = new EnumMap<>(WorkloadOperation.class);
+    private PrintStream latencyLog;
+    private PrintStream statisticsLog;
+    private long startTimeMs;
+
+    public WorkloadRunner(IDBClient dbClient, WorkloadConfig config) {
+
+        this.dbClient = dbClient;
+        this.config = config;
+        this.keyChooser = config.getKeyDistribution().create(config.getRecordCount(), config.getZipfianConstant());
+        this.insertedKeys = new AcknowledgedCounter(config.getRecordCount());
+
+        double[] proportions = {
+            config.getReadProportion(), config.getUpdateProportion(),
+            config.getInsertProportion(), config.getScanProportion()
+        };
+        double total = 0;
+        this.cumulativeProportions = new double[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            total += proportions[i];
+            cumulativeProportions[i] = total;
+        }
+        if(total <= 0) {
+            throw new IllegalArgumentException("At least one operation proportion must be positive");
+        }
+        if(config.getRecordCount() <= 0 && config.getInsertProportion() <= 0) {
+            throw new IllegalArgumentException("Without loaded records the operation mix must have inserts");
+        }
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            cumulativeProportions[i] /= total;
+        }
+
+        StringBuilder value = new StringBuilder(config.getMaxValueSizeBytes());
+        for (int i = 0; i < config.getMaxValueSizeBytes(); i++) {
+            value.append((char) ('a' + ThreadLocalRandom.current().nextInt(26)));
+        }
+        this.valueSource = value.toString();
+
+        for (WorkloadOperation operation : OPERATIONS) {
+            recorders.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Inserts recordCount keys in bulk puts split across the worker threads
+     */
+    public void load() throws InterruptedException {
+
+        log.info("Loading {} records into {}/{}", config.getRecordCount(), config.getNamespace(), config.getSet());
+        long loadStartMs = System.currentTimeMillis();
+        AtomicLong nextBatch = new AtomicLong();
+        AtomicLong loadedKeys = new AtomicLong();
+        ExecutorService loaders = Executors.newFixedThreadPool(config.getThreads());
+        for (int thread = 0; thread < config.getThreads(); thread++) {
+            loaders.submit(() -> {
+                long batchStart;
+                while ((batchStart = nextBatch.getAndAdd(LOAD_BATCH_SIZE)) < config.getRecordCount()) {
+                    long batchEnd = Math.min(batchStart + LOAD_BATCH_SIZE, config.getRecordCount());
+                    Map<String, Map<String, Object>> entities = new HashMap<>();
+                    for (long keyNumber = batchStart; keyNumber < batchEnd; keyNumber++) {
+                        entities.put(getKey(keyNumber), getFields(keyNumber));
+                    }
+                    dbClient.put(config.getNamespace(), config.getSet(), entities, config.getEncodingFormat());
+                    long loaded = loadedKeys.addAndGet(entities.size());
+                    if(loaded % (LOAD_BATCH_SIZE * 100L) < entities.size()) {
+                        log.info("Loaded {} records", loaded);
+                    }
+                }
+                return null;
+            });
+        }
+        loaders.shutdown();
+        loaders.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        log.info("Loaded {} records in {} ms", loadedKeys.get(), System.currentTimeMillis() - loadStartMs);
+    }
+
+    /**
+     * Runs the operation mix until the operation count or duration is reached
+     */
+    public void run() throws InterruptedException, IOException {
+
+        openLogs();
+        startTimeMs = System.currentTimeMillis();
+        long deadlineNanos = config.getDurationSeconds() > 0
+            ? System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getDurationSeconds())
+            : Long.MAX_VALUE;
+        long operationIntervalNanos = config.getTargetOpsPerSecond() > 0
+            ? TimeUnit.SECONDS.toNanos(config.getThreads()) / config.getTargetOpsPerSecond()
+            : 0;
+
+        ExecutorService workers = Executors.newFixedThreadPool(config.getThreads());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < config.getThreads(); thread++) {
+            futures.add(workers.submit(() -> runOperations(deadlineNanos, operationIntervalNanos)));
+        }
+        workers.shutdown();
+
+        long reportIntervalMs = TimeUnit.SECONDS.toMillis(config.getReportIntervalSeconds());
+        while (!workers.awaitTermination(reportIntervalMs, TimeUnit.MILLISECONDS)) {
+            report();
+        }
+        report();
+        closeLogs();
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new RuntimeException("Workload thread failed", e);
+            }
+        }
+    }
+
+    private void runOperations(long deadlineNanos, long operationIntervalNanos) {
+
+        long intendedStartNanos = System.nanoTime();
+        while (true) {
+            if(config.getOperationCount() > 0 && issuedOperations.incrementAndGet() > config.getOperationCount()) {
+                return;
+            }
+            if(operationIntervalNanos > 0) {
+                intendedStartNanos += operationIntervalNanos;
+                long waitNanos = intendedStartNanos - System.nanoTime();
+                if(waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+            } else {
+                intendedStartNanos = System.nanoTime();
+            }
+            if(System.nanoTime() > deadlineNanos) {
+                return;
+            }
+
+            // until a first key is inserted there is nothing to read, update or scan
+            WorkloadOperation operation = insertedKeys.getAcknowledgedKeys() > 0
+                ? nextOperation()
+                : WorkloadOperation.INSERT;
+            try {
+                execute(operation);
+            } catch (RuntimeException e) {
+                errors.get(operation).increment();
+                log.debug("{} failed", operation, e);
+            }
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos);
+            recorders.get(operation).recordValue(latencyMicros);
+        }
+    }
+
+    private WorkloadOperation nextOperation() {
+
+        double choice = ThreadLocalRandom.current().nextDouble();
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if(choice < cumulativeProportions[i]) {
+                return OPERATIONS[i];
+            }
+        }
+        return OPERATIONS[OPERATIONS.length - 1];
+    }
+
+    private void execute(WorkloadOperation operation) {
+
+        switch (operation) {
+            case READ:
+                dbClient.get(config.getNamespace(), config.getSet(), getKey(nextKeyNumber()),
+                    config.getEncodingFormat());
+                break;
+            case UPDATE: {
+                long keyNumber = nextKeyNumber();
+                dbClient.put(config.getNamespace(), config.getSet(), getKey(keyNumber), getFields(keyNumber),
+                    config.getEncodingFormat());
+                break;
+            }
+            case INSERT: {
+                long keyNumber = insertedKeys.next();
+                try {
+                    dbClient.put(config.getNamespace(), config.getSet(), getKey(keyNumber), getFields(keyNumber),
+                        config.getEncodingFormat());
+                } finally {
+                    insertedKeys.acknowledge(keyNumber);
+                }
+                break;
+            }
+            case SCAN: {
+                // scanLength entities in key order from a chosen key, as YCSB, the
+                // scan is ended by the consumer since IDBClient.scan has no limit
+                int[] scanned = new int[1];
+                try {
+                    dbClient.scan(config.getNamespace(), config.getSet(), new ScanRange(getKey(nextKeyNumber()), null),
+                        config.getEncodingFormat(), (entityId, fields) -> {
+                            if(++scanned[0] >= config.getScanLength()) {
+                                throw SCAN_COMPLETED;
+                            }
+                        });
+                } catch (ScanCompleted e) {
+                    // read scanLength entities
+                }
+                break;
+            }
+        }
+    }
+
+    private long nextKeyNumber() {
+        return keyChooser.next(insertedKeys.getAcknowledgedKeys());
+    }
+
+    private String getKey(long keyNumber) {
+        return "user" + (config.isHashKeys() ? Long.toUnsignedString(fnvHash64(keyNumber)) : keyNumber);
+    }
+
+    private Map<String, Object> getFields(long keyNumber) {
+
+        int minSize = config.getMinValueSizeBytes();
+        int size = minSize + (config.getMaxValueSizeBytes() > minSize
+            ? ThreadLocalRandom.current().nextInt(config.getMaxValueSizeBytes() - minSize + 1)
+            : 0);
+        int offset = valueSource.length() > size ? ThreadLocalRandom.current().nextInt(valueSource.length() - size) : 0;
+        Map<String, Object> fields = new TreeMap<>();
+        fields.put("key", keyNumber);
+        fields.put("value", valueSource.substring(offset, offset + size));
+        return fields;
+    }
+
+    private static long fnvHash64(long value) {
+
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < 8; i++) {
+            hash ^= value & 0xff;
+            hash *= 1099511628211L;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    private void openLogs() throws IOException {
+
+        File outputDirectory = new File(config.getOutputDirectory());
+        FileUtils.forceMkdir(outputDirectory);
+        long now = System.currentTimeMillis();
+        for (WorkloadOperation operation : OPERATIONS) {
+            HistogramLogWriter histogramLog = new HistogramLogWriter(
+                new File(outputDirectory, operation.name().toLowerCase() + ".hlog")
+            );
+            histogramLog.outputLogFormatVersion();
+            histogramLog.outputStartTime(now);
+            histogramLog.setBaseTime(now);
+            histogramLog.outputLegend();
+            histogramLogs.put(operation, histogramLog);
+        }
+        latencyLog = openCsv(new File(outputDirectory, "latencies.csv"),
+            "elapsed_s,operation,count,errors,ops_per_s,p50_us,p95_us,p99_us,p999_us,max_us");
+        statisticsLog = openCsv(new File(outputDirectory, "statistics.csv"), "elapsed_s,name,value");
+    }
+
+    private PrintStream openCsv(File file, String header) throws FileNotFoundException {
+        PrintStream csv = new PrintStream(file);
+        csv.println(header);
+        return csv;
+    }
+
+    private void report() {
+
+        long elapsedMs = System.currentTimeMillis() - startTimeMs;
+        double elapsedSeconds = elapsedMs / 1000.0;
+        StringBuilder summary = new StringBuilder(String.format("%.0f s", elapsedSeconds));
+        for (WorkloadOperation operation : OPERATIONS) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            histogramLogs.get(operation).outputIntervalHistogram(histogram);
+            long count = histogram.getTotalCount();
+            if(count == 0) {
+                continue;
+            }
+            double intervalSeconds = (histogram.getEndTimeStamp() - histogram.getStartTimeStamp()) / 1000.0;
+            double opsPerSecond = intervalSeconds > 0 ? count / intervalSeconds : 0;
+            latencyLog.printf("%.3f,%s,%d,%d,%.1f,%d,%d,%d,%d,%d%n",
+                elapsedSeconds, operation, count, errors.get(operation).sumThenReset(), opsPerSecond,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(95),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue());
+            summary.append(String.format(" | %s %.0f ops/s p99 %d us max %d us",
+                operation, opsPerSecond, histogram.getValueAtPercentile(99), histogram.getMaxValue()));
+        }
+        latencyLog.flush();
+        log.info(summary.toString());
+
+        dbClient.getStatistics().getStatistics().forEach((name, value) -> {
+            statisticsLog.printf("%.3f,%s,%s%n", elapsedSeconds, name, value);
+        });
+        if(dbClient instanceof RocksDBClient) {
+            Statistics tickers = ((RocksDBClient) dbClient).getStatistics(config.getNamespace());
+            if(tickers != null) {
+                for (TickerType tickerType : TickerType.values()) {
+                    if(tickerType != TickerType.TICKER_ENUM_MAX) {
+                        statisticsLog.printf("%.3f,ticker_%s,%d%n", elapsedSeconds,
+                            tickerType.name().toLowerCase(), tickers.getTickerCount(tickerType));
+                    }
+                }
+            }
+        }
+        statisticsLog.flush();
+    }
+
+    private void closeLogs() {
+        histogramLogs.values().forEach(HistogramLogWriter::close);
+        latencyLog.close();
+        statisticsLog.close();
+    }
+
+    /**
+     * Ends a scan once it read scanLength entities, without a stack trace
+     */
+    private static class ScanCompleted extends RuntimeException {
+
+        ScanCompleted() {
+            super(null, null, false, false);
+        }
+    }
+}
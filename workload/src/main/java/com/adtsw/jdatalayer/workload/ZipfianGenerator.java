@@ -0,0 +1,54 @@
+package com.adtsw.jdatalayer.workload;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zipfian distributed numbers in [0, items), item 0 being the most popular
+ * (Gray et al., "Quickly Generating Billion-Record Synthetic Databases", as
+ * used by YCSB). Zeta is computed once, so construction is O(items).
+ */
+public class ZipfianGenerator {
+
+    public static final double DEFAULT_ZIPFIAN_CONSTANT = 0.99;
+
+    private final long items;
+    private final double theta;
+    private final double alpha;
+    private final double zetan;
+    private final double eta;
+
+    public ZipfianGenerator(long items, double zipfianConstant) {
+
+        if(items < 1) {
+            throw new IllegalArgumentException("Zipfian generator needs at least one item");
+        }
+        this.items = items;
+        this.theta = zipfianConstant;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zetan = zeta(items, theta);
+        double zeta2theta = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2theta / zetan);
+    }
+
+    private static double zeta(long n, double theta) {
+
+        double sum = 0;
+        for (long i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, theta);
+        }
+        return sum;
+    }
+
+    public long next() {
+
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * zetan;
+        if(uz < 1.0) {
+            return 0;
+        }
+        if(uz < 1.0 + Math.pow(0.5, theta)) {
+            return Math.min(1, items - 1);
+        }
+        return Math.min((long) (items * Math.pow(eta * u - eta + 1, alpha)), items - 1);
+    }
+}